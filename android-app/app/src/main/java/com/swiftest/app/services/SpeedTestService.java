@@ -2,12 +2,16 @@ package com.swiftest.app.services;
 
 import android.util.Log;
 
+import com.swiftest.core.exec.SwiftestEngine;
 import com.swiftest.core.interfaces.ProgressListener;
 import com.swiftest.core.interfaces.SpeedTestCallback;
+import com.swiftest.core.models.LatencyStats;
+import com.swiftest.core.models.PacketStats;
 import com.swiftest.core.models.SpeedTestConfig;
 import com.swiftest.core.models.TestResult;
 import com.swiftest.core.protocol.SpeedTestProtocol;
 
+import java.io.File;
 import java.util.Date;
 
 /**
@@ -19,13 +23,30 @@ public class SpeedTestService implements SpeedTestProtocol.ProtocolCallback {
     private static final String TAG = "SpeedTestService";
     private static final String DEFAULT_SERVER = "swiftest.thucloud.com";
     private static final int DEFAULT_PORT = 8080;
+    private static final String WARM_START_FILE = "warm_start.jsonl";
     
+    // 独立的引擎：热启动记录写入应用私有目录，进程重启后仍能热启动
+    private final SwiftestEngine engine;
     private SpeedTestProtocol protocol;
     private SpeedTestCallback testCallback;
     private ProgressListener progressListener;
     private TestResult currentResult;
+    private PacketStats packetStats;
+    private float uploadSpeed;
+    private LatencyStats latencyStats;
+    private LatencyStats idleLatency;
+    private LatencyStats loadedLatency;
     private Date testStartTime;
     
+    /**
+     * @param filesDir 应用私有文件目录（Context.getFilesDir()），保存热启动记录
+     */
+    public SpeedTestService(File filesDir) {
+        this.engine = new SwiftestEngine.Builder()
+                .warmStartFile(new File(filesDir, WARM_START_FILE))
+                .build();
+    }
+    
     /**
      * 开始测速
      */
@@ -42,11 +63,20 @@ public class SpeedTestService implements SpeedTestProtocol.ProtocolCallback {
                 .guid(generateGUID())
                 .testId(generateTestId())
                 .appMode(true)
+                .tcpFallback(true)
+                .binaryControl(true)
+                .fastStart(true)
+                .warmStart(true)
                 .build();
         
         // 创建协议处理器
-        protocol = new SpeedTestProtocol(config, this);
+        protocol = new SpeedTestProtocol(engine, config, this);
         testStartTime = new Date();
+        packetStats = null;
+        uploadSpeed = 0;
+        latencyStats = null;
+        idleLatency = null;
+        loadedLatency = null;
         
         // 启动测速
         protocol.startSpeedTest();
@@ -75,6 +105,8 @@ public class SpeedTestService implements SpeedTestProtocol.ProtocolCallback {
         testCallback = null;
         progressListener = null;
         protocol = null;
+        // 写回热启动记录并释放引擎的线程
+        engine.close();
     }
     
     // SpeedTestProtocol.ProtocolCallback 实现
@@ -111,12 +143,18 @@ public class SpeedTestService implements SpeedTestProtocol.ProtocolCallback {
                 .startTime(testStartTime)
                 .endTime(new Date())
                 .downloadSpeed(downloadSpeed)
+                .speedMetrics(protocol != null ? protocol.getSpeedMetrics() : null)
+                .uploadSpeed(uploadSpeed)
+                .latency(latencyStats)
+                .loadedLatency(idleLatency, loadedLatency)
                 .totalTraffic(traffic)
+                .packetStats(packetStats)
+                .engine(protocol != null ? protocol.getEngineName() : "")
                 .successful(true)
                 .build();
         
         if (testCallback != null) {
-            testCallback.onTestCompleted(downloadSpeed, 0, 0, traffic);
+            testCallback.onTestCompleted(downloadSpeed, uploadSpeed, currentResult.getPing(), traffic);
         }
         
         if (progressListener != null) {
@@ -125,6 +163,47 @@ public class SpeedTestService implements SpeedTestProtocol.ProtocolCallback {
         }
     }
     
+    @Override
+    public void onLatencyMeasured(LatencyStats stats) {
+        Log.d(TAG, "Latency: " + stats);
+        this.latencyStats = stats;
+    }
+    
+    @Override
+    public void onLoadedLatency(LatencyStats idle, LatencyStats roundLoaded, LatencyStats totalLoaded) {
+        this.idleLatency = idle;
+        this.loadedLatency = totalLoaded;
+    }
+    
+    @Override
+    public void onUploadStarted() {
+        Log.d(TAG, "Upload test started");
+        if (progressListener != null) {
+            progressListener.onStageChanged(ProgressListener.TestStage.UPLOADING, "上传测速中");
+        }
+    }
+    
+    @Override
+    public void onUploadProgress(int progress, float currentSpeed) {
+        Log.d(TAG, "Upload progress: " + progress + "%, Speed: " + currentSpeed + " Mbps");
+        if (progressListener != null) {
+            progressListener.onProgressUpdate(progress, "上传测速中");
+            progressListener.onSpeedUpdate(currentSpeed, currentSpeed);
+        }
+    }
+    
+    @Override
+    public void onUploadCompleted(float uploadSpeed) {
+        Log.d(TAG, "Upload completed - Speed: " + uploadSpeed + " Mbps");
+        this.uploadSpeed = uploadSpeed;
+    }
+    
+    @Override
+    public void onPacketStats(PacketStats round, PacketStats unsaturated, PacketStats saturated) {
+        Log.d(TAG, "Packet stats: " + round);
+        this.packetStats = unsaturated;
+    }
+    
     @Override
     public void onTestFailed(String error) {
         Log.e(TAG, "Test failed: " + error);
@@ -41,7 +41,7 @@ public class MainActivity extends AppCompatActivity implements SpeedTestCallback
     @Override protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
-        speedTestService = new SpeedTestService();
+        speedTestService = new SpeedTestService(getFilesDir());
         bindViews();
         ballFrame.setOnClickListener(v -> {
             if (!isTesting) startTest(); else stopTest();
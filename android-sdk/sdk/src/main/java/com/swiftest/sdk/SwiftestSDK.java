@@ -2,11 +2,16 @@ package com.swiftest.sdk;
 
 import android.util.Log;
 
+import com.swiftest.core.exec.SwiftestEngine;
 import com.swiftest.core.interfaces.ProgressListener;
 import com.swiftest.core.interfaces.SpeedTestCallback;
+import com.swiftest.core.models.LatencyStats;
 import com.swiftest.core.models.SpeedTestConfig;
 import com.swiftest.core.protocol.SpeedTestProtocol;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Public SDK entrypoint
  */
@@ -14,23 +19,34 @@ public class SwiftestSDK {
     private static final String TAG = "SwiftestSDK";
 
     private final SpeedTestConfig config;
+    private final SwiftestEngine engine;
     private SpeedTestProtocol protocol;
 
     private SwiftestSDK(Builder b) {
         this.config = new SpeedTestConfig.Builder()
                 .serverHost(b.serverHost)
+                .candidateServers(b.servers)
                 .webSocketPort(b.wsPort)
                 .guid(b.guid)
                 .testId(b.testId)
                 .appMode(false)
+                .uploadTest(b.uploadTest)
+                .latencyProbe(b.latencyProbe)
+                .warmStart(b.warmStart)
+                .networkId(b.networkId)
                 .build();
+        this.engine = b.engine != null ? b.engine : SwiftestEngine.shared(config.getExecutionMode());
     }
 
     public void start(SpeedTestCallback callback, ProgressListener progressListener) {
-        protocol = new SpeedTestProtocol(config, new SpeedTestProtocol.ProtocolCallback() {
+        final float[] uploadSpeed = new float[1];
+        final float[] ping = new float[1];
+        protocol = new SpeedTestProtocol(engine, config, new SpeedTestProtocol.ProtocolCallback() {
             @Override public void onTestStarted() { if (callback!=null) callback.onTestStarted(); }
             @Override public void onProgressUpdate(int progress, float currentSpeed) { if (progressListener!=null) progressListener.onProgressUpdate(progress, "测速中"); if (progressListener!=null) progressListener.onSpeedUpdate(currentSpeed, currentSpeed); }
-            @Override public void onTestCompleted(float downloadSpeed, double traffic) { if (callback!=null) callback.onTestCompleted(downloadSpeed, 0, 0, traffic); }
+            @Override public void onTestCompleted(float downloadSpeed, double traffic) { if (callback!=null) callback.onTestCompleted(downloadSpeed, uploadSpeed[0], ping[0], traffic); }
+            @Override public void onLatencyMeasured(LatencyStats stats) { if (stats.isValid()) ping[0] = stats.getMedianMs(); }
+            @Override public void onUploadCompleted(float speed) { uploadSpeed[0] = speed; }
             @Override public void onTestFailed(String error) { if (callback!=null) callback.onTestFailed(SpeedTestCallback.ErrorCodes.UNKNOWN_ERROR, error); }
             @Override public void onNetworkIssue(int issueType) { /* surface via onTestFailed already */ }
         });
@@ -45,14 +61,34 @@ public class SwiftestSDK {
 
     public static class Builder {
         private String serverHost;
+        private List<String> servers = new ArrayList<>();
         private int wsPort = 8080;
         private String guid = "sdk";
         private String testId = "sdk_test";
+        private boolean uploadTest = false;
+        private boolean latencyProbe = false;
+        private boolean warmStart = false;
+        private String networkId;
+        private SwiftestEngine engine;
 
         public Builder serverHost(String h) { this.serverHost = h; return this; }
+        /** Candidate servers on the same port; the lowest-latency one is picked before each test. serverHost defaults to the first */
+        public Builder servers(List<String> hosts) {
+            this.servers = new ArrayList<>(hosts);
+            if (serverHost == null && !hosts.isEmpty()) serverHost = hosts.get(0);
+            return this;
+        }
         public Builder wsPort(int p) { this.wsPort = p; return this; }
         public Builder guid(String g) { this.guid = g; return this; }
         public Builder testId(String id) { this.testId = id; return this; }
+        public Builder uploadTest(boolean enabled) { this.uploadTest = enabled; return this; }
+        public Builder latencyProbe(boolean enabled) { this.latencyProbe = enabled; return this; }
+        /** Suggest a starting rate from recent results on the same network */
+        public Builder warmStart(boolean enabled) { this.warmStart = enabled; return this; }
+        /** Identifies the current network (e.g. a hash of the Wi-Fi SSID) so warm-start rates are not shared across networks */
+        public Builder networkId(String id) { this.networkId = id; return this; }
+        /** Share HTTP client, timers and buffers with other SDK instances; defaults to the process-wide engine */
+        public Builder engine(SwiftestEngine engine) { this.engine = engine; return this; }
         public SwiftestSDK build() { return new SwiftestSDK(this); }
     }
 }
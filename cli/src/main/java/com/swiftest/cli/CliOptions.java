@@ -0,0 +1,185 @@
+package com.swiftest.cli;
+
+import com.swiftest.core.interfaces.MeasurementEngine;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.protocol.MeasurementEngines;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 命令行参数
+ */
+final class CliOptions {
+    
+    static final String USAGE = String.join("\n",
+            "Usage: swiftest [options]",
+            "  --host <host>          speed test server (default swiftest.thucloud.com)",
+            "  --port <port>          WebSocket port (default 8080)",
+            "  --servers <a,b,...>    candidate servers; the lowest-latency one (incl. --host) is used",
+            "  --select-timeout <ms>  deadline for probing candidate servers (default 1500)",
+            "  --count <n>            number of consecutive tests (default 1)",
+            "  --interval <sec>       pause between tests (default 0)",
+            "  --timeout <sec>        per-test timeout (default 60)",
+            "  --engine <name>        blocking | nio | multiflow (default: chosen by port count)",
+            "  --flows <n>            parallel UDP flows (default 1)",
+            "  --tcp-streams <n>      TCP fallback connections (default 4)",
+            "  --no-tcp-fallback      fail instead of falling back to TCP when UDP is blocked",
+            "  --json-control         do not offer binary control frames in the handshake",
+            "  --udp-control          send round control in-band on the UDP socket",
+            "  --no-fast-start        do not resolve and open the UDP socket during the handshake",
+            "  --no-warm-start        do not suggest a starting rate from earlier results",
+            "  --warm-start-file <f>  persist warm start results across runs",
+            "  --network-id <id>      network identifier for warm start (e.g. probe site)",
+            "  --upload               run the upload test after the download",
+            "  --latency              measure idle latency before the download",
+            "  --loaded-latency       measure latency under load during the download",
+            "  --sequenced            request sequenced datagrams for loss/reorder/jitter stats",
+            "  --rate-control         let the client propose send rates",
+            "  --concurrency <n>      tests run in parallel per iteration (default 1)",
+            "  --virtual              run tests on virtual threads (JDK 21+)",
+            "  --guid <id>            client identifier (default cli_<timestamp>)",
+            "  --verbose              write debug logs to stderr",
+            "  --help                 show this help");
+    
+    String host = "swiftest.thucloud.com";
+    int port = 8080;
+    List<String> servers = new ArrayList<>();
+    int selectTimeoutMillis = 1500;
+    int count = 1;
+    int intervalSeconds = 0;
+    int timeoutSeconds = 60;
+    String engine = null;
+    int flows = 1;
+    int tcpStreams = 4;
+    boolean tcpFallback = true;
+    boolean binaryControl = true;
+    boolean udpControl = false;
+    boolean fastStart = true;
+    boolean warmStart = true;
+    String warmStartFile = null;
+    String networkId = null;
+    boolean upload = false;
+    boolean latency = false;
+    boolean loadedLatency = false;
+    boolean sequenced = false;
+    boolean rateControl = false;
+    int concurrency = 1;
+    SpeedTestConfig.ExecutionMode executionMode = SpeedTestConfig.ExecutionMode.PLATFORM;
+    String guid = "cli_" + System.currentTimeMillis();
+    boolean verbose = false;
+    boolean help = false;
+    
+    /**
+     * 解析命令行参数
+     * @throws IllegalArgumentException 参数不合法
+     */
+    static CliOptions parse(String[] args) {
+        CliOptions options = new CliOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--host": options.host = value(args, ++i, arg); break;
+                case "--port": options.port = intValue(args, ++i, arg); break;
+                case "--servers": options.servers = Arrays.asList(value(args, ++i, arg).split(",")); break;
+                case "--select-timeout": options.selectTimeoutMillis = intValue(args, ++i, arg); break;
+                case "--count": options.count = intValue(args, ++i, arg); break;
+                case "--interval": options.intervalSeconds = intValue(args, ++i, arg); break;
+                case "--timeout": options.timeoutSeconds = intValue(args, ++i, arg); break;
+                case "--engine": options.engine = value(args, ++i, arg); break;
+                case "--flows": options.flows = intValue(args, ++i, arg); break;
+                case "--tcp-streams": options.tcpStreams = intValue(args, ++i, arg); break;
+                case "--no-tcp-fallback": options.tcpFallback = false; break;
+                case "--json-control": options.binaryControl = false; break;
+                case "--udp-control": options.udpControl = true; break;
+                case "--no-fast-start": options.fastStart = false; break;
+                case "--no-warm-start": options.warmStart = false; break;
+                case "--warm-start-file": options.warmStartFile = value(args, ++i, arg); break;
+                case "--network-id": options.networkId = value(args, ++i, arg); break;
+                case "--upload": options.upload = true; break;
+                case "--latency": options.latency = true; break;
+                case "--loaded-latency": options.loadedLatency = true; break;
+                case "--sequenced": options.sequenced = true; break;
+                case "--rate-control": options.rateControl = true; break;
+                case "--concurrency": options.concurrency = intValue(args, ++i, arg); break;
+                case "--virtual": options.executionMode = SpeedTestConfig.ExecutionMode.VIRTUAL; break;
+                case "--guid": options.guid = value(args, ++i, arg); break;
+                case "--verbose": options.verbose = true; break;
+                case "--help":
+                case "-h":
+                    options.help = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (options.count < 1 || options.concurrency < 1 || options.timeoutSeconds < 1 || options.intervalSeconds < 0) {
+            throw new IllegalArgumentException("count, concurrency and timeout must be positive, interval cannot be negative");
+        }
+        engineFactory(options.engine);
+        return options;
+    }
+    
+    /**
+     * 为第index次测试创建配置
+     */
+    SpeedTestConfig toConfig(String testId) {
+        SpeedTestConfig.Builder builder = new SpeedTestConfig.Builder()
+                .serverHost(host)
+                .candidateServers(servers)
+                .serverSelectionTimeout(selectTimeoutMillis)
+                .webSocketPort(port)
+                .guid(guid)
+                .testId(testId)
+                .appMode(false)
+                .flows(flows)
+                .tcpFallback(tcpFallback)
+                .binaryControl(binaryControl)
+                .udpControl(udpControl)
+                .fastStart(fastStart)
+                .warmStart(warmStart)
+                .networkId(networkId)
+                .tcpStreams(tcpStreams)
+                .uploadTest(upload)
+                .latencyProbe(latency)
+                .loadedLatencyProbe(loadedLatency)
+                .sequencedPayload(sequenced)
+                .clientRateControl(rateControl)
+                .executionMode(executionMode);
+        
+        MeasurementEngine.Factory factory = engineFactory(engine);
+        if (factory == MeasurementEngines.NIO) {
+            builder.udpEngine(SpeedTestConfig.UdpEngine.NIO);
+        }
+        return builder.engineFactory(factory).build();
+    }
+    
+    private static MeasurementEngine.Factory engineFactory(String name) {
+        if (name == null) {
+            return null;
+        }
+        switch (name) {
+            case "blocking": return MeasurementEngines.BLOCKING;
+            case "nio": return MeasurementEngines.NIO;
+            case "multiflow": return MeasurementEngines.MULTI_FLOW;
+            default: throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+    }
+    
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+    
+    private static int intValue(String[] args, int index, String option) {
+        String value = value(args, index, option);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + option + ": " + value);
+        }
+    }
+}
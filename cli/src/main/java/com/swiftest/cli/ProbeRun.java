@@ -0,0 +1,137 @@
+package com.swiftest.cli;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.LatencyStats;
+import com.swiftest.core.models.PacketStats;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.models.TestResult;
+import com.swiftest.core.protocol.SpeedTestProtocol;
+import com.swiftest.core.stats.SampleRing;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行一次测速并汇总为TestResult
+ * 与App的SpeedTestService收集相同的数据，只是没有界面回调
+ */
+final class ProbeRun implements SpeedTestProtocol.ProtocolCallback {
+    
+    private static final String TAG = "ProbeRun";
+    
+    private final SwiftestEngine context;
+    private final SpeedTestConfig config;
+    private final CountDownLatch done = new CountDownLatch(1);
+    
+    private volatile float downloadSpeed;
+    private volatile double traffic;
+    private volatile float uploadSpeed;
+    private volatile LatencyStats latencyStats;
+    private volatile LatencyStats idleLatency;
+    private volatile LatencyStats loadedLatency;
+    private volatile PacketStats packetStats;
+    private volatile int rounds;
+    private volatile String error;
+    private volatile boolean completed;
+    
+    ProbeRun(SwiftestEngine context, SpeedTestConfig config) {
+        this.context = context;
+        this.config = config;
+    }
+    
+    /**
+     * 执行测速，超时后停止并返回失败结果
+     */
+    TestResult execute(int timeoutSeconds) throws InterruptedException {
+        Date startTime = new Date();
+        SpeedTestProtocol protocol = new SpeedTestProtocol(context, config, this);
+        protocol.startSpeedTest();
+        
+        if (!done.await(timeoutSeconds, TimeUnit.SECONDS)) {
+            error = "Test timed out after " + timeoutSeconds + "s";
+        }
+        protocol.stopSpeedTest();
+        
+        return new TestResult.Builder()
+                .testId(config.getTestId())
+                .startTime(startTime)
+                .endTime(new Date())
+                .downloadSpeed(downloadSpeed)
+                .speedMetrics(protocol.getSpeedMetrics())
+                .uploadSpeed(uploadSpeed)
+                .latency(latencyStats)
+                .loadedLatency(idleLatency, loadedLatency)
+                .totalTraffic(traffic)
+                .packetStats(packetStats)
+                .serverHost(protocol.getServerHost())
+                .serverPort(config.getWebSocketPort())
+                .testLoops(rounds)
+                .engine(protocol.getEngineName())
+                .handoff(protocol.getHandoffStats())
+                .timeToFirstByte(protocol.getTimeToFirstByteMs())
+                .warmStartSpeed(protocol.getWarmStartSpeed())
+                .successful(completed)
+                .errorMessage(completed || error == null ? "" : error)
+                .build();
+    }
+    
+    @Override
+    public void onTestStarted() {
+        Log.d(TAG, "Test started: " + config.getTestId());
+    }
+    
+    @Override
+    public void onProgressUpdate(int progress, float currentSpeed) {
+        Log.d(TAG, "Progress: " + progress + "%, Speed: " + currentSpeed + " Mbps");
+    }
+    
+    @Override
+    public void onTestCompleted(float downloadSpeed, double traffic) {
+        this.downloadSpeed = downloadSpeed;
+        this.traffic = traffic;
+        completed = true;
+        done.countDown();
+    }
+    
+    @Override
+    public void onTestFailed(String error) {
+        Log.w(TAG, "Test failed: " + error);
+        if (this.error == null) {
+            this.error = error;
+        }
+        done.countDown();
+    }
+    
+    @Override
+    public void onNetworkIssue(int issueType) {
+        Log.w(TAG, "Network issue: " + issueType);
+    }
+    
+    @Override
+    public void onRoundSamples(SampleRing samples, long roundStartNanos) {
+        rounds++;
+    }
+    
+    @Override
+    public void onLatencyMeasured(LatencyStats stats) {
+        latencyStats = stats;
+    }
+    
+    @Override
+    public void onLoadedLatency(LatencyStats idle, LatencyStats roundLoaded, LatencyStats totalLoaded) {
+        idleLatency = idle;
+        loadedLatency = totalLoaded;
+    }
+    
+    @Override
+    public void onPacketStats(PacketStats round, PacketStats unsaturated, PacketStats saturated) {
+        packetStats = unsaturated;
+    }
+    
+    @Override
+    public void onUploadCompleted(float uploadSpeed) {
+        this.uploadSpeed = uploadSpeed;
+    }
+}
@@ -0,0 +1,105 @@
+package com.swiftest.cli;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.exec.Threads;
+import com.swiftest.core.log.ConsoleLogger;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.TestResult;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 无界面测速入口
+ * 每次测试结束输出一行JSON（TestResult.toJsonString()）到标准输出，日志输出到标准错误，
+ * 便于探针机按行采集结果。全部成功时退出码为0，有失败时为1，参数错误时为2。
+ * --concurrency大于1时每轮并发运行多个测试，配合--virtual可以在一台机器上持续运行数千个低速率监测。
+ */
+public final class SwiftestCli {
+    
+    private static final String TAG = "SwiftestCli";
+    
+    private SwiftestCli() {}
+    
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+    
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(CliOptions.USAGE);
+            return 2;
+        }
+        if (options.help) {
+            out.println(CliOptions.USAGE);
+            return 0;
+        }
+        
+        Log.setLogger(new ConsoleLogger(options.verbose ? Log.DEBUG : Log.WARN, err));
+        
+        // 热启动结果需要跨进程保存时使用独立的引擎，否则使用共享引擎（结果只在本次运行内复用）
+        SwiftestEngine context = options.warmStartFile != null
+                ? new SwiftestEngine.Builder()
+                        .executionMode(options.executionMode)
+                        .warmStartFile(new File(options.warmStartFile))
+                        .build()
+                : SwiftestEngine.shared(options.executionMode);
+        AtomicBoolean allSuccessful = new AtomicBoolean(true);
+        try {
+            for (int i = 0; i < options.count; i++) {
+                if (i > 0 && options.intervalSeconds > 0) {
+                    Thread.sleep(options.intervalSeconds * 1000L);
+                }
+                runIteration(context, options, i, out, allSuccessful);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            if (options.warmStartFile != null) {
+                context.close();
+            }
+        }
+        return allSuccessful.get() ? 0 : 1;
+    }
+    
+    /**
+     * 并发运行一轮测试，全部结束后返回
+     */
+    private static void runIteration(SwiftestEngine context, CliOptions options, int iteration,
+                                     PrintStream out, AtomicBoolean allSuccessful) throws InterruptedException {
+        Thread[] workers = new Thread[options.concurrency];
+        for (int k = 0; k < workers.length; k++) {
+            String testId = options.concurrency > 1
+                    ? options.guid + "_" + iteration + "_" + k
+                    : options.guid + "_" + iteration;
+            workers[k] = Threads.newThread(options.executionMode, "probe-" + k, () -> {
+                try {
+                    TestResult result = new ProbeRun(context, options.toConfig(testId)).execute(options.timeoutSeconds);
+                    synchronized (out) {
+                        out.println(result.toJsonString());
+                        out.flush();
+                    }
+                    if (!result.isSuccessful()) {
+                        allSuccessful.set(false);
+                    }
+                } catch (InterruptedException e) {
+                    allSuccessful.set(false);
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Test " + testId + " crashed", e);
+                    allSuccessful.set(false);
+                }
+            }, false);
+            workers[k].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+}
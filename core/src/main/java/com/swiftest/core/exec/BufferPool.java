@@ -0,0 +1,79 @@
+package com.swiftest.core.exec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 固定大小的direct ByteBuffer池
+ * direct buffer的分配和回收（依赖GC + Cleaner）都很慢，连续或并发测试时复用接收缓冲区。
+ * 池中最多保留maxPooled个空闲缓冲区，超出的归还直接丢弃。
+ * 缓冲区只能由最后使用它的线程归还，归还后调用方不能再访问。
+ */
+public class BufferPool {
+    
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicLong allocated = new AtomicLong();
+    
+    /**
+     * @param bufferSize 每个缓冲区的容量
+     * @param maxPooled 最多保留的空闲缓冲区数量
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0 || maxPooled < 0) {
+            throw new IllegalArgumentException("Invalid pool size: bufferSize=" + bufferSize + ", maxPooled=" + maxPooled);
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+    
+    /**
+     * 取出一个已clear的缓冲区，池为空时新分配
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+        allocated.incrementAndGet();
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+    
+    /**
+     * 归还缓冲区，容量不匹配或池已满时丢弃
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize || !buffer.isDirect()) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offer(buffer);
+    }
+    
+    public int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /**
+     * 当前空闲的缓冲区数量
+     */
+    public int getPooledCount() {
+        return pooled.get();
+    }
+    
+    /**
+     * 累计新分配的缓冲区数量，用于确认复用是否生效
+     */
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+}
@@ -0,0 +1,352 @@
+package com.swiftest.core.exec;
+
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.SpeedTestConfig.ExecutionMode;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮超时定时器
+ * WebSocket控制消息每发一条都要登记发送/接收超时，绝大多数在几毫秒到几百毫秒内就被取消。
+ * ScheduledThreadPoolExecutor每次schedule/cancel都要在加锁的堆上做O(log n)调整，并发测试多时锁竞争明显；
+ * 时间轮的登记只是入队一个无锁队列，取消只是一次CAS，真正的挂桶/摘除由唯一的工作线程在每个tick批量完成。
+ * 精度为一个tick（默认100ms），只适合秒级的超时，不适合做节拍发送。
+ * 到期任务交给taskExecutor执行，回调里的停止测试等操作不会拖慢时间轮。
+ */
+public final class HashedWheelTimer {
+    
+    private static final String TAG = "HashedWheelTimer";
+    
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+    
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor taskExecutor;
+    private final Thread workerThread;
+    
+    // 新登记与已取消的超时，由工作线程在每个tick开始时处理
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    
+    private final AtomicLong scheduledCount = new AtomicLong();
+    private final AtomicLong firedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+    
+    private volatile int workerState = WORKER_INIT;
+    private static final AtomicIntegerFieldUpdater<HashedWheelTimer> WORKER_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimer.class, "workerState");
+    
+    // 工作线程启动时刻，所有deadline都相对于它计算
+    private volatile long startTime;
+    private long tick;
+    
+    /**
+     * @param mode 工作线程的执行模式
+     * @param tickDuration 每个槽位的时长
+     * @param unit tickDuration的单位
+     * @param wheelSize 槽位数，向上取整为2的幂
+     * @param taskExecutor 执行到期任务的执行器
+     */
+    public HashedWheelTimer(ExecutionMode mode, long tickDuration, TimeUnit unit, int wheelSize, Executor taskExecutor) {
+        if (tickDuration <= 0 || wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid wheel: tickDuration=" + tickDuration + ", wheelSize=" + wheelSize);
+        }
+        if (taskExecutor == null) {
+            throw new IllegalArgumentException("Task executor cannot be null");
+        }
+        this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.taskExecutor = taskExecutor;
+        this.workerThread = Threads.newThread(mode, "SwiftestWheelTimer", this::runWorker, true);
+    }
+    
+    /**
+     * 登记一个超时任务，O(1)，不加锁
+     * @return 用于取消的句柄
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        start();
+        
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        scheduledCount.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+    
+    private void start() {
+        switch (workerState) {
+            case WORKER_INIT:
+                if (WORKER_STATE.compareAndSet(this, WORKER_INIT, WORKER_STARTED)) {
+                    // 0用作“尚未启动”的标记
+                    long now = System.nanoTime();
+                    startTime = now == 0 ? 1 : now;
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STARTED:
+                break;
+            default:
+                throw new IllegalStateException("Timer already stopped");
+        }
+        
+        // 另一个线程抢先启动时，startTime可能还没写入
+        while (startTime == 0) {
+            Thread.yield();
+        }
+    }
+    
+    /**
+     * 停止工作线程，未到期的超时不再执行
+     */
+    public void stop() {
+        int previous = WORKER_STATE.getAndSet(this, WORKER_SHUTDOWN);
+        if (previous == WORKER_STARTED) {
+            LockSupport.unpark(workerThread);
+        }
+    }
+    
+    /**
+     * 累计登记的超时数量
+     */
+    public long getScheduledCount() {
+        return scheduledCount.get();
+    }
+    
+    /**
+     * 累计到期并执行的超时数量
+     */
+    public long getFiredCount() {
+        return firedCount.get();
+    }
+    
+    /**
+     * 累计在到期前被取消的超时数量
+     */
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+    
+    /**
+     * 尚未到期也未取消的超时数量
+     */
+    public long getPendingCount() {
+        return scheduledCount.get() - firedCount.get() - cancelledCount.get();
+    }
+    
+    public long getTickNanos() {
+        return tickNanos;
+    }
+    
+    private void runWorker() {
+        while (workerState == WORKER_STARTED) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            Bucket bucket = wheel[(int) (tick & mask)];
+            processCancelledTimeouts();
+            transferPendingTimeouts();
+            bucket.expireTimeouts();
+            tick++;
+        }
+        pendingTimeouts.clear();
+        cancelledTimeouts.clear();
+    }
+    
+    /**
+     * 等到当前tick结束
+     * @return 计时器已停止时返回false
+     */
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            if (workerState != WORKER_STARTED) {
+                return false;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+    
+    private void processCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+    
+    private void transferPendingTimeouts() {
+        // 限制每个tick的搬运量，避免登记速度过快时工作线程一直搬运而不推进
+        for (int i = 0; i < 100_000; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != Timeout.ST_INIT) {
+                // 在挂桶之前就被取消（发送超时的常见情况）
+                continue;
+            }
+            
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的超时放到当前槽位，本tick立即执行
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+    
+    private void execute(Timeout timeout) {
+        try {
+            taskExecutor.execute(timeout.task);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Timeout task rejected", e);
+        }
+    }
+    
+    /**
+     * 超时句柄
+     */
+    public static final class Timeout {
+        
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+        
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = ST_INIT;
+        
+        // 以下字段只由工作线程访问
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+        private Bucket bucket;
+        
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+        
+        /**
+         * 取消超时，O(1)，已到期或已取消时返回false
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timer.cancelledCount.incrementAndGet();
+            // 还在pendingTimeouts中的超时会在搬运时跳过，不需要摘除
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+        
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+        
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+        
+        private void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            timer.firedCount.incrementAndGet();
+            timer.execute(this);
+        }
+    }
+    
+    /**
+     * 一个槽位，双向链表，只由工作线程访问
+     */
+    private static final class Bucket {
+        
+        private Timeout head;
+        private Timeout tail;
+        
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+        
+        /**
+         * 执行本轮到期的超时，其余超时的剩余圈数减一
+         */
+        void expireTimeouts() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    // 挂桶时按deadline所在tick计算槽位，圈数归零时一定已经到期
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+        
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
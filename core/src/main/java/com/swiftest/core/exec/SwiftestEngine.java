@@ -0,0 +1,280 @@
+package com.swiftest.core.exec;
+
+import com.swiftest.core.interfaces.HostResolver;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.SpeedTestConfig.ExecutionMode;
+import com.swiftest.core.net.DnsCache;
+import com.swiftest.core.net.WarmStartCache;
+import com.swiftest.core.protocol.ServerSelector;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * 测试之间共享的运行时资源
+ * - 一个OkHttpClient：连接池、Dispatcher和TLS会话在测试之间复用，每个测试通过newBuilder()派生自己的超时设置
+ * - 一个哈希时间轮定时器：所有WebSocket发送/接收超时共用，登记和取消都是O(1)，测试结束只取消自己的超时
+ * - 接收缓冲区池：NIO/多流/TCP引擎的direct ByteBuffer在测试之间复用
+ * - 并发测试上限：超过上限的测试直接失败，防止探针机被打满
+ * - 服务器地址缓存：WebSocket与UDP/TCP测量共用，按TTL缓存并记录每个host的首选地址族
+ * - 服务器选择器：候选服务器的时延排序在测试之间缓存
+ * - 热启动速率缓存：按网络指纹记录最近的下载速度，重复测试时建议服务器的起始速率
+ * SpeedTestProtocol和SwiftestSDK默认使用shared()实例，也可以自行创建并在不再使用时close()。
+ */
+public final class SwiftestEngine implements Closeable {
+    
+    private static final String TAG = "SwiftestEngine";
+    
+    // NIO/多流引擎的单个数据报接收缓冲区
+    public static final int DATAGRAM_BUFFER_SIZE = 2048;
+    // TCP引擎一次读取的缓冲区
+    public static final int STREAM_BUFFER_SIZE = 256 * 1024;
+    // 时间轮槽位数，默认tick下一圈约51秒，覆盖常用的发送/接收超时
+    private static final int TIMER_WHEEL_SIZE = 512;
+    
+    private static SwiftestEngine sharedPlatform;
+    private static SwiftestEngine sharedVirtual;
+    
+    private final ExecutionMode executionMode;
+    private final int maxConcurrentTests;
+    private final Semaphore testPermits;
+    private final ExecutorService dispatcherExecutor;
+    private final OkHttpClient httpClient;
+    private final ExecutorService timeoutExecutor;
+    private final HashedWheelTimer timeoutTimer;
+    private final BufferPool datagramBuffers;
+    private final BufferPool streamBuffers;
+    private final DnsCache dnsCache;
+    private final WarmStartCache warmStartCache;
+    private final boolean shared;
+    private ServerSelector serverSelector;
+    
+    private SwiftestEngine(Builder builder, boolean shared) {
+        this.executionMode = builder.executionMode;
+        this.maxConcurrentTests = builder.maxConcurrentTests;
+        this.testPermits = new Semaphore(builder.maxConcurrentTests);
+        this.shared = shared;
+        
+        // 超时极少真正触发，到期回调按需起线程执行，不常驻；DNS后台刷新也在这里执行
+        this.timeoutExecutor = Threads.newCachedExecutor(executionMode, "SwiftestTimeout");
+        this.dnsCache = new DnsCache(builder.hostResolver, timeoutExecutor);
+        // 写回文件也在超时执行器上进行，不阻塞WebSocket读线程
+        this.warmStartCache = new WarmStartCache(builder.warmStartFile, timeoutExecutor);
+        
+        // WebSocket的读循环在整个测试期间占用一个Dispatcher名额，默认的每主机5个会让并发测试排队
+        this.dispatcherExecutor = Threads.newCachedExecutor(executionMode, "WebSocketReader");
+        Dispatcher dispatcher = new Dispatcher(dispatcherExecutor);
+        dispatcher.setMaxRequests(maxConcurrentTests);
+        dispatcher.setMaxRequestsPerHost(maxConcurrentTests);
+        this.httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool())
+                .dns(dnsCache::resolve)
+                .build();
+        
+        this.timeoutTimer = new HashedWheelTimer(executionMode, builder.timerTickMillis, TimeUnit.MILLISECONDS,
+                TIMER_WHEEL_SIZE, timeoutExecutor);
+        
+        this.datagramBuffers = new BufferPool(DATAGRAM_BUFFER_SIZE, builder.pooledBuffers);
+        this.streamBuffers = new BufferPool(STREAM_BUFFER_SIZE, Math.max(1, builder.pooledBuffers / 8));
+    }
+    
+    /**
+     * 进程内共享的默认实例，按执行模式各一个，不能close
+     */
+    public static synchronized SwiftestEngine shared(ExecutionMode mode) {
+        if (mode == ExecutionMode.VIRTUAL) {
+            if (sharedVirtual == null) {
+                sharedVirtual = new SwiftestEngine(new Builder().executionMode(ExecutionMode.VIRTUAL), true);
+            }
+            return sharedVirtual;
+        }
+        if (sharedPlatform == null) {
+            sharedPlatform = new SwiftestEngine(new Builder(), true);
+        }
+        return sharedPlatform;
+    }
+    
+    /**
+     * 占用一个并发测试名额
+     * @return 已达到并发上限时返回false
+     */
+    public boolean tryAcquireTest() {
+        return testPermits.tryAcquire();
+    }
+    
+    /**
+     * 释放tryAcquireTest()占用的名额
+     */
+    public void releaseTest() {
+        testPermits.release();
+    }
+    
+    /**
+     * 当前正在运行的测试数量
+     */
+    public int getActiveTests() {
+        return maxConcurrentTests - testPermits.availablePermits();
+    }
+    
+    public int getMaxConcurrentTests() {
+        return maxConcurrentTests;
+    }
+    
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+    
+    /**
+     * 共享的HTTP客户端，需要不同超时时通过newBuilder()派生，派生的客户端共用连接池和Dispatcher
+     */
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+    
+    /**
+     * 共享的超时定时器，调用方只能取消自己登记的超时，不能stop
+     * 触发/取消计数见getFiredCount()/getCancelledCount()
+     */
+    public HashedWheelTimer getTimeoutTimer() {
+        return timeoutTimer;
+    }
+    
+    public BufferPool getDatagramBufferPool() {
+        return datagramBuffers;
+    }
+    
+    public BufferPool getStreamBufferPool() {
+        return streamBuffers;
+    }
+    
+    /**
+     * 共享的服务器地址缓存，命中/过期/查询/竞速次数见getHitCount()等
+     */
+    public DnsCache getDnsCache() {
+        return dnsCache;
+    }
+    
+    /**
+     * 热启动速率缓存，未指定warmStartFile时只在内存中保存
+     */
+    public WarmStartCache getWarmStartCache() {
+        return warmStartCache;
+    }
+    
+    /**
+     * 共享的服务器选择器，首次使用时创建
+     */
+    public synchronized ServerSelector getServerSelector() {
+        if (serverSelector == null) {
+            serverSelector = new ServerSelector(this);
+        }
+        return serverSelector;
+    }
+    
+    /**
+     * 释放线程和连接，调用前应停止所有使用该实例的测试
+     */
+    @Override
+    public void close() {
+        if (shared) {
+            Log.w(TAG, "Ignoring close() on the shared engine");
+            return;
+        }
+        warmStartCache.flush();
+        timeoutTimer.stop();
+        timeoutExecutor.shutdown();
+        dispatcherExecutor.shutdown();
+        httpClient.connectionPool().evictAll();
+        try {
+            if (!dispatcherExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                dispatcherExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            dispatcherExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 构建器模式用于创建独立的SwiftestEngine
+     */
+    public static class Builder {
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        private int maxConcurrentTests = 4096;
+        private int timerTickMillis = 100;
+        private int pooledBuffers = 64;
+        private HostResolver hostResolver = HostResolver.SYSTEM;
+        private File warmStartFile = null;
+        
+        /**
+         * 共享线程（定时器、WebSocket读循环）的执行模式
+         */
+        public Builder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+        
+        /**
+         * 同时运行的测试上限
+         */
+        public Builder maxConcurrentTests(int maxConcurrentTests) {
+            this.maxConcurrentTests = maxConcurrentTests;
+            return this;
+        }
+        
+        /**
+         * 超时定时器的精度（毫秒），超时最多比设定值晚一个tick触发
+         */
+        public Builder timerTickMillis(int timerTickMillis) {
+            this.timerTickMillis = timerTickMillis;
+            return this;
+        }
+        
+        /**
+         * 数据报缓冲区池最多保留的空闲缓冲区数量
+         */
+        public Builder pooledBuffers(int pooledBuffers) {
+            this.pooledBuffers = pooledBuffers;
+            return this;
+        }
+        
+        /**
+         * 替换域名解析器，默认为系统解析器（结果缓存HostResolver.DEFAULT_TTL_MILLIS）
+         */
+        public Builder hostResolver(HostResolver hostResolver) {
+            this.hostResolver = hostResolver;
+            return this;
+        }
+        
+        /**
+         * 热启动速率缓存的持久化文件，进程重启后仍能热启动；默认只在内存中保存
+         * 同一文件不应被多个SwiftestEngine同时使用
+         */
+        public Builder warmStartFile(File warmStartFile) {
+            this.warmStartFile = warmStartFile;
+            return this;
+        }
+        
+        public SwiftestEngine build() {
+            if (executionMode == null) {
+                throw new IllegalArgumentException("Execution mode cannot be null");
+            }
+            if (hostResolver == null) {
+                throw new IllegalArgumentException("Host resolver cannot be null");
+            }
+            if (maxConcurrentTests < 1 || timerTickMillis < 1 || pooledBuffers < 0) {
+                throw new IllegalArgumentException("Invalid engine limits: maxConcurrentTests=" + maxConcurrentTests
+                        + ", timerTickMillis=" + timerTickMillis + ", pooledBuffers=" + pooledBuffers);
+            }
+            return new SwiftestEngine(this, false);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.swiftest.core.exec;
+
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.SpeedTestConfig.ExecutionMode;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测速线程的统一创建入口
+ * PLATFORM模式与原来一样为每个任务创建平台线程；VIRTUAL模式创建虚拟线程，
+ * 阻塞读写、sleep和park只占用JVM共享的少量载体线程，单机可以同时运行数千个低速率测试。
+ * core以Java 11编译，虚拟线程通过反射调用Thread.ofVirtual()，运行时不支持（Android、JDK 21以下）时退回平台线程。
+ */
+public final class Threads {
+    
+    private static final String TAG = "Threads";
+    
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+    
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class);
+            unstarted = builderClass.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNSTARTED = unstarted;
+    }
+    
+    private static volatile boolean fallbackLogged = false;
+    
+    private Threads() {}
+    
+    /**
+     * 当前运行时是否支持虚拟线程
+     */
+    public static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null;
+    }
+    
+    /**
+     * 创建一个未启动的线程
+     * @param mode 执行模式，VIRTUAL在不支持的运行时退回平台线程
+     * @param name 线程名
+     * @param daemon 平台线程是否为守护线程，虚拟线程总是守护线程
+     */
+    public static Thread newThread(ExecutionMode mode, String name, Runnable task, boolean daemon) {
+        if (mode == ExecutionMode.VIRTUAL) {
+            Thread thread = newVirtualThread(name, task);
+            if (thread != null) {
+                return thread;
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(daemon);
+        return thread;
+    }
+    
+    /**
+     * 按执行模式创建ThreadFactory，线程名为 prefix-序号
+     */
+    public static ThreadFactory factory(ExecutionMode mode, String prefix, boolean daemon) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> newThread(mode, prefix + "-" + counter.incrementAndGet(), task, daemon);
+    }
+    
+    /**
+     * 按需创建线程、空闲60秒回收的执行器，VIRTUAL模式下每个任务一个虚拟线程（用于OkHttp Dispatcher）
+     */
+    public static ExecutorService newCachedExecutor(ExecutionMode mode, String prefix) {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), factory(mode, prefix, true));
+    }
+    
+    private static Thread newVirtualThread(String name, Runnable task) {
+        if (OF_VIRTUAL == null) {
+            if (!fallbackLogged) {
+                fallbackLogged = true;
+                Log.w(TAG, "Virtual threads are not available on this runtime, using platform threads");
+            }
+            return null;
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = BUILDER_NAME.invoke(builder, name);
+            return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+        } catch (ReflectiveOperationException e) {
+            Log.w(TAG, "Failed to create virtual thread, using platform thread", e);
+            return null;
+        }
+    }
+}
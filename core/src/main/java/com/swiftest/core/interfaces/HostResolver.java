@@ -0,0 +1,59 @@
+package com.swiftest.core.interfaces;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 域名解析SPI
+ * DnsCache通过该接口查询服务器地址并按返回的TTL缓存，测试中可以替换为返回固定结果的实现。
+ */
+public interface HostResolver {
+    
+    /**
+     * 系统解析器未提供记录TTL时使用的缓存时间
+     */
+    long DEFAULT_TTL_MILLIS = 60_000;
+    
+    /**
+     * 系统解析器（InetAddress.getAllByName），JDK不暴露记录的TTL，统一使用DEFAULT_TTL_MILLIS
+     */
+    HostResolver SYSTEM = host -> new Answer(Arrays.asList(InetAddress.getAllByName(host)), DEFAULT_TTL_MILLIS);
+    
+    /**
+     * 查询host的全部A/AAAA记录，在调用线程上阻塞执行
+     * @throws UnknownHostException 解析失败或没有记录
+     */
+    Answer lookup(String host) throws UnknownHostException;
+    
+    /**
+     * 一次查询的结果
+     */
+    final class Answer {
+        
+        private final List<InetAddress> addresses;
+        private final long ttlMillis;
+        
+        /**
+         * @param addresses 解析到的地址，按解析器返回的顺序
+         * @param ttlMillis 结果的有效时间
+         */
+        public Answer(List<InetAddress> addresses, long ttlMillis) {
+            if (addresses == null || addresses.isEmpty()) {
+                throw new IllegalArgumentException("Answer must contain at least one address");
+            }
+            this.addresses = Collections.unmodifiableList(addresses);
+            this.ttlMillis = Math.max(0, ttlMillis);
+        }
+        
+        public List<InetAddress> getAddresses() {
+            return addresses;
+        }
+        
+        public long getTtlMillis() {
+            return ttlMillis;
+        }
+    }
+}
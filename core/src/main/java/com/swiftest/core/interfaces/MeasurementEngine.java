@@ -0,0 +1,121 @@
+package com.swiftest.core.interfaces;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.models.HandoffStats;
+import com.swiftest.core.models.SpeedMetrics;
+import com.swiftest.core.models.SpeedTestConfig;
+
+/**
+ * 下载测量引擎SPI
+ * SpeedTestProtocol只通过该接口驱动测量，不依赖具体的收包实现：
+ * - start：建立传输并开始发送触发包
+ * - startRound：服务器下发新一轮速率（speed命令），停止触发并开始接收
+ * - supportsInbandControl / enableInbandControl / requestNextRound：可选，第二轮起的轮次控制改走测量Socket
+ * - usePrepared：可选，快速启动时取用WebSocket握手期间已准备好的地址和Socket
+ * - 轮次结果和采样数据通过UdpTestCallback回调（onSingleTestComplete / onRoundSamples）
+ * - stopTest / awaitTermination：停止并等待引擎释放资源
+ * 内置实现见MeasurementEngines，也可以通过SpeedTestConfig.Builder.engineFactory()替换。
+ */
+public interface MeasurementEngine {
+    
+    /**
+     * 启动引擎，只调用一次
+     */
+    void start();
+    
+    /**
+     * 服务器开始新一轮发送
+     * @param sendSpeed 服务器本轮的发送速率
+     */
+    void startRound(int sendSpeed);
+    
+    /**
+     * 引擎能否在测量Socket上收发轮次控制报文，SpeedTestProtocol据此决定是否启用轮次内联控制
+     * @return 默认false，此时enableInbandControl()和requestNextRound()不会被调用
+     */
+    default boolean supportsInbandControl() {
+        return false;
+    }
+    
+    /**
+     * 服务器确认支持轮次内联控制后、start()之前调用，只在supportsInbandControl()返回true时调用
+     */
+    default void enableInbandControl() {
+    }
+    
+    /**
+     * 快速启动时在start()之前调用，引擎可以从中取用已解析的地址和已打开的Socket
+     * 未取走的Socket由调用方在测试结束时关闭，不支持的引擎忽略即可
+     */
+    default void usePrepared(PreparedSockets prepared) {
+    }
+    
+    /**
+     * 经测量Socket请求下一轮，只在enableInbandControl()之后、在onSingleTestComplete回调中调用
+     * 服务器确认后通过UdpTestCallback.onInbandRoundStart通知；多次重传未确认时通过onInbandControlFailed交回
+     * @param repeat true为repeat，false为continue
+     * @param proposedSpeed 建议速率 (Mbps)，0表示由服务器决定
+     */
+    default void requestNextRound(boolean repeat, int proposedSpeed) {
+    }
+    
+    /**
+     * 停止测量并释放资源，可以在任意线程调用，可重复调用
+     */
+    void stopTest();
+    
+    /**
+     * 等待引擎停止
+     * @param timeoutMs 最长等待时间
+     * @return 引擎已停止时返回true
+     */
+    boolean awaitTermination(long timeoutMs) throws InterruptedException;
+    
+    /**
+     * 测试结束后的最终下载速度 (Mbps)
+     */
+    float getDownloadSpeed();
+    
+    /**
+     * 当前速度估计 (Mbps)，用于提前结束时上报服务器
+     */
+    float getEstimatedSpeed();
+    
+    /**
+     * 已完成的饱和轮次数
+     */
+    int getRepeatCounter();
+    
+    /**
+     * 引擎名称，写入测试结果，便于按引擎对比现网数据
+     */
+    String getEngineName();
+    
+    /**
+     * 触发阶段与轮次切换的交接耗时，用于评估轮次之间的空闲时间，不统计时返回HandoffStats.EMPTY
+     */
+    default HandoffStats getHandoffStats() {
+        return HandoffStats.EMPTY;
+    }
+    
+    /**
+     * 测试结束后的速度分布、传输质量和时延汇总，在最后一轮结束后读取，不统计时返回SpeedMetrics.EMPTY
+     */
+    default SpeedMetrics getSpeedMetrics() {
+        return SpeedMetrics.EMPTY;
+    }
+    
+    /**
+     * 引擎工厂，收到服务器分配的UDP端口后调用
+     */
+    interface Factory {
+        
+        /**
+         * @param context 共享资源，引擎应从中借用接收缓冲区
+         * @param config 测速配置
+         * @param udpPorts 服务器分配的UDP端口，单流时长度为1
+         * @param callback 轮次结果和采样数据回调
+         */
+        MeasurementEngine create(SwiftestEngine context, SpeedTestConfig config, int[] udpPorts, UdpTestCallback callback);
+    }
+}
@@ -0,0 +1,31 @@
+package com.swiftest.core.interfaces;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * 快速启动时预先准备的测速Socket
+ * SpeedTestProtocol在WebSocket握手期间创建，经MeasurementEngine.usePrepared()交给引擎。
+ * 引擎取走的Socket归引擎所有，未取走的由调用方在测试结束时关闭。
+ */
+public interface PreparedSockets {
+    
+    /**
+     * 等待地址解析和Socket准备完成，之后context的地址缓存中已有服务器地址（解析失败时除外）
+     * @return 等待超时时返回false，引擎按原流程自行解析和创建
+     */
+    boolean awaitReady() throws IOException;
+    
+    /**
+     * 取走预先打开的DatagramSocket，只能取一次
+     * @return 未准备或已取走时返回null
+     */
+    DatagramSocket takeSocket();
+    
+    /**
+     * 取走一个预先打开的DatagramChannel（未连接、阻塞模式）
+     * @return 没有剩余时返回null
+     */
+    DatagramChannel takeChannel();
+}
@@ -41,7 +41,7 @@ public interface ProgressListener {
         CONNECTING("正在连接服务器"),
         PREPARING("准备测速"),
         DOWNLOADING("下载测速中"),
-        UPLOADING("上传测速中"), // 预留
+        UPLOADING("上传测速中"),
         ANALYZING("分析结果"),
         COMPLETED("测试完成");
         
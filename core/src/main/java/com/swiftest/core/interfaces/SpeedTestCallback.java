@@ -14,8 +14,8 @@ public interface SpeedTestCallback {
     /**
      * 测速完成时调用
      * @param downloadSpeed 下载速度 (Mbps)
-     * @param uploadSpeed 上传速度 (Mbps) - 当前版本暂不支持
-     * @param ping 延迟 (ms) - 当前版本暂不支持
+     * @param uploadSpeed 上传速度 (Mbps)，未开启上传测速或服务器不支持时为0
+     * @param ping 空载延迟中位数 (ms)，未开启时延探测或服务器不支持回显时为0
      * @param totalTraffic 总流量 (MB)
      */
     void onTestCompleted(float downloadSpeed, float uploadSpeed, float ping, double totalTraffic);
@@ -1,5 +1,10 @@
 package com.swiftest.core.interfaces;
 
+import com.swiftest.core.models.ConvergenceState;
+import com.swiftest.core.models.LatencyStats;
+import com.swiftest.core.models.PacketStats;
+import com.swiftest.core.stats.SampleRing;
+
 /**
  * UDP测速回调接口
  * 用于处理UDP测速过程中的各种事件
@@ -18,6 +23,20 @@ public interface UdpTestCallback {
      */
     void onTestStart(int loop, int speed);
     
+    /**
+     * 开启latencyProbe时，触发阶段之前的时延探测完成后调用
+     * @param stats 空载RTT统计，服务器不支持回显时isValid()为false
+     */
+    default void onLatencyMeasured(LatencyStats stats) {}
+    
+    /**
+     * 开启loadedLatencyProbe时，每轮速度计算完成后调用
+     * @param idle 空载时延（触发阶段和轮次间隙发出的探测，会话累计）
+     * @param roundLoaded 本轮接收窗口内发出的探测的负载时延
+     * @param totalLoaded 所有轮次累计的负载时延
+     */
+    default void onLoadedLatency(LatencyStats idle, LatencyStats roundLoaded, LatencyStats totalLoaded) {}
+    
     /**
      * 收到第一个UDP包时调用
      */
@@ -28,8 +47,9 @@ public interface UdpTestCallback {
      * @param speed 本次测试的速度结果
      * @param isSaturated 是否达到饱和状态
      * @param isTestEnd 是否所有测试结束
+     * @param convergence 自适应停止规则的状态，isTestEnd为true时getStopReason()给出停止原因
      */
-    void onSingleTestComplete(float speed, boolean isSaturated, boolean isTestEnd);
+    void onSingleTestComplete(float speed, boolean isSaturated, boolean isTestEnd, ConvergenceState convergence);
     
     /**
      * 所有测试完成时调用
@@ -47,4 +67,40 @@ public interface UdpTestCallback {
      * 没有收到任何数据时调用
      */
     void onNoDataReceived();
-}
\ No newline at end of file
+    
+    /**
+     * 开启sequencedPayload时，每轮结束后调用（在onSingleTestComplete之前）
+     * 只统计各轮的接收时段，不包括轮次之间未读取的尾包
+     * @param round 本轮的丢包、乱序、重复和抖动统计
+     * @param unsaturated 所有未饱和轮次的累计统计，反映链路本身的丢包
+     * @param saturated 所有饱和轮次的累计统计，丢包主要来自服务器有意超发
+     */
+    default void onPacketStats(PacketStats round, PacketStats unsaturated, PacketStats saturated) {}
+    
+    /**
+     * 每轮速度计算完成后调用，在接收线程上同步执行
+     * 采样环只在回调期间有效（下一轮会被复用），需要保留的数据必须在回调内复制
+     * @param samples 本轮采样点 (System.nanoTime(), 本轮累计字节数)
+     * @param roundStartNanos 本轮起点，此时累计字节数为0
+     */
+    default void onRoundSamples(SampleRing samples, long roundStartNanos) {}
+    
+    /**
+     * 多流模式下，每轮结束后（在onSingleTestComplete之前）调用
+     * @param flowSpeeds 各流本轮的平均速度 (Mbps)，下标与UDP端口顺序一致
+     */
+    default void onFlowBreakdown(float[] flowSpeeds) {}
+    
+    /**
+     * 服务器经测量Socket确认新一轮开始（轮次内联控制）
+     * @param speed 服务器本轮的发送速率
+     */
+    default void onInbandRoundStart(int speed) {}
+    
+    /**
+     * 经测量Socket的下一轮请求多次重传仍未确认，引擎已关闭内联控制，需要改由WebSocket发送同一请求
+     * @param repeat true为repeat，false为continue
+     * @param proposedSpeed 建议速率 (Mbps)
+     */
+    default void onInbandControlFailed(boolean repeat, int proposedSpeed) {}
+}
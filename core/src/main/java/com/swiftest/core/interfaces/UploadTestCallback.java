@@ -0,0 +1,45 @@
+package com.swiftest.core.interfaces;
+
+import com.swiftest.core.models.ConvergenceState;
+
+/**
+ * UDP上传测速回调接口
+ * 用于处理上传测速过程中的各种事件
+ */
+public interface UploadTestCallback {
+    
+    /**
+     * 一轮上传开始时调用
+     * @param loop 当前循环次数
+     * @param speed 本轮目标发送速率 (Mbps)
+     */
+    void onTestStart(int loop, int speed);
+    
+    /**
+     * 一轮数据发送完毕时调用，此时应通知服务器上报本轮收到的字节数
+     * @param loop 当前循环次数
+     * @param sentBytes 本轮实际发送的字节数
+     * @param durationNanos 本轮实际发送时长
+     */
+    void onRoundSent(int loop, long sentBytes, long durationNanos);
+    
+    /**
+     * 收到服务器的接收统计、完成本轮计算后调用
+     * @param speed 服务器侧的接收速度 (Mbps)
+     * @param isSaturated 是否达到饱和状态
+     * @param isTestEnd 是否所有测试结束
+     * @param convergence 自适应停止规则的状态，isTestEnd为true时getStopReason()给出停止原因
+     */
+    void onSingleTestComplete(float speed, boolean isSaturated, boolean isTestEnd, ConvergenceState convergence);
+    
+    /**
+     * 上传测试过程中发生错误时调用
+     * @param error 错误信息
+     */
+    void onUploadError(String error);
+    
+    /**
+     * 服务器未在接收超时内响应上传请求时调用（服务器不支持上传测速）
+     */
+    void onUploadUnsupported();
+}
@@ -9,7 +9,7 @@ import org.json.JSONObject;
 public interface WebSocketCallback {
     
     /**
-     * 连接成功建立时调用
+     * 连接成功建立时调用，在发送握手消息之前
      */
     void onConnected();
     
@@ -20,17 +20,38 @@ public interface WebSocketCallback {
     void onConnectionFailed(String error);
     
     /**
-     * 收到服务器消息时调用
+     * 收到服务器JSON消息时调用，协商为二进制控制帧后不再调用
      * @param message 服务器发送的JSON消息
      */
     void onMessageReceived(JSONObject message);
     
+    /**
+     * 服务器接受轮次内联控制（第二轮起的continue/repeat经测量Socket收发），在端口回调之前调用
+     */
+    default void onUdpControlAccepted() {}
+    
     /**
      * 收到UDP端口信息时调用
      * @param udpPort 服务器分配的UDP端口
      */
     void onUdpPortReceived(int udpPort);
     
+    /**
+     * 多流模式下收到服务器分配的多个UDP端口时调用
+     * 默认只使用第一个端口，退化为单流
+     * @param udpPorts 服务器分配的UDP端口列表
+     */
+    default void onUdpPortsReceived(int[] udpPorts) {
+        onUdpPortReceived(udpPorts[0]);
+    }
+    
+    /**
+     * UDP被阻断、客户端请求TCP后备后，收到服务器分配的TCP端口时调用
+     * @param tcpPort 服务器分配的TCP端口
+     * @param token 用于关联TCP连接与当前会话的token
+     */
+    default void onTcpPortReceived(int tcpPort, String token) {}
+    
     /**
      * 收到测速开始指令时调用
      * @param speed 初始测速速度
@@ -43,6 +64,18 @@ public interface WebSocketCallback {
      */
     void onSpeedTestFinish(double traffic);
     
+    /**
+     * 服务器确认可以开始一轮上传测速时调用
+     */
+    default void onUploadReady() {}
+    
+    /**
+     * 服务器上报本轮上传收到的数据量时调用
+     * @param bytes 服务器收到的字节数
+     * @param durationMicros 服务器侧首包到末包的时长 (µs)，服务器未提供时为0
+     */
+    default void onUploadReport(long bytes, long durationMicros) {}
+    
     /**
      * 收到超出限制消息时调用
      */
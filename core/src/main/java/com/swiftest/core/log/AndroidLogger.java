@@ -0,0 +1,45 @@
+package com.swiftest.core.log;
+
+import java.lang.reflect.Method;
+
+/**
+ * 通过反射转发到android.util.Log，使core模块不需要依赖Android SDK
+ * 只在类加载时查找一次方法，之后每条日志只有一次反射调用
+ */
+final class AndroidLogger implements Logger {
+    
+    private final Method println;
+    private final Method getStackTraceString;
+    
+    private AndroidLogger(Method println, Method getStackTraceString) {
+        this.println = println;
+        this.getStackTraceString = getStackTraceString;
+    }
+    
+    /**
+     * 不在Android上运行时返回null
+     */
+    static Logger create() {
+        try {
+            Class<?> logClass = Class.forName("android.util.Log");
+            Method println = logClass.getMethod("println", int.class, String.class, String.class);
+            Method getStackTraceString = logClass.getMethod("getStackTraceString", Throwable.class);
+            return new AndroidLogger(println, getStackTraceString);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public void log(int level, String tag, String message, Throwable error) {
+        try {
+            String text = message;
+            if (error != null) {
+                text = message + "\n" + getStackTraceString.invoke(null, error);
+            }
+            println.invoke(null, level, tag, text);
+        } catch (ReflectiveOperationException e) {
+            // 日志失败不影响测速
+        }
+    }
+}
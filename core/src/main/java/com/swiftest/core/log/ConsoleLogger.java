@@ -0,0 +1,42 @@
+package com.swiftest.core.log;
+
+import java.io.PrintStream;
+
+/**
+ * 输出到标准错误的日志实现，标准输出留给测试结果
+ */
+public class ConsoleLogger implements Logger {
+    
+    private static final String[] LEVEL_NAMES = { "V", "V", "V", "D", "I", "W", "E" };
+    
+    private final int minLevel;
+    private final PrintStream out;
+    
+    /**
+     * @param minLevel 最低输出级别
+     */
+    public ConsoleLogger(int minLevel) {
+        this(minLevel, System.err);
+    }
+    
+    public ConsoleLogger(int minLevel, PrintStream out) {
+        this.minLevel = minLevel;
+        this.out = out;
+    }
+    
+    @Override
+    public boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+    
+    @Override
+    public void log(int level, String tag, String message, Throwable error) {
+        String name = level >= 0 && level < LEVEL_NAMES.length ? LEVEL_NAMES[level] : "?";
+        synchronized (out) {
+            out.println(name + "/" + tag + ": " + message);
+            if (error != null) {
+                error.printStackTrace(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.swiftest.core.log;
+
+/**
+ * core模块的日志入口，调用方式与android.util.Log相同
+ * 默认在Android上输出到logcat，在普通JVM上输出到标准错误（WARN及以上），
+ * 可以通过setLogger()替换，例如CLI的--verbose模式
+ */
+public final class Log {
+    
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    
+    private static volatile Logger logger = defaultLogger();
+    
+    private Log() {}
+    
+    /**
+     * 替换日志输出，传入null时恢复默认输出
+     */
+    public static void setLogger(Logger newLogger) {
+        logger = newLogger != null ? newLogger : defaultLogger();
+    }
+    
+    public static Logger getLogger() {
+        return logger;
+    }
+    
+    /**
+     * 当前输出是否接受该级别，拼接开销较大的日志内容前先判断
+     */
+    public static boolean isLoggable(int level) {
+        return logger.isLoggable(level);
+    }
+    
+    public static void d(String tag, String message) {
+        log(DEBUG, tag, message, null);
+    }
+    
+    public static void d(String tag, String message, Throwable error) {
+        log(DEBUG, tag, message, error);
+    }
+    
+    public static void i(String tag, String message) {
+        log(INFO, tag, message, null);
+    }
+    
+    public static void w(String tag, String message) {
+        log(WARN, tag, message, null);
+    }
+    
+    public static void w(String tag, String message, Throwable error) {
+        log(WARN, tag, message, error);
+    }
+    
+    public static void e(String tag, String message) {
+        log(ERROR, tag, message, null);
+    }
+    
+    public static void e(String tag, String message, Throwable error) {
+        log(ERROR, tag, message, error);
+    }
+    
+    private static void log(int level, String tag, String message, Throwable error) {
+        Logger current = logger;
+        if (current.isLoggable(level)) {
+            current.log(level, tag, message, error);
+        }
+    }
+    
+    private static Logger defaultLogger() {
+        Logger android = AndroidLogger.create();
+        return android != null ? android : new ConsoleLogger(WARN);
+    }
+}
@@ -0,0 +1,24 @@
+package com.swiftest.core.log;
+
+/**
+ * 日志输出接口
+ * core模块不依赖任何平台日志实现，由运行环境通过Log.setLogger()注入
+ */
+public interface Logger {
+    
+    /**
+     * 输出一条日志
+     * @param level 日志级别，取值见Log.DEBUG ~ Log.ERROR（与android.util.Log的优先级一致）
+     * @param tag 日志标签
+     * @param message 日志内容
+     * @param error 关联的异常，可以为null
+     */
+    void log(int level, String tag, String message, Throwable error);
+    
+    /**
+     * 是否输出该级别的日志，返回false时Log不会调用log()
+     */
+    default boolean isLoggable(int level) {
+        return true;
+    }
+}
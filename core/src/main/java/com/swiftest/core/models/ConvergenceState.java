@@ -0,0 +1,51 @@
+package com.swiftest.core.models;
+
+/**
+ * 一轮结束后自适应停止规则的状态，随onSingleTestComplete回调
+ * 估计值为当前连续饱和轮次速度的均值，未饱和轮次会清空估计重新开始。
+ * 停止条件按顺序检查：
+ * - CONVERGED：至少2个饱和轮次（少于2个样本无法估计方差），且95%置信区间半宽不超过 convergenceTolerance × 均值
+ * - MAX_SATURATED_ROUNDS：饱和轮次达到maxSaturatedRounds（默认3，与原固定轮数一致）
+ * - MAX_ROUNDS：总轮次达到maxRounds（默认10），链路始终未饱和时避免无限爬升
+ */
+public class ConvergenceState {
+    
+    public enum StopReason {
+        NONE,                  // 继续下一轮
+        CONVERGED,
+        MAX_SATURATED_ROUNDS,
+        MAX_ROUNDS
+    }
+    
+    private final float estimate;        // 饱和轮次速度均值 (Mbps)
+    private final float halfWidth;       // 95%置信区间半宽 (Mbps)，少于2个饱和轮次时为无穷大
+    private final int saturatedRounds;   // 参与估计的饱和轮次数
+    private final int totalRounds;       // 已完成的总轮次数
+    private final StopReason stopReason;
+    
+    public ConvergenceState(float estimate, float halfWidth, int saturatedRounds, int totalRounds,
+                            StopReason stopReason) {
+        this.estimate = estimate;
+        this.halfWidth = halfWidth;
+        this.saturatedRounds = saturatedRounds;
+        this.totalRounds = totalRounds;
+        this.stopReason = stopReason;
+    }
+    
+    // Getters
+    public float getEstimate() { return estimate; }
+    public float getHalfWidth() { return halfWidth; }
+    public int getSaturatedRounds() { return saturatedRounds; }
+    public int getTotalRounds() { return totalRounds; }
+    public StopReason getStopReason() { return stopReason; }
+    
+    public boolean isStopped() {
+        return stopReason != StopReason.NONE;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ConvergenceState{estimate=%.1f±%.1fMbps, saturated=%d, rounds=%d, stop=%s}",
+                estimate, halfWidth, saturatedRounds, totalRounds, stopReason);
+    }
+}
@@ -0,0 +1,64 @@
+package com.swiftest.core.models;
+
+/**
+ * 测量线程在各阶段之间的交接耗时，用于评估轮次之间不产生吞吐量的空闲时间
+ * 轮次切换拆分为三段：
+ * - control：本轮结束（onSingleTestComplete）到收到下一轮开始信号（WebSocket start或内联START）
+ * - wake：开始信号到测量线程恢复运行
+ * - firstPacket：测量线程恢复到本轮首包
+ * gap为control + wake + firstPacket，即两轮之间的总空闲时间。所有时间单位为ms
+ */
+public class HandoffStats {
+    
+    public static final HandoffStats EMPTY = new HandoffStats(0f, 0f, 0, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f);
+    
+    private final float triggerConfirmMs;  // 首个触发包到服务器确认（停止触发）
+    private final float triggerExitMs;     // 服务器确认到触发循环退出
+    private final int transitions;         // 统计的轮次切换次数（不含第一轮）
+    private final float controlMeanMs;
+    private final float controlMaxMs;
+    private final float wakeMeanMs;
+    private final float wakeMaxMs;
+    private final float firstPacketMeanMs;
+    private final float firstPacketMaxMs;
+    private final float gapMeanMs;
+    private final float gapMaxMs;
+    
+    public HandoffStats(float triggerConfirmMs, float triggerExitMs, int transitions,
+                        float controlMeanMs, float controlMaxMs, float wakeMeanMs, float wakeMaxMs,
+                        float firstPacketMeanMs, float firstPacketMaxMs, float gapMeanMs, float gapMaxMs) {
+        this.triggerConfirmMs = triggerConfirmMs;
+        this.triggerExitMs = triggerExitMs;
+        this.transitions = transitions;
+        this.controlMeanMs = controlMeanMs;
+        this.controlMaxMs = controlMaxMs;
+        this.wakeMeanMs = wakeMeanMs;
+        this.wakeMaxMs = wakeMaxMs;
+        this.firstPacketMeanMs = firstPacketMeanMs;
+        this.firstPacketMaxMs = firstPacketMaxMs;
+        this.gapMeanMs = gapMeanMs;
+        this.gapMaxMs = gapMaxMs;
+    }
+    
+    // Getters
+    public float getTriggerConfirmMs() { return triggerConfirmMs; }
+    public float getTriggerExitMs() { return triggerExitMs; }
+    public int getTransitions() { return transitions; }
+    public float getControlMeanMs() { return controlMeanMs; }
+    public float getControlMaxMs() { return controlMaxMs; }
+    public float getWakeMeanMs() { return wakeMeanMs; }
+    public float getWakeMaxMs() { return wakeMaxMs; }
+    public float getFirstPacketMeanMs() { return firstPacketMeanMs; }
+    public float getFirstPacketMaxMs() { return firstPacketMaxMs; }
+    public float getGapMeanMs() { return gapMeanMs; }
+    public float getGapMaxMs() { return gapMaxMs; }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "HandoffStats{trigger=%.2f+%.3fms, transitions=%d, control=%.2f/%.2fms, wake=%.3f/%.3fms, firstPacket=%.2f/%.2fms, gap=%.2f/%.2fms}",
+                triggerConfirmMs, triggerExitMs, transitions, controlMeanMs, controlMaxMs, wakeMeanMs, wakeMaxMs,
+                firstPacketMeanMs, firstPacketMaxMs, gapMeanMs, gapMaxMs
+        );
+    }
+}
@@ -0,0 +1,60 @@
+package com.swiftest.core.models;
+
+/**
+ * UDP往返时延统计
+ * 由测速前的时延探测阶段得出，所有时延单位为ms
+ */
+public class LatencyStats {
+    
+    public static final LatencyStats EMPTY = new LatencyStats(0, 0, 0f, 0f, 0f, 0f, 0f);
+    
+    private final int probesSent;      // 发出的探测包数
+    private final int probesReceived;  // 收到回显的探测包数
+    private final float minMs;         // 最小RTT
+    private final float medianMs;      // RTT中位数
+    private final float p99Ms;         // RTT P99
+    private final float meanMs;        // RTT均值
+    private final float jitterMs;      // 相邻回显RTT差值绝对值的均值
+    
+    public LatencyStats(int probesSent, int probesReceived, float minMs, float medianMs,
+                        float p99Ms, float meanMs, float jitterMs) {
+        this.probesSent = probesSent;
+        this.probesReceived = probesReceived;
+        this.minMs = minMs;
+        this.medianMs = medianMs;
+        this.p99Ms = p99Ms;
+        this.meanMs = meanMs;
+        this.jitterMs = jitterMs;
+    }
+    
+    // Getters
+    public int getProbesSent() { return probesSent; }
+    public int getProbesReceived() { return probesReceived; }
+    public float getMinMs() { return minMs; }
+    public float getMedianMs() { return medianMs; }
+    public float getP99Ms() { return p99Ms; }
+    public float getMeanMs() { return meanMs; }
+    public float getJitterMs() { return jitterMs; }
+    
+    /**
+     * 是否有有效的测量结果（至少收到一个回显）
+     */
+    public boolean isValid() {
+        return probesReceived > 0;
+    }
+    
+    /**
+     * 探测包丢失率 (0-1)
+     */
+    public float getLossRate() {
+        return probesSent == 0 ? 0f : (float) (probesSent - probesReceived) / probesSent;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "LatencyStats{probes=%d/%d, min=%.2fms, median=%.2fms, p99=%.2fms, jitter=%.2fms}",
+                probesReceived, probesSent, minMs, medianMs, p99Ms, jitterMs
+        );
+    }
+}
@@ -0,0 +1,185 @@
+package com.swiftest.core.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 多服务器并发测速结果
+ * 合并速度由各服务器采样点按同一时间基准对齐后逐时间槽求和得到，
+ * 而不是把各服务器的最终平均速度相加
+ */
+public class MultiServerResult {
+    
+    private final String testId;
+    private final Date startTime;
+    private final Date endTime;
+    
+    // 合并速度 (Mbps)
+    private final float combinedSpeed;       // 对齐后合并速度样本的P95
+    private final float combinedMedianSpeed; // 对齐后合并速度样本的中位数
+    private final float summedSpeed;         // 各服务器最终速度之和，仅供对比
+    private final long concurrentDuration;   // 参与合并的服务器同时在收包的总时长（毫秒）
+    private final int combinedSamples;       // 合并速度样本数
+    private final int combinedServers;       // 提供了采样、参与合并的服务器数量
+    
+    // 各服务器单独的结果，顺序与传入的配置一致
+    private final List<TestResult> serverResults;
+    
+    private MultiServerResult(Builder builder) {
+        this.testId = builder.testId;
+        this.startTime = builder.startTime;
+        this.endTime = builder.endTime;
+        
+        this.combinedSpeed = builder.combinedSpeed;
+        this.combinedMedianSpeed = builder.combinedMedianSpeed;
+        this.concurrentDuration = builder.concurrentDuration;
+        this.combinedSamples = builder.combinedSamples;
+        this.combinedServers = builder.combinedServers;
+        
+        this.serverResults = Collections.unmodifiableList(new ArrayList<>(builder.serverResults));
+        
+        float summed = 0;
+        for (TestResult result : serverResults) {
+            if (result.isSuccessful()) {
+                summed += result.getDownloadSpeed();
+            }
+        }
+        this.summedSpeed = summed;
+    }
+    
+    // Getters
+    public String getTestId() { return testId; }
+    public Date getStartTime() { return startTime; }
+    public Date getEndTime() { return endTime; }
+    public long getDuration() { return endTime.getTime() - startTime.getTime(); }
+    
+    public float getCombinedSpeed() { return combinedSpeed; }
+    public float getCombinedMedianSpeed() { return combinedMedianSpeed; }
+    public float getSummedSpeed() { return summedSpeed; }
+    public long getConcurrentDuration() { return concurrentDuration; }
+    public int getCombinedSamples() { return combinedSamples; }
+    public int getCombinedServers() { return combinedServers; }
+    
+    public List<TestResult> getServerResults() { return serverResults; }
+    
+    /**
+     * 是否有可用的合并结果（至少有一段时间参与合并的服务器同时在收包）
+     */
+    public boolean hasCombinedSpeed() {
+        return combinedSamples > 0;
+    }
+    
+    /**
+     * 成功完成的服务器数量
+     */
+    public int getSuccessfulServers() {
+        int count = 0;
+        for (TestResult result : serverResults) {
+            if (result.isSuccessful()) count++;
+        }
+        return count;
+    }
+    
+    /**
+     * 转换为JSON字符串（简化版）
+     */
+    public String toJsonString() {
+        StringBuilder servers = new StringBuilder();
+        for (TestResult result : serverResults) {
+            if (servers.length() > 0) servers.append(',');
+            servers.append(result.toJsonString());
+        }
+        return String.format(
+                "{\"testId\":\"%s\",\"combinedSpeed\":%.2f,\"combinedMedian\":%.2f,\"summedSpeed\":%.2f," +
+                "\"concurrentDuration\":%d,\"combinedServers\":%d,\"servers\":[%s]}",
+                testId, combinedSpeed, combinedMedianSpeed, summedSpeed, concurrentDuration, combinedServers, servers
+        );
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "MultiServerResult{id='%s', combined=%.1fMbps (%d servers), summed=%.1fMbps, servers=%d/%d, concurrent=%dms}",
+                testId, combinedSpeed, combinedServers, summedSpeed, getSuccessfulServers(), serverResults.size(),
+                concurrentDuration
+        );
+    }
+    
+    /**
+     * 构建器模式用于创建MultiServerResult对象
+     */
+    public static class Builder {
+        private String testId;
+        private Date startTime;
+        private Date endTime;
+        
+        private float combinedSpeed = 0;
+        private float combinedMedianSpeed = 0;
+        private long concurrentDuration = 0;
+        private int combinedSamples = 0;
+        private int combinedServers = 0;
+        
+        private final List<TestResult> serverResults = new ArrayList<>();
+        
+        public Builder testId(String testId) {
+            this.testId = testId;
+            return this;
+        }
+        
+        public Builder startTime(Date startTime) {
+            this.startTime = startTime;
+            return this;
+        }
+        
+        public Builder endTime(Date endTime) {
+            this.endTime = endTime;
+            return this;
+        }
+        
+        public Builder combinedSpeed(float combinedSpeed) {
+            this.combinedSpeed = combinedSpeed;
+            return this;
+        }
+        
+        public Builder combinedMedianSpeed(float combinedMedianSpeed) {
+            this.combinedMedianSpeed = combinedMedianSpeed;
+            return this;
+        }
+        
+        public Builder concurrentDuration(long concurrentDuration) {
+            this.concurrentDuration = concurrentDuration;
+            return this;
+        }
+        
+        public Builder combinedSamples(int combinedSamples) {
+            this.combinedSamples = combinedSamples;
+            return this;
+        }
+        
+        public Builder combinedServers(int combinedServers) {
+            this.combinedServers = combinedServers;
+            return this;
+        }
+        
+        public Builder addServerResult(TestResult result) {
+            this.serverResults.add(result);
+            return this;
+        }
+        
+        public MultiServerResult build() {
+            if (testId == null || testId.trim().isEmpty()) {
+                throw new IllegalArgumentException("Test ID cannot be null or empty");
+            }
+            if (startTime == null) {
+                throw new IllegalArgumentException("Start time cannot be null");
+            }
+            if (endTime == null) {
+                endTime = new Date();
+            }
+            
+            return new MultiServerResult(this);
+        }
+    }
+}
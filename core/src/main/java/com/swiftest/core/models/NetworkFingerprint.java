@@ -0,0 +1,76 @@
+package com.swiftest.core.models;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+/**
+ * 网络指纹，作为WarmStartCache的键
+ * 由服务器、本机地址前缀（IPv4取/24，IPv6取/64）和调用方提供的网络标识（如Wi-Fi名称的摘要）组成。
+ * 家庭网络的私有地址段经常重复，不同网络间可能得到相同的前缀，能拿到网络标识的平台应当提供。
+ */
+public final class NetworkFingerprint {
+    
+    // 无法确定本机地址时的前缀
+    private static final String UNKNOWN_PREFIX = "*";
+    
+    private final String serverHost;
+    private final String localPrefix;
+    private final String networkId;
+    
+    private NetworkFingerprint(String serverHost, String localPrefix, String networkId) {
+        this.serverHost = serverHost;
+        this.localPrefix = localPrefix;
+        this.networkId = networkId;
+    }
+    
+    /**
+     * @param localAddress 连接服务器时使用的本机地址，null表示未知
+     * @param networkId 调用方提供的网络标识，null或空表示不提供
+     */
+    public static NetworkFingerprint of(String serverHost, InetAddress localAddress, String networkId) {
+        return new NetworkFingerprint(serverHost, prefixOf(localAddress),
+                networkId == null ? "" : networkId.replace('|', '_'));
+    }
+    
+    private static String prefixOf(InetAddress address) {
+        if (address == null || address.isAnyLocalAddress()) {
+            return UNKNOWN_PREFIX;
+        }
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return (bytes[0] & 0xff) + "." + (bytes[1] & 0xff) + "." + (bytes[2] & 0xff) + ".0/24";
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < 8; i += 2) {
+            prefix.append(Integer.toHexString(((bytes[i] & 0xff) << 8) | (bytes[i + 1] & 0xff))).append(':');
+        }
+        return prefix.append(":/64").toString();
+    }
+    
+    // Getters
+    public String getServerHost() { return serverHost; }
+    public String getLocalPrefix() { return localPrefix; }
+    public String getNetworkId() { return networkId; }
+    
+    /**
+     * 缓存键："服务器|本机前缀|网络标识"
+     */
+    public String getKey() {
+        return serverHost + "|" + localPrefix + "|" + networkId;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NetworkFingerprint && getKey().equals(((NetworkFingerprint) o).getKey());
+    }
+    
+    @Override
+    public int hashCode() {
+        return getKey().hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return "NetworkFingerprint{" + getKey() + "}";
+    }
+}
@@ -0,0 +1,73 @@
+package com.swiftest.core.models;
+
+/**
+ * 数据报传输质量统计
+ * 由带序号/时间戳的数据报计算得出，用于区分"链路慢"和"链路丢包"
+ */
+public class PacketStats {
+    
+    public static final PacketStats EMPTY = new PacketStats(0, 0, 0, 0, 0, 0f);
+    
+    private final long packetsReceived;   // 去重后收到的包数
+    private final long packetsLost;       // 丢失的包数
+    private final long packetsReordered;  // 乱序到达的包数
+    private final long packetsDuplicated; // 重复的包数
+    private final long packetsMalformed;  // 无法解析头部的包数
+    private final float jitterMs;         // RFC 3550 到达间隔抖动 (ms)
+    
+    public PacketStats(long packetsReceived, long packetsLost, long packetsReordered,
+                       long packetsDuplicated, long packetsMalformed, float jitterMs) {
+        this.packetsReceived = packetsReceived;
+        this.packetsLost = packetsLost;
+        this.packetsReordered = packetsReordered;
+        this.packetsDuplicated = packetsDuplicated;
+        this.packetsMalformed = packetsMalformed;
+        this.jitterMs = jitterMs;
+    }
+    
+    // Getters
+    public long getPacketsReceived() { return packetsReceived; }
+    public long getPacketsLost() { return packetsLost; }
+    public long getPacketsReordered() { return packetsReordered; }
+    public long getPacketsDuplicated() { return packetsDuplicated; }
+    public long getPacketsMalformed() { return packetsMalformed; }
+    public float getJitterMs() { return jitterMs; }
+    
+    /**
+     * 丢包率 (0-1)
+     */
+    public float getLossRate() {
+        long expected = packetsReceived + packetsLost;
+        return expected == 0 ? 0f : (float) packetsLost / expected;
+    }
+    
+    /**
+     * 乱序率 (0-1)
+     */
+    public float getReorderRate() {
+        return packetsReceived == 0 ? 0f : (float) packetsReordered / packetsReceived;
+    }
+    
+    /**
+     * 合并另一组统计（例如多个并行流），计数相加，抖动按收包数加权平均
+     */
+    public PacketStats merge(PacketStats other) {
+        long received = packetsReceived + other.packetsReceived;
+        float jitter = received == 0 ? 0f
+                : (jitterMs * packetsReceived + other.jitterMs * other.packetsReceived) / received;
+        return new PacketStats(received,
+                packetsLost + other.packetsLost,
+                packetsReordered + other.packetsReordered,
+                packetsDuplicated + other.packetsDuplicated,
+                packetsMalformed + other.packetsMalformed,
+                jitter);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "PacketStats{received=%d, lost=%d(%.2f%%), reordered=%d, duplicated=%d, jitter=%.2fms}",
+                packetsReceived, packetsLost, getLossRate() * 100, packetsReordered, packetsDuplicated, jitterMs
+        );
+    }
+}
@@ -0,0 +1,44 @@
+package com.swiftest.core.models;
+
+/**
+ * 候选服务器的测速前探测结果
+ * score为按丢包加权的RTT中位数 (ms)，越小越好；不可达的服务器score为Float.MAX_VALUE
+ */
+public class ServerScore {
+    
+    private final String host;
+    private final int webSocketPort;
+    private final LatencyStats latency;
+    private final float score;
+    
+    public ServerScore(String host, int webSocketPort, LatencyStats latency, float score) {
+        this.host = host;
+        this.webSocketPort = webSocketPort;
+        this.latency = latency;
+        this.score = score;
+    }
+    
+    // Getters
+    public String getHost() { return host; }
+    public int getWebSocketPort() { return webSocketPort; }
+    public LatencyStats getLatency() { return latency; }
+    public float getScore() { return score; }
+    
+    /**
+     * 至少有一次探测成功
+     */
+    public boolean isReachable() {
+        return latency.isValid();
+    }
+    
+    @Override
+    public String toString() {
+        if (!isReachable()) {
+            return String.format("ServerScore{host=%s:%d, unreachable}", host, webSocketPort);
+        }
+        return String.format(
+                "ServerScore{host=%s:%d, rtt=%.2fms, loss=%.2f, score=%.2f}",
+                host, webSocketPort, latency.getMedianMs(), latency.getLossRate(), score
+        );
+    }
+}
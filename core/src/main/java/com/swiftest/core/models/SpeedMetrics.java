@@ -1,5 +1,7 @@
 package com.swiftest.core.models;
 
+import com.swiftest.core.stats.QuantileSketch;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -7,9 +9,18 @@ import java.util.List;
 /**
  * 速度指标数据模型
  * 用于记录和分析测速过程中的各种指标
+ * 分位数、均值、极值和标准差来自QuantileSketch，既可以逐个添加样本，也可以直接合并引擎的sketch；
+ * 一致性和波动次数依赖样本的先后顺序，只由逐个添加的样本计算，只合并sketch时分别为100和0。
  */
 public class SpeedMetrics {
     
+    // 预先计算的分位点 P5 ~ P99
+    private static final int[] PERCENTILES = {5, 10, 25, 50, 75, 90, 95, 99};
+    private static final double[] QUANTILES = {0.05, 0.10, 0.25, 0.50, 0.75, 0.90, 0.95, 0.99};
+    
+    // 须在分位点常量之后初始化
+    public static final SpeedMetrics EMPTY = new Builder().build();
+    
     // 基本指标
     private final List<Float> speedSamples;        // 速度样本列表
     private final List<Long> bytesReceived;        // 字节接收记录
@@ -22,12 +33,22 @@ public class SpeedMetrics {
     private final float medianSpeed;               // 中位数速度
     private final float percentile95;              // 95百分位速度
     private final float standardDeviation;        // 标准差
+    private final QuantileSketch speedSketch;      // 速度分布sketch
+    private final float[] percentiles;             // PERCENTILES对应的分位数
     
     // 稳定性指标
     private final float stability;                 // 稳定性指数 (0-100)
     private final float consistency;               // 一致性指数 (0-100)
     private final int fluctuationCount;            // 波动次数
     
+    // 传输质量指标（需要服务器开启序号/时间戳）
+    private final PacketStats packetStats;         // 未饱和轮次的丢包、乱序、重复、抖动
+    private final PacketStats saturatedPacketStats; // 饱和轮次的统计，包含服务器有意超发造成的丢包
+    
+    // 时延指标
+    private final LatencyStats idleLatency;        // 空载时延
+    private final LatencyStats loadedLatency;      // 下载饱和时的负载时延
+    
     // 质量评估
     private final String qualityGrade;             // 质量等级
     private final int qualityScore;                // 质量分数 (0-100)
@@ -37,18 +58,28 @@ public class SpeedMetrics {
         this.bytesReceived = Collections.unmodifiableList(new ArrayList<>(builder.bytesReceived));
         this.timestamps = Collections.unmodifiableList(new ArrayList<>(builder.timestamps));
         
+        // 分位数来自构建过程中增量更新的sketch，无需复制和排序样本
+        this.speedSketch = new QuantileSketch();
+        this.speedSketch.merge(builder.speedSketch);
+        this.percentiles = new float[PERCENTILES.length];
+        this.speedSketch.quantiles(QUANTILES, percentiles);
+        
         // 计算统计指标
-        this.averageSpeed = calculateAverage(speedSamples);
-        this.maxSpeed = calculateMax(speedSamples);
-        this.minSpeed = calculateMin(speedSamples);
-        this.medianSpeed = calculateMedian(speedSamples);
-        this.percentile95 = calculatePercentile(speedSamples, 95);
-        this.standardDeviation = calculateStandardDeviation(speedSamples, averageSpeed);
+        this.averageSpeed = speedSketch.getMean();
+        this.maxSpeed = speedSketch.getMax();
+        this.minSpeed = speedSketch.getMin();
+        this.medianSpeed = getPercentile(50);
+        this.percentile95 = getPercentile(95);
+        this.standardDeviation = speedSketch.getStandardDeviation();
         
         // 计算稳定性指标
-        this.stability = calculateStability(speedSamples);
+        this.stability = calculateStability();
         this.consistency = calculateConsistency(speedSamples);
         this.fluctuationCount = calculateFluctuationCount(speedSamples);
+        this.packetStats = builder.packetStats;
+        this.saturatedPacketStats = builder.saturatedPacketStats;
+        this.idleLatency = builder.idleLatency;
+        this.loadedLatency = builder.loadedLatency;
         
         // 质量评估
         this.qualityScore = calculateQualityScore();
@@ -66,75 +97,51 @@ public class SpeedMetrics {
     public float getMedianSpeed() { return medianSpeed; }
     public float getPercentile95() { return percentile95; }
     public float getStandardDeviation() { return standardDeviation; }
+    public long getSampleCount() { return speedSketch.getCount(); }
+    
+    /**
+     * 获取速度分位数
+     * @param percentile 百分位 (0-100)，P5/P10/P25/P50/P75/P90/P95/P99为预先计算值
+     * @return 分位数速度 (Mbps)
+     */
+    public float getPercentile(int percentile) {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            if (PERCENTILES[i] == percentile) {
+                return percentiles[i];
+            }
+        }
+        return speedSketch.quantile(percentile / 100.0);
+    }
     
     public float getStability() { return stability; }
     public float getConsistency() { return consistency; }
     public int getFluctuationCount() { return fluctuationCount; }
     
-    public String getQualityGrade() { return qualityGrade; }
-    public int getQualityScore() { return qualityScore; }
-    
-    // 计算方法
+    public PacketStats getPacketStats() { return packetStats; }
+    public float getPacketLossRate() { return packetStats.getLossRate(); }
+    public float getJitterMs() { return packetStats.getJitterMs(); }
+    public PacketStats getSaturatedPacketStats() { return saturatedPacketStats; }
     
-    private float calculateAverage(List<Float> samples) {
-        if (samples.isEmpty()) return 0f;
-        float sum = 0f;
-        for (float speed : samples) {
-            sum += speed;
-        }
-        return sum / samples.size();
-    }
-    
-    private float calculateMax(List<Float> samples) {
-        if (samples.isEmpty()) return 0f;
-        return Collections.max(samples);
-    }
+    public LatencyStats getIdleLatency() { return idleLatency; }
+    public LatencyStats getLoadedLatency() { return loadedLatency; }
     
-    private float calculateMin(List<Float> samples) {
-        if (samples.isEmpty()) return 0f;
-        return Collections.min(samples);
-    }
-    
-    private float calculateMedian(List<Float> samples) {
-        if (samples.isEmpty()) return 0f;
-        
-        List<Float> sorted = new ArrayList<>(samples);
-        Collections.sort(sorted);
-        
-        int size = sorted.size();
-        if (size % 2 == 0) {
-            return (sorted.get(size / 2 - 1) + sorted.get(size / 2)) / 2f;
-        } else {
-            return sorted.get(size / 2);
+    /**
+     * 负载时延中位数相对空载时延中位数的增量 (ms)，缺少任一侧数据时返回0
+     */
+    public float getLatencyIncreaseMs() {
+        if (!idleLatency.isValid() || !loadedLatency.isValid()) {
+            return 0f;
         }
+        return Math.max(0f, loadedLatency.getMedianMs() - idleLatency.getMedianMs());
     }
     
-    private float calculatePercentile(List<Float> samples, int percentile) {
-        if (samples.isEmpty()) return 0f;
-        
-        List<Float> sorted = new ArrayList<>(samples);
-        Collections.sort(sorted);
-        
-        int index = (percentile * sorted.size()) / 100;
-        if (index >= sorted.size()) index = sorted.size() - 1;
-        
-        return sorted.get(index);
-    }
+    public String getQualityGrade() { return qualityGrade; }
+    public int getQualityScore() { return qualityScore; }
     
-    private float calculateStandardDeviation(List<Float> samples, float average) {
-        if (samples.size() <= 1) return 0f;
-        
-        float sumSquares = 0f;
-        for (float speed : samples) {
-            float diff = speed - average;
-            sumSquares += diff * diff;
-        }
-        
-        return (float) Math.sqrt(sumSquares / (samples.size() - 1));
-    }
+    // 计算方法
     
-    private float calculateStability(List<Float> samples) {
-        if (samples.size() <= 1) return 100f;
+    private float calculateStability() {
+        if (speedSketch.getCount() <= 1 || averageSpeed <= 0) return 100f;
         
         // 计算变异系数，然后转换为稳定性指数
         float cv = (standardDeviation / averageSpeed) * 100;
@@ -226,14 +233,33 @@ public class SpeedMetrics {
         private List<Float> speedSamples = new ArrayList<>();
         private List<Long> bytesReceived = new ArrayList<>();
         private List<Long> timestamps = new ArrayList<>();
+        private final QuantileSketch speedSketch = new QuantileSketch();
+        private PacketStats packetStats = PacketStats.EMPTY;
+        private PacketStats saturatedPacketStats = PacketStats.EMPTY;
+        private LatencyStats idleLatency = LatencyStats.EMPTY;
+        private LatencyStats loadedLatency = LatencyStats.EMPTY;
         
         public Builder addSpeedSample(float speed) {
             speedSamples.add(speed);
+            speedSketch.add(speed);
             return this;
         }
         
         public Builder addSpeedSamples(List<Float> speeds) {
             speedSamples.addAll(speeds);
+            for (float speed : speeds) {
+                speedSketch.add(speed);
+            }
+            return this;
+        }
+        
+        /**
+         * 合并引擎已统计的速度分布，例如UdpTester.getSpeedSketch()
+         */
+        public Builder speedSketch(QuantileSketch sketch) {
+            if (sketch != null) {
+                speedSketch.merge(sketch);
+            }
             return this;
         }
         
@@ -247,6 +273,22 @@ public class SpeedMetrics {
             return this;
         }
         
+        public Builder packetStats(PacketStats packetStats) {
+            this.packetStats = packetStats != null ? packetStats : PacketStats.EMPTY;
+            return this;
+        }
+        
+        public Builder saturatedPacketStats(PacketStats packetStats) {
+            this.saturatedPacketStats = packetStats != null ? packetStats : PacketStats.EMPTY;
+            return this;
+        }
+        
+        public Builder latency(LatencyStats idle, LatencyStats loaded) {
+            this.idleLatency = idle != null ? idle : LatencyStats.EMPTY;
+            this.loadedLatency = loaded != null ? loaded : LatencyStats.EMPTY;
+            return this;
+        }
+        
         public SpeedMetrics build() {
             return new SpeedMetrics(this);
         }
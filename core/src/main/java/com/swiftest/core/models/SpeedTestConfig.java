@@ -1,5 +1,11 @@
 package com.swiftest.core.models;
 
+import com.swiftest.core.interfaces.MeasurementEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 测速配置参数
  * 包含测速所需的所有配置信息
@@ -14,6 +20,43 @@ public class SpeedTestConfig {
     private final int sendTimeoutSeconds;
     private final int receiveTimeoutSeconds;
     private final boolean isAppMode; // true: App模式, false: SDK模式
+    private final UdpEngine udpEngine;
+    private final boolean sequencedPayload; // 服务器在数据报头部写入序号和发送时间戳
+    private final boolean binaryControl; // 握手时提议二进制控制帧
+    private final boolean udpControl; // 第二轮起经测量Socket收发轮次控制
+    private final boolean fastStart;  // WebSocket握手期间并行解析地址、打开测速Socket
+    private final float convergenceTolerance; // 置信区间半宽/均值 的收敛容差，0表示关闭提前结束
+    private final int maxSaturatedRounds;     // 饱和轮次上限
+    private final int maxRounds;              // 总轮次上限（含未饱和轮次）
+    private final boolean clientRateControl;  // 由客户端建议下一轮发送速率
+    private final int flows;                  // 并行UDP流数量
+    private final boolean uploadTest;         // 下载结束后进行UDP上传测速
+    private final boolean latencyProbe;       // 下载前进行UDP时延探测
+    private final boolean loadedLatencyProbe; // 下载过程中并行探测负载时延
+    private final boolean tcpFallback;        // UDP触发超时后改用TCP
+    private final int tcpStreams;             // TCP后备的并行连接数
+    private final MeasurementEngine.Factory engineFactory; // 指定测量引擎，null时按udpEngine/flows选择
+    private final ExecutionMode executionMode; // 测试线程的执行模式
+    private final List<String> candidateServers; // 测试前参与时延选择的其他服务器
+    private final int serverSelectionTimeoutMillis; // 服务器选择的全局截止时间
+    private final boolean warmStart;          // 按历史结果建议服务器的起始速率
+    private final String networkId;           // 调用方提供的网络标识，参与网络指纹
+    
+    /**
+     * UDP接收引擎类型
+     */
+    public enum UdpEngine {
+        BLOCKING, // DatagramSocket阻塞接收（默认）
+        NIO       // DatagramChannel + direct ByteBuffer，零分配接收
+    }
+    
+    /**
+     * 测试线程执行模式
+     */
+    public enum ExecutionMode {
+        PLATFORM, // 每个任务一个平台线程（默认）
+        VIRTUAL   // 虚拟线程（JDK 21+），不支持时退回平台线程
+    }
     
     private SpeedTestConfig(Builder builder) {
         this.serverHost = builder.serverHost;
@@ -24,6 +67,27 @@ public class SpeedTestConfig {
         this.sendTimeoutSeconds = builder.sendTimeoutSeconds;
         this.receiveTimeoutSeconds = builder.receiveTimeoutSeconds;
         this.isAppMode = builder.isAppMode;
+        this.udpEngine = builder.udpEngine;
+        this.sequencedPayload = builder.sequencedPayload;
+        this.binaryControl = builder.binaryControl;
+        this.udpControl = builder.udpControl;
+        this.fastStart = builder.fastStart;
+        this.convergenceTolerance = builder.convergenceTolerance;
+        this.maxSaturatedRounds = builder.maxSaturatedRounds;
+        this.maxRounds = builder.maxRounds;
+        this.clientRateControl = builder.clientRateControl;
+        this.flows = builder.flows;
+        this.uploadTest = builder.uploadTest;
+        this.latencyProbe = builder.latencyProbe;
+        this.loadedLatencyProbe = builder.loadedLatencyProbe;
+        this.tcpFallback = builder.tcpFallback;
+        this.tcpStreams = builder.tcpStreams;
+        this.engineFactory = builder.engineFactory;
+        this.executionMode = builder.executionMode;
+        this.candidateServers = Collections.unmodifiableList(new ArrayList<>(builder.candidateServers));
+        this.serverSelectionTimeoutMillis = builder.serverSelectionTimeoutMillis;
+        this.warmStart = builder.warmStart;
+        this.networkId = builder.networkId;
     }
     
     // Getters
@@ -35,11 +99,109 @@ public class SpeedTestConfig {
     public int getSendTimeoutSeconds() { return sendTimeoutSeconds; }
     public int getReceiveTimeoutSeconds() { return receiveTimeoutSeconds; }
     public boolean isAppMode() { return isAppMode; }
+    public UdpEngine getUdpEngine() { return udpEngine; }
+    public boolean isSequencedPayload() { return sequencedPayload; }
+    public boolean isBinaryControl() { return binaryControl; }
+    public boolean isUdpControl() { return udpControl; }
+    public boolean isFastStart() { return fastStart; }
+    public float getConvergenceTolerance() { return convergenceTolerance; }
+    public int getMaxSaturatedRounds() { return maxSaturatedRounds; }
+    public int getMaxRounds() { return maxRounds; }
+    public boolean isClientRateControl() { return clientRateControl; }
+    public int getFlows() { return flows; }
+    public boolean isUploadTest() { return uploadTest; }
+    public boolean isLatencyProbe() { return latencyProbe; }
+    public boolean isLoadedLatencyProbe() { return loadedLatencyProbe; }
+    public boolean isTcpFallback() { return tcpFallback; }
+    public int getTcpStreams() { return tcpStreams; }
+    public MeasurementEngine.Factory getEngineFactory() { return engineFactory; }
+    public ExecutionMode getExecutionMode() { return executionMode; }
+    public List<String> getCandidateServers() { return candidateServers; }
+    public int getServerSelectionTimeoutMillis() { return serverSelectionTimeoutMillis; }
+    public boolean isWarmStart() { return warmStart; }
+    public String getNetworkId() { return networkId; }
     
     public String getWebSocketUrl() {
         return "ws://" + serverHost + ":" + webSocketPort;
     }
     
+    /**
+     * 是否需要在测试前选择服务器
+     */
+    public boolean hasServerCandidates() {
+        for (String candidate : candidateServers) {
+            if (!candidate.equals(serverHost)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 参与选择的全部服务器配置：serverHost在前，之后是去重后的候选，其余参数与本配置相同
+     */
+    public List<SpeedTestConfig> getServerCandidates() {
+        List<SpeedTestConfig> configs = new ArrayList<>();
+        configs.add(forServer(serverHost));
+        for (String candidate : candidateServers) {
+            boolean duplicate = false;
+            for (SpeedTestConfig config : configs) {
+                duplicate |= config.getServerHost().equals(candidate);
+            }
+            if (!duplicate) {
+                configs.add(forServer(candidate));
+            }
+        }
+        return configs;
+    }
+    
+    /**
+     * 以host为服务器、不再带候选列表的副本
+     */
+    public SpeedTestConfig forServer(String host) {
+        return toBuilder()
+                .serverHost(host)
+                .candidateServers(Collections.<String>emptyList())
+                .build();
+    }
+    
+    /**
+     * 以当前配置为初始值的构建器
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.serverHost = serverHost;
+        builder.webSocketPort = webSocketPort;
+        builder.udpPort = udpPort;
+        builder.testId = testId;
+        builder.guid = guid;
+        builder.sendTimeoutSeconds = sendTimeoutSeconds;
+        builder.receiveTimeoutSeconds = receiveTimeoutSeconds;
+        builder.isAppMode = isAppMode;
+        builder.udpEngine = udpEngine;
+        builder.sequencedPayload = sequencedPayload;
+        builder.binaryControl = binaryControl;
+        builder.udpControl = udpControl;
+        builder.fastStart = fastStart;
+        builder.convergenceTolerance = convergenceTolerance;
+        builder.maxSaturatedRounds = maxSaturatedRounds;
+        builder.maxRounds = maxRounds;
+        builder.clientRateControl = clientRateControl;
+        builder.flows = flows;
+        builder.uploadTest = uploadTest;
+        builder.latencyProbe = latencyProbe;
+        builder.loadedLatencyProbe = loadedLatencyProbe;
+        builder.tcpFallback = tcpFallback;
+        builder.tcpStreams = tcpStreams;
+        builder.engineFactory = engineFactory;
+        builder.executionMode = executionMode;
+        builder.candidateServers = new ArrayList<>(candidateServers);
+        builder.serverSelectionTimeoutMillis = serverSelectionTimeoutMillis;
+        builder.warmStart = warmStart;
+        builder.networkId = networkId;
+        return builder;
+    }
+    
     /**
      * 构建器模式用于创建配置对象
      */
@@ -52,6 +214,27 @@ public class SpeedTestConfig {
         private int sendTimeoutSeconds = 1;
         private int receiveTimeoutSeconds = 3;
         private boolean isAppMode = true;
+        private UdpEngine udpEngine = UdpEngine.BLOCKING;
+        private boolean sequencedPayload = false;
+        private boolean binaryControl = false;
+        private boolean udpControl = false;
+        private boolean fastStart = false;
+        private float convergenceTolerance = 0.05f;
+        private int maxSaturatedRounds = 3;
+        private int maxRounds = 10;
+        private boolean clientRateControl = false;
+        private int flows = 1;
+        private boolean uploadTest = false;
+        private boolean latencyProbe = false;
+        private boolean loadedLatencyProbe = false;
+        private boolean tcpFallback = false;
+        private int tcpStreams = 4;
+        private MeasurementEngine.Factory engineFactory = null;
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        private List<String> candidateServers = new ArrayList<>();
+        private int serverSelectionTimeoutMillis = 1500;
+        private boolean warmStart = false;
+        private String networkId = null;
         
         public Builder serverHost(String serverHost) {
             this.serverHost = serverHost;
@@ -93,10 +276,204 @@ public class SpeedTestConfig {
             return this;
         }
         
+        public Builder udpEngine(UdpEngine udpEngine) {
+            this.udpEngine = udpEngine;
+            return this;
+        }
+        
+        /**
+         * 请求服务器在每个数据报头部写入序号和发送时间戳，用于统计丢包、乱序、重复和抖动
+         */
+        public Builder sequencedPayload(boolean sequencedPayload) {
+            this.sequencedPayload = sequencedPayload;
+            return this;
+        }
+        
+        /**
+         * 握手时提议二进制控制帧（默认关闭），服务器支持时轮次之间的控制消息不再经过JSON编解码，
+         * 服务器按文本回复时自动保持JSON
+         */
+        public Builder binaryControl(boolean binaryControl) {
+            this.binaryControl = binaryControl;
+            return this;
+        }
+        
+        /**
+         * 第二轮起的continue/repeat经测量UDP Socket发送，服务器在同一Socket上确认并开始下一轮，
+         * 轮次间隙不再包含WebSocket往返；WebSocket只负责会话建立和最终结果。
+         * 服务器未在端口分配消息中确认、或数据报多次重传未确认时退回WebSocket
+         */
+        public Builder udpControl(boolean udpControl) {
+            this.udpControl = udpControl;
+            return this;
+        }
+        
+        /**
+         * 快速启动（默认关闭）：WebSocket握手期间在后台解析服务器地址、打开测速Socket并预热接收缓冲区，
+         * 收到UDP端口后立即发出第一个触发包；只影响客户端，不需要服务器配合
+         */
+        public Builder fastStart(boolean fastStart) {
+            this.fastStart = fastStart;
+            return this;
+        }
+        
+        /**
+         * 饱和轮次速度的95%置信区间半宽小于 tolerance * 均值 时提前结束测试
+         * @param tolerance 相对容差，例如0.05表示±5%；0表示始终跑满maxSaturatedRounds
+         */
+        public Builder convergenceTolerance(float tolerance) {
+            this.convergenceTolerance = tolerance;
+            return this;
+        }
+        
+        public Builder maxSaturatedRounds(int rounds) {
+            this.maxSaturatedRounds = rounds;
+            return this;
+        }
+        
+        public Builder maxRounds(int rounds) {
+            this.maxRounds = rounds;
+            return this;
+        }
+        
+        /**
+         * 在continue/repeat消息中附带客户端建议的下一轮速率（指数探测 + 二分），
+         * 不支持该字段的服务器会忽略它并按原有方式爬升
+         */
+        public Builder clientRateControl(boolean enabled) {
+            this.clientRateControl = enabled;
+            return this;
+        }
+        
+        /**
+         * 并行UDP流数量，大于1时向服务器申请多个UDP端口并使用多个接收线程
+         */
+        public Builder flows(int flows) {
+            this.flows = flows;
+            return this;
+        }
+        
+        /**
+         * 下载测速结束后继续进行UDP上传测速，服务器不支持时只返回下载结果
+         */
+        public Builder uploadTest(boolean uploadTest) {
+            this.uploadTest = uploadTest;
+            return this;
+        }
+        
+        /**
+         * 触发阶段之前发送时延探测包测量空载RTT，握手时请求服务器回显探测包
+         */
+        public Builder latencyProbe(boolean latencyProbe) {
+            this.latencyProbe = latencyProbe;
+            return this;
+        }
+        
+        /**
+         * 下载过程中在独立Socket上持续探测RTT，用于计算bufferbloat，探测流量不超过吞吐量的1%
+         */
+        public Builder loadedLatencyProbe(boolean loadedLatencyProbe) {
+            this.loadedLatencyProbe = loadedLatencyProbe;
+            return this;
+        }
+        
+        /**
+         * UDP触发超时（网络阻断UDP）时自动改用多连接TCP测速，默认关闭，关闭时直接报告失败
+         */
+        public Builder tcpFallback(boolean tcpFallback) {
+            this.tcpFallback = tcpFallback;
+            return this;
+        }
+        
+        /**
+         * TCP后备的并行连接数
+         */
+        public Builder tcpStreams(int tcpStreams) {
+            this.tcpStreams = tcpStreams;
+            return this;
+        }
+        
+        /**
+         * 指定下载测量引擎（如MeasurementEngines.NIO），用于在相同条件下对比不同引擎
+         * 不设置时按udpEngine和服务器分配的端口数选择
+         */
+        public Builder engineFactory(MeasurementEngine.Factory engineFactory) {
+            this.engineFactory = engineFactory;
+            return this;
+        }
+        
+        /**
+         * 测试线程执行模式，VIRTUAL用于在一台探针机上并发运行大量低速率测试
+         * 虚拟线程下建议使用BLOCKING引擎：DatagramSocket阻塞接收会让出载体线程，而Selector等待不会
+         */
+        public Builder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+        
+        /**
+         * 候选服务器（与serverHost使用相同端口），非空时测试前并行探测serverHost和全部候选的时延，
+         * 按RTT和丢包选出最佳服务器再开始测试；排序结果在SwiftestEngine中缓存，有效期内不再探测
+         */
+        public Builder candidateServers(List<String> hosts) {
+            this.candidateServers = hosts == null ? new ArrayList<>() : new ArrayList<>(hosts);
+            return this;
+        }
+        
+        /**
+         * 服务器选择的全局截止时间，到期仍未完成探测的候选视为不可达
+         */
+        public Builder serverSelectionTimeout(int millis) {
+            this.serverSelectionTimeoutMillis = millis;
+            return this;
+        }
+        
+        /**
+         * 热启动（默认关闭）：同一网络上有近期结果时在握手中携带 "speed"，建议服务器从该速率开始第一轮，
+         * 跳过低速率爬升；不支持的服务器忽略该字段。结果按网络指纹记录在SwiftestEngine.getWarmStartCache()中
+         */
+        public Builder warmStart(boolean warmStart) {
+            this.warmStart = warmStart;
+            return this;
+        }
+        
+        /**
+         * 网络标识（如Wi-Fi名称或运营商网络的摘要），与服务器和本机地址前缀一起区分网络，
+         * 避免不同网络上相同的私有地址段共用热启动记录
+         */
+        public Builder networkId(String networkId) {
+            this.networkId = networkId;
+            return this;
+        }
+        
         public SpeedTestConfig build() {
             if (serverHost == null || serverHost.trim().isEmpty()) {
                 throw new IllegalArgumentException("Server host cannot be null or empty");
             }
+            if (flows < 1) {
+                throw new IllegalArgumentException("Flow count must be at least 1");
+            }
+            if (executionMode == null) {
+                throw new IllegalArgumentException("Execution mode cannot be null");
+            }
+            for (String candidate : candidateServers) {
+                if (candidate == null || candidate.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Candidate server cannot be null or empty");
+                }
+            }
+            if (serverSelectionTimeoutMillis < 1) {
+                throw new IllegalArgumentException("Server selection timeout must be positive");
+            }
+            if (tcpStreams < 1) {
+                throw new IllegalArgumentException("TCP stream count must be at least 1");
+            }
+            if (convergenceTolerance < 0) {
+                throw new IllegalArgumentException("Convergence tolerance cannot be negative");
+            }
+            if (maxSaturatedRounds < 1 || maxRounds < maxSaturatedRounds) {
+                throw new IllegalArgumentException("Invalid round limits: maxSaturatedRounds="
+                        + maxSaturatedRounds + ", maxRounds=" + maxRounds);
+            }
             return new SpeedTestConfig(this);
         }
     }
@@ -1,5 +1,7 @@
 package com.swiftest.core.models;
 
+import org.json.JSONObject;
+
 import java.util.Date;
 
 /**
@@ -16,13 +18,29 @@ public class TestResult {
     
     // 速度信息
     private final float downloadSpeed; // Mbps
+    private final float downloadMedian; // Mbps，饱和轮次速度样本的中位数
+    private final float downloadP10;    // Mbps
+    private final float downloadP90;    // Mbps
     private final float uploadSpeed;   // Mbps (预留)
-    private final float ping;          // ms (预留)
+    private final float ping;          // ms，空载RTT中位数
+    private final float pingMin;       // ms
+    private final float pingP99;       // ms
+    private final float pingJitter;    // ms，相邻探测RTT差值的均值
+    private final float loadedPing;    // ms，下载饱和时的RTT中位数
+    private final float loadedPingP99; // ms
+    private final String bufferbloatGrade; // A+ ~ F，未测量负载时延时为空字符串
     
     // 流量信息
     private final double totalTraffic; // MB
     private final long totalBytes;     // bytes
     
+    // 传输质量（需要服务器开启序号/时间戳）
+    private final float packetLossRate;    // 未饱和轮次的丢包率 (0-1)
+    private final float saturatedLossRate; // 饱和轮次的丢包率 (0-1)，包含服务器有意超发造成的丢包
+    private final float jitter;            // 抖动 (ms)
+    private final long packetsReordered;   // 乱序包数
+    private final long packetsDuplicated;  // 重复包数
+    
     // 服务器信息
     private final String serverHost;
     private final int serverPort;
@@ -33,6 +51,11 @@ public class TestResult {
     
     // 测试详情
     private final int testLoops;      // 测试循环次数
+    private final String engine;      // 测量引擎名称，用于按引擎对比
+    private final float roundGap;     // ms，轮次之间的平均空闲时间（上一轮结束到下一轮首包）
+    private final float roundGapMax;  // ms
+    private final float ttfb;         // ms，开始测速到第一轮首包的时间
+    private final int warmStart;      // Mbps，握手中建议的起始速率，0表示冷启动
     private final boolean isSuccessful;
     private final String errorMessage;
     
@@ -43,12 +66,28 @@ public class TestResult {
         this.duration = builder.endTime.getTime() - builder.startTime.getTime();
         
         this.downloadSpeed = builder.downloadSpeed;
+        this.downloadMedian = builder.downloadMedian;
+        this.downloadP10 = builder.downloadP10;
+        this.downloadP90 = builder.downloadP90;
         this.uploadSpeed = builder.uploadSpeed;
         this.ping = builder.ping;
+        this.pingMin = builder.pingMin;
+        this.pingP99 = builder.pingP99;
+        this.pingJitter = builder.pingJitter;
+        this.loadedPing = builder.loadedPing;
+        this.loadedPingP99 = builder.loadedPingP99;
+        this.bufferbloatGrade = builder.loadedPing > 0 && builder.ping > 0
+                ? gradeBufferbloat(builder.loadedPing - builder.ping) : "";
         
         this.totalTraffic = builder.totalTraffic;
         this.totalBytes = builder.totalBytes;
         
+        this.packetLossRate = builder.packetLossRate;
+        this.saturatedLossRate = builder.saturatedLossRate;
+        this.jitter = builder.jitter;
+        this.packetsReordered = builder.packetsReordered;
+        this.packetsDuplicated = builder.packetsDuplicated;
+        
         this.serverHost = builder.serverHost;
         this.serverPort = builder.serverPort;
         
@@ -56,6 +95,11 @@ public class TestResult {
         this.qualityScore = builder.qualityScore;
         
         this.testLoops = builder.testLoops;
+        this.engine = builder.engine;
+        this.roundGap = builder.roundGap;
+        this.roundGapMax = builder.roundGapMax;
+        this.ttfb = builder.ttfb;
+        this.warmStart = builder.warmStart;
         this.isSuccessful = builder.isSuccessful;
         this.errorMessage = builder.errorMessage;
     }
@@ -67,12 +111,27 @@ public class TestResult {
     public long getDuration() { return duration; }
     
     public float getDownloadSpeed() { return downloadSpeed; }
+    public float getDownloadMedian() { return downloadMedian; }
+    public float getDownloadP10() { return downloadP10; }
+    public float getDownloadP90() { return downloadP90; }
     public float getUploadSpeed() { return uploadSpeed; }
     public float getPing() { return ping; }
+    public float getPingMin() { return pingMin; }
+    public float getPingP99() { return pingP99; }
+    public float getPingJitter() { return pingJitter; }
+    public float getLoadedPing() { return loadedPing; }
+    public float getLoadedPingP99() { return loadedPingP99; }
+    public String getBufferbloatGrade() { return bufferbloatGrade; }
     
     public double getTotalTraffic() { return totalTraffic; }
     public long getTotalBytes() { return totalBytes; }
     
+    public float getPacketLossRate() { return packetLossRate; }
+    public float getSaturatedLossRate() { return saturatedLossRate; }
+    public float getJitter() { return jitter; }
+    public long getPacketsReordered() { return packetsReordered; }
+    public long getPacketsDuplicated() { return packetsDuplicated; }
+    
     public String getServerHost() { return serverHost; }
     public int getServerPort() { return serverPort; }
     
@@ -80,9 +139,27 @@ public class TestResult {
     public int getQualityScore() { return qualityScore; }
     
     public int getTestLoops() { return testLoops; }
+    public String getEngine() { return engine; }
+    public float getRoundGap() { return roundGap; }
+    public float getRoundGapMax() { return roundGapMax; }
+    public float getTimeToFirstByte() { return ttfb; }
+    public int getWarmStartSpeed() { return warmStart; }
     public boolean isSuccessful() { return isSuccessful; }
     public String getErrorMessage() { return errorMessage; }
     
+    /**
+     * 按负载时延相对空载时延的增量评定bufferbloat等级
+     * @param increaseMs 负载RTT中位数 - 空载RTT中位数 (ms)
+     */
+    public static String gradeBufferbloat(float increaseMs) {
+        if (increaseMs < 5) return "A+";
+        if (increaseMs < 30) return "A";
+        if (increaseMs < 60) return "B";
+        if (increaseMs < 200) return "C";
+        if (increaseMs < 400) return "D";
+        return "F";
+    }
+    
     /**
      * 获取格式化的速度描述
      */
@@ -113,9 +190,11 @@ public class TestResult {
      */
     public String toJsonString() {
         return String.format(
-                "{\"testId\":\"%s\",\"downloadSpeed\":%.2f,\"uploadSpeed\":%.2f," +
-                "\"ping\":%.2f,\"traffic\":%.2f,\"duration\":%d,\"successful\":%s}",
-                testId, downloadSpeed, uploadSpeed, ping, totalTraffic, duration, isSuccessful
+                "{\"testId\":\"%s\",\"downloadSpeed\":%.2f,\"downloadMedian\":%.2f,\"downloadP10\":%.2f,\"downloadP90\":%.2f,\"uploadSpeed\":%.2f," +
+                "\"ping\":%.2f,\"pingJitter\":%.2f,\"loadedPing\":%.2f,\"bufferbloat\":\"%s\",\"traffic\":%.2f,\"loss\":%.4f,\"saturatedLoss\":%.4f,\"jitter\":%.2f," +
+                "\"engine\":\"%s\",\"roundGap\":%.2f,\"ttfb\":%.2f,\"warmStart\":%d,\"server\":\"%s\",\"duration\":%d,\"successful\":%s,\"error\":%s}",
+                testId, downloadSpeed, downloadMedian, downloadP10, downloadP90, uploadSpeed, ping, pingJitter, loadedPing, bufferbloatGrade, totalTraffic, packetLossRate, saturatedLossRate, jitter,
+                engine, roundGap, ttfb, warmStart, serverHost, duration, isSuccessful, JSONObject.quote(errorMessage)
         );
     }
     
@@ -136,12 +215,26 @@ public class TestResult {
         private Date endTime;
         
         private float downloadSpeed = 0;
+        private float downloadMedian = 0;
+        private float downloadP10 = 0;
+        private float downloadP90 = 0;
         private float uploadSpeed = 0;
         private float ping = 0;
+        private float pingMin = 0;
+        private float pingP99 = 0;
+        private float pingJitter = 0;
+        private float loadedPing = 0;
+        private float loadedPingP99 = 0;
         
         private double totalTraffic = 0;
         private long totalBytes = 0;
         
+        private float packetLossRate = 0;
+        private float saturatedLossRate = 0;
+        private float jitter = 0;
+        private long packetsReordered = 0;
+        private long packetsDuplicated = 0;
+        
         private String serverHost = "";
         private int serverPort = 0;
         
@@ -149,6 +242,11 @@ public class TestResult {
         private int qualityScore = 0;
         
         private int testLoops = 0;
+        private String engine = "";
+        private float roundGap = 0;
+        private float roundGapMax = 0;
+        private float ttfb = 0;
+        private int warmStart = 0;
         private boolean isSuccessful = false;
         private String errorMessage = "";
         
@@ -172,6 +270,23 @@ public class TestResult {
             return this;
         }
         
+        /**
+         * 设置速度分布和质量评分，没有饱和轮次的样本时保持默认值
+         */
+        public Builder speedMetrics(SpeedMetrics metrics) {
+            if (metrics != null && metrics.getSampleCount() > 0) {
+                this.downloadMedian = metrics.getMedianSpeed();
+                this.downloadP10 = metrics.getPercentile(10);
+                this.downloadP90 = metrics.getPercentile(90);
+                this.networkQuality = metrics.getQualityGrade();
+                this.qualityScore = metrics.getQualityScore();
+            }
+            if (metrics != null) {
+                this.saturatedLossRate = metrics.getSaturatedPacketStats().getLossRate();
+            }
+            return this;
+        }
+        
         public Builder uploadSpeed(float uploadSpeed) {
             this.uploadSpeed = uploadSpeed;
             return this;
@@ -182,6 +297,33 @@ public class TestResult {
             return this;
         }
         
+        public Builder latency(LatencyStats stats) {
+            if (stats != null && stats.isValid()) {
+                this.ping = stats.getMedianMs();
+                this.pingMin = stats.getMinMs();
+                this.pingP99 = stats.getP99Ms();
+                this.pingJitter = stats.getJitterMs();
+            }
+            return this;
+        }
+        
+        /**
+         * 设置负载时延，未通过latency()设置空载时延时使用idle作为基准
+         */
+        public Builder loadedLatency(LatencyStats idle, LatencyStats loaded) {
+            if (ping == 0 && idle != null && idle.isValid()) {
+                this.ping = idle.getMedianMs();
+                this.pingMin = idle.getMinMs();
+                this.pingP99 = idle.getP99Ms();
+                this.pingJitter = idle.getJitterMs();
+            }
+            if (loaded != null && loaded.isValid()) {
+                this.loadedPing = loaded.getMedianMs();
+                this.loadedPingP99 = loaded.getP99Ms();
+            }
+            return this;
+        }
+        
         public Builder totalTraffic(double totalTraffic) {
             this.totalTraffic = totalTraffic;
             return this;
@@ -192,6 +334,16 @@ public class TestResult {
             return this;
         }
         
+        public Builder packetStats(PacketStats stats) {
+            if (stats != null) {
+                this.packetLossRate = stats.getLossRate();
+                this.jitter = stats.getJitterMs();
+                this.packetsReordered = stats.getPacketsReordered();
+                this.packetsDuplicated = stats.getPacketsDuplicated();
+            }
+            return this;
+        }
+        
         public Builder serverHost(String serverHost) {
             this.serverHost = serverHost;
             return this;
@@ -217,6 +369,32 @@ public class TestResult {
             return this;
         }
         
+        public Builder engine(String engine) {
+            this.engine = engine;
+            return this;
+        }
+        
+        /**
+         * 设置轮次之间的空闲时间，没有轮次切换时保持为0
+         */
+        public Builder handoff(HandoffStats stats) {
+            if (stats != null && stats.getTransitions() > 0) {
+                this.roundGap = stats.getGapMeanMs();
+                this.roundGapMax = stats.getGapMaxMs();
+            }
+            return this;
+        }
+        
+        public Builder timeToFirstByte(float ttfb) {
+            this.ttfb = ttfb;
+            return this;
+        }
+        
+        public Builder warmStartSpeed(int speed) {
+            this.warmStart = speed;
+            return this;
+        }
+        
         public Builder successful(boolean successful) {
             this.isSuccessful = successful;
             return this;
@@ -0,0 +1,426 @@
+package com.swiftest.core.net;
+
+import com.swiftest.core.interfaces.HostResolver;
+import com.swiftest.core.log.Log;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 服务器地址缓存，WebSocket和UDP/TCP测量共用
+ * - 按解析结果的TTL缓存；过期后maxStale时间内直接返回旧结果并在后台刷新，重复测试不再等待DNS
+ * - 同一host并发的查询合并为一次
+ * - 同时有IPv4和IPv6地址时，第一次建立连接前按Happy Eyeballs（RFC 8305）对两个地址族各发起一次TCP连接，
+ *   第二个地址族延迟250ms启动，先连通的地址族记为该host的首选，之后的解析结果按首选地址族在前交替排列
+ * UDP没有握手，直接使用排在第一位的地址：WebSocket连接先于UDP端口分配完成，此时首选地址族已经确定。
+ */
+public final class DnsCache {
+    
+    private static final String TAG = "DnsCache";
+    
+    /**
+     * 过期后仍可直接返回旧结果的默认时长
+     */
+    public static final long DEFAULT_MAX_STALE_MILLIS = 10 * 60_000L;
+    
+    // 第二个地址族的连接延迟（RFC 8305 Connection Attempt Delay）与竞速的总时限
+    private static final long ATTEMPT_DELAY_MILLIS = 250;
+    private static final long RACE_TIMEOUT_MILLIS = 3000;
+    
+    private final HostResolver resolver;
+    private final Executor refreshExecutor;
+    private final LongSupplier clockMillis;
+    private final long maxStaleMillis;
+    
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<HostResolver.Answer>> inflight = new ConcurrentHashMap<>();
+    // 每个host竞速胜出的地址族，true为IPv6，刷新解析结果时保留
+    private final ConcurrentHashMap<String, Boolean> preferV6 = new ConcurrentHashMap<>();
+    
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong raceCount = new AtomicLong();
+    
+    /**
+     * @param resolver 实际执行查询的解析器
+     * @param refreshExecutor 执行后台刷新的执行器
+     */
+    public DnsCache(HostResolver resolver, Executor refreshExecutor) {
+        this(resolver, refreshExecutor, () -> System.nanoTime() / 1_000_000L, DEFAULT_MAX_STALE_MILLIS);
+    }
+    
+    /**
+     * @param clockMillis 单调时钟（毫秒），测试中可以替换为手动推进的时钟
+     * @param maxStaleMillis 过期后仍可返回旧结果的时长，0表示过期后同步查询
+     */
+    public DnsCache(HostResolver resolver, Executor refreshExecutor, LongSupplier clockMillis, long maxStaleMillis) {
+        if (resolver == null || refreshExecutor == null || clockMillis == null) {
+            throw new IllegalArgumentException("Resolver, executor and clock cannot be null");
+        }
+        this.resolver = resolver;
+        this.refreshExecutor = refreshExecutor;
+        this.clockMillis = clockMillis;
+        this.maxStaleMillis = Math.max(0, maxStaleMillis);
+    }
+    
+    /**
+     * 解析host，首选地址族在前
+     * IP字面量直接返回，不查询也不缓存
+     * @throws UnknownHostException 没有可用的缓存且查询失败
+     */
+    public List<InetAddress> resolve(String host) throws UnknownHostException {
+        InetAddress literal = parseLiteral(host);
+        if (literal != null) {
+            return Collections.singletonList(literal);
+        }
+        
+        long now = clockMillis.getAsLong();
+        Entry entry = entries.get(host);
+        if (entry != null) {
+            if (now < entry.expiresAt) {
+                hitCount.incrementAndGet();
+                return order(host, entry.addresses);
+            }
+            if (now < entry.expiresAt + maxStaleMillis) {
+                staleHitCount.incrementAndGet();
+                refreshAsync(host);
+                return order(host, entry.addresses);
+            }
+        }
+        
+        missCount.incrementAndGet();
+        try {
+            return order(host, lookup(host).getAddresses());
+        } catch (UnknownHostException e) {
+            if (entry != null) {
+                // 解析失败时旧结果仍比直接失败更有用
+                Log.w(TAG, "Lookup failed for " + host + ", using expired addresses", e);
+                return order(host, entry.addresses);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * 解析host的第一个（首选）地址
+     */
+    public InetAddress resolveFirst(String host) throws UnknownHostException {
+        return resolve(host).get(0);
+    }
+    
+    /**
+     * 为建立TCP连接解析host：同时有IPv4和IPv6地址且尚无首选地址族时先竞速确定首选
+     * 竞速失败（两个地址族都未连通）时不记录首选，按解析器的顺序返回，由调用方的连接报告错误
+     * @param port 竞速连接的端口
+     */
+    public List<InetAddress> resolveForConnect(String host, int port) throws UnknownHostException {
+        List<InetAddress> addresses = resolve(host);
+        if (preferV6.containsKey(host) || !hasBothFamilies(addresses)) {
+            return addresses;
+        }
+        
+        InetAddress first = addresses.get(0);
+        InetAddress second = null;
+        for (InetAddress address : addresses) {
+            if (isV6(address) != isV6(first)) {
+                second = address;
+                break;
+            }
+        }
+        InetAddress winner = race(first, second, port);
+        if (winner == null) {
+            return addresses;
+        }
+        preferV6.put(host, isV6(winner));
+        Log.d(TAG, "Happy eyeballs winner for " + host + ": " + winner.getHostAddress());
+        return order(host, addresses);
+    }
+    
+    /**
+     * 丢弃所有缓存结果和首选地址族
+     */
+    public void clear() {
+        entries.clear();
+        preferV6.clear();
+    }
+    
+    /**
+     * 未过期缓存命中的次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    /**
+     * 返回过期结果并后台刷新的次数
+     */
+    public long getStaleHitCount() {
+        return staleHitCount.get();
+    }
+    
+    /**
+     * 同步查询的次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+    
+    /**
+     * 地址族竞速的次数
+     */
+    public long getRaceCount() {
+        return raceCount.get();
+    }
+    
+    /**
+     * 执行一次查询并写入缓存，同一host并发的查询等待同一个结果
+     */
+    private HostResolver.Answer lookup(String host) throws UnknownHostException {
+        CompletableFuture<HostResolver.Answer> created = new CompletableFuture<>();
+        CompletableFuture<HostResolver.Answer> existing = inflight.putIfAbsent(host, created);
+        if (existing != null) {
+            return await(host, existing);
+        }
+        
+        try {
+            HostResolver.Answer answer = resolver.lookup(host);
+            entries.put(host, new Entry(answer.getAddresses(), clockMillis.getAsLong() + answer.getTtlMillis()));
+            created.complete(answer);
+            return answer;
+        } catch (UnknownHostException | RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(host, created);
+        }
+    }
+    
+    private static HostResolver.Answer await(String host, CompletableFuture<HostResolver.Answer> future)
+            throws UnknownHostException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnknownHostException) {
+                throw (UnknownHostException) e.getCause();
+            }
+            UnknownHostException failure = new UnknownHostException("Lookup failed for " + host);
+            failure.initCause(e.getCause());
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException("Interrupted while resolving " + host);
+        }
+    }
+    
+    private void refreshAsync(String host) {
+        if (inflight.containsKey(host)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    lookup(host);
+                } catch (UnknownHostException | RuntimeException e) {
+                    Log.w(TAG, "Background refresh failed for " + host, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Background refresh rejected for " + host, e);
+        }
+    }
+    
+    /**
+     * 按首选地址族在前、两个地址族交替排列；没有首选时以解析器返回的第一个地址的地址族为首选
+     */
+    private List<InetAddress> order(String host, List<InetAddress> addresses) {
+        if (!hasBothFamilies(addresses)) {
+            return addresses;
+        }
+        Boolean preferred = preferV6.get(host);
+        boolean v6First = preferred != null ? preferred : isV6(addresses.get(0));
+        
+        List<InetAddress> primary = new ArrayList<>();
+        List<InetAddress> secondary = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            (isV6(address) == v6First ? primary : secondary).add(address);
+        }
+        List<InetAddress> ordered = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(primary.size(), secondary.size()); i++) {
+            if (i < primary.size()) {
+                ordered.add(primary.get(i));
+            }
+            if (i < secondary.size()) {
+                ordered.add(secondary.get(i));
+            }
+        }
+        return ordered;
+    }
+    
+    /**
+     * 对两个地址发起非阻塞连接，second延迟ATTEMPT_DELAY_MILLIS或在first失败后立即启动
+     * @return 先连通的地址，都未连通时返回null
+     */
+    private InetAddress race(InetAddress first, InetAddress second, int port) {
+        raceCount.incrementAndGet();
+        InetAddress[] targets = { first, second };
+        SocketChannel[] channels = new SocketChannel[2];
+        
+        try (Selector selector = Selector.open()) {
+            // 竞速测量的是真实的连接时间，不使用可替换的clockMillis
+            long start = System.nanoTime() / 1_000_000L;
+            long deadline = start + RACE_TIMEOUT_MILLIS;
+            int started = 1;
+            int failed = 0;
+            if (connect(selector, channels, targets, 0, port)) {
+                return first;
+            }
+            if (channels[0] == null) {
+                failed++;
+            }
+            
+            while (true) {
+                long now = System.nanoTime() / 1_000_000L;
+                // 第一个连接失败或超过连接延迟后启动第二个地址族
+                if (started == 1 && (failed == 1 || now >= start + ATTEMPT_DELAY_MILLIS)) {
+                    started = 2;
+                    if (connect(selector, channels, targets, 1, port)) {
+                        return second;
+                    }
+                    if (channels[1] == null) {
+                        failed++;
+                    }
+                }
+                if (failed == 2 || now >= deadline) {
+                    return null;
+                }
+                
+                long wait = deadline - now;
+                if (started == 1) {
+                    wait = Math.min(wait, start + ATTEMPT_DELAY_MILLIS - now);
+                }
+                selector.select(Math.max(1, wait));
+                for (SelectionKey key : selector.selectedKeys()) {
+                    int index = (Integer) key.attachment();
+                    try {
+                        if (channels[index].finishConnect()) {
+                            return targets[index];
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        closeQuietly(channels[index]);
+                        channels[index] = null;
+                        failed++;
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Address family race failed", e);
+            return null;
+        } finally {
+            closeQuietly(channels[0]);
+            closeQuietly(channels[1]);
+        }
+    }
+    
+    /**
+     * 发起一个非阻塞连接，立即失败时channels[index]保持为null
+     * @return 立即连通时返回true
+     */
+    private static boolean connect(Selector selector, SocketChannel[] channels, InetAddress[] targets,
+                                   int index, int port) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(new InetSocketAddress(targets[index], port))) {
+                channels[index] = channel;
+                return true;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, index);
+            channels[index] = channel;
+        } catch (IOException e) {
+            // 例如本机没有IPv6路由
+            Log.d(TAG, "Connect to " + targets[index].getHostAddress() + " failed: " + e.getMessage());
+            closeQuietly(channel);
+        }
+        return false;
+    }
+    
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 只是放弃的竞速连接
+            }
+        }
+    }
+    
+    private static boolean hasBothFamilies(List<InetAddress> addresses) {
+        boolean v4 = false;
+        boolean v6 = false;
+        for (InetAddress address : addresses) {
+            if (isV6(address)) {
+                v6 = true;
+            } else {
+                v4 = true;
+            }
+        }
+        return v4 && v6;
+    }
+    
+    private static boolean isV6(InetAddress address) {
+        return address instanceof Inet6Address;
+    }
+    
+    /**
+     * IPv4点分十进制或IPv6字面量（可以带方括号）直接转换，不经过DNS
+     * @return 不是IP字面量时返回null
+     */
+    private static InetAddress parseLiteral(String host) throws UnknownHostException {
+        String literal = host;
+        if (literal.startsWith("[") && literal.endsWith("]")) {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        boolean v6 = literal.indexOf(':') >= 0;
+        boolean v4 = !literal.isEmpty();
+        for (int i = 0; i < literal.length() && v4; i++) {
+            char c = literal.charAt(i);
+            v4 = c == '.' || (c >= '0' && c <= '9');
+        }
+        // 字面量不会触发DNS查询
+        return v6 || v4 ? InetAddress.getByName(literal) : null;
+    }
+    
+    /**
+     * 一个host的缓存结果
+     */
+    private static final class Entry {
+        
+        final List<InetAddress> addresses;
+        final long expiresAt;
+        
+        Entry(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.swiftest.core.net;
+
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.NetworkFingerprint;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 热启动速率缓存
+ * 按网络指纹记录最近几次的下载速度，同一网络上重复测试时在握手中建议服务器直接从接近链路容量的速率开始，
+ * 跳过从低速率爬升的轮次，缩短测试时间并减少流量。
+ * - LRU：最多保留capacity个网络，超出时淘汰最久未使用的
+ * - 每个网络保留最近RESULTS_PER_ENTRY次结果，建议速率为其中位数乘以START_HEADROOM，单次异常结果不影响建议
+ * - 最后一次结果超过maxAge后不再建议，网络条件可能已经变化
+ * - 指定文件时启动时加载，每次记录后在执行器上写回（先写临时文件再替换），写入失败只记录日志
+ */
+public final class WarmStartCache {
+    
+    private static final String TAG = "WarmStartCache";
+    
+    /**
+     * 默认最多保留的网络数量
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+    
+    /**
+     * 默认的结果有效期
+     */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 24 * 3600_000L;
+    
+    private static final int RESULTS_PER_ENTRY = 5;
+    // 建议速率相对历史速度的余量，与RateController的饱和余量一致，链路未变化时第一轮即可饱和
+    private static final float START_HEADROOM = 1.3f;
+    
+    private final File file;
+    private final Executor saveExecutor;
+    private final int capacity;
+    private final long maxAgeMillis;
+    private final LongSupplier clockMillis;
+    
+    // 访问顺序的LinkedHashMap即LRU，所有访问在this上同步
+    private final LinkedHashMap<String, Results> entries;
+    // 写文件串行化，加锁顺序为fileLock -> this
+    private final Object fileLock = new Object();
+    
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    
+    /**
+     * @param file 持久化文件，null表示只在内存中缓存
+     * @param saveExecutor 执行写回的执行器
+     */
+    public WarmStartCache(File file, Executor saveExecutor) {
+        this(file, saveExecutor, DEFAULT_CAPACITY, DEFAULT_MAX_AGE_MILLIS, System::currentTimeMillis);
+    }
+    
+    /**
+     * @param clockMillis 墙上时钟（毫秒），结果的时间戳会写入文件，不能使用单调时钟
+     */
+    public WarmStartCache(File file, Executor saveExecutor, int capacity, long maxAgeMillis, LongSupplier clockMillis) {
+        if (saveExecutor == null || clockMillis == null || capacity < 1) {
+            throw new IllegalArgumentException("Executor and clock cannot be null, capacity must be positive");
+        }
+        this.file = file;
+        this.saveExecutor = saveExecutor;
+        this.capacity = capacity;
+        this.maxAgeMillis = Math.max(0, maxAgeMillis);
+        this.clockMillis = clockMillis;
+        this.entries = new LinkedHashMap<String, Results>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Results> eldest) {
+                return size() > WarmStartCache.this.capacity;
+            }
+        };
+        if (file != null) {
+            load();
+        }
+    }
+    
+    /**
+     * 连接server时系统选择的本机地址，只查询路由表，不发送数据
+     * @return 无法确定时返回null
+     */
+    public static InetAddress localAddressFor(InetAddress server) {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.connect(server, 9);
+            return socket.getLocalAddress();
+        } catch (IOException e) {
+            Log.d(TAG, "Cannot determine local address for " + server + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * 建议的起始速率
+     * @return 建议速率 (Mbps)，没有有效记录时返回0
+     */
+    public synchronized int suggestStartSpeed(NetworkFingerprint fingerprint) {
+        Results entry = entries.get(fingerprint.getKey());
+        if (entry == null || clockMillis.getAsLong() - entry.updatedMillis > maxAgeMillis) {
+            missCount.incrementAndGet();
+            return 0;
+        }
+        hitCount.incrementAndGet();
+        return (int) Math.ceil(entry.median() * START_HEADROOM);
+    }
+    
+    /**
+     * 记录一次完成的下载测试
+     * @param downloadSpeed 最终下载速度 (Mbps)，不大于0时忽略
+     */
+    public void record(NetworkFingerprint fingerprint, float downloadSpeed) {
+        if (!(downloadSpeed > 0)) {
+            return;
+        }
+        synchronized (this) {
+            Results entry = entries.get(fingerprint.getKey());
+            if (entry == null) {
+                entry = new Results();
+                entries.put(fingerprint.getKey(), entry);
+            }
+            entry.add(downloadSpeed, clockMillis.getAsLong());
+        }
+        scheduleSave();
+    }
+    
+    /**
+     * 清空缓存（同时清空文件）
+     */
+    public void clear() {
+        synchronized (this) {
+            entries.clear();
+        }
+        scheduleSave();
+    }
+    
+    /**
+     * 在调用线程上立即写回文件，用于进程退出前（执行器上排队的写回可能来不及执行）
+     */
+    public void flush() {
+        if (file != null) {
+            save();
+        }
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    public long getMissCount() {
+        return missCount.get();
+    }
+    
+    private void scheduleSave() {
+        if (file == null) {
+            return;
+        }
+        try {
+            saveExecutor.execute(this::save);
+        } catch (RejectedExecutionException e) {
+            // 执行器已关闭（SwiftestEngine.close()之后），在当前线程写回
+            save();
+        }
+    }
+    
+    /**
+     * 每行一个网络：{"key":..., "updated":ms, "speeds":[...]}，按LRU顺序从旧到新
+     */
+    private void save() {
+        // 快照和写入都在fileLock内，后记录的结果不会被先生成的快照覆盖
+        synchronized (fileLock) {
+            StringBuilder content = new StringBuilder();
+            synchronized (this) {
+                try {
+                    for (Map.Entry<String, Results> e : entries.entrySet()) {
+                        JSONObject line = new JSONObject();
+                        line.put("key", e.getKey());
+                        line.put("updated", e.getValue().updatedMillis);
+                        line.put("speeds", new JSONArray(e.getValue().speeds));
+                        content.append(line).append('\n');
+                    }
+                } catch (JSONException e) {
+                    Log.e(TAG, "Failed to encode warm start cache", e);
+                    return;
+                }
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            try {
+                Files.write(tmp.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tmp.toPath(), file.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to save warm start cache to " + file, e);
+            }
+        }
+    }
+    
+    /**
+     * 加载文件，不存在时为空缓存，损坏的行跳过
+     */
+    private void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to load warm start cache from " + file, e);
+            return;
+        }
+        synchronized (this) {
+            for (String text : lines) {
+                if (text.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    JSONObject line = new JSONObject(text);
+                    JSONArray speeds = line.getJSONArray("speeds");
+                    Results entry = new Results();
+                    for (int i = 0; i < speeds.length(); i++) {
+                        entry.add((float) speeds.getDouble(i), line.getLong("updated"));
+                    }
+                    if (!entry.speeds.isEmpty()) {
+                        entries.put(line.getString("key"), entry);
+                    }
+                } catch (JSONException e) {
+                    Log.w(TAG, "Skipping malformed warm start entry: " + text);
+                }
+            }
+        }
+        Log.d(TAG, "Loaded " + entries.size() + " warm start entries from " + file);
+    }
+    
+    /**
+     * 一个网络最近的结果，只在WarmStartCache的锁内访问
+     */
+    private static final class Results {
+        
+        final List<Float> speeds = new ArrayList<>(RESULTS_PER_ENTRY);
+        long updatedMillis;
+        
+        void add(float speed, long nowMillis) {
+            if (speeds.size() == RESULTS_PER_ENTRY) {
+                speeds.remove(0);
+            }
+            speeds.add(speed);
+            updatedMillis = nowMillis;
+        }
+        
+        float median() {
+            float[] sorted = new float[speeds.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = speeds.get(i);
+            }
+            Arrays.sort(sorted);
+            int mid = sorted.length / 2;
+            return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+        }
+    }
+}
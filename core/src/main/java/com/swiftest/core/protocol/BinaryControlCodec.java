@@ -0,0 +1,291 @@
+package com.swiftest.core.protocol;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 二进制控制消息编解码
+ * 握手时客户端在JSON hello中携带 "binary": VERSION，支持的服务器此后改用WebSocket二进制帧，
+ * 客户端收到第一个合法的二进制帧后也切换为二进制发送；服务器一直回复文本时保持JSON。
+ * 帧格式（big-endian）：
+ * <pre>
+ * | magic 'S' (1) | version (1) | type (1) | payload |
+ * </pre>
+ * 各类型的payload：
+ * - HELLO_ACK / START_ACK / EXCEED / UPLOAD_READY / UPLOAD_STOP：无
+ * - UDP_PORTS：count (1) + port (2) * count + flags (1，可省略，bit0表示接受轮次内联控制)
+ * - TCP_PORT：port (2) + tokenLength (1) + token (UTF-8)
+ * - START / CONTINUE / REPEAT / UPLOAD：speed Mbps (4)，CONTINUE/REPEAT为0表示由服务器决定
+ * - FINISH / UPLOAD_FINISH：speed Mbps (8, double)
+ * - TRAFFIC：bytes (8)
+ * - TCP_REQUEST：streams (1)
+ * - UPLOAD_REPORT：bytes (8) + durationMicros (8)
+ * 编码复用同一个缓冲区，返回的帧在下一次编码前有效，调用方需要在持有编码器锁期间发送；
+ * 解码直接读取收到的缓冲区（可以是只读视图），不经过字符串和JSON对象。
+ */
+public final class BinaryControlCodec {
+    
+    public static final int MAGIC = 'S';
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 3;
+    
+    // 服务器 -> 客户端
+    public static final int TYPE_HELLO_ACK = 0x01;
+    public static final int TYPE_UDP_PORTS = 0x02;
+    public static final int TYPE_TCP_PORT = 0x03;
+    public static final int TYPE_START = 0x04;
+    public static final int TYPE_EXCEED = 0x09;
+    public static final int TYPE_TRAFFIC = 0x0A;
+    public static final int TYPE_UPLOAD_READY = 0x0D;
+    public static final int TYPE_UPLOAD_REPORT = 0x0F;
+    
+    // 客户端 -> 服务器
+    public static final int TYPE_START_ACK = 0x05;
+    public static final int TYPE_CONTINUE = 0x06;
+    public static final int TYPE_REPEAT = 0x07;
+    public static final int TYPE_FINISH = 0x08;
+    public static final int TYPE_TCP_REQUEST = 0x0B;
+    public static final int TYPE_UPLOAD = 0x0C;
+    public static final int TYPE_UPLOAD_STOP = 0x0E;
+    public static final int TYPE_UPLOAD_FINISH = 0x10;
+    
+    // UDP_PORTS的flags
+    public static final int FLAG_UDP_CONTROL = 0x01;
+    
+    // 最大的帧是UDP_PORTS（255个端口）和TCP_PORT（255字节token）
+    private static final int MAX_FRAME_SIZE = HEADER_SIZE + 1 + 2 * 255 + 1;
+    
+    private final ByteBuffer out = ByteBuffer.allocate(MAX_FRAME_SIZE);
+    
+    /**
+     * 解码结果回调，每种消息一个方法，只需实现本端会收到的类型
+     */
+    public interface Handler {
+        default void onHelloAck() {}
+        default void onUdpPorts(int[] ports, int flags) {}
+        default void onTcpPort(int port, String token) {}
+        default void onStart(int speed) {}
+        default void onExceed() {}
+        default void onTraffic(long bytes) {}
+        default void onUploadReady() {}
+        default void onUploadReport(long bytes, long durationMicros) {}
+        
+        default void onStartAck() {}
+        default void onContinue(int speed) {}
+        default void onRepeat(int speed) {}
+        default void onFinish(double download) {}
+        default void onTcpRequest(int streams) {}
+        default void onUpload(int speed) {}
+        default void onUploadStop() {}
+        default void onUploadFinish(double upload) {}
+    }
+    
+    public ByteBuffer helloAck() {
+        return begin(TYPE_HELLO_ACK).end();
+    }
+    
+    public ByteBuffer udpPorts(int[] ports) {
+        return udpPorts(ports, 0);
+    }
+    
+    /**
+     * @param flags FLAG_UDP_CONTROL等标志位
+     */
+    public ByteBuffer udpPorts(int[] ports, int flags) {
+        if (ports.length == 0 || ports.length > 255) {
+            throw new IllegalArgumentException("Invalid port count: " + ports.length);
+        }
+        begin(TYPE_UDP_PORTS);
+        out.put((byte) ports.length);
+        for (int port : ports) {
+            out.putShort((short) port);
+        }
+        out.put((byte) flags);
+        return end();
+    }
+    
+    public ByteBuffer tcpPort(int port, String token) {
+        byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+        if (tokenBytes.length > 255) {
+            throw new IllegalArgumentException("Token too long: " + tokenBytes.length);
+        }
+        begin(TYPE_TCP_PORT);
+        out.putShort((short) port);
+        out.put((byte) tokenBytes.length);
+        out.put(tokenBytes);
+        return end();
+    }
+    
+    public ByteBuffer start(int speed) {
+        return withInt(TYPE_START, speed);
+    }
+    
+    public ByteBuffer exceed() {
+        return begin(TYPE_EXCEED).end();
+    }
+    
+    public ByteBuffer traffic(long bytes) {
+        begin(TYPE_TRAFFIC);
+        out.putLong(bytes);
+        return end();
+    }
+    
+    public ByteBuffer uploadReady() {
+        return begin(TYPE_UPLOAD_READY).end();
+    }
+    
+    public ByteBuffer uploadReport(long bytes, long durationMicros) {
+        begin(TYPE_UPLOAD_REPORT);
+        out.putLong(bytes);
+        out.putLong(durationMicros);
+        return end();
+    }
+    
+    public ByteBuffer startAck() {
+        return begin(TYPE_START_ACK).end();
+    }
+    
+    /**
+     * @param speed 建议的下一轮速率 (Mbps)，0表示由服务器决定
+     */
+    public ByteBuffer speedControl(boolean repeat, int speed) {
+        return withInt(repeat ? TYPE_REPEAT : TYPE_CONTINUE, speed);
+    }
+    
+    public ByteBuffer finish(double download) {
+        begin(TYPE_FINISH);
+        out.putDouble(download);
+        return end();
+    }
+    
+    public ByteBuffer tcpRequest(int streams) {
+        begin(TYPE_TCP_REQUEST);
+        out.put((byte) Math.min(streams, 255));
+        return end();
+    }
+    
+    public ByteBuffer upload(int speed) {
+        return withInt(TYPE_UPLOAD, speed);
+    }
+    
+    public ByteBuffer uploadStop() {
+        return begin(TYPE_UPLOAD_STOP).end();
+    }
+    
+    public ByteBuffer uploadFinish(double upload) {
+        begin(TYPE_UPLOAD_FINISH);
+        out.putDouble(upload);
+        return end();
+    }
+    
+    private ByteBuffer withInt(int type, int value) {
+        begin(type);
+        out.putInt(value);
+        return end();
+    }
+    
+    private BinaryControlCodec begin(int type) {
+        out.clear();
+        out.put((byte) MAGIC).put((byte) VERSION).put((byte) type);
+        return this;
+    }
+    
+    private ByteBuffer end() {
+        out.flip();
+        return out;
+    }
+    
+    /**
+     * 解码一个帧并分发到handler
+     * @return 帧头不合法、版本不支持或长度不足时返回false，handler不会被调用
+     */
+    public static boolean decode(ByteBuffer frame, Handler handler) {
+        if (frame.remaining() < HEADER_SIZE
+                || (frame.get(frame.position()) & 0xFF) != MAGIC
+                || (frame.get(frame.position() + 1) & 0xFF) != VERSION) {
+            return false;
+        }
+        int type = frame.get(frame.position() + 2) & 0xFF;
+        ByteBuffer in = frame.duplicate();
+        in.position(frame.position() + HEADER_SIZE);
+        
+        try {
+            switch (type) {
+                case TYPE_HELLO_ACK:
+                    handler.onHelloAck();
+                    return true;
+                case TYPE_UDP_PORTS: {
+                    int count = in.get() & 0xFF;
+                    if (count == 0 || in.remaining() < count * 2) {
+                        return false;
+                    }
+                    int[] ports = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        ports[i] = in.getShort() & 0xFFFF;
+                    }
+                    // 旧版本的帧没有flags
+                    int flags = in.hasRemaining() ? in.get() & 0xFF : 0;
+                    handler.onUdpPorts(ports, flags);
+                    return true;
+                }
+                case TYPE_TCP_PORT: {
+                    int port = in.getShort() & 0xFFFF;
+                    int length = in.get() & 0xFF;
+                    if (in.remaining() < length) {
+                        return false;
+                    }
+                    byte[] tokenBytes = new byte[length];
+                    in.get(tokenBytes);
+                    handler.onTcpPort(port, new String(tokenBytes, StandardCharsets.UTF_8));
+                    return true;
+                }
+                case TYPE_START:
+                    handler.onStart(in.getInt());
+                    return true;
+                case TYPE_EXCEED:
+                    handler.onExceed();
+                    return true;
+                case TYPE_TRAFFIC:
+                    handler.onTraffic(in.getLong());
+                    return true;
+                case TYPE_UPLOAD_READY:
+                    handler.onUploadReady();
+                    return true;
+                case TYPE_UPLOAD_REPORT: {
+                    long bytes = in.getLong();
+                    handler.onUploadReport(bytes, in.getLong());
+                    return true;
+                }
+                case TYPE_START_ACK:
+                    handler.onStartAck();
+                    return true;
+                case TYPE_CONTINUE:
+                    handler.onContinue(in.getInt());
+                    return true;
+                case TYPE_REPEAT:
+                    handler.onRepeat(in.getInt());
+                    return true;
+                case TYPE_FINISH:
+                    handler.onFinish(in.getDouble());
+                    return true;
+                case TYPE_TCP_REQUEST:
+                    handler.onTcpRequest(in.get() & 0xFF);
+                    return true;
+                case TYPE_UPLOAD:
+                    handler.onUpload(in.getInt());
+                    return true;
+                case TYPE_UPLOAD_STOP:
+                    handler.onUploadStop();
+                    return true;
+                case TYPE_UPLOAD_FINISH:
+                    handler.onUploadFinish(in.getDouble());
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (BufferUnderflowException e) {
+            return false;
+        }
+    }
+}
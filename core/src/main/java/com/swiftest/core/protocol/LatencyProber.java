@@ -0,0 +1,129 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.LatencyStats;
+import com.swiftest.core.stats.RttRecorder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * UDP往返时延探测
+ * 在触发阶段之前复用测速Socket，向服务器发送带序号和时间戳的小探测包，由服务器原样回显。
+ * 探测包按固定间隔流水线发送，不等待上一个回显，多个探测同时在途，总耗时与RTT基本无关：
+ * PROBE_COUNT * PROBE_INTERVAL + DRAIN，约300ms。
+ * 回显按序号匹配发送时刻（不信任回显中的时间戳），RTT记录在RttRecorder的对数分桶
+ * QuantileSketch中，相对误差约0.5%，与下载速度的分位数统计使用同一个结构。
+ */
+public final class LatencyProber {
+    
+    private static final String TAG = "LatencyProber";
+    
+    // 探测包格式：4字节魔数 + 8字节序号 + 8字节发送时间(ns)，补齐到PROBE_SIZE
+    public static final int PROBE_SIZE = 32;
+    public static final int PROBE_MAGIC = 0x50494E47; // "PING"
+    // 回显包的最小长度：魔数 + 序号 + 发送时间
+    public static final int PROBE_HEADER_SIZE = 20;
+    
+    private static final int PROBE_COUNT = 20;
+    private static final long PROBE_INTERVAL_NANOS = 10_000_000L;
+    // 最后一个探测发出后等待回显的时间
+    private static final long DRAIN_NANOS = 100_000_000L;
+    // 服务器不支持回显时尽早放弃
+    private static final long NO_ECHO_TIMEOUT_NANOS = 150_000_000L;
+    
+    /**
+     * 探测包收发通道，由各UDP引擎基于自己的触发Socket实现
+     */
+    public interface Transport {
+        
+        /**
+         * 发送一个探测包（position到limit之间的内容）
+         */
+        void send(ByteBuffer probe) throws IOException;
+        
+        /**
+         * 接收一个数据报，写入dst
+         * @param timeoutNanos 最长等待时间
+         * @return 数据报长度，超时返回-1
+         */
+        int receive(ByteBuffer dst, long timeoutNanos) throws IOException;
+    }
+    
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(PROBE_SIZE);
+    private final ByteBuffer rcvBuffer = ByteBuffer.allocate(UdpTester.PACKET_SIZE);
+    private final long[] sendNanos = new long[PROBE_COUNT];
+    private final boolean[] echoed = new boolean[PROBE_COUNT];
+    private final RttRecorder recorder = new RttRecorder();
+    
+    /**
+     * 执行一次时延探测
+     * @return 时延统计，服务器没有回显时probesReceived为0
+     */
+    public LatencyStats measure(Transport transport) throws IOException {
+        Arrays.fill(sendNanos, 0);
+        Arrays.fill(echoed, false);
+        recorder.reset();
+        
+        int sent = 0;
+        int received = 0;
+        long start = System.nanoTime();
+        long nextSend = start;
+        long deadline = start + (PROBE_COUNT - 1) * PROBE_INTERVAL_NANOS + DRAIN_NANOS;
+        
+        long now = start;
+        while (now < deadline && received < PROBE_COUNT) {
+            if (sent < PROBE_COUNT && now >= nextSend) {
+                sendProbe(transport, sent, now);
+                sent++;
+                nextSend += PROBE_INTERVAL_NANOS;
+            }
+            
+            long wait = (sent < PROBE_COUNT ? nextSend : deadline) - now;
+            int length = wait > 0 ? transport.receive(rcvBuffer, wait) : -1;
+            now = System.nanoTime();
+            
+            if (length >= PROBE_HEADER_SIZE) {
+                int seq = parseEcho();
+                if (seq >= 0 && seq < sent && !echoed[seq]) {
+                    echoed[seq] = true;
+                    recorder.add((now - sendNanos[seq]) / 1e6f);
+                    received++;
+                }
+            }
+            
+            if (received == 0 && now - start > NO_ECHO_TIMEOUT_NANOS) {
+                Log.w(TAG, "No probe echo, server may not support latency probing");
+                break;
+            }
+        }
+        
+        LatencyStats stats = recorder.snapshot();
+        Log.d(TAG, stats.toString());
+        return stats;
+    }
+    
+    private void sendProbe(Transport transport, int seq, long now) throws IOException {
+        sendBuffer.clear();
+        sendBuffer.putInt(PROBE_MAGIC);
+        sendBuffer.putLong(seq);
+        sendBuffer.putLong(now);
+        sendBuffer.position(PROBE_SIZE);
+        sendBuffer.flip();
+        sendNanos[seq] = now;
+        recorder.onSent();
+        transport.send(sendBuffer);
+    }
+    
+    /**
+     * @return 回显包的序号，不是探测回显时返回-1（例如提前到达的测速数据）
+     */
+    private int parseEcho() {
+        if (rcvBuffer.getInt(0) != PROBE_MAGIC) {
+            return -1;
+        }
+        long seq = rcvBuffer.getLong(4);
+        return seq >= 0 && seq < PROBE_COUNT ? (int) seq : -1;
+    }
+}
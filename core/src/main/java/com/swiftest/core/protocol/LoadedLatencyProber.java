@@ -0,0 +1,231 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.exec.Threads;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.LatencyStats;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.stats.RttRecorder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * 负载时延（bufferbloat）探测
+ * 在独立的Socket和线程上持续发送与LatencyProber格式相同的探测包，与下载测速并行运行：
+ * - 探测包的发送时刻与RateSampler使用同一个System.nanoTime()时钟，按发送时刻是否落在
+ *   某一轮的接收窗口内（首包到本轮结束）归类为"负载"或"空载"（触发阶段、轮次间隙）
+ * - 发送间隔按最近一轮的吞吐量动态调整，探测流量（含IP/UDP头）不超过吞吐量的MAX_PROBE_SHARE
+ * - 接收热循环不参与探测，UdpTester每轮只写两次volatile窗口边界
+ */
+public final class LoadedLatencyProber implements Runnable {
+    
+    private static final String TAG = "LoadedLatencyProber";
+    
+    // 探测流量占吞吐量的上限
+    private static final float MAX_PROBE_SHARE = 0.01f;
+    // IPv4 + UDP头部
+    private static final int WIRE_OVERHEAD = 28;
+    private static final long MIN_INTERVAL_NANOS = 10_000_000L;
+    // 尚未测得吞吐量时使用的保守间隔
+    private static final long INITIAL_INTERVAL_NANOS = 100_000_000L;
+    // 在途探测的序号窗口，超出窗口的回显视为过期
+    private static final int SEQ_WINDOW = 1024;
+    private static final int SEQ_MASK = SEQ_WINDOW - 1;
+    
+    private final InetSocketAddress serverAddress;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(LatencyProber.PROBE_SIZE);
+    private final ByteBuffer rcvBuffer = ByteBuffer.allocateDirect(UdpTester.PACKET_SIZE);
+    
+    // 只由探测线程访问
+    private final long[] sendNanos = new long[SEQ_WINDOW];
+    private final boolean[] sentLoaded = new boolean[SEQ_WINDOW];
+    private long sequence = 0;
+    
+    // 统计，由探测线程写入、轮次线程读取，使用this加锁（不在接收热循环中）
+    private final RttRecorder idle = new RttRecorder();
+    private final RttRecorder loaded = new RttRecorder();
+    private final RttRecorder roundLoaded = new RttRecorder();
+    
+    // 当前接收窗口，windowStart为0表示不在轮次内
+    private volatile long windowStart = 0;
+    private volatile long intervalNanos = INITIAL_INTERVAL_NANOS;
+    private volatile boolean running = false;
+    
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread thread;
+    
+    public LoadedLatencyProber(InetSocketAddress serverAddress) {
+        this.serverAddress = serverAddress;
+    }
+    
+    /**
+     * 打开独立的探测Socket并在平台守护线程上启动探测
+     */
+    public void start() throws IOException {
+        start(SpeedTestConfig.ExecutionMode.PLATFORM);
+    }
+    
+    /**
+     * 打开独立的探测Socket并按执行模式启动探测线程
+     */
+    public void start(SpeedTestConfig.ExecutionMode mode) throws IOException {
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(serverAddress);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        
+        running = true;
+        thread = Threads.newThread(mode, "LoadedLatencyProber", this, true);
+        thread.start();
+        Log.d(TAG, "Loaded latency prober started for " + serverAddress);
+    }
+    
+    @Override
+    public void run() {
+        long nextSend = System.nanoTime();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                if (now >= nextSend) {
+                    sendProbe(now);
+                    nextSend = now + intervalNanos;
+                }
+                
+                long waitMs = Math.max(1, (nextSend - now) / 1_000_000L);
+                if (selector.select(waitMs) > 0) {
+                    selector.selectedKeys().clear();
+                    drainEchoes();
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                Log.w(TAG, "Loaded latency probing stopped", e);
+            }
+        }
+    }
+    
+    private void sendProbe(long now) throws IOException {
+        int slot = (int) (sequence & SEQ_MASK);
+        boolean inRound = windowStart != 0;
+        sendNanos[slot] = now;
+        sentLoaded[slot] = inRound;
+        synchronized (this) {
+            if (inRound) {
+                loaded.onSent();
+                roundLoaded.onSent();
+            } else {
+                idle.onSent();
+            }
+        }
+        
+        sendBuffer.clear();
+        sendBuffer.putInt(LatencyProber.PROBE_MAGIC);
+        sendBuffer.putLong(sequence);
+        sendBuffer.putLong(now);
+        sendBuffer.position(LatencyProber.PROBE_SIZE);
+        sendBuffer.flip();
+        channel.write(sendBuffer);
+        sequence++;
+    }
+    
+    private void drainEchoes() throws IOException {
+        while (true) {
+            rcvBuffer.clear();
+            int length = channel.read(rcvBuffer);
+            if (length <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (length < LatencyProber.PROBE_HEADER_SIZE || rcvBuffer.getInt(0) != LatencyProber.PROBE_MAGIC) {
+                continue;
+            }
+            
+            long seq = rcvBuffer.getLong(4);
+            if (seq < 0 || seq >= sequence || sequence - seq > SEQ_WINDOW) {
+                continue;
+            }
+            int slot = (int) (seq & SEQ_MASK);
+            if (sendNanos[slot] == 0) {
+                continue; // 重复回显
+            }
+            
+            float rttMs = (now - sendNanos[slot]) / 1e6f;
+            sendNanos[slot] = 0;
+            synchronized (this) {
+                if (sentLoaded[slot]) {
+                    loaded.add(rttMs);
+                    roundLoaded.add(rttMs);
+                } else {
+                    idle.add(rttMs);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 本轮收到首包，之后发出的探测计入负载时延
+     * @param startNanos 与RateSampler相同时钟的轮次起点
+     */
+    public void onRoundStart(long startNanos) {
+        synchronized (this) {
+            roundLoaded.reset();
+        }
+        windowStart = startNanos;
+    }
+    
+    /**
+     * 本轮接收结束
+     */
+    public void onRoundEnd() {
+        windowStart = 0;
+    }
+    
+    /**
+     * 根据最近一轮的吞吐量调整探测间隔，保证探测流量不超过吞吐量的MAX_PROBE_SHARE
+     * @param throughputMbps 吞吐量 (Mbps)
+     */
+    public void setThroughput(float throughputMbps) {
+        if (throughputMbps <= 0) {
+            return;
+        }
+        double budgetBytesPerSecond = throughputMbps * 1024 * 1024 / 8 * MAX_PROBE_SHARE;
+        long interval = (long) ((LatencyProber.PROBE_SIZE + WIRE_OVERHEAD) * 1e9 / budgetBytesPerSecond);
+        intervalNanos = Math.max(MIN_INTERVAL_NANOS, interval);
+    }
+    
+    public synchronized LatencyStats getIdleStats() {
+        return idle.snapshot();
+    }
+    
+    public synchronized LatencyStats getLoadedStats() {
+        return loaded.snapshot();
+    }
+    
+    /**
+     * 最近一轮的负载时延
+     */
+    public synchronized LatencyStats getRoundLoadedStats() {
+        return roundLoaded.snapshot();
+    }
+    
+    public void stop() {
+        running = false;
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close prober channel", e);
+        }
+    }
+}
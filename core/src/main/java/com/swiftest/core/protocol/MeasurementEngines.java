@@ -0,0 +1,46 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.interfaces.MeasurementEngine;
+import com.swiftest.core.models.SpeedTestConfig;
+
+/**
+ * 内置测量引擎
+ * 默认按配置选择：多个UDP端口时使用多流引擎，否则按udpEngine选择阻塞或NIO引擎。
+ * 对比测试时可以通过SpeedTestConfig.Builder.engineFactory()固定使用某个引擎。
+ */
+public final class MeasurementEngines {
+    
+    /**
+     * DatagramSocket阻塞接收，只使用第一个端口
+     */
+    public static final MeasurementEngine.Factory BLOCKING =
+            (context, config, udpPorts, callback) -> new UdpTester(context, config, udpPorts[0], callback);
+    
+    /**
+     * DatagramChannel + direct ByteBuffer零分配接收，只使用第一个端口
+     */
+    public static final MeasurementEngine.Factory NIO =
+            (context, config, udpPorts, callback) -> new NioUdpTester(context, config, udpPorts[0], callback);
+    
+    /**
+     * 每个端口一个接收线程，只有一个端口时退化为单流
+     */
+    public static final MeasurementEngine.Factory MULTI_FLOW =
+            (context, config, udpPorts, callback) -> new MultiFlowUdpTester(context, config, udpPorts, callback);
+    
+    private MeasurementEngines() {}
+    
+    /**
+     * 选择引擎工厂：优先使用配置中指定的工厂
+     * @param udpPortCount 服务器分配的UDP端口数量
+     */
+    public static MeasurementEngine.Factory select(SpeedTestConfig config, int udpPortCount) {
+        if (config.getEngineFactory() != null) {
+            return config.getEngineFactory();
+        }
+        if (udpPortCount > 1) {
+            return MULTI_FLOW;
+        }
+        return config.getUdpEngine() == SpeedTestConfig.UdpEngine.NIO ? NIO : BLOCKING;
+    }
+}
@@ -0,0 +1,322 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.exec.Threads;
+import com.swiftest.core.interfaces.UdpTestCallback;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.PacketStats;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.stats.SequenceTracker;
+import com.swiftest.core.stats.StripedCounter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多流并行UDP下载测试器
+ * 单个Socket/单个线程的接收能力受限于单核，部分运营商还会按五元组限速。
+ * 该测试器向服务器申请N个UDP端口，每个端口由独立的接收线程读取：
+ * - 每个接收线程只写StripedCounter中属于自己的槽（缓存行隔离），不共享rcvBytesCount
+ * - 采样线程读取所有槽的合计值，沿用UdpTester的P95、饱和判断和收敛规则
+ * - 每轮额外通过onFlowBreakdown报告各流的平均速度
+ * 轮次流程仍由UdpTester线程驱动，接收线程在轮次之间park等待。
+ */
+public class MultiFlowUdpTester extends UdpTester {
+    
+    private static final String TAG = "MultiFlowUdpTester";
+    
+    private static final int SOCKET_RECEIVE_BUFFER = 4 * 1024 * 1024;
+    private static final long IDLE_TIMEOUT_NANOS = SOCKET_TIMEOUT_MS * 1_000_000L;
+    
+    private final int[] udpPorts;
+    private final FlowReceiver[] receivers;
+    private final StripedCounter flowBytes;
+    private final float[] flowSpeeds;
+    
+    // 轮次协调：接收线程收到首包或结束本轮时唤醒roundThread
+    private final AtomicInteger activeFlows = new AtomicInteger();
+    private volatile boolean firstPacketArrived = false;
+    private volatile Thread roundThread;
+    
+    public MultiFlowUdpTester(SpeedTestConfig config, int[] udpPorts, UdpTestCallback callback) {
+        this(SwiftestEngine.shared(config.getExecutionMode()), config, udpPorts, callback);
+    }
+    
+    public MultiFlowUdpTester(SwiftestEngine context, SpeedTestConfig config, int[] udpPorts, UdpTestCallback callback) {
+        super(context, config, udpPorts[0], callback);
+        this.udpPorts = udpPorts.clone();
+        this.receivers = new FlowReceiver[udpPorts.length];
+        this.flowBytes = new StripedCounter(udpPorts.length);
+        this.flowSpeeds = new float[udpPorts.length];
+    }
+    
+    @Override
+    protected void initializeSocket() throws IOException {
+        serverAddress = resolveServerAddress();
+        
+        for (int i = 0; i < udpPorts.length; i++) {
+            receivers[i] = new FlowReceiver(i, new InetSocketAddress(serverAddress, udpPorts[i]));
+        }
+        for (FlowReceiver receiver : receivers) {
+            receiver.start();
+        }
+        
+        Log.d(TAG, "Initialized " + udpPorts.length + " UDP flows for " + serverHost);
+    }
+    
+    @Override
+    protected void sendTrigger() throws IOException {
+        for (FlowReceiver receiver : receivers) {
+            receiver.sendTrigger();
+        }
+    }
+    
+    /**
+     * 时延探测使用第一个流，此时接收线程尚未arm，通道空闲
+     */
+    @Override
+    protected void sendProbe(ByteBuffer probe) throws IOException {
+        receivers[0].channel.write(probe);
+    }
+    
+    @Override
+    protected int receiveProbe(ByteBuffer dst, long timeoutNanos) throws IOException {
+        return NioUdpTester.readInto(receivers[0].channel, receivers[0].selector, dst,
+                System.nanoTime() + timeoutNanos);
+    }
+    
+    /**
+     * 带内控制只在第一个流上收发，读到的数据报属于该流的序号空间
+     */
+    @Override
+    protected void onStrayDatagram(ByteBuffer datagram, int length, long arrivalNanos) {
+        if (receivers[0].tracker != null) {
+            receivers[0].tracker.onPacket(datagram, length, arrivalNanos);
+        }
+    }
+    
+    @Override
+    protected boolean receiveFirstPacket() throws IOException {
+        roundThread = Thread.currentThread();
+        firstPacketArrived = false;
+        activeFlows.set(receivers.length);
+        for (FlowReceiver receiver : receivers) {
+            receiver.arm();
+        }
+        
+        // 任一流收到首包即开始采样；所有流都空闲超时则本轮没有数据
+        while (!firstPacketArrived && activeFlows.get() > 0 && isRunning()) {
+            LockSupport.parkNanos(this, IDLE_TIMEOUT_NANOS);
+        }
+        return firstPacketArrived;
+    }
+    
+    @Override
+    protected void receivePacketsUntilTimeout() throws IOException {
+        while (activeFlows.get() > 0 && isRunning()) {
+            LockSupport.parkNanos(this, IDLE_TIMEOUT_NANOS);
+        }
+    }
+    
+    @Override
+    protected long getReceivedBytes() {
+        return flowBytes.sum();
+    }
+    
+    @Override
+    protected void resetReceivedBytes() {
+        flowBytes.reset();
+    }
+    
+    /**
+     * 各流的丢包统计窗口由接收线程在receiveRound()开始时打开
+     */
+    @Override
+    protected void beginPacketWindow() {
+    }
+    
+    @Override
+    protected PacketStats snapshotPacketStats() {
+        PacketStats combined = PacketStats.EMPTY;
+        for (FlowReceiver receiver : receivers) {
+            if (receiver.tracker != null) {
+                combined = combined.merge(receiver.tracker.snapshot());
+            }
+        }
+        return combined;
+    }
+    
+    /**
+     * 计算各流本轮的平均速度并上报
+     */
+    @Override
+    protected void onRoundFinished() {
+        for (int i = 0; i < receivers.length; i++) {
+            long elapsedNanos = receivers[i].lastPacketNanos - receivers[i].firstPacketNanos;
+            long bytes = flowBytes.get(i);
+            flowSpeeds[i] = elapsedNanos > 0 ? bytes * 8.0f / 1024 / 1024 / (elapsedNanos / 1e9f) : 0f;
+        }
+        callback.onFlowBreakdown(flowSpeeds.clone());
+    }
+    
+    @Override
+    protected void closeSocket() {
+        for (FlowReceiver receiver : receivers) {
+            if (receiver != null) {
+                receiver.close();
+            }
+        }
+    }
+    
+    /**
+     * 最近一轮各流的平均速度 (Mbps)
+     */
+    public float[] getFlowSpeeds() {
+        return flowSpeeds.clone();
+    }
+    
+    public int getFlowCount() {
+        return receivers.length;
+    }
+    
+    @Override
+    public String getEngineName() {
+        return "udp-multiflow-" + receivers.length;
+    }
+    
+    /**
+     * 单个流的接收线程，持有自己的DatagramChannel、Selector和接收缓冲区
+     */
+    private class FlowReceiver implements Runnable {
+        
+        private final int slot;
+        private final DatagramChannel channel;
+        private final Selector selector;
+        private final ByteBuffer rcvBuffer = context.getDatagramBufferPool().acquire();
+        private final ByteBuffer triggerBuffer = ByteBuffer.allocateDirect(TRIGGER_PAYLOAD.length);
+        private final SequenceTracker tracker;
+        private final Thread thread;
+        
+        private volatile boolean running = true;
+        private volatile boolean armed = false;
+        
+        // 只由本接收线程写入，轮次结束后由roundThread读取
+        private long firstPacketNanos;
+        private long lastPacketNanos;
+        
+        FlowReceiver(int slot, InetSocketAddress address) throws IOException {
+            this.slot = slot;
+            this.channel = openChannel();
+            this.channel.configureBlocking(false);
+            this.channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_RECEIVE_BUFFER);
+            this.channel.connect(address);
+            this.selector = Selector.open();
+            this.channel.register(selector, SelectionKey.OP_READ);
+            this.triggerBuffer.put(TRIGGER_PAYLOAD).flip();
+            this.tracker = config.isSequencedPayload() ? new SequenceTracker() : null;
+            this.thread = Threads.newThread(config.getExecutionMode(), "UdpFlow-" + slot, this, true);
+        }
+        
+        void start() {
+            thread.start();
+        }
+        
+        void sendTrigger() throws IOException {
+            triggerBuffer.rewind();
+            channel.write(triggerBuffer);
+        }
+        
+        void arm() {
+            armed = true;
+            LockSupport.unpark(thread);
+        }
+        
+        @Override
+        public void run() {
+            while (running) {
+                if (!armed) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                
+                try {
+                    receiveRound();
+                } catch (IOException | ClosedSelectorException e) {
+                    if (running) {
+                        Log.w(TAG, "Flow " + slot + " receive failed", e);
+                    }
+                } finally {
+                    armed = false;
+                    activeFlows.decrementAndGet();
+                    LockSupport.unpark(roundThread);
+                }
+            }
+            // 接收线程退出后不会再访问缓冲区
+            context.getDatagramBufferPool().release(rcvBuffer);
+        }
+        
+        /**
+         * 接收直到空闲超时或本轮截止时间
+         */
+        private void receiveRound() throws IOException {
+            long now = System.nanoTime();
+            long lastActivity = now;
+            firstPacketNanos = 0;
+            lastPacketNanos = 0;
+            if (tracker != null) {
+                tracker.beginWindow(SOCKET_RECEIVE_BUFFER / PACKET_SIZE);
+            }
+            
+            while (running && !isRoundExpired(now)) {
+                rcvBuffer.clear();
+                int length = channel.read(rcvBuffer);
+                now = System.nanoTime();
+                
+                if (length > 0) {
+                    flowBytes.add(slot, length);
+                    if (tracker != null) {
+                        tracker.onPacket(rcvBuffer, length, now);
+                    }
+                    if (firstPacketNanos == 0) {
+                        firstPacketNanos = now;
+                        if (!firstPacketArrived) {
+                            firstPacketArrived = true;
+                            LockSupport.unpark(roundThread);
+                        }
+                    }
+                    lastPacketNanos = now;
+                    lastActivity = now;
+                    continue;
+                }
+                
+                long idleRemaining = lastActivity + IDLE_TIMEOUT_NANOS - now;
+                if (idleRemaining <= 0) {
+                    return;
+                }
+                if (selector.select(Math.max(1, idleRemaining / 1_000_000L)) > 0) {
+                    selector.selectedKeys().clear();
+                }
+                now = System.nanoTime();
+            }
+        }
+        
+        void close() {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                selector.close();
+                channel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close flow " + slot, e);
+            }
+        }
+    }
+}
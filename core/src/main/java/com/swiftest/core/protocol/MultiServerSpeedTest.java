@@ -0,0 +1,292 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.MultiServerResult;
+import com.swiftest.core.models.PacketStats;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.models.TestResult;
+import com.swiftest.core.stats.QuantileSketch;
+import com.swiftest.core.stats.SampleRing;
+import com.swiftest.core.stats.ThroughputAggregator;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 多服务器并发测速
+ * 每台服务器各自运行一个SpeedTestProtocol（独立的WebSocketClient + 测量引擎），
+ * 所有实例共享同一个System.nanoTime()时间基准。每轮结束时把原始采样点提交给
+ * ThroughputAggregator，测试结束后按10ms时间槽对齐求和，得到单台服务器跑不满的
+ * 高带宽链路的真实总吞吐量。
+ */
+public class MultiServerSpeedTest {
+    
+    private static final String TAG = "MultiServerSpeedTest";
+    
+    // 对齐时间槽与滑动窗口，与UdpTester单轮速度计算的采样间隔/窗口保持一致
+    private static final int SLOT_MS = 10;
+    private static final int WINDOW_SLOTS = 5;
+    
+    private final SwiftestEngine context;
+    private final List<SpeedTestConfig> configs;
+    private final MultiServerCallback callback;
+    private final String testId;
+    
+    private final Object lock = new Object();
+    private final List<ServerSession> sessions = new ArrayList<>();
+    private ThroughputAggregator aggregator;
+    private Date startTime;
+    private int finishedCount = 0;
+    private volatile boolean isTestRunning = false;
+    
+    /**
+     * 多服务器测速回调接口
+     */
+    public interface MultiServerCallback {
+        /**
+         * 所有服务器的测速已启动
+         */
+        void onTestStarted();
+        
+        /**
+         * 某台服务器的测速进度更新
+         * @param serverIndex 服务器下标，与传入的配置顺序一致
+         * @param progress 进度百分比 (0-100)
+         * @param currentSpeed 当前速度
+         */
+        void onServerProgress(int serverIndex, int progress, float currentSpeed);
+        
+        /**
+         * 某台服务器测速结束（成功或失败）
+         * @param serverIndex 服务器下标
+         * @param result 该服务器的单独结果
+         */
+        void onServerCompleted(int serverIndex, TestResult result);
+        
+        /**
+         * 所有服务器均已结束
+         * @param result 合并结果
+         */
+        void onTestCompleted(MultiServerResult result);
+        
+        /**
+         * 所有服务器都失败时调用（在onTestCompleted之前）
+         * @param error 错误信息
+         */
+        default void onTestFailed(String error) {}
+    }
+    
+    /**
+     * @param configs 每台服务器一个配置，各服务器结果的testId为第一个配置的testId追加服务器下标
+     * @param callback 回调
+     */
+    public MultiServerSpeedTest(List<SpeedTestConfig> configs, MultiServerCallback callback) {
+        this(null, configs, callback);
+    }
+    
+    /**
+     * @param context 所有服务器会话共用的资源，null时按各配置的执行模式使用共享实例
+     * @param configs 每台服务器一个配置
+     * @param callback 回调
+     */
+    public MultiServerSpeedTest(SwiftestEngine context, List<SpeedTestConfig> configs, MultiServerCallback callback) {
+        if (configs == null || configs.isEmpty()) {
+            throw new IllegalArgumentException("At least one server config is required");
+        }
+        this.context = context;
+        this.configs = new ArrayList<>(configs);
+        this.callback = callback;
+        // SDK模式的配置可以不带testId，在这里生成，避免结束时构建合并结果失败
+        String id = configs.get(0).getTestId();
+        this.testId = id != null && !id.trim().isEmpty() ? id : "multi_" + System.currentTimeMillis();
+    }
+    
+    /**
+     * 同时启动所有服务器的测速
+     */
+    public void startSpeedTest() {
+        synchronized (lock) {
+            if (isTestRunning) {
+                Log.w(TAG, "Multi-server test is already running");
+                return;
+            }
+            isTestRunning = true;
+            finishedCount = 0;
+            sessions.clear();
+            startTime = new Date();
+            // 公共时间基准，所有服务器的采样点都以此对齐
+            aggregator = new ThroughputAggregator(configs.size(), System.nanoTime(), SLOT_MS, WINDOW_SLOTS);
+            
+            for (int i = 0; i < configs.size(); i++) {
+                ServerSession session = new ServerSession(i, configs.get(i));
+                sessions.add(session);
+            }
+        }
+        
+        Log.d(TAG, "Starting multi-server test with " + configs.size() + " servers");
+        callback.onTestStarted();
+        for (ServerSession session : sessions) {
+            session.protocol.startSpeedTest();
+        }
+    }
+    
+    /**
+     * 停止所有服务器的测速
+     */
+    public void stopSpeedTest() {
+        List<ServerSession> running;
+        synchronized (lock) {
+            if (!isTestRunning) {
+                return;
+            }
+            isTestRunning = false;
+            running = new ArrayList<>(sessions);
+        }
+        
+        for (ServerSession session : running) {
+            session.protocol.stopSpeedTest();
+        }
+        Log.d(TAG, "Multi-server test stopped");
+    }
+    
+    public boolean isTestRunning() {
+        return isTestRunning;
+    }
+    
+    /**
+     * 单台服务器结束，全部结束后计算合并结果
+     */
+    private void onServerFinished(ServerSession session, TestResult result) {
+        MultiServerResult combined = null;
+        synchronized (lock) {
+            if (session.result != null) {
+                return;
+            }
+            session.result = result;
+            finishedCount++;
+            if (finishedCount == sessions.size() && isTestRunning) {
+                isTestRunning = false;
+                combined = buildCombinedResult();
+            }
+        }
+        
+        callback.onServerCompleted(session.index, result);
+        if (combined != null) {
+            Log.d(TAG, combined.toString());
+            if (combined.getSuccessfulServers() == 0) {
+                callback.onTestFailed("All servers failed");
+            }
+            callback.onTestCompleted(combined);
+        }
+    }
+    
+    /**
+     * 按对齐时间槽计算合并速度，调用时已持有lock
+     */
+    private MultiServerResult buildCombinedResult() {
+        QuantileSketch sketch = new QuantileSketch();
+        long concurrentNanos = aggregator.aggregate(sketch);
+        
+        MultiServerResult.Builder builder = new MultiServerResult.Builder()
+                .testId(testId)
+                .startTime(startTime)
+                .endTime(new Date())
+                .concurrentDuration(concurrentNanos / 1_000_000L)
+                .combinedSamples((int) sketch.getCount())
+                .combinedServers(aggregator.getActiveSourceCount());
+        if (sketch.getCount() > 0) {
+            builder.combinedSpeed(sketch.quantile(0.95))
+                    .combinedMedianSpeed(sketch.quantile(0.5));
+        }
+        for (ServerSession session : sessions) {
+            builder.addServerResult(session.result);
+        }
+        return builder.build();
+    }
+    
+    /**
+     * 单台服务器的测速会话
+     */
+    private final class ServerSession implements SpeedTestProtocol.ProtocolCallback {
+        
+        final int index;
+        final SpeedTestConfig config;
+        final SpeedTestProtocol protocol;
+        final Date sessionStart = new Date();
+        
+        volatile PacketStats packetStats;
+        volatile int rounds = 0;
+        TestResult result;
+        
+        ServerSession(int index, SpeedTestConfig config) {
+            this.index = index;
+            this.config = config;
+            this.protocol = context != null
+                    ? new SpeedTestProtocol(context, config, this)
+                    : new SpeedTestProtocol(config, this);
+        }
+        
+        @Override
+        public void onTestStarted() {
+            Log.d(TAG, "Server " + index + " (" + config.getServerHost() + ") started");
+        }
+        
+        @Override
+        public void onProgressUpdate(int progress, float currentSpeed) {
+            callback.onServerProgress(index, progress, currentSpeed);
+        }
+        
+        @Override
+        public void onRoundSamples(SampleRing samples, long roundStartNanos) {
+            rounds++;
+            synchronized (lock) {
+                aggregator.addRound(index, samples, roundStartNanos);
+            }
+        }
+        
+        @Override
+        public void onPacketStats(PacketStats round, PacketStats unsaturated, PacketStats saturated) {
+            packetStats = unsaturated;
+        }
+        
+        @Override
+        public void onTestCompleted(float downloadSpeed, double traffic) {
+            onServerFinished(this, newResultBuilder()
+                    .downloadSpeed(downloadSpeed)
+                    .totalTraffic(traffic)
+                    .totalBytes((long) (traffic * 1024 * 1024))
+                    .successful(true)
+                    .build());
+        }
+        
+        @Override
+        public void onTestFailed(String error) {
+            onServerFinished(this, newResultBuilder()
+                    .successful(false)
+                    .errorMessage(error)
+                    .build());
+        }
+        
+        @Override
+        public void onNetworkIssue(int issueType) {
+            Log.w(TAG, "Server " + index + " network issue: " + issueType);
+        }
+        
+        private TestResult.Builder newResultBuilder() {
+            return new TestResult.Builder()
+                    .testId(testId + "-" + index)
+                    .startTime(sessionStart)
+                    .endTime(new Date())
+                    .serverHost(protocol.getServerHost())
+                    .serverPort(config.getWebSocketPort())
+                    .testLoops(rounds)
+                    .engine(protocol.getEngineName())
+                    .handoff(protocol.getHandoffStats())
+                    .timeToFirstByte(protocol.getTimeToFirstByteMs())
+                    .warmStartSpeed(protocol.getWarmStartSpeed())
+                    .packetStats(packetStats);
+        }
+    }
+}
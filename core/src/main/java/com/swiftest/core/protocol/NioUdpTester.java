@@ -0,0 +1,184 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.interfaces.UdpTestCallback;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.SpeedTestConfig;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * 基于NIO DatagramChannel的UDP接收引擎
+ * 与UdpTester共享触发、采样、饱和判断流程，仅替换Socket收发部分：
+ * - 复用同一个direct ByteBuffer，每个包不产生任何对象分配
+ * - 非阻塞读取 + Selector空闲等待，轮次结束不依赖SocketTimeoutException
+ * - 接收循环中没有synchronized，轮次时长通过nanoTime截止时间判断
+ */
+public class NioUdpTester extends UdpTester {
+    
+    private static final String TAG = "NioUdpTester";
+    
+    private volatile DatagramChannel channel;
+    private volatile Selector selector;
+    private ByteBuffer rcvBuffer;
+    private ByteBuffer triggerBuffer;
+    
+    public NioUdpTester(String serverHost, int udpPort, UdpTestCallback callback) {
+        super(serverHost, udpPort, callback);
+    }
+    
+    public NioUdpTester(SpeedTestConfig config, int udpPort, UdpTestCallback callback) {
+        super(config, udpPort, callback);
+    }
+    
+    public NioUdpTester(SwiftestEngine context, SpeedTestConfig config, int udpPort, UdpTestCallback callback) {
+        super(context, config, udpPort, callback);
+    }
+    
+    /**
+     * 初始化DatagramChannel
+     * 服务器从触发包的目的端口回包（NAT打洞依赖于此），因此可以直接connect，
+     * 之后使用read()而不是receive()，避免每个包创建发送方地址对象
+     */
+    @Override
+    protected void initializeSocket() throws IOException {
+        serverAddress = resolveServerAddress();
+        
+        channel = openChannel();
+        channel.configureBlocking(false);
+        channel.connect(new InetSocketAddress(serverAddress, udpPort));
+        
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        
+        rcvBuffer = context.getDatagramBufferPool().acquire();
+        triggerBuffer = ByteBuffer.allocateDirect(TRIGGER_PAYLOAD.length);
+        triggerBuffer.put(TRIGGER_PAYLOAD).flip();
+        
+        Log.d(TAG, "UDP channel initialized for " + serverHost + ":" + udpPort);
+    }
+    
+    @Override
+    protected void sendTrigger() throws IOException {
+        triggerBuffer.rewind();
+        channel.write(triggerBuffer);
+    }
+    
+    @Override
+    protected void sendProbe(ByteBuffer probe) throws IOException {
+        channel.write(probe);
+    }
+    
+    @Override
+    protected int getReceiveBufferSize() throws IOException {
+        return channel.getOption(StandardSocketOptions.SO_RCVBUF);
+    }
+    
+    @Override
+    protected int receiveProbe(ByteBuffer dst, long timeoutNanos) throws IOException {
+        return readInto(channel, selector, dst, System.nanoTime() + timeoutNanos);
+    }
+    
+    @Override
+    protected boolean receiveFirstPacket() throws IOException {
+        long idleDeadline = System.nanoTime() + SOCKET_TIMEOUT_MS * 1_000_000L;
+        int length = readPacket(idleDeadline);
+        if (length < 0) {
+            return false;
+        }
+        addReceivedBytes(length);
+        if (sequenceTracker != null) {
+            sequenceTracker.onPacket(rcvBuffer, length, System.nanoTime());
+        }
+        return true;
+    }
+    
+    @Override
+    protected void receivePacketsUntilTimeout() throws IOException {
+        long now = System.nanoTime();
+        while (!isRoundExpired(now)) {
+            int length = readPacket(now + SOCKET_TIMEOUT_MS * 1_000_000L);
+            if (length < 0) {
+                // 空闲超过SOCKET_TIMEOUT_MS，本轮结束
+                return;
+            }
+            addReceivedBytes(length);
+            now = System.nanoTime();
+            if (sequenceTracker != null) {
+                sequenceTracker.onPacket(rcvBuffer, length, now);
+            }
+        }
+        Log.d(TAG, "Receive timeout - round duration reached");
+    }
+    
+    /**
+     * 读取一个数据报到rcvBuffer
+     */
+    private int readPacket(long idleDeadline) throws IOException {
+        return readInto(channel, selector, rcvBuffer, idleDeadline);
+    }
+    
+    /**
+     * 读取一个数据报到buffer，无数据时通过Selector等待，直到idleDeadline
+     * @return 数据报长度，超时或通道关闭时返回-1
+     */
+    static int readInto(DatagramChannel ch, Selector sel, ByteBuffer buffer, long idleDeadline) throws IOException {
+        if (ch == null || sel == null) {
+            return -1;
+        }
+        
+        while (true) {
+            buffer.clear();
+            int length = ch.read(buffer);
+            if (length > 0) {
+                return length;
+            }
+            
+            long remaining = idleDeadline - System.nanoTime();
+            if (remaining <= 0) {
+                return -1;
+            }
+            
+            // 这次read没有读到数据时才进入select，满速接收时大多数read直接返回数据报；
+            // 等待时间向上取整到毫秒，不足1ms的剩余时间不会变成select(0)（无限等待）或空转
+            if (sel.select((remaining + 999_999L) / 1_000_000L) > 0) {
+                sel.selectedKeys().clear();
+            }
+        }
+    }
+    
+    @Override
+    protected void releaseBuffers() {
+        if (rcvBuffer != null) {
+            context.getDatagramBufferPool().release(rcvBuffer);
+            rcvBuffer = null;
+        }
+    }
+    
+    @Override
+    protected void closeSocket() {
+        try {
+            if (selector != null) {
+                selector.close();
+                selector = null;
+            }
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close UDP channel", e);
+        }
+    }
+    
+    @Override
+    public String getEngineName() {
+        return "udp-nio";
+    }
+}
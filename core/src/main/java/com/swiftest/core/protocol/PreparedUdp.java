@@ -0,0 +1,166 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.exec.BufferPool;
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.exec.Threads;
+import com.swiftest.core.interfaces.MeasurementEngine;
+import com.swiftest.core.interfaces.PreparedSockets;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.SpeedTestConfig;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 快速启动时预先准备的UDP资源
+ * WebSocket握手期间在后台线程解析服务器地址（写入context的地址缓存）、打开（未连接的）测速Socket并预热接收缓冲区池，
+ * 收到udp_port后测量引擎直接取用，创建引擎到发出第一个触发包之间不再有DNS和Socket创建的耗时。
+ * 按配置预测将要使用的引擎准备对应的Socket：阻塞引擎一个DatagramSocket，NIO引擎一个DatagramChannel，
+ * 多流引擎flows个DatagramChannel；自定义引擎只解析地址。
+ * 引擎取走的Socket归引擎所有，close()只关闭未被取走的Socket。
+ */
+public final class PreparedUdp implements PreparedSockets {
+    
+    private static final String TAG = "PreparedUdp";
+    
+    // 地址解析和Socket准备的最长等待时间，超时后引擎按原流程自行准备
+    private static final long AWAIT_TIMEOUT_MS = 5000;
+    
+    private final String serverHost;
+    private final CountDownLatch ready = new CountDownLatch(1);
+    
+    // 取用和关闭在this上同步
+    private DatagramSocket socket;
+    private final ArrayDeque<DatagramChannel> channels = new ArrayDeque<>();
+    private boolean closed = false;
+    private volatile long readyNanos = 0;
+    
+    private PreparedUdp(String serverHost) {
+        this.serverHost = serverHost;
+    }
+    
+    /**
+     * 在后台线程开始准备，立即返回
+     */
+    public static PreparedUdp start(SwiftestEngine context, SpeedTestConfig config) {
+        PreparedUdp prepared = new PreparedUdp(config.getServerHost());
+        Threads.newThread(config.getExecutionMode(), "SwiftestFastStart",
+                () -> prepared.prepare(context, config), true).start();
+        return prepared;
+    }
+    
+    private void prepare(SwiftestEngine context, SpeedTestConfig config) {
+        try {
+            context.getDnsCache().resolve(serverHost);
+            
+            MeasurementEngine.Factory factory = config.getEngineFactory();
+            if (factory == null) {
+                factory = MeasurementEngines.select(config, config.getFlows());
+            }
+            int channelCount = 0;
+            if (factory == MeasurementEngines.BLOCKING) {
+                offerSocket(new DatagramSocket());
+            } else if (factory == MeasurementEngines.NIO) {
+                channelCount = 1;
+            } else if (factory == MeasurementEngines.MULTI_FLOW) {
+                channelCount = config.getFlows();
+            }
+            for (int i = 0; i < channelCount; i++) {
+                offerChannel(DatagramChannel.open());
+            }
+            warmBuffers(context.getDatagramBufferPool(), channelCount);
+        } catch (IOException e) {
+            // 失败时引擎按原流程自行解析和创建，错误在那时报告
+            Log.w(TAG, "Fast start preparation failed for " + serverHost, e);
+        } finally {
+            readyNanos = System.nanoTime();
+            ready.countDown();
+        }
+    }
+    
+    /**
+     * 预先分配引擎将要借用的direct缓冲区并放回池中
+     */
+    private static void warmBuffers(BufferPool pool, int count) {
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = pool.acquire();
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+    }
+    
+    private synchronized void offerSocket(DatagramSocket prepared) {
+        if (closed) {
+            prepared.close();
+            return;
+        }
+        socket = prepared;
+    }
+    
+    private synchronized void offerChannel(DatagramChannel prepared) throws IOException {
+        if (closed) {
+            prepared.close();
+            return;
+        }
+        channels.add(prepared);
+    }
+    
+    @Override
+    public boolean awaitReady() throws IOException {
+        try {
+            if (!ready.await(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Fast start preparation timed out");
+                return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for fast start", e);
+        }
+    }
+    
+    @Override
+    public synchronized DatagramSocket takeSocket() {
+        DatagramSocket taken = socket;
+        socket = null;
+        return taken;
+    }
+    
+    @Override
+    public synchronized DatagramChannel takeChannel() {
+        return channels.poll();
+    }
+    
+    /**
+     * 准备完成的时刻（System.nanoTime()），尚未完成时为0
+     */
+    public long getReadyNanos() {
+        return readyNanos;
+    }
+    
+    /**
+     * 关闭未被取走的Socket，准备线程之后打开的Socket也会立即关闭，可重复调用
+     */
+    public synchronized void close() {
+        closed = true;
+        if (socket != null) {
+            socket.close();
+            socket = null;
+        }
+        DatagramChannel channel;
+        while ((channel = channels.poll()) != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close prepared channel", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.PacketStats;
+
+/**
+ * 客户端速率搜索控制器
+ * 服务器默认按固定步长爬升发送速率，高速链路上需要5~10轮才能饱和。
+ * 控制器根据每轮结果给出下一轮的建议速率，随continue/repeat消息发送给服务器：
+ * - 探测阶段：尚未饱和时按指数倍率放大，直到出现第一次饱和
+ * - 二分阶段：在"最高未饱和速率"和"最低饱和速率"之间二分，使发送速率收敛到略高于
+ *   链路容量的位置，既保证饱和又避免过量发送浪费流量
+ * - 丢包信号：未饱和但丢包率偏高时说明已接近瓶颈，改用较小的放大倍率
+ * 服务器忽略建议速率时，控制器只记录日志，流程退回到原有的服务器爬升逻辑。
+ */
+public class RateController {
+    
+    private static final String TAG = "RateController";
+    
+    // 与UdpTester保持一致：rcv * SATURATED_THRESHOLD < send 视为饱和
+    private static final float SATURATED_THRESHOLD = 1.2f;
+    // 探测阶段的放大倍率
+    private static final float PROBE_GROWTH = 4.0f;
+    // 丢包偏高时的放大倍率
+    private static final float CAUTIOUS_GROWTH = 1.5f;
+    // 丢包率高于该值时认为已接近瓶颈
+    private static final float LOSS_THRESHOLD = 0.02f;
+    // 饱和后目标发送速率相对接收速率的余量，需大于SATURATED_THRESHOLD以保持饱和
+    private static final float SATURATION_HEADROOM = 1.3f;
+    // 二分区间相对宽度小于该值时不再调整
+    private static final float BISECT_RESOLUTION = 0.1f;
+    
+    private final int minSpeed;
+    private final int maxSpeed;
+    
+    private int highestUnsaturated = 0;       // 最高未饱和发送速率
+    private int lowestSaturated = 0;          // 最低饱和发送速率
+    private int lastProposal = 0;             // 上一次发送的建议速率
+    private boolean serverHonorsProposal = false;
+    
+    private float roundLossRate = 0;
+    
+    /**
+     * @param minSpeed 建议速率下限 (Mbps)
+     * @param maxSpeed 建议速率上限 (Mbps)
+     */
+    public RateController(int minSpeed, int maxSpeed) {
+        this.minSpeed = minSpeed;
+        this.maxSpeed = maxSpeed;
+    }
+    
+    /**
+     * 服务器下发本轮实际发送速率时调用
+     * @param sendSpeed 服务器本轮发送速率 (Mbps)
+     */
+    public void onRoundStart(int sendSpeed) {
+        if (lastProposal > 0) {
+            serverHonorsProposal = sendSpeed == lastProposal;
+            if (!serverHonorsProposal) {
+                Log.d(TAG, "Server ignored proposal " + lastProposal + ", using " + sendSpeed);
+            }
+        }
+    }
+    
+    /**
+     * 本轮接收时段内的传输质量统计
+     */
+    public void onPacketStats(PacketStats round) {
+        roundLossRate = round.getLossRate();
+    }
+    
+    /**
+     * 一轮结束后计算下一轮的建议速率
+     * @param sendSpeed 本轮发送速率 (Mbps)
+     * @param rcvSpeed 本轮接收速率 (Mbps)
+     * @param saturated 本轮是否饱和
+     * @return 下一轮建议速率 (Mbps)
+     */
+    public int onRoundComplete(int sendSpeed, float rcvSpeed, boolean saturated) {
+        int next;
+        if (saturated) {
+            if (lowestSaturated == 0 || sendSpeed < lowestSaturated) {
+                lowestSaturated = sendSpeed;
+            }
+            next = bisect(rcvSpeed, sendSpeed);
+        } else {
+            highestUnsaturated = Math.max(highestUnsaturated, sendSpeed);
+            if (lowestSaturated > 0) {
+                // 曾经饱和过，在区间内二分
+                next = (highestUnsaturated + lowestSaturated + 1) / 2;
+            } else {
+                float growth = roundLossRate > LOSS_THRESHOLD ? CAUTIOUS_GROWTH : PROBE_GROWTH;
+                next = (int) Math.ceil(Math.max(sendSpeed, rcvSpeed) * growth);
+            }
+        }
+        
+        lastProposal = clamp(next);
+        Log.d(TAG, "Round send=" + sendSpeed + " rcv=" + rcvSpeed + " saturated=" + saturated
+                + " loss=" + roundLossRate + " -> propose " + lastProposal
+                + " [" + highestUnsaturated + ", " + lowestSaturated + "]");
+        return lastProposal;
+    }
+    
+    /**
+     * 已饱和：发送速率远高于接收速率时向下二分，但不低于 接收速率 * SATURATION_HEADROOM
+     */
+    private int bisect(float rcvSpeed, int sendSpeed) {
+        int floor = (int) Math.ceil(rcvSpeed * SATURATION_HEADROOM);
+        int lower = Math.max(highestUnsaturated, floor);
+        if (sendSpeed <= lower || sendSpeed - lower <= sendSpeed * BISECT_RESOLUTION) {
+            return sendSpeed;
+        }
+        return Math.max(floor, (lower + sendSpeed + 1) / 2);
+    }
+    
+    private int clamp(int speed) {
+        return Math.max(minSpeed, Math.min(maxSpeed, speed));
+    }
+    
+    /**
+     * 服务器是否按建议速率发送了最近一轮
+     */
+    public boolean isServerHonoringProposal() {
+        return serverHonorsProposal;
+    }
+    
+    public int getLastProposal() {
+        return lastProposal;
+    }
+}
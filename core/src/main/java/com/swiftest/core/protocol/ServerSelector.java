@@ -0,0 +1,261 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.exec.Threads;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.LatencyStats;
+import com.swiftest.core.models.ServerScore;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.stats.RttRecorder;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 测速前的服务器选择
+ * 对所有候选服务器并行探测时延，在全局截止时间内按RTT和丢包排序，选出最近的服务器：
+ * - 配置了udpPort（> 0）的候选使用UDP回显探测（与latencyProbe相同的格式，约300ms）。会话UDP端口只在握手协商echo之后回显，
+ *   udpPort必须是服务器不依赖会话的固定回显端口（参考服务端的--echo-port）
+ * - 其余候选以及UDP没有回显的候选对WebSocket端口做几次TCP连接，以握手时间作为RTT，连接失败或超时计为丢失；
+ *   这些连接在服务器上表现为建立后立即关闭的WebSocket会话
+ * 评分为 RTT中位数 × (1 + LOSS_PENALTY × 丢包率)，截止时仍未完成或全部探测失败的候选排在最后。
+ * 排序结果按候选集合缓存，有效期内重复测试不再探测。
+ */
+public final class ServerSelector {
+    
+    private static final String TAG = "ServerSelector";
+    
+    /**
+     * 默认的排序缓存有效期
+     */
+    public static final long DEFAULT_CACHE_TTL_MILLIS = 10 * 60_000L;
+    
+    private static final int TCP_PINGS = 4;
+    private static final long TCP_PING_TIMEOUT_MILLIS = 1000;
+    // 丢包对评分的加权：10%的丢包相当于RTT翻倍
+    private static final float LOSS_PENALTY = 10f;
+    
+    private final SwiftestEngine context;
+    private final long cacheTtlMillis;
+    private final ConcurrentHashMap<String, Ranking> rankings = new ConcurrentHashMap<>();
+    
+    /**
+     * @param context 提供地址缓存和线程执行模式
+     */
+    public ServerSelector(SwiftestEngine context) {
+        this(context, DEFAULT_CACHE_TTL_MILLIS);
+    }
+    
+    /**
+     * @param cacheTtlMillis 排序结果的有效期，0表示不缓存
+     */
+    public ServerSelector(SwiftestEngine context, long cacheTtlMillis) {
+        this.context = context;
+        this.cacheTtlMillis = Math.max(0, cacheTtlMillis);
+    }
+    
+    /**
+     * 选出最佳服务器，阻塞到探测完成或截止时间
+     * @param candidates 候选服务器，按主机名和WebSocket端口区分，见SpeedTestConfig.getServerCandidates()
+     * @return 最佳服务器的配置，全部不可达时返回第一个候选
+     */
+    public SpeedTestConfig select(List<SpeedTestConfig> candidates, long deadlineMillis) {
+        List<ServerScore> ranking = rank(candidates, deadlineMillis);
+        ServerScore best = ranking.get(0);
+        for (SpeedTestConfig candidate : candidates) {
+            if (candidate.getServerHost().equals(best.getHost())
+                    && candidate.getWebSocketPort() == best.getWebSocketPort()) {
+                return candidate;
+            }
+        }
+        return candidates.get(0);
+    }
+    
+    /**
+     * 按评分从好到差排列候选服务器，有效期内直接返回缓存的排序
+     */
+    public List<ServerScore> rank(List<SpeedTestConfig> candidates, long deadlineMillis) {
+        if (candidates == null || candidates.isEmpty()) {
+            throw new IllegalArgumentException("At least one candidate server is required");
+        }
+        
+        String key = keyOf(candidates);
+        long now = System.nanoTime();
+        Ranking cached = rankings.get(key);
+        if (cached != null && now < cached.expiresAtNanos) {
+            return cached.scores;
+        }
+        
+        List<ServerScore> scores = probeAll(candidates, deadlineMillis);
+        if (cacheTtlMillis > 0 && scores.get(0).isReachable()) {
+            rankings.put(key, new Ranking(scores, now + TimeUnit.MILLISECONDS.toNanos(cacheTtlMillis)));
+        }
+        Log.d(TAG, "Server ranking: " + scores);
+        return scores;
+    }
+    
+    /**
+     * 丢弃缓存的排序，例如网络切换之后
+     */
+    public void invalidate() {
+        rankings.clear();
+    }
+    
+    /**
+     * 每个候选一个探测线程，截止时间到达时未完成的候选按不可达处理
+     */
+    private List<ServerScore> probeAll(List<SpeedTestConfig> candidates, long deadlineMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        AtomicReferenceArray<ServerScore> results = new AtomicReferenceArray<>(candidates.size());
+        CountDownLatch done = new CountDownLatch(candidates.size());
+        
+        for (int i = 0; i < candidates.size(); i++) {
+            int index = i;
+            SpeedTestConfig candidate = candidates.get(i);
+            Threads.newThread(context.getExecutionMode(), "ServerProbe-" + i, () -> {
+                try {
+                    results.set(index, score(candidate, probe(candidate, deadline)));
+                } finally {
+                    done.countDown();
+                }
+            }, true).start();
+        }
+        
+        try {
+            done.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        List<ServerScore> scores = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            ServerScore result = results.get(i);
+            scores.add(result != null ? result : score(candidates.get(i), LatencyStats.EMPTY));
+        }
+        // 稳定排序，评分相同（都不可达）时保持候选顺序
+        Collections.sort(scores, Comparator.comparingDouble(ServerScore::getScore));
+        return scores;
+    }
+    
+    private static ServerScore score(SpeedTestConfig candidate, LatencyStats latency) {
+        float score = latency.isValid()
+                ? latency.getMedianMs() * (1 + LOSS_PENALTY * latency.getLossRate())
+                : Float.MAX_VALUE;
+        return new ServerScore(candidate.getServerHost(), candidate.getWebSocketPort(), latency, score);
+    }
+    
+    private LatencyStats probe(SpeedTestConfig candidate, long deadline) {
+        InetAddress address;
+        try {
+            address = context.getDnsCache().resolveFirst(candidate.getServerHost());
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot resolve " + candidate.getServerHost(), e);
+            return LatencyStats.EMPTY;
+        }
+        
+        if (candidate.getUdpPort() > 0) {
+            LatencyStats udp = probeUdp(address, candidate.getUdpPort(), deadline);
+            if (udp.isValid()) {
+                return udp;
+            }
+            // 服务器不回显时退回TCP
+        }
+        return probeTcp(address, candidate.getWebSocketPort(), deadline);
+    }
+    
+    /**
+     * UDP回显探测，复用LatencyProber
+     */
+    private static LatencyStats probeUdp(InetAddress address, int port, long deadline) {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.connect(address, port);
+            DatagramPacket packet = new DatagramPacket(new byte[UdpTester.PACKET_SIZE], UdpTester.PACKET_SIZE);
+            return new LatencyProber().measure(new LatencyProber.Transport() {
+                @Override
+                public void send(ByteBuffer probe) throws IOException {
+                    socket.send(new DatagramPacket(probe.array(), probe.position(), probe.remaining()));
+                }
+                
+                @Override
+                public int receive(ByteBuffer dst, long timeoutNanos) throws IOException {
+                    long remaining = Math.min(timeoutNanos, deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    socket.setSoTimeout((int) Math.max(1, remaining / 1_000_000L));
+                    try {
+                        socket.receive(packet);
+                    } catch (SocketTimeoutException e) {
+                        return -1;
+                    }
+                    dst.clear();
+                    dst.put(packet.getData(), 0, Math.min(packet.getLength(), dst.remaining()));
+                    return packet.getLength();
+                }
+            });
+        } catch (IOException e) {
+            Log.w(TAG, "UDP probe to " + address + " failed", e);
+            return LatencyStats.EMPTY;
+        }
+    }
+    
+    /**
+     * 依次建立几次TCP连接，握手时间即RTT
+     */
+    private static LatencyStats probeTcp(InetAddress address, int port, long deadline) {
+        RttRecorder recorder = new RttRecorder();
+        InetSocketAddress target = new InetSocketAddress(address, port);
+        for (int i = 0; i < TCP_PINGS; i++) {
+            long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+            if (remainingMs <= 0) {
+                break;
+            }
+            recorder.onSent();
+            try (Socket socket = new Socket()) {
+                long start = System.nanoTime();
+                socket.connect(target, (int) Math.min(remainingMs, TCP_PING_TIMEOUT_MILLIS));
+                recorder.add((System.nanoTime() - start) / 1_000_000f);
+            } catch (IOException e) {
+                Log.d(TAG, "TCP ping to " + target + " failed: " + e.getMessage());
+            }
+        }
+        return recorder.snapshot();
+    }
+    
+    private static String keyOf(List<SpeedTestConfig> candidates) {
+        StringBuilder key = new StringBuilder();
+        for (SpeedTestConfig candidate : candidates) {
+            key.append(candidate.getServerHost()).append(':').append(candidate.getWebSocketPort())
+                    .append(':').append(candidate.getUdpPort()).append(',');
+        }
+        return key.toString();
+    }
+    
+    /**
+     * 一组候选的缓存排序
+     */
+    private static final class Ranking {
+        
+        final List<ServerScore> scores;
+        final long expiresAtNanos;
+        
+        Ranking(List<ServerScore> scores, long expiresAtNanos) {
+            this.scores = Collections.unmodifiableList(scores);
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
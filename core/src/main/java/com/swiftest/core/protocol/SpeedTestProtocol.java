@@ -1,13 +1,28 @@
 package com.swiftest.core.protocol;
 
-import android.util.Log;
-
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.exec.Threads;
+import com.swiftest.core.interfaces.MeasurementEngine;
 import com.swiftest.core.interfaces.UdpTestCallback;
+import com.swiftest.core.interfaces.UploadTestCallback;
 import com.swiftest.core.interfaces.WebSocketCallback;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.ConvergenceState;
+import com.swiftest.core.models.HandoffStats;
+import com.swiftest.core.models.LatencyStats;
+import com.swiftest.core.models.NetworkFingerprint;
+import com.swiftest.core.models.PacketStats;
+import com.swiftest.core.models.ServerScore;
+import com.swiftest.core.models.SpeedMetrics;
 import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.net.WarmStartCache;
+import com.swiftest.core.stats.SampleRing;
 
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * 统一的测速协议实现
  * 整合WebSocket和UDP的交互逻辑，提供完整的测速流程控制
@@ -18,17 +33,66 @@ public class SpeedTestProtocol {
     private static final String TAG = "SpeedTestProtocol";
     
     // 核心组件
-    private final SpeedTestConfig config;
+    private final SwiftestEngine context;
+    private final SpeedTestConfig requestedConfig;
+    // 本次测试实际使用的配置，带候选服务器时在选择完成后替换为最佳服务器
+    private volatile SpeedTestConfig config;
     private final ProtocolCallback protocolCallback;
     
     // WebSocket和UDP组件
     private WebSocketClient webSocketClient;
-    private UdpTester udpTester;
+    private MeasurementEngine engine;
+    private volatile String engineName = "";
+    private volatile HandoffStats handoffStats = HandoffStats.EMPTY;
+    private volatile SpeedMetrics speedMetrics = SpeedMetrics.EMPTY;
+    
+    // 快速启动：WebSocket握手期间准备的UDP资源，未开启fastStart或已改用TCP时为null
+    private PreparedUdp preparedUdp;
+    
+    // 启动阶段时间点 (System.nanoTime())，用于计算首字节时间
+    private long startNanos = 0;
+    private volatile long connectedNanos = 0;
+    private volatile long portNanos = 0;
+    private volatile float timeToFirstByteMs = 0;
+    
+    // 热启动：本次连接的网络指纹和握手中建议的起始速率，未开启或没有记录时为null/0
+    private volatile NetworkFingerprint networkFingerprint;
+    private volatile int warmStartSpeed = 0;
+    private RateController rateController;
+    private UdpUploadTester uploadTester;
+    private RateController uploadRateController;
+    
+    // 服务器选择：进行中的标志、结果，以及区分前后两次测试的序号（只在synchronized方法中访问）
+    private volatile boolean selectingServer = false;
+    private volatile ServerScore selectedServer;
+    private int testGeneration = 0;
     
     // 测速状态
     private volatile boolean isTestRunning = false;
+    private boolean holdsTestPermit = false; // 占用了context的并发测试名额，只在synchronized方法中访问
     private volatile boolean isConnected = false;
     private int currentUdpPort = 0;
+    private int[] currentUdpPorts;
+    private int currentSendSpeed = 0;
+    
+    // 服务器接受轮次内联控制，且引擎已启用
+    private volatile boolean inbandControl = false;
+    
+    // UDP被阻断时改用TCP
+    private volatile boolean usingTcp = false;
+    private volatile boolean awaitingTcpPort = false;
+    
+    // 上传阶段状态，下载结果暂存到上传结束后一起上报
+    private volatile boolean isUploading = false;
+    private volatile int currentUploadSpeed = 0;
+    private float downloadResult = 0;
+    private double downloadTraffic = 0;
+    
+    // 客户端建议速率的范围 (Mbps)
+    private static final int MIN_PROPOSED_SPEED = 1;
+    private static final int MAX_PROPOSED_SPEED = 10000;
+    // 上传第一轮的目标速率 (Mbps)，之后由RateController搜索
+    private static final int INITIAL_UPLOAD_SPEED = 10;
     
     /**
      * 协议回调接口，用于向上层通知测速进度和结果
@@ -39,6 +103,18 @@ public class SpeedTestProtocol {
          */
         void onTestStarted();
         
+        /**
+         * 测试前的服务器选择完成（仅在配置了candidateServers时调用），之后连接该服务器
+         * @param server 选中的服务器及其探测时延，所有候选都不可达时为serverHost且isReachable()为false
+         */
+        default void onServerSelected(ServerScore server) {}
+        
+        /**
+         * 收到第一轮的第一个数据包
+         * @param ttfbMs 从startSpeedTest()到首包的时间 (ms)，包含WebSocket握手、端口分配和触发
+         */
+        default void onFirstByte(float ttfbMs) {}
+        
         /**
          * 测速进度更新
          * @param progress 进度百分比 (0-100)
@@ -64,9 +140,76 @@ public class SpeedTestProtocol {
          * @param issueType 1=发送超时, 2=接收超时, 3=连接失败
          */
         void onNetworkIssue(int issueType);
+        
+        /**
+         * 测速前的空载时延（仅在开启latencyProbe时调用）
+         * @param stats RTT统计
+         */
+        default void onLatencyMeasured(LatencyStats stats) {}
+        
+        /**
+         * 每轮的空载/负载时延（仅在开启loadedLatencyProbe时调用）
+         * @param idle 空载时延（会话累计）
+         * @param roundLoaded 本轮负载时延
+         * @param totalLoaded 所有轮次累计的负载时延
+         */
+        default void onLoadedLatency(LatencyStats idle, LatencyStats roundLoaded, LatencyStats totalLoaded) {}
+        
+        /**
+         * 每轮的传输质量统计（仅在开启sequencedPayload时调用）
+         * @param round 本轮接收时段内的丢包、乱序、重复和抖动统计
+         * @param unsaturated 未饱和轮次的累计统计，反映链路本身的丢包
+         * @param saturated 饱和轮次的累计统计，丢包主要来自服务器有意超发
+         */
+        default void onPacketStats(PacketStats round, PacketStats unsaturated, PacketStats saturated) {}
+        
+        /**
+         * 多流模式下各流本轮的平均速度
+         * @param flowSpeeds 各流速度 (Mbps)
+         */
+        default void onFlowBreakdown(float[] flowSpeeds) {}
+        
+        /**
+         * UDP触发超时，改用多连接TCP测速
+         */
+        default void onTcpFallback() {}
+        
+        /**
+         * 下载结束、开始上传测速（仅在开启uploadTest时调用）
+         */
+        default void onUploadStarted() {}
+        
+        /**
+         * 上传测速进度更新
+         * @param progress 进度百分比 (0-100)
+         * @param currentSpeed 当前上传速度
+         */
+        default void onUploadProgress(int progress, float currentSpeed) {}
+        
+        /**
+         * 上传测速完成，在onTestCompleted之前调用
+         * @param uploadSpeed 最终上传速度，服务器不支持上传时不会调用
+         */
+        default void onUploadCompleted(float uploadSpeed) {}
+        
+        /**
+         * 每轮的原始采样点，采样环只在回调期间有效
+         * @param samples 本轮采样点 (System.nanoTime(), 本轮累计字节数)
+         * @param roundStartNanos 本轮起点
+         */
+        default void onRoundSamples(SampleRing samples, long roundStartNanos) {}
     }
     
     public SpeedTestProtocol(SpeedTestConfig config, ProtocolCallback callback) {
+        this(SwiftestEngine.shared(config.getExecutionMode()), config, callback);
+    }
+    
+    /**
+     * @param context 共享的HTTP客户端、定时器、缓冲区池和并发测试上限
+     */
+    public SpeedTestProtocol(SwiftestEngine context, SpeedTestConfig config, ProtocolCallback callback) {
+        this.context = context;
+        this.requestedConfig = config;
         this.config = config;
         this.protocolCallback = callback;
     }
@@ -80,15 +223,86 @@ public class SpeedTestProtocol {
             return;
         }
         
+        if (!context.tryAcquireTest()) {
+            Log.w(TAG, "Concurrent test limit reached: " + context.getMaxConcurrentTests());
+            protocolCallback.onTestFailed("Too many concurrent tests (limit " + context.getMaxConcurrentTests() + ")");
+            return;
+        }
+        holdsTestPermit = true;
+        
         Log.d(TAG, "Starting speed test");
         isTestRunning = true;
+        currentSendSpeed = 0;
+        usingTcp = false;
+        inbandControl = false;
+        engineName = "";
+        handoffStats = HandoffStats.EMPTY;
+        speedMetrics = SpeedMetrics.EMPTY;
+        awaitingTcpPort = false;
+        startNanos = System.nanoTime();
+        connectedNanos = 0;
+        portNanos = 0;
+        timeToFirstByteMs = 0;
+        networkFingerprint = null;
+        warmStartSpeed = 0;
+        config = requestedConfig;
+        selectedServer = null;
+        int generation = ++testGeneration;
+        rateController = config.isClientRateControl()
+                ? new RateController(MIN_PROPOSED_SPEED, MAX_PROPOSED_SPEED) : null;
         protocolCallback.onTestStarted();
         
+        if (requestedConfig.hasServerCandidates()) {
+            // 探测最长阻塞serverSelectionTimeout，不占用调用线程
+            selectingServer = true;
+            Threads.newThread(requestedConfig.getExecutionMode(), "SwiftestServerSelect",
+                    () -> selectServer(generation), true).start();
+            return;
+        }
+        connect();
+    }
+    
+    /**
+     * 并行探测候选服务器，选出最佳服务器后继续连接
+     */
+    private void selectServer(int generation) {
+        List<SpeedTestConfig> candidates = requestedConfig.getServerCandidates();
+        List<ServerScore> ranking = context.getServerSelector()
+                .rank(candidates, requestedConfig.getServerSelectionTimeoutMillis());
+        ServerScore best = ranking.get(0);
+        
+        synchronized (this) {
+            selectingServer = false;
+            if (!isTestRunning || generation != testGeneration) {
+                return;
+            }
+            selectedServer = best;
+            config = requestedConfig.forServer(best.getHost());
+            Log.d(TAG, "Selected server " + best);
+        }
+        protocolCallback.onServerSelected(best);
+        
+        synchronized (this) {
+            if (isTestRunning && generation == testGeneration) {
+                connect();
+            }
+        }
+    }
+    
+    /**
+     * 连接config中的服务器
+     */
+    private void connect() {
+        // 与WebSocket握手并行解析服务器地址、打开测速Socket
+        if (config.isFastStart()) {
+            preparedUdp = PreparedUdp.start(context, config);
+        }
+        
         // 创建WebSocket客户端
         createWebSocketClient();
         
         // 启动WebSocket连接
-        webSocketClient.start();
+        webSocketClient.connect();
     }
     
     /**
@@ -102,29 +316,43 @@ public class SpeedTestProtocol {
         Log.d(TAG, "Stopping speed test");
         isTestRunning = false;
         isConnected = false;
+        isUploading = false;
         
-        // 停止UDP测试
-        if (udpTester != null) {
-            udpTester.stopTest();
+        // 停止上传测试（可能由上传线程自身的回调触发，此时不能join自己）
+        if (uploadTester != null) {
+            uploadTester.stopTest();
             try {
-                udpTester.join(1000); // 等待最多1秒
+                uploadTester.awaitTermination(1000);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
-            udpTester = null;
+            uploadTester = null;
         }
         
-        // 停止WebSocket连接
-        if (webSocketClient != null) {
-            webSocketClient.stopConnection();
+        // 停止测量引擎
+        if (engine != null) {
+            engine.stopTest();
             try {
-                webSocketClient.join(1000); // 等待最多1秒
+                engine.awaitTermination(1000); // 等待最多1秒
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
+            handoffStats = engine.getHandoffStats();
+            engine = null;
+        }
+        closePreparedUdp();
+        
+        // 停止WebSocket连接
+        if (webSocketClient != null) {
+            webSocketClient.stopConnection();
             webSocketClient = null;
         }
         
+        if (holdsTestPermit) {
+            holdsTestPermit = false;
+            context.releaseTest();
+        }
+        
         Log.d(TAG, "Speed test stopped");
     }
     
@@ -136,7 +364,11 @@ public class SpeedTestProtocol {
             @Override
             public void onConnected() {
                 Log.d(TAG, "WebSocket connected");
+                connectedNanos = System.nanoTime();
                 isConnected = true;
+                if (config.isWarmStart()) {
+                    applyWarmStart();
+                }
             }
             
             @Override
@@ -144,7 +376,8 @@ public class SpeedTestProtocol {
                 Log.e(TAG, "WebSocket connection failed: " + error);
                 protocolCallback.onNetworkIssue(3);
                 protocolCallback.onTestFailed("Connection failed: " + error);
-                isTestRunning = false;
+                // 释放测量引擎和并发名额，连接中途断开时引擎可能已经在运行
+                stopSpeedTest();
             }
             
             @Override
@@ -153,22 +386,53 @@ public class SpeedTestProtocol {
                 // 这个回调可以用于调试或扩展功能
             }
             
+            @Override
+            public void onUdpControlAccepted() {
+                Log.d(TAG, "Server accepted in-band round control");
+                inbandControl = true;
+            }
+            
             @Override
             public void onUdpPortReceived(int udpPort) {
                 Log.d(TAG, "Received UDP port: " + udpPort);
                 currentUdpPort = udpPort;
+                currentUdpPorts = null;
                 
-                // 创建并启动UDP测试器
-                createUdpTester();
-                udpTester.start();
+                // 创建并启动测量引擎
+                startEngine(new int[] { udpPort });
+            }
+            
+            @Override
+            public void onUdpPortsReceived(int[] udpPorts) {
+                Log.d(TAG, "Received " + udpPorts.length + " UDP ports");
+                currentUdpPort = udpPorts[0];
+                currentUdpPorts = udpPorts;
+                
+                // 创建并启动测量引擎，默认为多流引擎
+                startEngine(udpPorts);
+            }
+            
+            @Override
+            public void onTcpPortReceived(int tcpPort, String token) {
+                Log.d(TAG, "Received TCP port: " + tcpPort);
+                awaitingTcpPort = false;
+                
+                // 沿用UDP的回调和轮次流程
+                engine = new TcpTester(context, config, tcpPort, token, createUdpTestCallback());
+                engineName = engine.getEngineName();
+                engine.start();
             }
             
             @Override
             public void onSpeedTestStart(int speed) {
                 Log.d(TAG, "Speed test start command received: " + speed);
-                if (udpTester != null) {
-                    udpTester.setSendSpeed(speed);
-                    udpTester.setReceive(true);
+                currentSendSpeed = speed;
+                if (rateController != null) {
+                    rateController.onRoundStart(speed);
+                }
+                if (engine != null) {
+                    // 服务器已收到触发包，停止发送触发包并开始接收
+                    engine.startRound(speed);
                 }
             }
             
@@ -176,14 +440,40 @@ public class SpeedTestProtocol {
             public void onSpeedTestFinish(double traffic) {
                 Log.d(TAG, "Speed test finished with traffic: " + traffic + "MB");
                 
-                // 获取最终速度
-                float finalSpeed = udpTester != null ? udpTester.getDownloadSpeed() : 0;
+                // 获取最终速度和速度分布
+                MeasurementEngine current = engine;
+                float finalSpeed = current != null ? current.getDownloadSpeed() : 0;
+                if (current != null) {
+                    speedMetrics = current.getSpeedMetrics();
+                }
+                recordWarmStart(finalSpeed);
+                if (config.isUploadTest() && currentUdpPort != 0 && !usingTcp) {
+                    // 下载结果暂存，上传结束后一起上报
+                    startUploadPhase(finalSpeed, traffic);
+                    return;
+                }
                 protocolCallback.onTestCompleted(finalSpeed, traffic);
                 
                 // 清理资源
                 stopSpeedTest();
             }
             
+            @Override
+            public void onUploadReady() {
+                Log.d(TAG, "Upload round acknowledged: " + currentUploadSpeed + "Mbps");
+                if (uploadTester != null) {
+                    uploadTester.startRound(currentUploadSpeed);
+                }
+            }
+            
+            @Override
+            public void onUploadReport(long bytes, long durationMicros) {
+                Log.d(TAG, "Upload report: " + bytes + " bytes in " + durationMicros + "us");
+                if (uploadTester != null) {
+                    uploadTester.onServerReport(bytes, durationMicros);
+                }
+            }
+            
             @Override
             public void onSpeedExceeded() {
                 Log.d(TAG, "Speed exceeded server limit");
@@ -202,36 +492,119 @@ public class SpeedTestProtocol {
             public void onReceiveTimeout() {
                 Log.w(TAG, "WebSocket receive timeout");
                 protocolCallback.onNetworkIssue(2);
+                if (awaitingTcpPort) {
+                    protocolCallback.onTestFailed("UDP blocked and server does not support TCP fallback");
+                    stopSpeedTest();
+                }
             }
             
             @Override
             public void onDisconnected(int code, String reason) {
                 Log.d(TAG, "WebSocket disconnected: " + code + " " + reason);
-                if (isTestRunning) {
+                if (isUploading) {
+                    // 下载已完成，上传中断时仍然上报下载结果
+                    finishUploadPhase(0);
+                } else if (isTestRunning) {
                     protocolCallback.onTestFailed("Connection lost: " + reason);
                     stopSpeedTest();
                 }
             }
         };
         
-        webSocketClient = new WebSocketClient(config, wsCallback);
+        webSocketClient = new WebSocketClient(context, config, wsCallback);
     }
     
     /**
-     * 创建UDP测试器
+     * 按配置创建并启动测量引擎
+     * @param udpPorts 服务器分配的UDP端口
      */
-    private void createUdpTester() {
-        if (currentUdpPort == 0) {
+    private void startEngine(int[] udpPorts) {
+        if (udpPorts.length == 0 || udpPorts[0] == 0) {
             Log.e(TAG, "UDP port not available");
             return;
         }
         
-        UdpTestCallback udpCallback = new UdpTestCallback() {
+        portNanos = System.nanoTime();
+        MeasurementEngine.Factory factory = MeasurementEngines.select(config, udpPorts.length);
+        engine = factory.create(context, config, udpPorts, createUdpTestCallback());
+        if (preparedUdp != null) {
+            engine.usePrepared(preparedUdp);
+        }
+        engineName = engine.getEngineName();
+        Log.d(TAG, "Using measurement engine: " + engineName);
+        if (inbandControl) {
+            inbandControl = engine.supportsInbandControl();
+            if (inbandControl) {
+                engine.enableInbandControl();
+            }
+            Log.d(TAG, "In-band round control " + (inbandControl ? "enabled" : "not supported by engine"));
+        }
+        engine.start();
+    }
+    
+    /**
+     * 关闭快速启动准备的、未被引擎取走的Socket
+     */
+    private void closePreparedUdp() {
+        if (preparedUdp != null) {
+            preparedUdp.close();
+            preparedUdp = null;
+        }
+    }
+    
+    /**
+     * 第一轮首包到达，记录首字节时间及各启动阶段耗时，在测量线程调用
+     */
+    private void recordFirstByte() {
+        long now = System.nanoTime();
+        timeToFirstByteMs = Math.max(now - startNanos, 1) / 1_000_000f;
+        if (Log.isLoggable(Log.DEBUG)) {
+            Log.d(TAG, String.format("Time to first byte %.1fms (connect %.1fms, port %.1fms, first packet %.1fms)",
+                    timeToFirstByteMs, sinceStartMs(connectedNanos), sinceStartMs(portNanos),
+                    (now - portNanos) / 1_000_000f));
+        }
+        protocolCallback.onFirstByte(timeToFirstByteMs);
+    }
+    
+    private float sinceStartMs(long nanos) {
+        return nanos == 0 ? 0 : (nanos - startNanos) / 1_000_000f;
+    }
+    
+    /**
+     * UDP触发超时后改用TCP：停止UDP测试器并向服务器请求TCP端口
+     * 在UDP测试器线程的回调中调用
+     */
+    private void switchToTcp() {
+        Log.w(TAG, "UDP appears blocked, falling back to TCP");
+        usingTcp = true;
+        awaitingTcpPort = true;
+        protocolCallback.onTcpFallback();
+        
+        if (engine != null) {
+            engine.stopTest();
+            engine = null;
+        }
+        closePreparedUdp();
+        if (webSocketClient != null) {
+            webSocketClient.sendTcpFallbackRequest(config.getTcpStreams());
+        }
+    }
+    
+    /**
+     * 创建测试器回调，UDP和TCP测试器共用
+     */
+    private UdpTestCallback createUdpTestCallback() {
+        return new UdpTestCallback() {
             @Override
             public void onTriggerTimeout() {
-                Log.w(TAG, "UDP trigger timeout");
+                if (config.isTcpFallback() && !usingTcp) {
+                    switchToTcp();
+                    return;
+                }
+                
+                Log.w(TAG, usingTcp ? "TCP trigger timeout" : "UDP trigger timeout");
                 protocolCallback.onNetworkIssue(2);
-                protocolCallback.onTestFailed("UDP trigger timeout");
+                protocolCallback.onTestFailed(usingTcp ? "TCP trigger timeout" : "UDP trigger timeout");
                 stopSpeedTest();
             }
             
@@ -243,14 +616,30 @@ public class SpeedTestProtocol {
                 protocolCallback.onProgressUpdate(progress, speed);
             }
             
+            @Override
+            public void onLatencyMeasured(LatencyStats stats) {
+                Log.d(TAG, "Latency measured: " + stats);
+                protocolCallback.onLatencyMeasured(stats);
+            }
+            
+            @Override
+            public void onLoadedLatency(LatencyStats idle, LatencyStats roundLoaded, LatencyStats totalLoaded) {
+                Log.d(TAG, "Latency idle=" + idle.getMedianMs() + "ms, loaded=" + roundLoaded.getMedianMs() + "ms");
+                protocolCallback.onLoadedLatency(idle, roundLoaded, totalLoaded);
+            }
+            
             @Override
             public void onFirstPacketReceived() {
                 Log.d(TAG, "First UDP packet received");
+                if (timeToFirstByteMs == 0) {
+                    recordFirstByte();
+                }
             }
             
             @Override
-            public void onSingleTestComplete(float speed, boolean isSaturated, boolean isTestEnd) {
-                Log.d(TAG, "Single test complete - Speed: " + speed + ", Saturated: " + isSaturated + ", End: " + isTestEnd);
+            public void onSingleTestComplete(float speed, boolean isSaturated, boolean isTestEnd,
+                                             ConvergenceState convergence) {
+                Log.d(TAG, "Single test complete - Speed: " + speed + ", Saturated: " + isSaturated + ", " + convergence);
                 
                 // 更新进度
                 protocolCallback.onProgressUpdate(isTestEnd ? 95 : 70, speed);
@@ -258,18 +647,42 @@ public class SpeedTestProtocol {
                 // 根据测试结果发送相应的控制消息
                 if (webSocketClient != null) {
                     if (isTestEnd) {
-                        // 测试完成，发送结束消息
-                        webSocketClient.sendFinishMessage(speed);
-                    } else if (isSaturated) {
-                        // 饱和状态，重复测试
-                        webSocketClient.sendSpeedControlMessage("repeat");
+                        // 测试完成，发送结束消息（携带跨轮次的收敛估计而不是最后一轮的速度）
+                        webSocketClient.sendFinishMessage(engine != null ? engine.getEstimatedSpeed() : speed);
                     } else {
-                        // 未饱和，继续加速
-                        webSocketClient.sendSpeedControlMessage("continue");
+                        // 饱和状态重复测试，未饱和继续加速；开启客户端速率控制时附带建议速率
+                        int proposal = rateController != null
+                                ? rateController.onRoundComplete(currentSendSpeed, speed, isSaturated) : 0;
+                        MeasurementEngine current = engine;
+                        if (inbandControl && current != null) {
+                            // 经测量Socket请求下一轮，引擎在本轮结束后发送并等待服务器确认
+                            current.requestNextRound(isSaturated, proposal);
+                        } else {
+                            webSocketClient.sendSpeedControlMessage(isSaturated ? "repeat" : "continue", proposal);
+                        }
                     }
                 }
             }
             
+            @Override
+            public void onInbandRoundStart(int speed) {
+                Log.d(TAG, "In-band round start: " + speed);
+                currentSendSpeed = speed;
+                if (rateController != null) {
+                    rateController.onRoundStart(speed);
+                }
+            }
+            
+            @Override
+            public void onInbandControlFailed(boolean repeat, int proposedSpeed) {
+                Log.w(TAG, "In-band round control failed, using WebSocket");
+                inbandControl = false;
+                WebSocketClient client = webSocketClient;
+                if (client != null) {
+                    client.sendSpeedControlMessage(repeat ? "repeat" : "continue", proposedSpeed);
+                }
+            }
+            
             @Override
             public void onAllTestsComplete(float finalSpeed) {
                 Log.d(TAG, "All UDP tests completed - Final speed: " + finalSpeed);
@@ -283,6 +696,24 @@ public class SpeedTestProtocol {
                 stopSpeedTest();
             }
             
+            @Override
+            public void onPacketStats(PacketStats round, PacketStats unsaturated, PacketStats saturated) {
+                if (rateController != null) {
+                    rateController.onPacketStats(round);
+                }
+                protocolCallback.onPacketStats(round, unsaturated, saturated);
+            }
+            
+            @Override
+            public void onFlowBreakdown(float[] flowSpeeds) {
+                protocolCallback.onFlowBreakdown(flowSpeeds);
+            }
+            
+            @Override
+            public void onRoundSamples(SampleRing samples, long roundStartNanos) {
+                protocolCallback.onRoundSamples(samples, roundStartNanos);
+            }
+            
             @Override
             public void onNoDataReceived() {
                 Log.w(TAG, "No UDP data received");
@@ -291,8 +722,123 @@ public class SpeedTestProtocol {
                 stopSpeedTest();
             }
         };
+    }
+    
+    /**
+     * 按网络指纹查询热启动速率，在握手消息发送前设置到WebSocket客户端
+     * 此时WebSocket已连通，服务器地址已在缓存中，确定本机地址只查询路由表
+     */
+    private void applyWarmStart() {
+        try {
+            String host = config.getServerHost();
+            NetworkFingerprint fingerprint = NetworkFingerprint.of(host,
+                    WarmStartCache.localAddressFor(context.getDnsCache().resolveFirst(host)), config.getNetworkId());
+            networkFingerprint = fingerprint;
+            int speed = Math.min(context.getWarmStartCache().suggestStartSpeed(fingerprint), MAX_PROPOSED_SPEED);
+            WebSocketClient client = webSocketClient;
+            if (speed > 0 && client != null) {
+                Log.d(TAG, "Warm start at " + speed + "Mbps for " + fingerprint);
+                warmStartSpeed = speed;
+                client.setInitialSpeed(speed);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot fingerprint network, starting cold", e);
+        }
+    }
+    
+    /**
+     * 记录UDP下载结果，TCP后备的结果不用于UDP起始速率
+     */
+    private void recordWarmStart(float downloadSpeed) {
+        NetworkFingerprint fingerprint = networkFingerprint;
+        if (fingerprint != null && !usingTcp) {
+            context.getWarmStartCache().record(fingerprint, downloadSpeed);
+        }
+    }
+    
+    /**
+     * 下载结束后开始上传测速
+     */
+    private void startUploadPhase(float downloadSpeed, double traffic) {
+        downloadResult = downloadSpeed;
+        downloadTraffic = traffic;
+        isUploading = true;
+        uploadRateController = new RateController(MIN_PROPOSED_SPEED, MAX_PROPOSED_SPEED);
+        protocolCallback.onUploadStarted();
+        
+        UploadTestCallback uploadCallback = new UploadTestCallback() {
+            @Override
+            public void onTestStart(int loop, int speed) {
+                Log.d(TAG, "Upload test start - Loop: " + loop + ", Speed: " + speed);
+                protocolCallback.onUploadProgress(Math.min(loop * 33, 90), speed);
+            }
+            
+            @Override
+            public void onRoundSent(int loop, long sentBytes, long durationNanos) {
+                if (webSocketClient != null) {
+                    webSocketClient.sendUploadStop();
+                }
+            }
+            
+            @Override
+            public void onSingleTestComplete(float speed, boolean isSaturated, boolean isTestEnd,
+                                             ConvergenceState convergence) {
+                Log.d(TAG, "Upload round complete - Speed: " + speed + ", Saturated: " + isSaturated + ", " + convergence);
+                protocolCallback.onUploadProgress(isTestEnd ? 100 : 70, speed);
+                
+                if (isTestEnd) {
+                    float uploadSpeed = uploadTester != null ? uploadTester.getEstimatedSpeed() : speed;
+                    if (webSocketClient != null) {
+                        webSocketClient.sendUploadFinish(uploadSpeed);
+                    }
+                    finishUploadPhase(uploadSpeed);
+                } else {
+                    startUploadRound(uploadRateController.onRoundComplete(currentUploadSpeed, speed, isSaturated));
+                }
+            }
+            
+            @Override
+            public void onUploadError(String error) {
+                Log.e(TAG, "Upload error: " + error);
+                finishUploadPhase(0);
+            }
+            
+            @Override
+            public void onUploadUnsupported() {
+                Log.w(TAG, "Server does not support upload test");
+                finishUploadPhase(0);
+            }
+        };
         
-        udpTester = new UdpTester(config.getServerHost(), currentUdpPort, udpCallback);
+        uploadTester = new UdpUploadTester(context, config, currentUdpPort, uploadCallback);
+        uploadTester.start();
+        startUploadRound(INITIAL_UPLOAD_SPEED);
+    }
+    
+    private void startUploadRound(int speed) {
+        currentUploadSpeed = speed;
+        if (webSocketClient != null) {
+            webSocketClient.sendUploadStart(speed);
+        }
+    }
+    
+    /**
+     * 结束上传阶段，上报上传和暂存的下载结果
+     * @param uploadSpeed 上传速度，0表示上传未完成
+     */
+    private void finishUploadPhase(float uploadSpeed) {
+        synchronized (this) {
+            if (!isUploading) {
+                return;
+            }
+            isUploading = false;
+        }
+        
+        if (uploadSpeed > 0) {
+            protocolCallback.onUploadCompleted(uploadSpeed);
+        }
+        protocolCallback.onTestCompleted(downloadResult, downloadTraffic);
+        stopSpeedTest();
     }
     
     // 公共方法
@@ -318,14 +864,67 @@ public class SpeedTestProtocol {
         return currentUdpPort;
     }
     
+    /**
+     * 本次测试使用的测量引擎名称，测试结束后仍然有效，未创建引擎时为空字符串
+     */
+    public String getEngineName() {
+        return engineName;
+    }
+    
+    /**
+     * 从startSpeedTest()到第一轮首包的时间 (ms)，尚未收到数据时为0
+     */
+    public float getTimeToFirstByteMs() {
+        return timeToFirstByteMs;
+    }
+    
+    /**
+     * 握手中建议服务器的起始速率 (Mbps)，没有热启动记录或未开启warmStart时为0
+     */
+    public int getWarmStartSpeed() {
+        return warmStartSpeed;
+    }
+    
+    /**
+     * 测试前选中的服务器，未配置候选或尚未选出时为null
+     */
+    public ServerScore getSelectedServer() {
+        return selectedServer;
+    }
+    
+    /**
+     * 本次测试实际连接的服务器
+     */
+    public String getServerHost() {
+        return config.getServerHost();
+    }
+    
+    /**
+     * 测量引擎的阶段交接耗时，测试结束后仍然有效
+     */
+    public HandoffStats getHandoffStats() {
+        MeasurementEngine current = engine;
+        return current != null ? current.getHandoffStats() : handoffStats;
+    }
+    
+    /**
+     * 下载结束时的速度分布、传输质量和时延汇总，测试结束前为SpeedMetrics.EMPTY
+     */
+    public SpeedMetrics getSpeedMetrics() {
+        return speedMetrics;
+    }
+    
     /**
      * 获取当前测速状态信息
      */
     public String getStatusInfo() {
         if (!isTestRunning) return "Stopped";
+        if (selectingServer) return "Selecting server";
         if (!isConnected) return "Connecting";
+        if (awaitingTcpPort) return "Waiting for TCP port";
         if (currentUdpPort == 0) return "Waiting for UDP port";
-        if (udpTester == null) return "Initializing UDP";
-        return "Testing (Loop " + udpTester.getRepeatCounter() + "/3)";
+        if (isUploading) return "Uploading (Loop " + (uploadTester != null ? uploadTester.getLoopCounter() : 0) + ")";
+        if (engine == null) return "Initializing UDP";
+        return (usingTcp ? "Testing over TCP (Loop " : "Testing (Loop ") + engine.getRepeatCounter() + "/" + config.getMaxSaturatedRounds() + ")";
     }
 }
\ No newline at end of file
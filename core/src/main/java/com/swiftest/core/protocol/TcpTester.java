@@ -0,0 +1,202 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.interfaces.UdpTestCallback;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.SpeedTestConfig;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * 多连接TCP下载测试器，UDP被阻断时的后备方案
+ * 沿用UdpTester的轮次流程、采样、P95、饱和判断和收敛规则，只替换传输部分：
+ * - 与服务器建立N条TCP连接，每条连接在切换为非阻塞之前发送服务器分配的token，用于关联WebSocket会话
+ * - 单个线程通过Selector读取所有连接，复用同一个direct ByteBuffer，不产生对象分配
+ * - 服务器按下发的速率在N条连接上发送数据，轮次之间停止发送
+ * TCP不存在丢包/乱序，也不支持UDP时延探测，对应功能自动关闭。
+ */
+public class TcpTester extends UdpTester {
+    
+    private static final String TAG = "TcpTester";
+    
+    private static final int SOCKET_RECEIVE_BUFFER = 4 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final long IDLE_TIMEOUT_NANOS = SOCKET_TIMEOUT_MS * 1_000_000L;
+    
+    private final String token;
+    private final SocketChannel[] channels;
+    
+    private volatile Selector selector;
+    private ByteBuffer readBuffer;
+    private int openStreams = 0;
+    
+    /**
+     * @param config 测速配置，getTcpStreams()为TCP连接数
+     * @param tcpPort 服务器分配的TCP端口
+     * @param token 服务器分配的会话token，每条连接建立后以阻塞模式首先发送
+     * @param callback 回调
+     */
+    public TcpTester(SpeedTestConfig config, int tcpPort, String token, UdpTestCallback callback) {
+        this(SwiftestEngine.shared(config.getExecutionMode()), config, tcpPort, token, callback);
+    }
+    
+    public TcpTester(SwiftestEngine context, SpeedTestConfig config, int tcpPort, String token, UdpTestCallback callback) {
+        super(context, config, tcpPort, callback);
+        this.token = token;
+        this.channels = new SocketChannel[config.getTcpStreams()];
+    }
+    
+    @Override
+    protected void initializeSocket() throws IOException {
+        serverAddress = resolveServerAddress();
+        InetSocketAddress address = new InetSocketAddress(serverAddress, udpPort);
+        selector = Selector.open();
+        readBuffer = context.getStreamBufferPool().acquire();
+        
+        byte[] hello = ((token != null ? token : "") + "\n").getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < channels.length; i++) {
+            SocketChannel channel = SocketChannel.open();
+            // 先登记再连接，连接或发送token失败时由closeSocket()一并关闭
+            channels[i] = channel;
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_RECEIVE_BUFFER);
+            channel.socket().connect(address, CONNECT_TIMEOUT_MS);
+            // token在阻塞模式下一次写完，切换为非阻塞后不需要重试写入
+            channel.write(ByteBuffer.wrap(hello));
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+        }
+        openStreams = channels.length;
+        
+        Log.d(TAG, "Opened " + channels.length + " TCP streams to " + serverHost + ":" + udpPort);
+    }
+    
+    /**
+     * token已在建立连接时发送，触发阶段只等待服务器的start
+     */
+    @Override
+    protected void sendTrigger() {
+    }
+    
+    @Override
+    protected boolean receiveFirstPacket() throws IOException {
+        long idleDeadline = System.nanoTime() + IDLE_TIMEOUT_NANOS;
+        while (true) {
+            if (readAvailable() > 0) {
+                return true;
+            }
+            long remainingMs = (idleDeadline - System.nanoTime()) / 1_000_000L;
+            if (remainingMs <= 0) {
+                return false;
+            }
+            selector.select(remainingMs);
+        }
+    }
+    
+    @Override
+    protected void receivePacketsUntilTimeout() throws IOException {
+        long now = System.nanoTime();
+        long lastActivity = now;
+        while (!isRoundExpired(now)) {
+            int length = readAvailable();
+            now = System.nanoTime();
+            if (length > 0) {
+                lastActivity = now;
+                continue;
+            }
+            
+            long idleRemaining = lastActivity + IDLE_TIMEOUT_NANOS - now;
+            if (idleRemaining <= 0) {
+                // 空闲超过SOCKET_TIMEOUT_MS，本轮结束
+                return;
+            }
+            selector.select(Math.max(1, idleRemaining / 1_000_000L));
+            now = System.nanoTime();
+        }
+        Log.d(TAG, "Receive timeout - round duration reached");
+    }
+    
+    /**
+     * 读取所有可读连接中已到达的数据
+     * @return 本次读取的字节数
+     */
+    private int readAvailable() throws IOException {
+        Selector sel = selector;
+        if (sel == null) {
+            return 0;
+        }
+        sel.selectNow();
+        
+        int total = 0;
+        Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            SocketChannel channel = (SocketChannel) key.channel();
+            
+            int length;
+            while ((length = channel.read(readBuffer)) > 0) {
+                addReceivedBytes(length);
+                total += length;
+                readBuffer.clear();
+            }
+            readBuffer.clear();
+            
+            if (length < 0) {
+                key.cancel();
+                channel.close();
+                if (--openStreams == 0) {
+                    throw new IOException("All TCP streams closed by server");
+                }
+                Log.w(TAG, "TCP stream closed by server, " + openStreams + " remaining");
+            }
+        }
+        return total;
+    }
+    
+    @Override
+    protected boolean isDatagramTransport() {
+        return false;
+    }
+    
+    @Override
+    protected void releaseBuffers() {
+        if (readBuffer != null) {
+            context.getStreamBufferPool().release(readBuffer);
+            readBuffer = null;
+        }
+    }
+    
+    @Override
+    protected void closeSocket() {
+        try {
+            if (selector != null) {
+                selector.close();
+                selector = null;
+            }
+            for (SocketChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close TCP streams", e);
+        }
+    }
+    
+    public int getStreamCount() {
+        return channels.length;
+    }
+    
+    @Override
+    public String getEngineName() {
+        return "tcp-" + channels.length;
+    }
+}
@@ -0,0 +1,74 @@
+package com.swiftest.core.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 测量Socket上的轮次控制报文
+ * 开启udpControl且服务器在端口分配消息中确认后，第二轮起的continue/repeat不再经过WebSocket：
+ * 客户端在测速UDP Socket上发送NEXT，服务器在同一Socket上回复START并立即开始本轮发送。
+ * 报文格式（13字节，big-endian）：
+ * <pre>
+ * | magic "SWCT" (4) | type (1) | round (4) | speed Mbps (4) |
+ * </pre>
+ * - CONTINUE / REPEAT（客户端 -> 服务器）：round为请求开始的轮次（由WebSocket开始的第一轮为1），
+ *   speed为客户端建议速率，0表示由服务器决定
+ * - START（服务器 -> 客户端）：round为已开始的轮次，speed为本轮发送速率
+ * 客户端在收到对应轮次的START之前按退避间隔重传NEXT。服务器按轮次号去重：
+ * 重复的NEXT只重发START，不会重新开始本轮；旧轮次的报文直接忽略，因此重传是幂等的。
+ * 长度与数据包（1024字节）和时延探测包（32字节）都不同，接收端按长度 + 魔数区分。
+ */
+public final class UdpControl {
+    
+    public static final int MAGIC = 0x53574354; // "SWCT"
+    public static final int SIZE = 13;
+    
+    public static final int TYPE_CONTINUE = 1;
+    public static final int TYPE_REPEAT = 2;
+    public static final int TYPE_START = 3;
+    
+    private UdpControl() {}
+    
+    /**
+     * 写入客户端的下一轮请求，dst从0开始写入并flip
+     * @param round 请求开始的轮次
+     * @param repeat true为repeat（已饱和，同速率重复），false为continue
+     * @param proposedSpeed 建议速率 (Mbps)，0表示由服务器决定
+     */
+    public static void writeNext(ByteBuffer dst, int round, boolean repeat, int proposedSpeed) {
+        write(dst, repeat ? TYPE_REPEAT : TYPE_CONTINUE, round, proposedSpeed);
+    }
+    
+    /**
+     * 写入服务器的本轮开始确认，dst从0开始写入并flip
+     */
+    public static void writeStart(ByteBuffer dst, int round, int speed) {
+        write(dst, TYPE_START, round, speed);
+    }
+    
+    private static void write(ByteBuffer dst, int type, int round, int speed) {
+        dst.clear();
+        dst.putInt(MAGIC).put((byte) type).putInt(round).putInt(speed);
+        dst.flip();
+    }
+    
+    /**
+     * 数据报的控制类型，从下标0开始按绝对位置读取，不修改buffer的position
+     * @param length 数据报长度
+     * @return 不是控制报文时返回-1
+     */
+    public static int typeOf(ByteBuffer datagram, int length) {
+        if (length != SIZE || datagram.getInt(0) != MAGIC) {
+            return -1;
+        }
+        int type = datagram.get(4) & 0xFF;
+        return type >= TYPE_CONTINUE && type <= TYPE_START ? type : -1;
+    }
+    
+    public static int roundOf(ByteBuffer datagram) {
+        return datagram.getInt(5);
+    }
+    
+    public static int speedOf(ByteBuffer datagram) {
+        return datagram.getInt(9);
+    }
+}
@@ -1,56 +1,86 @@
 package com.swiftest.core.protocol;
 
-import android.util.Log;
-
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.exec.Threads;
+import com.swiftest.core.interfaces.MeasurementEngine;
+import com.swiftest.core.interfaces.PreparedSockets;
 import com.swiftest.core.interfaces.UdpTestCallback;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.ConvergenceState;
+import com.swiftest.core.models.HandoffStats;
+import com.swiftest.core.models.LatencyStats;
+import com.swiftest.core.models.PacketStats;
+import com.swiftest.core.models.SpeedMetrics;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.stats.ConvergenceEstimator;
+import com.swiftest.core.stats.PhaseTimer;
+import com.swiftest.core.stats.QuantileSketch;
+import com.swiftest.core.stats.RateSampler;
+import com.swiftest.core.stats.SampleRing;
+import com.swiftest.core.stats.SequenceTracker;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
 import java.net.SocketTimeoutException;
-import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
 
 /**
  * 统一的UDP测试器实现
  * 抽取了原始UdpService和UdpHandler的共同逻辑
  * 支持自动速度测试和饱和度检测
  */
-public class UdpTester extends Thread {
+public class UdpTester implements Runnable, MeasurementEngine {
     
     private static final String TAG = "UdpTester";
     
     // 测试参数常量
-    private static final int MAX_LOOP = 3;
+    // 收敛判断至少需要的饱和轮次，少于2个样本无法估计方差
+    private static final int MIN_SATURATED_ROUNDS = 2;
     private static final float SATURATED_THRESHOLD = 1.2f;
     private static final int MAX_TRIGGER_COUNT = 10;
-    private static final int SOCKET_TIMEOUT_MS = 100;
-    private static final int TRIGGER_INTERVAL_MS = 50;
-    private static final int WAIT_INTERVAL_MS = 10;
+    private static final long TRIGGER_INTERVAL_NANOS = 50_000_000L;
     private static final int SAMPLE_INTERVAL_MS = 10;
     private static final int MAX_SAMPLES = 100;
-    private static final int PACKET_SIZE = 1024;
+    private static final int UNSTABLE_TAIL_SAMPLES = 9;
+    private static final int SLIDING_WINDOW = 5;
+    protected static final int PACKET_SIZE = 1024;
+    protected static final int SOCKET_TIMEOUT_MS = 100;
+    protected static final long ROUND_DURATION_NANOS = (long) MAX_SAMPLES * SAMPLE_INTERVAL_MS * 1_000_000L;
+    protected static final byte[] TRIGGER_PAYLOAD = "trigger".getBytes();
+    // 轮次内联控制的重传：未测得RTT时的初始间隔、间隔上限与最多发送次数
+    private static final long DEFAULT_CONTROL_RTO_NANOS = 100_000_000L;
+    private static final long MIN_CONTROL_RTO_NANOS = 10_000_000L;
+    private static final long MAX_CONTROL_RTO_NANOS = 1_000_000_000L;
+    private static final int MAX_CONTROL_ATTEMPTS = 6;
     
     // 回调接口
-    private final UdpTestCallback callback;
+    protected final UdpTestCallback callback;
+    
+    // 共享资源（缓冲区池等）
+    protected final SwiftestEngine context;
     
     // 网络参数
-    private final String serverHost;
-    private final int udpPort;
+    protected final SpeedTestConfig config;
+    protected final String serverHost;
+    protected final int udpPort;
     
     // 运行状态
+    private volatile Thread thread;
     private volatile boolean isRunning = false;
     private volatile boolean trigger = true;
     private volatile boolean receive = false;
     
     // UDP相关
     private DatagramSocket datagramSocket;
-    private InetAddress serverAddress;
+    private DatagramPacket rcvPacket;
+    protected InetAddress serverAddress;
     
     // 触发器相关
     private int triggerCount = 0;
@@ -58,27 +88,79 @@ public class UdpTester extends Thread {
     // 测试相关
     private int sendSpeed = 0;
     private int repeatCounter = 0;
+    private int totalRounds = 0;
+    private boolean testEnd = false;
+    // 接收线程之外的线程（如多流接收线程）也会读取
+    private volatile long roundDeadlineNanos = 0;
     
     // 数据统计
-    private long rcvBytesCount = 0;
-    private ArrayList<Long> rcvBytesRecord;
-    private ArrayList<Float> rcvSpeedSamples;
-    private ArrayList<Float> rcvSpeeds;
-    private Timer sampleTimer;
+    // 只由接收线程写入，采样线程读取
+    private final AtomicLong rcvBytesCount = new AtomicLong();
+    private final RateSampler sampler;
+    private final LongSupplier receivedBytesSource = this::getReceivedBytes;
+    private final QuantileSketch roundSketch = new QuantileSketch();   // 本轮速度样本
+    private final QuantileSketch saturatedSketch = new QuantileSketch(); // 所有饱和轮次的速度样本
+    private final ConvergenceEstimator estimator = new ConvergenceEstimator(); // 饱和轮次的速度估计
+    private float maxRoundSpeed = 0;
     private float rcvSpeed = 0;
     private boolean getSingle = false;
     private boolean saturated = false;
     private float downloadSpeed = 0;
     
+    // 序号/时间戳统计，未开启sequencedPayload时为null
+    protected final SequenceTracker sequenceTracker;
+    // 未饱和/饱和轮次各自累计的传输质量，饱和轮次服务器有意超发，丢包不代表链路质量
+    private PacketStats unsaturatedPacketStats = PacketStats.EMPTY;
+    private PacketStats saturatedPacketStats = PacketStats.EMPTY;
+    
+    // 测速前的空载时延，未开启latencyProbe时为EMPTY
+    private LatencyStats latencyStats = LatencyStats.EMPTY;
+    
+    // 与下载并行的负载时延探测，未开启loadedLatencyProbe时为null
+    private LoadedLatencyProber loadedProber;
+    
+    // 轮次内联控制，只由测试线程访问（requestNextRound在onSingleTestComplete回调中调用）
+    private boolean inbandControl = false;
+    private boolean nextRoundPending = false;
+    private boolean nextRoundRepeat = false;
+    private int nextRoundProposal = 0;
+    private ByteBuffer controlTxBuffer;
+    private ByteBuffer controlRxBuffer;
+    
+    // 快速启动时预先准备的地址和Socket，未开启时为null
+    private PreparedSockets prepared;
+    
+    // 阶段交接耗时：信号时刻由WebSocket线程写入，其余只由测试线程访问
+    private volatile long triggerStopNanos = 0;
+    private volatile long signalNanos = 0;
+    private long firstTriggerNanos = 0;
+    private long roundEndNanos = 0;
+    private float triggerConfirmMs = 0;
+    private float triggerExitMs = 0;
+    private final PhaseTimer controlTimer = new PhaseTimer();
+    private final PhaseTimer wakeTimer = new PhaseTimer();
+    private final PhaseTimer firstPacketTimer = new PhaseTimer();
+    private final PhaseTimer gapTimer = new PhaseTimer();
+    private volatile HandoffStats handoffStats = HandoffStats.EMPTY;
+    
     public UdpTester(String serverHost, int udpPort, UdpTestCallback callback) {
-        this.serverHost = serverHost;
+        this(new SpeedTestConfig.Builder().serverHost(serverHost).build(), udpPort, callback);
+    }
+    
+    public UdpTester(SpeedTestConfig config, int udpPort, UdpTestCallback callback) {
+        this(SwiftestEngine.shared(config.getExecutionMode()), config, udpPort, callback);
+    }
+    
+    public UdpTester(SwiftestEngine context, SpeedTestConfig config, int udpPort, UdpTestCallback callback) {
+        this.context = context;
+        this.config = config;
+        this.serverHost = config.getServerHost();
         this.udpPort = udpPort;
         this.callback = callback;
+        this.sequenceTracker = config.isSequencedPayload() ? new SequenceTracker() : null;
         
         // 初始化数据结构
-        this.rcvBytesRecord = new ArrayList<>();
-        this.rcvSpeedSamples = new ArrayList<>();
-        this.rcvSpeeds = new ArrayList<>();
+        this.sampler = new RateSampler(SAMPLE_INTERVAL_MS, MAX_SAMPLES);
     }
     
     @Override
@@ -88,35 +170,142 @@ public class UdpTester extends Thread {
         try {
             // 初始化UDP Socket
             initializeSocket();
+            sampler.start(Threads.factory(config.getExecutionMode(), "RateSampler", true));
             
-            // 发送触发包阶段
-            sendTriggerPackets();
+            // 时延探测阶段，复用触发阶段的Socket
+            if (config.isLatencyProbe() && isDatagramTransport()) {
+                measureLatency();
+            }
+            
+            // 负载时延探测在独立Socket上运行，覆盖触发阶段和所有轮次
+            if (config.isLoadedLatencyProbe() && isDatagramTransport()) {
+                startLoadedProber();
+            }
+            
+            // 发送触发包阶段，超时（可能已改用TCP）或被停止时不进入测试循环，也不上报最终结果
+            if (!sendTriggerPackets()) {
+                return;
+            }
             
             // 测试循环阶段
             performSpeedTests();
-            
+        
         } catch (Exception e) {
             Log.e(TAG, "UDP test failed", e);
             callback.onUdpError(e.getMessage());
         } finally {
             cleanup();
+            releaseBuffers();
         }
     }
     
     /**
      * 初始化UDP Socket
      */
-    private void initializeSocket() throws SocketException, UnknownHostException {
-        datagramSocket = new DatagramSocket();
+    protected void initializeSocket() throws IOException {
+        serverAddress = resolveServerAddress();
+        datagramSocket = prepared != null ? prepared.takeSocket() : null;
+        if (datagramSocket == null) {
+            datagramSocket = new DatagramSocket();
+        }
         datagramSocket.setSoTimeout(SOCKET_TIMEOUT_MS);
-        serverAddress = InetAddress.getByName(serverHost);
+        rcvPacket = new DatagramPacket(new byte[PACKET_SIZE], PACKET_SIZE);
         Log.d(TAG, "UDP socket initialized for " + serverHost + ":" + udpPort);
     }
     
+    /**
+     * 服务器地址，经context的地址缓存解析，取首选地址族的第一个地址
+     * 快速启动时先等待后台线程的解析完成，此时通常已经命中缓存
+     */
+    protected InetAddress resolveServerAddress() throws IOException {
+        if (prepared != null) {
+            prepared.awaitReady();
+        }
+        return context.getDnsCache().resolveFirst(serverHost);
+    }
+    
+    /**
+     * 打开一个DatagramChannel，快速启动时优先取用预先打开的通道
+     */
+    protected DatagramChannel openChannel() throws IOException {
+        DatagramChannel channel = prepared != null ? prepared.takeChannel() : null;
+        return channel != null ? channel : DatagramChannel.open();
+    }
+    
+    /**
+     * 测速前的空载时延探测，失败不影响后续测速
+     */
+    private void measureLatency() {
+        LatencyProber.Transport transport = new LatencyProber.Transport() {
+            @Override
+            public void send(ByteBuffer probe) throws IOException {
+                sendProbe(probe);
+            }
+            
+            @Override
+            public int receive(ByteBuffer dst, long timeoutNanos) throws IOException {
+                return receiveProbe(dst, timeoutNanos);
+            }
+        };
+        
+        try {
+            latencyStats = new LatencyProber().measure(transport);
+        } catch (IOException e) {
+            Log.w(TAG, "Latency probing failed", e);
+            latencyStats = LatencyStats.EMPTY;
+        }
+        callback.onLatencyMeasured(latencyStats);
+    }
+    
+    /**
+     * 启动负载时延探测，失败时只记录日志
+     */
+    private void startLoadedProber() {
+        try {
+            loadedProber = new LoadedLatencyProber(new InetSocketAddress(serverAddress, udpPort));
+            loadedProber.start(config.getExecutionMode());
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to start loaded latency prober", e);
+            if (loadedProber != null) {
+                loadedProber.stop();
+                loadedProber = null;
+            }
+        }
+    }
+    
+    /**
+     * 发送一个时延探测包
+     */
+    protected void sendProbe(ByteBuffer probe) throws IOException {
+        datagramSocket.send(new DatagramPacket(
+                probe.array(), probe.position(), probe.remaining(), serverAddress, udpPort));
+    }
+    
+    /**
+     * 接收一个数据报用于时延探测
+     * @return 数据报长度，超时返回-1
+     */
+    protected int receiveProbe(ByteBuffer dst, long timeoutNanos) throws IOException {
+        datagramSocket.setSoTimeout((int) Math.max(1, timeoutNanos / 1_000_000L));
+        try {
+            datagramSocket.receive(rcvPacket);
+        } catch (SocketTimeoutException e) {
+            return -1;
+        } finally {
+            datagramSocket.setSoTimeout(SOCKET_TIMEOUT_MS);
+        }
+        int length = rcvPacket.getLength();
+        dst.clear();
+        dst.put(rcvPacket.getData(), 0, Math.min(length, dst.remaining()));
+        return length;
+    }
+    
     /**
      * 发送触发包
+     * 两次触发之间park到下一个发送时刻，服务器确认（setTrigger(false)）或停止测试时立即唤醒退出
+     * @return 服务器已确认时返回true；触发超时或测试已停止时返回false
      */
-    private void sendTriggerPackets() throws IOException, InterruptedException {
+    private boolean sendTriggerPackets() throws IOException, InterruptedException {
         Log.d(TAG, "Starting trigger phase");
         
         while (trigger && isRunning) {
@@ -126,27 +315,49 @@ public class UdpTester extends Thread {
             if (triggerCount > MAX_TRIGGER_COUNT) {
                 Log.w(TAG, "Trigger timeout exceeded");
                 callback.onTriggerTimeout();
-                return;
+                return false;
             }
             
             // 发送触发包
-            byte[] triggerBuf = "trigger".getBytes();
-            DatagramPacket triggerPacket = new DatagramPacket(
-                    triggerBuf, triggerBuf.length, serverAddress, udpPort);
-            datagramSocket.send(triggerPacket);
+            sendTrigger();
+            long sentNanos = System.nanoTime();
+            if (firstTriggerNanos == 0) {
+                firstTriggerNanos = sentNanos;
+            }
             
             Log.d(TAG, "Sent trigger packet " + triggerCount);
-            Thread.sleep(TRIGGER_INTERVAL_MS);
+            long deadline = sentNanos + TRIGGER_INTERVAL_NANOS;
+            long remaining;
+            while (trigger && isRunning && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+                checkInterrupted();
+            }
         }
         
+        long stopNanos = triggerStopNanos;
+        if (stopNanos != 0 && firstTriggerNanos != 0) {
+            triggerConfirmMs = Math.max(0, stopNanos - firstTriggerNanos) / 1_000_000f;
+            triggerExitMs = Math.max(0, System.nanoTime() - stopNanos) / 1_000_000f;
+            publishHandoffStats();
+        }
         Log.d(TAG, "Trigger phase completed");
+        return isRunning;
+    }
+    
+    /**
+     * 发送单个触发包
+     */
+    protected void sendTrigger() throws IOException {
+        DatagramPacket triggerPacket = new DatagramPacket(
+                TRIGGER_PAYLOAD, TRIGGER_PAYLOAD.length, serverAddress, udpPort);
+        datagramSocket.send(triggerPacket);
     }
     
     /**
      * 执行速度测试循环
      */
     private void performSpeedTests() throws IOException, InterruptedException {
-        while (repeatCounter < MAX_LOOP && isRunning) {
+        while (!testEnd && isRunning) {
             // 等待开始接收信号
             waitForReceiveSignal();
             
@@ -162,144 +373,393 @@ public class UdpTester extends Thread {
     
     /**
      * 等待接收信号
+     * 已经通过测量Socket请求下一轮时，等待服务器的START；多次重传仍未确认则交回WebSocket
      */
-    private void waitForReceiveSignal() throws InterruptedException {
+    private void waitForReceiveSignal() throws IOException, InterruptedException {
+        if (nextRoundPending) {
+            nextRoundPending = false;
+            if (awaitInbandStart() || !isRunning) {
+                return;
+            }
+            Log.w(TAG, "In-band round control unanswered, falling back to WebSocket");
+            inbandControl = false;
+            callback.onInbandControlFailed(nextRoundRepeat, nextRoundProposal);
+        }
+        
+        // setReceive(true)和stopTest()会unpark测试线程，多余的permit只会让park提前返回一次
         while (!receive && isRunning) {
-            Thread.sleep(WAIT_INTERVAL_MS);
+            LockSupport.park(this);
+            checkInterrupted();
+        }
+    }
+    
+    /**
+     * park不会抛出InterruptedException，被中断时在这里转换，保持中断结束测试的行为
+     */
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+    
+    /**
+     * 在测量Socket上发送NEXT并等待对应轮次的START，按退避间隔重传
+     * 等待期间到达的其他数据报（上一轮的尾包、START丢失时本轮已开始的数据）交给序号跟踪，
+     * 下一窗口开始时它们的序号范围被排除，不会被算作本轮丢包
+     * @return 收到START或WebSocket已经下发了新一轮时返回true
+     */
+    private boolean awaitInbandStart() throws IOException {
+        int round = totalRounds + 1;
+        long rto = initialControlRto();
+        
+        for (int attempt = 0; attempt < MAX_CONTROL_ATTEMPTS && isRunning; attempt++) {
+            UdpControl.writeNext(controlTxBuffer, round, nextRoundRepeat, nextRoundProposal);
+            sendProbe(controlTxBuffer);
+            
+            long deadline = System.nanoTime() + rto;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0 && isRunning) {
+                if (receive) {
+                    return true;
+                }
+                int length = receiveProbe(controlRxBuffer, remaining);
+                if (length < 0) {
+                    break;
+                }
+                if (UdpControl.typeOf(controlRxBuffer, length) == UdpControl.TYPE_START
+                        && UdpControl.roundOf(controlRxBuffer) == round) {
+                    int speed = UdpControl.speedOf(controlRxBuffer);
+                    Log.d(TAG, "In-band start for round " + round + " after " + (attempt + 1) + " attempt(s)");
+                    callback.onInbandRoundStart(speed);
+                    setSendSpeed(speed);
+                    setReceive(true);
+                    return true;
+                }
+                onStrayDatagram(controlRxBuffer, length, System.nanoTime());
+            }
+            rto = Math.min(rto * 2, MAX_CONTROL_RTO_NANOS);
+        }
+        return receive;
+    }
+    
+    /**
+     * 等待带内START期间读到的非控制数据报，记入序号跟踪以便下一窗口排除
+     */
+    protected void onStrayDatagram(ByteBuffer datagram, int length, long arrivalNanos) {
+        if (sequenceTracker != null) {
+            sequenceTracker.onPacket(datagram, length, arrivalNanos);
+        }
+    }
+    
+    /**
+     * 首次重传间隔：测得空载RTT时取2倍RTT，否则使用默认值
+     */
+    private long initialControlRto() {
+        LatencyStats rtt = latencyStats.isValid() ? latencyStats : getIdleLatencyStats();
+        if (!rtt.isValid()) {
+            return DEFAULT_CONTROL_RTO_NANOS;
         }
+        long rto = (long) (rtt.getMedianMs() * 2 * 1_000_000L);
+        return Math.max(MIN_CONTROL_RTO_NANOS, Math.min(rto, MAX_CONTROL_RTO_NANOS));
     }
     
     /**
      * 执行单次速度测试
      */
     private void performSingleTest() throws IOException, InterruptedException {
+        // 在本轮开始时而不是结束后清除信号，onSingleTestComplete期间到达的下一轮start不会被覆盖
+        receive = false;
+        long wakeNanos = System.nanoTime();
         callback.onTestStart(repeatCounter, sendSpeed);
         Log.d(TAG, "Test start, Loop: " + repeatCounter + ", Speed: " + sendSpeed);
         
-        // 接收缓冲区
-        byte[] rcvBuf = new byte[PACKET_SIZE];
-        DatagramPacket rcvPacket = new DatagramPacket(rcvBuf, rcvBuf.length);
-        
         repeatCounter++;
+        totalRounds++;
         
-        try {
-            // 接收第一个包
-            datagramSocket.receive(rcvPacket);
+        // 首包到达前使用本轮可能的最长时长作为截止时间
+        roundDeadlineNanos = System.nanoTime() + SOCKET_TIMEOUT_MS * 1_000_000L + ROUND_DURATION_NANOS;
+        
+        // 丢包只统计本轮的接收时段
+        beginPacketWindow();
+        
+        // 接收第一个包
+        if (receiveFirstPacket()) {
             callback.onFirstPacketReceived();
             Log.d(TAG, "Received first packet");
             
-            rcvBytesCount += rcvPacket.getLength();
-            
-            // 启动采样定时器
-            startSampling();
+            // 启动采样
+            long firstPacketNanos = System.nanoTime();
+            recordHandoff(wakeNanos, firstPacketNanos);
+            roundDeadlineNanos = firstPacketNanos + ROUND_DURATION_NANOS;
+            sampler.startRound(receivedBytesSource, firstPacketNanos);
+            if (loadedProber != null) {
+                loadedProber.onRoundStart(firstPacketNanos);
+            }
             
             // 继续接收包直到超时
-            receivePacketsUntilTimeout(rcvPacket);
-            
-        } catch (SocketTimeoutException e) {
-            // 正常的超时结束
-            processSingleTestResult();
+            receivePacketsUntilTimeout();
+            if (loadedProber != null) {
+                loadedProber.onRoundEnd();
+            }
         }
         
+        // 正常的超时结束
+        processSingleTestResult();
+        
         // 重置单次测试数据
         resetSingleTestData();
     }
     
     /**
-     * 启动采样定时器
+     * 阻塞接收本轮第一个包
+     * @return 超时未收到任何包时返回false
      */
-    private void startSampling() {
-        sampleTimer = new Timer();
-        sampleTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                synchronized (rcvBytesRecord) {
-                    rcvBytesRecord.add(rcvBytesCount);
-                }
-            }
-        }, 0, SAMPLE_INTERVAL_MS);
+    protected boolean receiveFirstPacket() throws IOException {
+        try {
+            datagramSocket.receive(rcvPacket);
+        } catch (SocketTimeoutException e) {
+            return false;
+        }
+        addReceivedBytes(rcvPacket.getLength());
+        if (sequenceTracker != null) {
+            sequenceTracker.onPacket(rcvPacket.getData(), rcvPacket.getLength(), System.nanoTime());
+        }
+        return true;
     }
     
     /**
      * 持续接收包直到超时
      */
-    private void receivePacketsUntilTimeout(DatagramPacket rcvPacket) throws IOException {
-        while (true) {
-            datagramSocket.receive(rcvPacket);
-            rcvBytesCount += rcvPacket.getLength();
-            
-            // 检查是否超过最大采样时间
-            synchronized (rcvBytesRecord) {
-                if (rcvBytesRecord.size() >= MAX_SAMPLES) {
-                    Log.d(TAG, "Receive timeout - max samples reached");
-                    throw new SocketTimeoutException("Test exceed 1 second!");
+    protected void receivePacketsUntilTimeout() throws IOException {
+        try {
+            while (true) {
+                datagramSocket.receive(rcvPacket);
+                addReceivedBytes(rcvPacket.getLength());
+                
+                long now = System.nanoTime();
+                if (sequenceTracker != null) {
+                    sequenceTracker.onPacket(rcvPacket.getData(), rcvPacket.getLength(), now);
+                }
+                
+                // 检查是否超过最大采样时间
+                if (isRoundExpired(now)) {
+                    Log.d(TAG, "Receive timeout - round duration reached");
+                    return;
                 }
             }
+        } catch (SocketTimeoutException e) {
+            // 空闲超过SOCKET_TIMEOUT_MS，本轮结束
         }
     }
     
+    /**
+     * 累加本轮收到的字节数，仅由接收线程调用
+     * 单写者，使用lazySet发布即可，无需CAS或锁
+     */
+    protected final void addReceivedBytes(int bytes) {
+        rcvBytesCount.lazySet(rcvBytesCount.get() + bytes);
+    }
+    
+    /**
+     * 本轮累计收到的字节数，由采样线程读取
+     */
+    protected long getReceivedBytes() {
+        return rcvBytesCount.get();
+    }
+    
+    /**
+     * 清空本轮字节计数
+     */
+    protected void resetReceivedBytes() {
+        rcvBytesCount.set(0);
+    }
+    
+    /**
+     * 本轮是否已达到最大采样时长 (MAX_SAMPLES * SAMPLE_INTERVAL_MS)
+     */
+    protected final boolean isRoundExpired(long nowNanos) {
+        return nowNanos - roundDeadlineNanos >= 0;
+    }
+    
     /**
      * 处理单次测试结果
      */
     private void processSingleTestResult() {
-        if (rcvBytesCount == 0) {
+        // 停止采样，之后可以安全读取SampleRing
+        sampler.stopRound();
+        
+        if (getReceivedBytes() == 0) {
             Log.w(TAG, "No data received");
             callback.onNoDataReceived();
             return;
         }
         
-        // 停止采样定时器
-        if (sampleTimer != null) {
-            sampleTimer.cancel();
-        }
-        
         // 计算速度
         calculateSpeed();
         
+        // 本轮负载时延，并按本轮吞吐量调整探测间隔
+        if (loadedProber != null) {
+            loadedProber.setThroughput(rcvSpeed);
+            callback.onLoadedLatency(loadedProber.getIdleStats(), loadedProber.getRoundLoadedStats(),
+                    loadedProber.getLoadedStats());
+        }
+        
+        // 对外提供本轮原始采样，用于多服务器按时间戳对齐聚合
+        callback.onRoundSamples(sampler.getRing(), sampler.getRoundStartNanos());
+        
         // 判断饱和状态
         checkSaturation();
         
-        // 通知单次测试完成
-        boolean isTestEnd = isTestEnd();
-        callback.onSingleTestComplete(rcvSpeed, saturated, isTestEnd);
+        // 本轮接收时段内的传输质量，按是否饱和分别累计
+        if (sequenceTracker != null && isDatagramTransport()) {
+            PacketStats roundStats = snapshotPacketStats();
+            if (saturated) {
+                saturatedPacketStats = saturatedPacketStats.merge(roundStats);
+            } else {
+                unsaturatedPacketStats = unsaturatedPacketStats.merge(roundStats);
+            }
+            Log.d(TAG, (saturated ? "Saturated round " : "Round ") + roundStats);
+            callback.onPacketStats(roundStats, unsaturatedPacketStats, saturatedPacketStats);
+        }
         
+        onRoundFinished();
+        
+        // 判断是否可以结束测试，并通知单次测试完成
         getSingle = true;
+        ConvergenceState convergence = new ConvergenceState(estimator.getMean(), estimator.getHalfWidth(),
+                estimator.getCount(), totalRounds, stopReason());
+        testEnd = convergence.isStopped();
+        roundEndNanos = System.nanoTime();
+        callback.onSingleTestComplete(rcvSpeed, saturated, testEnd, convergence);
+    }
+    
+    /**
+     * 记录一次轮次切换的各段耗时，第一轮没有上一轮结束时刻，不计入
+     */
+    private void recordHandoff(long wakeNanos, long firstPacketNanos) {
+        long signal = signalNanos;
+        if (roundEndNanos == 0 || signal == 0) {
+            return;
+        }
+        // 信号早于上一轮结束（服务器提前下发start）时控制段按0计
+        long signalAt = Math.max(signal, roundEndNanos);
+        controlTimer.record(signalAt - roundEndNanos);
+        wakeTimer.record(Math.max(0, wakeNanos - signalAt));
+        firstPacketTimer.record(firstPacketNanos - wakeNanos);
+        gapTimer.record(firstPacketNanos - roundEndNanos);
+        publishHandoffStats();
+    }
+    
+    private void publishHandoffStats() {
+        handoffStats = new HandoffStats(triggerConfirmMs, triggerExitMs, gapTimer.getCount(),
+                controlTimer.getMeanMs(), controlTimer.getMaxMs(), wakeTimer.getMeanMs(), wakeTimer.getMaxMs(),
+                firstPacketTimer.getMeanMs(), firstPacketTimer.getMaxMs(), gapTimer.getMeanMs(), gapTimer.getMaxMs());
+    }
+    
+    /**
+     * 自适应停止规则，条件与顺序见ConvergenceState：
+     * 1. 至少MIN_SATURATED_ROUNDS个饱和轮次，且置信区间已收敛到容差以内
+     * 2. 饱和轮次达到maxSaturatedRounds
+     * 3. 总轮次达到maxRounds（链路始终未饱和时避免无限爬升）
+     */
+    private ConvergenceState.StopReason stopReason() {
+        float tolerance = config.getConvergenceTolerance();
+        if (tolerance > 0 && estimator.isConverged(tolerance, MIN_SATURATED_ROUNDS)) {
+            Log.d(TAG, "Converged after " + estimator.getCount() + " saturated rounds: "
+                    + estimator.getMean() + " ± " + estimator.getHalfWidth() + " Mbps");
+            return ConvergenceState.StopReason.CONVERGED;
+        }
+        if (estimator.getCount() >= config.getMaxSaturatedRounds()) {
+            return ConvergenceState.StopReason.MAX_SATURATED_ROUNDS;
+        }
+        if (totalRounds >= config.getMaxRounds()) {
+            Log.w(TAG, "Round limit reached without convergence");
+            return ConvergenceState.StopReason.MAX_ROUNDS;
+        }
+        return ConvergenceState.StopReason.NONE;
     }
     
     /**
      * 计算接收速度
+     * 使用采样点的真实时间戳计算速度，前SLIDING_WINDOW个点相对首包时刻累积计算，
+     * 之后使用跨SLIDING_WINDOW个采样点的滑动窗口
      */
     private void calculateSpeed() {
-        synchronized (rcvBytesRecord) {
-            Log.d(TAG, "Receive Bytes Record size: " + rcvBytesRecord.size());
-            
-            // 移除最后9个不稳定的采样点
-            for (int i = 0; i < 9 && rcvBytesRecord.size() > 0; i++) {
-                rcvBytesRecord.remove(rcvBytesRecord.size() - 1);
-            }
-            
-            // 计算速度样本
-            rcvSpeedSamples.clear();
-            for (int i = 0; i < rcvBytesRecord.size(); i++) {
-                float speedSample;
-                if (i < 5) {
-                    // 前5个点使用累积计算
-                    speedSample = rcvBytesRecord.get(i) * 8.0f / 1024 / 1024 / ((i + 1) * 0.01f);
-                } else {
-                    // 后续点使用滑动窗口计算
-                    speedSample = (rcvBytesRecord.get(i) - rcvBytesRecord.get(i - 5)) * 8.0f / 1024 / 1024 / 0.05f;
-                }
-                rcvSpeedSamples.add(speedSample);
+        SampleRing ring = sampler.getRing();
+        long startNanos = sampler.getRoundStartNanos();
+        Log.d(TAG, "Receive Bytes Record size: " + ring.size());
+        
+        // 移除最后几个不稳定的采样点
+        int count = Math.max(0, ring.size() - UNSTABLE_TAIL_SAMPLES);
+        
+        // 计算速度样本，直接写入分位数sketch，无需装箱和排序
+        roundSketch.reset();
+        for (int i = 0; i < count; i++) {
+            long bytes;
+            long elapsedNanos;
+            if (i < SLIDING_WINDOW) {
+                // 前几个点使用累积计算
+                bytes = ring.valueAt(i);
+                elapsedNanos = ring.timestampAt(i) - startNanos;
+            } else {
+                // 后续点使用滑动窗口计算
+                bytes = ring.valueAt(i) - ring.valueAt(i - SLIDING_WINDOW);
+                elapsedNanos = ring.timestampAt(i) - ring.timestampAt(i - SLIDING_WINDOW);
             }
-            
-            // 计算95百分位数
-            if (!rcvSpeedSamples.isEmpty()) {
-                Collections.sort(rcvSpeedSamples);
-                int percentileIndex = Math.min(95 * rcvSpeedSamples.size() / 100, rcvSpeedSamples.size() - 1);
-                rcvSpeed = rcvSpeedSamples.get(percentileIndex);
-                Log.d(TAG, "Download speed (95th percentile): " + rcvSpeed + " Mbps");
+            if (elapsedNanos > 0) {
+                roundSketch.add(toMbps(bytes, elapsedNanos));
             }
         }
+        
+        // 计算95百分位数
+        if (roundSketch.getCount() > 0) {
+            rcvSpeed = roundSketch.quantile(0.95);
+            Log.d(TAG, "Download speed (95th percentile): " + rcvSpeed + " Mbps");
+        }
+    }
+    
+    /**
+     * 字节数和纳秒时长换算为Mbps
+     */
+    private static float toMbps(long bytes, long elapsedNanos) {
+        return bytes * 8.0f / 1024 / 1024 / (elapsedNanos / 1e9f);
+    }
+    
+    /**
+     * 开始本轮的丢包统计窗口，在等待首包之前调用
+     * 窗口开头可能先读到上一轮留在接收缓冲区的尾包，最多为缓冲区能容纳的包数
+     */
+    protected void beginPacketWindow() throws IOException {
+        if (sequenceTracker != null && isDatagramTransport()) {
+            sequenceTracker.beginWindow(getReceiveBufferSize() / PACKET_SIZE);
+        }
+    }
+    
+    /**
+     * 测量Socket的接收缓冲区大小 (字节)
+     */
+    protected int getReceiveBufferSize() throws IOException {
+        return datagramSocket.getReceiveBufferSize();
+    }
+    
+    /**
+     * 本轮接收时段内的传输质量统计
+     */
+    protected PacketStats snapshotPacketStats() {
+        return sequenceTracker.snapshot();
+    }
+    
+    /**
+     * 是否基于UDP数据报传输；流式传输（TCP）不支持时延探测和序号统计
+     */
+    protected boolean isDatagramTransport() {
+        return true;
+    }
+    
+    /**
+     * 一轮速度计算完成、通知onSingleTestComplete之前调用，子类可以在此上报额外的轮次数据
+     */
+    protected void onRoundFinished() {
     }
     
     /**
@@ -309,13 +769,16 @@ public class UdpTester extends Thread {
         if (rcvSpeed * SATURATED_THRESHOLD >= sendSpeed) {
             // 不饱和，重置计数器
             saturated = false;
+            maxRoundSpeed = Math.max(maxRoundSpeed, rcvSpeed);
             repeatCounter = 0;
-            rcvSpeeds.clear();
+            estimator.reset();
+            saturatedSketch.reset();
             Log.d(TAG, "Not saturated, resetting counter");
         } else {
             // 饱和，记录速度
             saturated = true;
-            rcvSpeeds.add(rcvSpeed);
+            estimator.add(rcvSpeed);
+            saturatedSketch.merge(roundSketch);
             Log.d(TAG, "Saturated, recorded speed: " + rcvSpeed);
         }
     }
@@ -324,10 +787,8 @@ public class UdpTester extends Thread {
      * 重置单次测试数据
      */
     private void resetSingleTestData() {
-        rcvBytesCount = 0;
-        rcvBytesRecord.clear();
-        rcvSpeedSamples.clear();
-        receive = false;
+        resetReceivedBytes();
+        roundSketch.reset();
         getSingle = false;
     }
     
@@ -335,14 +796,8 @@ public class UdpTester extends Thread {
      * 计算最终结果
      */
     private void calculateFinalResult() {
-        if (!rcvSpeeds.isEmpty()) {
-            float sum = 0;
-            for (float speed : rcvSpeeds) {
-                sum += speed;
-            }
-            downloadSpeed = sum / rcvSpeeds.size();
-            Log.d(TAG, "Final download speed: " + downloadSpeed + " Mbps");
-        }
+        downloadSpeed = getEstimatedSpeed();
+        Log.d(TAG, "Final download speed: " + downloadSpeed + " Mbps");
         
         callback.onAllTestsComplete(downloadSpeed);
     }
@@ -353,17 +808,32 @@ public class UdpTester extends Thread {
     private void cleanup() {
         isRunning = false;
         
-        if (sampleTimer != null) {
-            sampleTimer.cancel();
-            sampleTimer = null;
+        sampler.shutdown();
+        
+        if (loadedProber != null) {
+            loadedProber.stop();
         }
         
+        closeSocket();
+        
+        Log.d(TAG, "UDP tester cleaned up");
+    }
+    
+    /**
+     * 把从context借用的缓冲区归还，只在测试线程退出前调用一次
+     * closeSocket()可能由其他线程调用，那时测试线程可能还在使用缓冲区，因此不能在closeSocket()中归还
+     */
+    protected void releaseBuffers() {
+    }
+    
+    /**
+     * 关闭Socket
+     */
+    protected void closeSocket() {
         if (datagramSocket != null && !datagramSocket.isClosed()) {
             datagramSocket.close();
             datagramSocket = null;
         }
-        
-        Log.d(TAG, "UDP tester cleaned up");
     }
     
     // 公共方法
@@ -371,19 +841,103 @@ public class UdpTester extends Thread {
     /**
      * 停止UDP测试
      */
+    @Override
     public void stopTest() {
         Log.d(TAG, "Stopping UDP test");
         isRunning = false;
         trigger = false;
         receive = false;
+        LockSupport.unpark(thread);
         cleanup();
     }
     
+    /**
+     * 服务器已收到触发包并开始新一轮发送
+     */
+    @Override
+    public void startRound(int sendSpeed) {
+        setTrigger(false);
+        setSendSpeed(sendSpeed);
+        setReceive(true);
+    }
+    
+    /**
+     * 数据报引擎支持在测量Socket上收发轮次控制报文，TCP后备不支持
+     */
+    @Override
+    public boolean supportsInbandControl() {
+        return isDatagramTransport();
+    }
+    
+    /**
+     * 分配控制报文缓冲区，须在start()之前调用
+     */
+    @Override
+    public void enableInbandControl() {
+        if (!supportsInbandControl()) {
+            throw new IllegalStateException("In-band control not supported by " + getEngineName());
+        }
+        controlTxBuffer = ByteBuffer.allocate(UdpControl.SIZE);
+        controlRxBuffer = ByteBuffer.allocate(PACKET_SIZE);
+        inbandControl = true;
+    }
+    
+    /**
+     * 取用快速启动准备的资源，须在start()之前调用
+     */
+    @Override
+    public void usePrepared(PreparedSockets prepared) {
+        this.prepared = prepared;
+    }
+    
+    /**
+     * 记录下一轮请求，由测试线程在本轮结束后发送并等待确认
+     */
+    @Override
+    public void requestNextRound(boolean repeat, int proposedSpeed) {
+        if (!inbandControl) {
+            throw new IllegalStateException("In-band control not enabled");
+        }
+        nextRoundRepeat = repeat;
+        nextRoundProposal = proposedSpeed;
+        nextRoundPending = true;
+    }
+    
+    /**
+     * 在按执行模式创建的线程上运行测试，只能调用一次
+     */
+    @Override
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Tester already started");
+        }
+        thread = Threads.newThread(config.getExecutionMode(), getClass().getSimpleName(), this, false);
+        thread.start();
+    }
+    
+    @Override
+    public boolean awaitTermination(long timeoutMs) throws InterruptedException {
+        Thread t = thread;
+        if (t == null) {
+            return true;
+        }
+        if (t != Thread.currentThread()) {
+            t.join(timeoutMs);
+        }
+        return !t.isAlive();
+    }
+    
     /**
      * 设置触发状态
      */
     public void setTrigger(boolean trigger) {
+        if (!trigger && this.trigger && triggerStopNanos == 0) {
+            triggerStopNanos = System.nanoTime();
+        }
         this.trigger = trigger;
+        if (!trigger) {
+            LockSupport.unpark(thread);
+        }
         Log.d(TAG, "Trigger set to: " + trigger);
     }
     
@@ -399,7 +953,13 @@ public class UdpTester extends Thread {
      * 设置接收状态
      */
     public void setReceive(boolean receive) {
+        if (receive) {
+            signalNanos = System.nanoTime();
+        }
         this.receive = receive;
+        if (receive) {
+            LockSupport.unpark(thread);
+        }
         Log.d(TAG, "Receive set to: " + receive);
     }
     
@@ -409,6 +969,7 @@ public class UdpTester extends Thread {
         return isRunning;
     }
     
+    @Override
     public int getRepeatCounter() {
         return repeatCounter;
     }
@@ -422,14 +983,92 @@ public class UdpTester extends Thread {
     }
     
     public boolean isTestEnd() {
-        return getSingle && (repeatCounter >= MAX_LOOP);
+        return getSingle && testEnd;
     }
     
+    /**
+     * 当前速度估计：饱和轮次的均值；尚无饱和轮次时为未饱和轮次的最高速度（链路容量的下界）
+     */
+    @Override
+    public float getEstimatedSpeed() {
+        return estimator.getCount() > 0 ? estimator.getMean() : maxRoundSpeed;
+    }
+    
+    /**
+     * 测速前测得的空载时延
+     */
+    public LatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+    
+    /**
+     * 下载过程中的空载时延（触发阶段与轮次间隙），未开启负载时延探测时为EMPTY
+     */
+    public LatencyStats getIdleLatencyStats() {
+        return loadedProber != null ? loadedProber.getIdleStats() : LatencyStats.EMPTY;
+    }
+    
+    /**
+     * 所有轮次的负载时延，未开启负载时延探测时为EMPTY
+     */
+    public LatencyStats getLoadedLatencyStats() {
+        return loadedProber != null ? loadedProber.getLoadedStats() : LatencyStats.EMPTY;
+    }
+    
+    @Override
     public float getDownloadSpeed() {
         return downloadSpeed;
     }
     
+    /**
+     * 未饱和轮次累计的序号/时间戳统计，反映链路本身的丢包；未开启sequencedPayload时为PacketStats.EMPTY
+     */
+    public PacketStats getPacketStats() {
+        return unsaturatedPacketStats;
+    }
+    
+    /**
+     * 饱和轮次累计的序号/时间戳统计，丢包主要来自服务器有意超发
+     */
+    public PacketStats getSaturatedPacketStats() {
+        return saturatedPacketStats;
+    }
+    
+    /**
+     * 所有计入最终结果的饱和轮次的速度样本分布，仅在测试结束后读取
+     */
+    public QuantileSketch getSpeedSketch() {
+        return saturatedSketch;
+    }
+    
+    /**
+     * 由饱和轮次的速度分布、序号统计和时延统计汇总，空载时延优先使用测速前的探测结果
+     */
+    @Override
+    public SpeedMetrics getSpeedMetrics() {
+        LatencyStats idle = latencyStats.isValid() ? latencyStats : getIdleLatencyStats();
+        return new SpeedMetrics.Builder()
+                .speedSketch(saturatedSketch)
+                .packetStats(unsaturatedPacketStats)
+                .saturatedPacketStats(saturatedPacketStats)
+                .latency(idle, getLoadedLatencyStats())
+                .build();
+    }
+    
     public boolean getSingle() {
         return getSingle;
     }
+    
+    /**
+     * 触发阶段与轮次切换的交接耗时，每次切换后更新
+     */
+    @Override
+    public HandoffStats getHandoffStats() {
+        return handoffStats;
+    }
+    
+    @Override
+    public String getEngineName() {
+        return "udp-blocking";
+    }
 }
\ No newline at end of file
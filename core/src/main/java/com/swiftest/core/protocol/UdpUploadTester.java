@@ -0,0 +1,347 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.exec.Threads;
+import com.swiftest.core.interfaces.UploadTestCallback;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.models.ConvergenceState;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.stats.ConvergenceEstimator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * UDP上传测速引擎
+ * 与UdpTester的下载流程对称：每轮按目标速率发送ROUND_DURATION的数据，
+ * 由服务器通过WebSocket上报本轮收到的字节数，再按同样的饱和/重复规则决定下一轮。
+ * - 载荷来自预分配的direct ByteBuffer池，发送路径只改写头部的序号和时间戳，不分配对象
+ * - 发送节拍由Pacer控制（令牌桶 + park/自旋混合等待）
+ * - 头部格式与SequenceTracker一致（8字节序号 + 8字节发送时间µs，big-endian），服务器可据此统计丢包
+ */
+public class UdpUploadTester implements Runnable {
+    
+    private static final String TAG = "UdpUploadTester";
+    
+    // 收敛判断至少需要的饱和轮次，少于2个样本无法估计方差
+    private static final int MIN_SATURATED_ROUNDS = 2;
+    private static final float SATURATED_THRESHOLD = 1.2f;
+    private static final int POOL_SIZE = 64;
+    private static final int POOL_MASK = POOL_SIZE - 1;
+    // 令牌桶容量：允许的最大突发包数
+    private static final int BURST_PACKETS = 16;
+    private static final int SEND_BUFFER_SIZE = 4 * 1024 * 1024;
+    
+    // 轮次状态，除stopTest()外的转换都用compareAndSet，不会覆盖其他线程设置的STATE_FINISHED
+    private static final int STATE_IDLE = 0;        // 等待服务器确认可以开始
+    private static final int STATE_SENDING = 1;     // 正在发送
+    private static final int STATE_REPORTING = 2;   // 等待服务器上报接收统计
+    private static final int STATE_FINISHED = 3;
+    
+    private final SwiftestEngine context;
+    private final SpeedTestConfig config;
+    private final String serverHost;
+    private final int udpPort;
+    private final UploadTestCallback callback;
+    private final long replyTimeoutNanos;
+    
+    private final ByteBuffer[] payloadPool = new ByteBuffer[POOL_SIZE];
+    private final Pacer pacer = new Pacer((long) BURST_PACKETS * UdpTester.PACKET_SIZE);
+    private final ConvergenceEstimator estimator = new ConvergenceEstimator();
+    private DatagramChannel channel;
+    
+    private volatile Thread thread;
+    private final AtomicInteger state = new AtomicInteger(STATE_IDLE);
+    private volatile int roundSpeed = 0;
+    private volatile long reportedBytes = -1;
+    private volatile long reportedMicros = 0;
+    
+    private long sequence = 0;
+    private long roundSentBytes = 0;
+    private long roundDurationNanos = 0;
+    private int loopCounter = 0;
+    private int totalRounds = 0;
+    private float uploadSpeed = 0;
+    private float maxRoundSpeed = 0;
+    
+    public UdpUploadTester(SpeedTestConfig config, int udpPort, UploadTestCallback callback) {
+        this(SwiftestEngine.shared(config.getExecutionMode()), config, udpPort, callback);
+    }
+    
+    /**
+     * @param context 提供共享的服务器地址缓存
+     */
+    public UdpUploadTester(SwiftestEngine context, SpeedTestConfig config, int udpPort, UploadTestCallback callback) {
+        this.context = context;
+        this.config = config;
+        this.serverHost = config.getServerHost();
+        this.udpPort = udpPort;
+        this.callback = callback;
+        this.replyTimeoutNanos = config.getReceiveTimeoutSeconds() * 1_000_000_000L;
+    }
+    
+    @Override
+    public void run() {
+        try {
+            initializeChannel();
+            
+            while (state.get() != STATE_FINISHED) {
+                // 等待服务器确认本轮开始，超时与stopTest()竞争时只有一方能转换为FINISHED
+                if (!awaitState(STATE_SENDING)) {
+                    if (state.compareAndSet(STATE_IDLE, STATE_FINISHED)) {
+                        Log.w(TAG, "Server did not acknowledge upload round");
+                        callback.onUploadUnsupported();
+                    }
+                    break;
+                }
+                
+                sendRound(roundSpeed);
+                if (!state.compareAndSet(STATE_SENDING, STATE_REPORTING)) {
+                    break;
+                }
+                callback.onRoundSent(loopCounter, roundSentBytes, roundDurationNanos);
+                
+                // 等待服务器上报本轮接收的字节数
+                if (!awaitReport()) {
+                    if (state.compareAndSet(STATE_REPORTING, STATE_FINISHED)) {
+                        callback.onUploadError("Upload report timeout");
+                    }
+                    break;
+                }
+                processRoundResult();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Upload test failed", e);
+            if (state.getAndSet(STATE_FINISHED) != STATE_FINISHED) {
+                callback.onUploadError(e.getMessage());
+            }
+        } finally {
+            state.set(STATE_FINISHED);
+            closeChannel();
+        }
+    }
+    
+    /**
+     * 初始化发送通道和载荷池
+     */
+    private void initializeChannel() throws IOException {
+        channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_SIZE);
+        channel.connect(new InetSocketAddress(context.getDnsCache().resolveFirst(serverHost), udpPort));
+        
+        for (int i = 0; i < POOL_SIZE; i++) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(UdpTester.PACKET_SIZE);
+            for (int j = 0; j < UdpTester.PACKET_SIZE; j++) {
+                buffer.put(j, (byte) j);
+            }
+            payloadPool[i] = buffer;
+        }
+        
+        Log.d(TAG, "Upload channel initialized for " + serverHost + ":" + udpPort);
+    }
+    
+    /**
+     * 按目标速率发送一轮数据
+     */
+    private void sendRound(int speedMbps) throws IOException {
+        loopCounter++;
+        callback.onTestStart(loopCounter, speedMbps);
+        
+        long start = System.nanoTime();
+        long deadline = start + UdpTester.ROUND_DURATION_NANOS;
+        long sent = 0;
+        pacer.start(speedMbps * 1024.0 * 1024.0 / 8.0, start);
+        
+        long now = start;
+        while (state.get() == STATE_SENDING) {
+            now = pacer.acquire(UdpTester.PACKET_SIZE, deadline);
+            if (now >= deadline) {
+                break;
+            }
+            
+            ByteBuffer payload = payloadPool[(int) (sequence & POOL_MASK)];
+            payload.clear();
+            payload.putLong(0, sequence);
+            payload.putLong(8, now / 1000L);
+            sent += channel.write(payload);
+            sequence++;
+        }
+        
+        roundSentBytes = sent;
+        roundDurationNanos = now - start;
+        Log.d(TAG, "Round " + loopCounter + " sent " + sent + " bytes in "
+                + roundDurationNanos / 1_000_000L + "ms at target " + speedMbps + "Mbps");
+    }
+    
+    /**
+     * 根据服务器上报的接收字节数计算速度，判断饱和与停止条件
+     */
+    private void processRoundResult() {
+        totalRounds++;
+        long durationNanos = reportedMicros > 0 ? reportedMicros * 1000L : roundDurationNanos;
+        uploadSpeed = durationNanos > 0
+                ? reportedBytes * 8.0f / 1024 / 1024 / (durationNanos / 1e9f) : 0;
+        
+        // 与下载相同的饱和判断：目标速率明显高于服务器收到的速率
+        boolean saturated = uploadSpeed * SATURATED_THRESHOLD < roundSpeed;
+        if (saturated) {
+            estimator.add(uploadSpeed);
+        } else {
+            maxRoundSpeed = Math.max(maxRoundSpeed, uploadSpeed);
+            estimator.reset();
+        }
+        
+        ConvergenceState convergence = new ConvergenceState(estimator.getMean(), estimator.getHalfWidth(),
+                estimator.getCount(), totalRounds, stopReason());
+        boolean testEnd = convergence.isStopped();
+        if (!state.compareAndSet(STATE_REPORTING, testEnd ? STATE_FINISHED : STATE_IDLE)) {
+            // 已被stopTest()结束，不再回调
+            return;
+        }
+        
+        Log.d(TAG, "Upload round " + loopCounter + ": " + uploadSpeed + "Mbps, saturated=" + saturated);
+        callback.onSingleTestComplete(uploadSpeed, saturated, testEnd, convergence);
+    }
+    
+    /**
+     * 停止规则与UdpTester一致
+     */
+    private ConvergenceState.StopReason stopReason() {
+        float tolerance = config.getConvergenceTolerance();
+        if (tolerance > 0 && estimator.isConverged(tolerance, MIN_SATURATED_ROUNDS)) {
+            return ConvergenceState.StopReason.CONVERGED;
+        }
+        if (estimator.getCount() >= config.getMaxSaturatedRounds()) {
+            return ConvergenceState.StopReason.MAX_SATURATED_ROUNDS;
+        }
+        if (totalRounds >= config.getMaxRounds()) {
+            return ConvergenceState.StopReason.MAX_ROUNDS;
+        }
+        return ConvergenceState.StopReason.NONE;
+    }
+    
+    private boolean awaitState(int expected) {
+        long deadline = System.nanoTime() + replyTimeoutNanos;
+        int current;
+        while ((current = state.get()) != expected && current != STATE_FINISHED) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+        return state.get() == expected;
+    }
+    
+    private boolean awaitReport() {
+        long deadline = System.nanoTime() + replyTimeoutNanos;
+        while (reportedBytes < 0 && state.get() != STATE_FINISHED) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+        return reportedBytes >= 0;
+    }
+    
+    // 公共方法
+    
+    /**
+     * 服务器确认可以开始一轮上传
+     * @param speed 本轮目标发送速率 (Mbps)
+     */
+    public void startRound(int speed) {
+        if (state.get() != STATE_IDLE) {
+            Log.w(TAG, "Ignoring upload start in state " + state.get());
+            return;
+        }
+        roundSpeed = speed;
+        reportedBytes = -1;
+        if (!state.compareAndSet(STATE_IDLE, STATE_SENDING)) {
+            Log.w(TAG, "Ignoring upload start in state " + state.get());
+            return;
+        }
+        LockSupport.unpark(thread);
+    }
+    
+    /**
+     * 服务器上报本轮收到的字节数
+     * @param bytes 服务器收到的字节数
+     * @param durationMicros 服务器侧首包到末包的时长，0表示使用客户端发送时长
+     */
+    public void onServerReport(long bytes, long durationMicros) {
+        if (state.get() != STATE_REPORTING) {
+            Log.w(TAG, "Ignoring upload report in state " + state.get());
+            return;
+        }
+        reportedMicros = durationMicros;
+        reportedBytes = bytes;
+        LockSupport.unpark(thread);
+    }
+    
+    /**
+     * 在按执行模式创建的线程上运行上传测试，只能调用一次
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Upload tester already started");
+        }
+        thread = Threads.newThread(config.getExecutionMode(), "UdpUploadTester", this, false);
+        thread.start();
+    }
+    
+    /**
+     * 等待上传线程结束，在上传线程自身的回调中调用时直接返回
+     * @return 线程已结束时返回true
+     */
+    public boolean awaitTermination(long timeoutMs) throws InterruptedException {
+        Thread t = thread;
+        if (t == null) {
+            return true;
+        }
+        if (t != Thread.currentThread()) {
+            t.join(timeoutMs);
+        }
+        return !t.isAlive();
+    }
+    
+    /**
+     * 停止上传测试
+     */
+    public void stopTest() {
+        state.set(STATE_FINISHED);
+        LockSupport.unpark(thread);
+    }
+    
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close upload channel", e);
+            }
+            channel = null;
+        }
+    }
+    
+    /**
+     * 最终上传速度：饱和轮次的均值，链路始终未饱和时取最大单轮速度
+     */
+    public float getEstimatedSpeed() {
+        return estimator.getCount() > 0 ? estimator.getMean() : Math.max(maxRoundSpeed, uploadSpeed);
+    }
+    
+    public float getUploadSpeed() {
+        return uploadSpeed;
+    }
+    
+    public int getLoopCounter() {
+        return loopCounter;
+    }
+}
@@ -1,19 +1,17 @@
 package com.swiftest.core.protocol;
 
-import android.util.Log;
-
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-
+import com.swiftest.core.exec.HashedWheelTimer;
+import com.swiftest.core.exec.SwiftestEngine;
 import com.swiftest.core.interfaces.WebSocketCallback;
+import com.swiftest.core.log.Log;
 import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.net.DnsCache;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.OkHttpClient;
@@ -21,13 +19,14 @@ import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
+import okio.ByteString;
 
 /**
  * 统一的WebSocket客户端实现
  * 抽取了原始WsService和WebSocketHandler的共同逻辑
  * 支持App模式和SDK模式的不同协议
  */
-public class WebSocketClient extends Thread {
+public class WebSocketClient {
     
     private static final String TAG = "WebSocketClient";
     
@@ -35,23 +34,55 @@ public class WebSocketClient extends Thread {
     private final WebSocketCallback callback;
     
     private volatile boolean isRunning = false;
-    private OkHttpClient httpClient;
     private WebSocket webSocket;
-    private ScheduledExecutorService executorService;
+    // 共享的时间轮定时器，停止时只取消本连接的超时
+    private final HashedWheelTimer timeoutTimer;
+    private final OkHttpClient sharedClient;
+    private final DnsCache dnsCache;
+    // 当前等待服务器回复的接收超时任务，收到任何消息时取消
+    private volatile HashedWheelTimer.Timeout currentTimeoutTask;
+    // 握手时建议的第一轮速率 (Mbps)，0表示不建议
+    private volatile int initialSpeed = 0;
+    // 服务器回复过合法的二进制帧后，控制消息改用二进制发送
+    private volatile boolean binaryControl = false;
+    // 编码缓冲区复用，编码和发送在同一把锁内完成
+    private final BinaryControlCodec encoder = new BinaryControlCodec();
+    private final BinaryControlCodec.Handler binaryHandler = new BinaryHandler();
     
     public WebSocketClient(SpeedTestConfig config, WebSocketCallback callback) {
+        this(SwiftestEngine.shared(config.getExecutionMode()), config, callback);
+    }
+    
+    /**
+     * @param context 提供共享的HTTP客户端和超时定时器
+     */
+    public WebSocketClient(SwiftestEngine context, SpeedTestConfig config, WebSocketCallback callback) {
         this.config = config;
         this.callback = callback;
-        this.executorService = Executors.newScheduledThreadPool(2);
+        this.timeoutTimer = context.getTimeoutTimer();
+        this.sharedClient = context.getHttpClient();
+        this.dnsCache = context.getDnsCache();
     }
     
-    @Override
-    public void run() {
+    /**
+     * 设置握手时建议的第一轮速率，需在握手消息发送前调用（onConnected回调中或connect()之前）
+     * @param speed 建议速率 (Mbps)，0表示不建议
+     */
+    public void setInitialSpeed(int speed) {
+        this.initialSpeed = speed;
+    }
+    
+    /**
+     * 发起WebSocket连接，OkHttp异步建立连接，调用后立即返回
+     */
+    public void connect() {
         isRunning = true;
         
-        // 创建OkHttp客户端
-        httpClient = new OkHttpClient.Builder()
+        // 从共享客户端派生，复用连接池和Dispatcher，只设置本测试的读超时
+        // 地址经共享缓存解析，同时有IPv4/IPv6时首次连接前竞速确定首选地址族，之后UDP也使用该地址族
+        OkHttpClient httpClient = sharedClient.newBuilder()
                 .readTimeout(config.getReceiveTimeoutSeconds(), TimeUnit.SECONDS)
+                .dns(host -> dnsCache.resolveForConnect(host, config.getWebSocketPort()))
                 .build();
         
         // 构建WebSocket请求
@@ -64,10 +95,8 @@ public class WebSocketClient extends Thread {
         // 创建WebSocket连接
         webSocket = httpClient.newWebSocket(request, new WebSocketListener() {
             
-            private ScheduledFuture<?> currentTimeoutTask;
-            
             @Override
-            public void onOpen(@NonNull WebSocket webSocket, @NonNull Response response) {
+            public void onOpen(WebSocket webSocket, Response response) {
                 Log.d(TAG, "WebSocket connected");
                 callback.onConnected();
                 
@@ -76,12 +105,15 @@ public class WebSocketClient extends Thread {
             }
             
             @Override
-            public void onMessage(@NonNull WebSocket webSocket, @NonNull String text) {
-                Log.d(TAG, "Received: " + text);
+            public void onMessage(WebSocket webSocket, String text) {
+                if (Log.isLoggable(Log.DEBUG)) {
+                    Log.d(TAG, "Received: " + text);
+                }
                 
                 // 取消接收超时任务
-                if (currentTimeoutTask != null) {
-                    currentTimeoutTask.cancel(false);
+                HashedWheelTimer.Timeout timeoutTask = currentTimeoutTask;
+                if (timeoutTask != null) {
+                    timeoutTask.cancel();
                 }
                 
                 try {
@@ -93,13 +125,32 @@ public class WebSocketClient extends Thread {
             }
             
             @Override
-            public void onFailure(@NonNull WebSocket webSocket, @NonNull Throwable t, @Nullable Response response) {
+            public void onMessage(WebSocket webSocket, ByteString bytes) {
+                // 取消接收超时任务
+                HashedWheelTimer.Timeout timeoutTask = currentTimeoutTask;
+                if (timeoutTask != null) {
+                    timeoutTask.cancel();
+                }
+                
+                if (!config.isBinaryControl()
+                        || !BinaryControlCodec.decode(bytes.asByteBuffer(), binaryHandler)) {
+                    Log.w(TAG, "Ignoring unexpected binary message (" + bytes.size() + " bytes)");
+                    return;
+                }
+                if (!binaryControl) {
+                    binaryControl = true;
+                    Log.d(TAG, "Server accepted binary control frames");
+                }
+            }
+            
+            @Override
+            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
                 Log.e(TAG, "WebSocket connection failed", t);
                 callback.onConnectionFailed(t.getMessage());
             }
             
             @Override
-            public void onClosed(@NonNull WebSocket webSocket, int code, @NonNull String reason) {
+            public void onClosed(WebSocket webSocket, int code, String reason) {
                 Log.d(TAG, "WebSocket closed: " + code + " " + reason);
                 callback.onDisconnected(code, reason);
             }
@@ -121,7 +172,37 @@ public class WebSocketClient extends Thread {
                         initMessage.put("msg", "hello");
                     }
                     
-                    sendMessageWithTimeout(webSocket, initMessage);
+                    // 请求服务器为数据报写入序号和发送时间戳，不支持的服务器会忽略该字段
+                    if (config.isSequencedPayload()) {
+                        initMessage.put("seq", true);
+                    }
+                    
+                    // 请求服务器原样回显时延探测包
+                    if (config.isLatencyProbe() || config.isLoadedLatencyProbe()) {
+                        initMessage.put("echo", true);
+                    }
+                    
+                    // 请求多个UDP端口，服务器仍返回udp_port时退化为单流
+                    if (config.getFlows() > 1) {
+                        initMessage.put("flows", config.getFlows());
+                    }
+                    
+                    // 提议第二轮起经测量Socket收发轮次控制，服务器在端口分配消息中确认
+                    if (config.isUdpControl()) {
+                        initMessage.put("udp_control", 1);
+                    }
+                    
+                    // 热启动：建议服务器从该速率开始第一轮，不支持的服务器会忽略该字段
+                    if (initialSpeed > 0) {
+                        initMessage.put("speed", initialSpeed);
+                    }
+                    
+                    // 提议二进制控制帧，服务器回复文本时继续使用JSON
+                    if (config.isBinaryControl()) {
+                        initMessage.put("binary", BinaryControlCodec.VERSION);
+                    }
+                    
+                    sendMessageWithTimeout(webSocket, initMessage, true);
                     
                 } catch (JSONException e) {
                     Log.e(TAG, "Failed to create initial message", e);
@@ -137,6 +218,31 @@ public class WebSocketClient extends Thread {
                     // 通知回调接口
                     callback.onMessageReceived(message);
                     
+                    // 服务器接受轮次内联控制，在端口回调之前通知，以便创建引擎时启用
+                    if (config.isUdpControl() && message.optBoolean("udp_control", false)) {
+                        callback.onUdpControlAccepted();
+                    }
+                    
+                    // 处理多流UDP端口分配
+                    JSONArray udpPorts = message.optJSONArray("udp_ports");
+                    if (udpPorts != null && udpPorts.length() > 0) {
+                        int[] ports = new int[udpPorts.length()];
+                        for (int i = 0; i < ports.length; i++) {
+                            ports[i] = udpPorts.getInt(i);
+                        }
+                        Log.d(TAG, "Received " + ports.length + " UDP ports");
+                        callback.onUdpPortsReceived(ports);
+                        return;
+                    }
+                    
+                    // 处理TCP后备端口分配（UDP被阻断时由客户端请求）
+                    if (message.has("tcp_port")) {
+                        int tcpPort = message.getInt("tcp_port");
+                        Log.d(TAG, "Received TCP port: " + tcpPort);
+                        callback.onTcpPortReceived(tcpPort, message.optString("token", ""));
+                        return;
+                    }
+                    
                     // 处理UDP端口分配
                     if (message.has("udp_port")) {
                         int udpPort = message.getInt("udp_port");
@@ -162,7 +268,17 @@ public class WebSocketClient extends Thread {
                                 callback.onSpeedTestStart(speed);
                                 
                                 // 发送开始确认
-                                sendStartAck(webSocket);
+                                sendStartAck();
+                                break;
+                                
+                            case "upload_ready":
+                                // 服务器已准备好接收本轮上传数据
+                                callback.onUploadReady();
+                                break;
+                                
+                            case "upload_report":
+                                // 服务器上报本轮上传收到的数据量
+                                callback.onUploadReport(message.getLong("bytes"), message.optLong("duration", 0));
                                 break;
                                 
                             case "exceed":
@@ -187,58 +303,56 @@ public class WebSocketClient extends Thread {
                     Log.e(TAG, "Error processing message", e);
                 }
             }
-            
-            /**
-             * 发送开始确认消息
-             */
-            private void sendStartAck(WebSocket webSocket) {
-                try {
-                    JSONObject ackMessage = new JSONObject();
-                    ackMessage.put("msg", "start");
-                    sendMessageWithTimeout(webSocket, ackMessage);
-                } catch (JSONException e) {
-                    Log.e(TAG, "Failed to send start ack", e);
-                }
-            }
-            
-            /**
-             * 带超时机制的消息发送
-             */
-            private void sendMessageWithTimeout(WebSocket webSocket, JSONObject message) {
-                // 设置发送超时
-                ScheduledFuture<?> sendTimeoutTask = executorService.schedule(() -> {
-                    Log.w(TAG, "Send timeout for message: " + message.toString());
-                    callback.onSendTimeout();
-                }, config.getSendTimeoutSeconds(), TimeUnit.SECONDS);
-                
-                boolean sent = webSocket.send(message.toString());
-                if (sent) {
-                    sendTimeoutTask.cancel(false);
-                    Log.d(TAG, "Sent: " + message.toString());
-                    
-                    // 设置接收超时
-                    currentTimeoutTask = executorService.schedule(() -> {
-                        Log.w(TAG, "Receive timeout after sending: " + message.toString());
-                        callback.onReceiveTimeout();
-                    }, config.getReceiveTimeoutSeconds(), TimeUnit.SECONDS);
-                } else {
-                    sendTimeoutTask.cancel(false);
-                    Log.e(TAG, "Failed to send message: " + message.toString());
-                }
-            }
         });
     }
     
+    /**
+     * 发送开始确认消息
+     */
+    private void sendStartAck() {
+        if (binaryControl) {
+            synchronized (encoder) {
+                sendFrameWithTimeout(encoder.startAck(), true);
+            }
+            return;
+        }
+        
+        try {
+            JSONObject ackMessage = new JSONObject();
+            ackMessage.put("msg", "start");
+            sendMessageWithTimeout(ackMessage, true);
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to send start ack", e);
+        }
+    }
+    
     /**
      * 发送测速控制消息
      * @param command 命令类型："continue"(继续), "repeat"(重复), "finish"(结束)
      */
     public void sendSpeedControlMessage(String command) {
+        sendSpeedControlMessage(command, 0);
+    }
+    
+    /**
+     * 发送测速控制消息，并附带客户端建议的下一轮速率
+     * @param command 命令类型："continue"(继续), "repeat"(重复), "finish"(结束)
+     * @param proposedSpeed 建议速率 (Mbps)，0表示由服务器决定
+     */
+    public void sendSpeedControlMessage(String command, int proposedSpeed) {
         if (webSocket == null) {
             Log.w(TAG, "WebSocket not connected");
             return;
         }
         
+        boolean repeat = "repeat".equals(command);
+        if (binaryControl && (repeat || "continue".equals(command))) {
+            synchronized (encoder) {
+                sendFrameWithTimeout(encoder.speedControl(repeat, Math.max(proposedSpeed, 0)), false);
+            }
+            return;
+        }
+        
         try {
             JSONObject controlMessage = new JSONObject();
             
@@ -254,6 +368,10 @@ public class WebSocketClient extends Thread {
                 controlMessage.put("msg", sdkCommand);
             }
             
+            if (proposedSpeed > 0) {
+                controlMessage.put("speed", proposedSpeed);
+            }
+            
             sendMessageWithTimeout(controlMessage);
             
         } catch (JSONException e) {
@@ -275,6 +393,13 @@ public class WebSocketClient extends Thread {
     }
     
     private void sendFinishMessage(WebSocket webSocket, double downloadSpeed) {
+        if (binaryControl) {
+            synchronized (encoder) {
+                sendFrameWithTimeout(webSocket, encoder.finish(downloadSpeed), false);
+            }
+            return;
+        }
+        
         try {
             JSONObject finishMessage = new JSONObject();
             finishMessage.put("msg", "finish");
@@ -286,23 +411,235 @@ public class WebSocketClient extends Thread {
         }
     }
     
+    /**
+     * UDP触发超时后请求服务器改用TCP，服务器回复tcp_port
+     * 服务器在接收超时内未回复时通过onReceiveTimeout通知
+     * @param streams TCP连接数
+     */
+    public void sendTcpFallbackRequest(int streams) {
+        if (webSocket == null) {
+            Log.w(TAG, "WebSocket not connected");
+            return;
+        }
+        
+        if (binaryControl) {
+            synchronized (encoder) {
+                sendFrameWithTimeout(encoder.tcpRequest(streams), true);
+            }
+            return;
+        }
+        
+        try {
+            JSONObject tcpMessage = new JSONObject();
+            tcpMessage.put("msg", "tcp");
+            tcpMessage.put("streams", streams);
+            sendMessageWithTimeout(webSocket, tcpMessage, true);
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to send TCP fallback request", e);
+        }
+    }
+    
+    /**
+     * 请求开始一轮上传测速，服务器回复upload_ready后开始发送
+     * @param speed 本轮目标发送速率 (Mbps)
+     */
+    public void sendUploadStart(int speed) {
+        if (binaryControl) {
+            synchronized (encoder) {
+                sendFrameWithTimeout(encoder.upload(speed), false);
+            }
+            return;
+        }
+        sendUploadMessage("upload", "speed", speed);
+    }
+    
+    /**
+     * 本轮上传数据发送完毕，请求服务器上报收到的数据量
+     */
+    public void sendUploadStop() {
+        if (binaryControl) {
+            synchronized (encoder) {
+                sendFrameWithTimeout(encoder.uploadStop(), false);
+            }
+            return;
+        }
+        sendUploadMessage("upload_stop", null, null);
+    }
+    
+    /**
+     * 发送上传测速结束消息
+     * @param uploadSpeed 上传速度
+     */
+    public void sendUploadFinish(double uploadSpeed) {
+        if (binaryControl) {
+            synchronized (encoder) {
+                sendFrameWithTimeout(encoder.uploadFinish(uploadSpeed), false);
+            }
+            return;
+        }
+        sendUploadMessage("upload_finish", "upload", uploadSpeed);
+    }
+    
+    private void sendUploadMessage(String command, String key, Object value) {
+        if (webSocket == null) {
+            Log.w(TAG, "WebSocket not connected");
+            return;
+        }
+        
+        try {
+            JSONObject uploadMessage = new JSONObject();
+            uploadMessage.put("msg", command);
+            if (key != null) {
+                uploadMessage.put(key, value);
+            }
+            sendMessageWithTimeout(uploadMessage);
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to send upload message", e);
+        }
+    }
+    
     private void sendMessageWithTimeout(JSONObject message) {
-        if (webSocket != null) {
-            // 设置发送超时
-            ScheduledFuture<?> sendTimeoutTask = executorService.schedule(() -> {
-                Log.w(TAG, "Send timeout for message: " + message.toString());
-                callback.onSendTimeout();
-            }, config.getSendTimeoutSeconds(), TimeUnit.SECONDS);
-            
-            boolean sent = webSocket.send(message.toString());
-            if (sent) {
-                sendTimeoutTask.cancel(false);
-                Log.d(TAG, "Sent: " + message.toString());
+        sendMessageWithTimeout(message, false);
+    }
+    
+    private void sendMessageWithTimeout(JSONObject message, boolean awaitReply) {
+        WebSocket ws = webSocket;
+        if (ws != null) {
+            sendMessageWithTimeout(ws, message, awaitReply);
+        }
+    }
+    
+    private void sendMessageWithTimeout(WebSocket webSocket, JSONObject message) {
+        sendMessageWithTimeout(webSocket, message, false);
+    }
+    
+    private void sendMessageWithTimeout(WebSocket webSocket, JSONObject message, boolean awaitReply) {
+        sendWithTimeout(webSocket, message.toString(), null, awaitReply);
+    }
+    
+    /**
+     * 发送编码器缓冲区中的二进制帧，调用方持有encoder锁
+     */
+    private void sendFrameWithTimeout(ByteBuffer frame, boolean awaitReply) {
+        WebSocket ws = webSocket;
+        if (ws == null) {
+            Log.w(TAG, "WebSocket not connected");
+            return;
+        }
+        sendFrameWithTimeout(ws, frame, awaitReply);
+    }
+    
+    private void sendFrameWithTimeout(WebSocket webSocket, ByteBuffer frame, boolean awaitReply) {
+        sendWithTimeout(webSocket, null, ByteString.of(frame), awaitReply);
+    }
+    
+    /**
+     * 带超时机制的消息发送，text和frame二选一
+     * 超时登记在共享时间轮上，发送完成后立即取消，登记与取消都不加锁
+     * @param awaitReply 发送成功后是否等待服务器回复，超时未收到任何消息时通知onReceiveTimeout
+     */
+    private void sendWithTimeout(WebSocket webSocket, String text, ByteString frame, boolean awaitReply) {
+        // 设置发送超时
+        HashedWheelTimer.Timeout sendTimeoutTask = timeoutTimer.newTimeout(() -> {
+            if (!isRunning) {
+                return; // 连接已停止，超时可能在取消前已经到期
+            }
+            Log.w(TAG, "Send timeout for message: " + describe(text, frame));
+            callback.onSendTimeout();
+        }, config.getSendTimeoutSeconds(), TimeUnit.SECONDS);
+        
+        boolean sent = text != null ? webSocket.send(text) : webSocket.send(frame);
+        sendTimeoutTask.cancel();
+        if (!sent) {
+            Log.e(TAG, "Failed to send message: " + describe(text, frame));
+            return;
+        }
+        if (Log.isLoggable(Log.DEBUG)) {
+            Log.d(TAG, "Sent: " + describe(text, frame));
+        }
+        
+        if (awaitReply) {
+            // 设置接收超时
+            currentTimeoutTask = timeoutTimer.newTimeout(() -> {
+                if (!isRunning) {
+                    return;
+                }
+                Log.w(TAG, "Receive timeout after sending: " + describe(text, frame));
+                callback.onReceiveTimeout();
+            }, config.getReceiveTimeoutSeconds(), TimeUnit.SECONDS);
+        }
+    }
+    
+    private static String describe(String text, ByteString frame) {
+        if (text != null) {
+            return text;
+        }
+        return "binary type=0x" + Integer.toHexString(frame.getByte(2) & 0xFF) + " (" + frame.size() + " bytes)";
+    }
+    
+    /**
+     * 服务器二进制控制帧的处理，与processMessage中的JSON分支一一对应
+     */
+    private final class BinaryHandler implements BinaryControlCodec.Handler {
+        
+        @Override
+        public void onHelloAck() {
+            Log.d(TAG, "Received hello response");
+        }
+        
+        @Override
+        public void onUdpPorts(int[] ports, int flags) {
+            if (config.isUdpControl() && (flags & BinaryControlCodec.FLAG_UDP_CONTROL) != 0) {
+                callback.onUdpControlAccepted();
+            }
+            if (ports.length == 1) {
+                Log.d(TAG, "Received UDP port: " + ports[0]);
+                callback.onUdpPortReceived(ports[0]);
             } else {
-                sendTimeoutTask.cancel(false);
-                Log.e(TAG, "Failed to send message: " + message.toString());
+                Log.d(TAG, "Received " + ports.length + " UDP ports");
+                callback.onUdpPortsReceived(ports);
+            }
+        }
+        
+        @Override
+        public void onTcpPort(int port, String token) {
+            Log.d(TAG, "Received TCP port: " + port);
+            callback.onTcpPortReceived(port, token);
+        }
+        
+        @Override
+        public void onStart(int speed) {
+            Log.d(TAG, "Speed test start with speed: " + speed);
+            callback.onSpeedTestStart(speed);
+            sendStartAck();
+        }
+        
+        @Override
+        public void onExceed() {
+            Log.d(TAG, "Speed exceeded");
+            callback.onSpeedExceeded();
+            WebSocket ws = webSocket;
+            if (ws != null) {
+                sendFinishMessage(ws, 500);
             }
         }
+        
+        @Override
+        public void onTraffic(long bytes) {
+            double traffic = bytes / 1024.0 / 1024.0; // 转换为MB
+            Log.d(TAG, "Test finished with traffic: " + traffic + "MB");
+            callback.onSpeedTestFinish(traffic);
+        }
+        
+        @Override
+        public void onUploadReady() {
+            callback.onUploadReady();
+        }
+        
+        @Override
+        public void onUploadReport(long bytes, long durationMicros) {
+            callback.onUploadReport(bytes, durationMicros);
+        }
     }
     
     /**
@@ -312,16 +649,11 @@ public class WebSocketClient extends Thread {
         Log.d(TAG, "Stopping WebSocket connection");
         isRunning = false;
         
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-            try {
-                if (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
-                    executorService.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executorService.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
+        // 定时器是共享的，只取消本连接还在等待的接收超时
+        HashedWheelTimer.Timeout timeoutTask = currentTimeoutTask;
+        if (timeoutTask != null) {
+            timeoutTask.cancel();
+            currentTimeoutTask = null;
         }
         
         if (webSocket != null) {
@@ -333,4 +665,11 @@ public class WebSocketClient extends Thread {
     public boolean isRunning() {
         return isRunning;
     }
+    
+    /**
+     * 控制消息是否已协商为二进制帧
+     */
+    public boolean isBinaryControl() {
+        return binaryControl;
+    }
 }
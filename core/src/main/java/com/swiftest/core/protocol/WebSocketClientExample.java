@@ -1,8 +1,7 @@
 package com.swiftest.core.protocol;
 
-import android.util.Log;
-
 import com.swiftest.core.interfaces.WebSocketCallback;
+import com.swiftest.core.log.Log;
 import com.swiftest.core.models.SpeedTestConfig;
 
 import org.json.JSONObject;
@@ -0,0 +1,66 @@
+package com.swiftest.core.stats;
+
+/**
+ * 跨轮次的速度估计与置信区间
+ * 使用Welford算法在线维护均值和方差，按Student t分布计算95%置信区间半宽。
+ * 当半宽相对均值小于容差时认为估计已收敛，可以提前结束测试。
+ */
+public final class ConvergenceEstimator {
+    
+    // 95%双侧t分位数，下标为自由度 (1 ~ 10)，更大自由度使用正态近似
+    private static final double[] T_95 = {
+            Double.POSITIVE_INFINITY,
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228
+    };
+    private static final double Z_95 = 1.960;
+    
+    private int count = 0;
+    private double mean = 0;
+    private double m2 = 0;
+    
+    /**
+     * 加入一轮的速度估计
+     */
+    public void add(float value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+    
+    public void reset() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+    }
+    
+    public int getCount() { return count; }
+    public float getMean() { return (float) mean; }
+    
+    /**
+     * 样本标准差
+     */
+    public float getStandardDeviation() {
+        return count < 2 ? 0f : (float) Math.sqrt(m2 / (count - 1));
+    }
+    
+    /**
+     * 95%置信区间半宽，少于2个样本时为无穷大
+     */
+    public float getHalfWidth() {
+        if (count < 2) return Float.POSITIVE_INFINITY;
+        int df = count - 1;
+        double t = df < T_95.length ? T_95[df] : Z_95;
+        return (float) (t * getStandardDeviation() / Math.sqrt(count));
+    }
+    
+    /**
+     * 置信区间半宽是否已小于 tolerance * 均值
+     * @param tolerance 相对容差，例如0.05表示±5%
+     * @param minCount 最少样本数
+     */
+    public boolean isConverged(float tolerance, int minCount) {
+        if (count < Math.max(2, minCount) || mean <= 0) return false;
+        return getHalfWidth() <= tolerance * mean;
+    }
+}
@@ -0,0 +1,42 @@
+package com.swiftest.core.stats;
+
+/**
+ * 单个阶段耗时的累计统计（次数、均值、最大值）
+ * 只由一个线程写入，读取方应在写入线程上取快照，或在写入线程结束后读取
+ */
+public final class PhaseTimer {
+    
+    private int count;
+    private long totalNanos;
+    private long maxNanos;
+    
+    /**
+     * 记录一次耗时，负值（时钟未就绪）忽略
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+    
+    public void reset() {
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+    
+    public int getCount() {
+        return count;
+    }
+    
+    public float getMeanMs() {
+        return count == 0 ? 0f : totalNanos / (float) count / 1_000_000f;
+    }
+    
+    public float getMaxMs() {
+        return maxNanos / 1_000_000f;
+    }
+}
@@ -0,0 +1,166 @@
+package com.swiftest.core.stats;
+
+import java.util.Arrays;
+
+/**
+ * 固定分桶的对数直方图分位数估计
+ * 用于替代"收集全部样本 -> 装箱 -> Collections.sort"的百分位计算：
+ * - add() 为O(1)，只更新一个int计数，不分配对象
+ * - quantile() 扫描固定数量的桶，与样本数量无关
+ * - 同参数的实例可以merge()，便于合并多轮/多流/多服务器的样本
+ * 相邻桶边界相差BIN_GROWTH倍，返回桶的几何中点，相对误差不超过约0.5%。
+ */
+public final class QuantileSketch {
+    
+    // 可表示的范围 (Mbps)：0.001 ~ 1,000,000，超出部分计入首/尾桶
+    private static final double MIN_TRACKABLE = 0.001;
+    private static final double MAX_TRACKABLE = 1_000_000;
+    private static final double BIN_GROWTH = 1.01;
+    private static final double LOG_GROWTH = Math.log(BIN_GROWTH);
+    private static final double LOG_MIN = Math.log(MIN_TRACKABLE);
+    private static final int BIN_COUNT =
+            (int) Math.ceil((Math.log(MAX_TRACKABLE) - LOG_MIN) / LOG_GROWTH) + 1;
+    
+    private final int[] counts = new int[BIN_COUNT];
+    private int zeroCount = 0;   // <= 0 的样本单独计数
+    private long totalCount = 0;
+    private double sum = 0;
+    private double sumSquares = 0;
+    private float min = Float.MAX_VALUE;
+    private float max = -Float.MAX_VALUE;
+    
+    /**
+     * 添加一个样本
+     */
+    public void add(float value) {
+        if (value != value) return; // NaN
+        
+        totalCount++;
+        sum += value;
+        sumSquares += (double) value * value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+        
+        if (value <= 0) {
+            zeroCount++;
+        } else {
+            counts[binIndex(value)]++;
+        }
+    }
+    
+    /**
+     * 合并另一个sketch的全部样本
+     */
+    public void merge(QuantileSketch other) {
+        if (other.totalCount == 0) return;
+        for (int i = 0; i < BIN_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        totalCount += other.totalCount;
+        sum += other.sum;
+        sumSquares += other.sumSquares;
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+    }
+    
+    /**
+     * 清空全部样本，桶数组保留复用
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        zeroCount = 0;
+        totalCount = 0;
+        sum = 0;
+        sumSquares = 0;
+        min = Float.MAX_VALUE;
+        max = -Float.MAX_VALUE;
+    }
+    
+    /**
+     * 估计分位数，秩的取法与原排序实现一致：sorted[floor(q * n)]
+     * @param q 0.0 ~ 1.0
+     * @return 分位数估计值，没有样本时返回0
+     */
+    public float quantile(double q) {
+        if (totalCount == 0) return 0f;
+        
+        long rank = Math.min((long) (q * totalCount), totalCount - 1);
+        if (rank < zeroCount) {
+            return Math.min(0f, min);
+        }
+        
+        long cumulative = zeroCount;
+        for (int i = 0; i < BIN_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative > rank) {
+                return clamp((float) binMidpoint(i));
+            }
+        }
+        return max;
+    }
+    
+    /**
+     * 一次扫描估计多个分位数
+     * @param qs 升序排列的分位点 (0.0 ~ 1.0)
+     * @param out 输出数组，长度不小于qs.length
+     */
+    public void quantiles(double[] qs, float[] out) {
+        if (totalCount == 0) {
+            for (int k = 0; k < qs.length; k++) out[k] = 0f;
+            return;
+        }
+        
+        int k = 0;
+        long cumulative = zeroCount;
+        for (; k < qs.length; k++) {
+            long rank = Math.min((long) (qs[k] * totalCount), totalCount - 1);
+            if (rank >= zeroCount) break;
+            out[k] = Math.min(0f, min);
+        }
+        for (int i = 0; i < BIN_COUNT && k < qs.length; i++) {
+            cumulative += counts[i];
+            while (k < qs.length && cumulative > Math.min((long) (qs[k] * totalCount), totalCount - 1)) {
+                out[k++] = clamp((float) binMidpoint(i));
+            }
+        }
+        for (; k < qs.length; k++) {
+            out[k] = max;
+        }
+    }
+    
+    public long getCount() { return totalCount; }
+    public float getMin() { return totalCount == 0 ? 0f : min; }
+    public float getMax() { return totalCount == 0 ? 0f : max; }
+    public float getMean() { return totalCount == 0 ? 0f : (float) (sum / totalCount); }
+    
+    /**
+     * 样本标准差（n-1），由累计的和与平方和精确计算，与分桶无关
+     */
+    public float getStandardDeviation() {
+        if (totalCount <= 1) return 0f;
+        double mean = sum / totalCount;
+        double variance = (sumSquares - mean * sum) / (totalCount - 1);
+        return variance <= 0 ? 0f : (float) Math.sqrt(variance);
+    }
+    
+    private static int binIndex(float value) {
+        int index = (int) ((Math.log(value) - LOG_MIN) / LOG_GROWTH);
+        if (index < 0) return 0;
+        if (index >= BIN_COUNT) return BIN_COUNT - 1;
+        return index;
+    }
+    
+    private static double binMidpoint(int index) {
+        return Math.exp(LOG_MIN + (index + 0.5) * LOG_GROWTH);
+    }
+    
+    /**
+     * 桶中点可能落在实际观测范围之外，限制在[min, max]内
+     */
+    private float clamp(float value) {
+        if (value < min) return min;
+        if (value > max) return max;
+        return value;
+    }
+}
@@ -0,0 +1,145 @@
+package com.swiftest.core.stats;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 基于nanoTime的无锁字节计数采样器
+ * 替代每轮新建的java.util.Timer：采样线程在测试期间只创建一次，
+ * 轮次之间park等待，轮次中按固定间隔把 (nanoTime, 字节数) 写入SampleRing。
+ * 记录的是真实采样时刻，速度计算不再假设采样间隔精确为10ms。
+ */
+public class RateSampler implements Runnable {
+    
+    private final long intervalNanos;
+    private final SampleRing ring;
+    
+    private volatile boolean running = false;
+    private volatile boolean armed = false;
+    private volatile boolean active = false;
+    private volatile LongSupplier source;
+    private volatile long roundStartNanos;
+    private Thread thread;
+    
+    /**
+     * @param intervalMs 采样间隔 (ms)
+     * @param capacity 单轮最多保留的采样点数量
+     */
+    public RateSampler(int intervalMs, int capacity) {
+        this.intervalNanos = intervalMs * 1_000_000L;
+        this.ring = new SampleRing(capacity);
+    }
+    
+    /**
+     * 启动采样线程（平台守护线程）
+     */
+    public void start() {
+        start(task -> {
+            Thread platform = new Thread(task, "RateSampler");
+            platform.setDaemon(true);
+            return platform;
+        });
+    }
+    
+    /**
+     * 使用指定的ThreadFactory启动采样线程，例如虚拟线程
+     */
+    public synchronized void start(ThreadFactory threadFactory) {
+        if (thread != null) return;
+        running = true;
+        thread = threadFactory.newThread(this);
+        thread.start();
+    }
+    
+    /**
+     * 开始一轮采样，第一个采样点在startNanos之后一个采样间隔
+     * @param source 累计字节数来源，由采样线程读取
+     * @param startNanos 本轮起点 (System.nanoTime())
+     */
+    public void startRound(LongSupplier source, long startNanos) {
+        this.source = source;
+        this.roundStartNanos = startNanos;
+        armed = true;
+        LockSupport.unpark(thread);
+    }
+    
+    /**
+     * 结束本轮采样，返回时采样线程保证不会再写入SampleRing
+     */
+    public void stopRound() {
+        armed = false;
+        while (active) {
+            Thread.yield();
+        }
+    }
+    
+    /**
+     * 停止采样线程
+     */
+    public synchronized void shutdown() {
+        running = false;
+        armed = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread = null;
+        }
+    }
+    
+    @Override
+    public void run() {
+        while (running) {
+            active = true;
+            if (armed) {
+                sampleRound();
+            }
+            active = false;
+            
+            if (running && !armed) {
+                LockSupport.park(this);
+            }
+        }
+    }
+    
+    /**
+     * 采样一轮，直到armed被清除
+     */
+    private void sampleRound() {
+        ring.reset();
+        LongSupplier src = source;
+        long next = roundStartNanos + intervalNanos;
+        
+        while (running && armed) {
+            long now = System.nanoTime();
+            long wait = next - now;
+            if (wait > 0) {
+                // parkNanos可能提前返回，回到循环顶部重新检查
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            
+            ring.add(now, src.getAsLong());
+            
+            // 落后超过一个间隔时不补采，避免连续写入时间过近的采样点
+            next += intervalNanos;
+            if (now - next > 0) {
+                next = now + intervalNanos;
+            }
+        }
+    }
+    
+    /**
+     * 本轮的采样结果，仅在stopRound之后读取
+     */
+    public SampleRing getRing() {
+        return ring;
+    }
+    
+    public long getRoundStartNanos() {
+        return roundStartNanos;
+    }
+    
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+}
@@ -0,0 +1,68 @@
+package com.swiftest.core.stats;
+
+import com.swiftest.core.models.LatencyStats;
+
+/**
+ * RTT样本累计器
+ * 记录发出/收到的探测数、RTT分布（QuantileSketch，单位ms）以及相邻RTT差值的均值（抖动），
+ * 由时延探测器按"空载/负载"等分类各持有一个实例。
+ * 非线程安全，由调用方负责同步。
+ */
+public final class RttRecorder {
+    
+    private final QuantileSketch sketch = new QuantileSketch();
+    private int probesSent = 0;
+    private int probesReceived = 0;
+    private float previousRtt = -1f;
+    private double jitterSum = 0;
+    private int jitterCount = 0;
+    
+    /**
+     * 记录一个已发出的探测包
+     */
+    public void onSent() {
+        probesSent++;
+    }
+    
+    /**
+     * 记录一个探测包的RTT
+     * @param rttMs 往返时延 (ms)
+     */
+    public void add(float rttMs) {
+        probesReceived++;
+        sketch.add(rttMs);
+        if (previousRtt >= 0) {
+            jitterSum += Math.abs(rttMs - previousRtt);
+            jitterCount++;
+        }
+        previousRtt = rttMs;
+    }
+    
+    public void reset() {
+        sketch.reset();
+        probesSent = 0;
+        probesReceived = 0;
+        previousRtt = -1f;
+        jitterSum = 0;
+        jitterCount = 0;
+    }
+    
+    public int getProbesReceived() {
+        return probesReceived;
+    }
+    
+    /**
+     * 生成当前的时延统计
+     */
+    public LatencyStats snapshot() {
+        if (probesReceived == 0) {
+            return new LatencyStats(probesSent, 0, 0f, 0f, 0f, 0f, 0f);
+        }
+        return new LatencyStats(probesSent, probesReceived,
+                sketch.getMin(),
+                sketch.quantile(0.5),
+                sketch.quantile(0.99),
+                sketch.getMean(),
+                jitterCount > 0 ? (float) (jitterSum / jitterCount) : 0f);
+    }
+}
@@ -0,0 +1,77 @@
+package com.swiftest.core.stats;
+
+/**
+ * 预分配的原始类型采样环形缓冲区
+ * 每个采样点为 (System.nanoTime(), 累计字节数)，单写单读、无锁：
+ * - 写线程（采样器）先写数组再发布volatile计数
+ * - 读线程只读取已发布的下标，读取前需保证写线程已停止（见RateSampler.stopRound）
+ */
+public final class SampleRing {
+    
+    private final long[] timestamps;
+    private final long[] values;
+    private final int mask;
+    
+    // 已发布的采样点数量，只有写线程修改
+    private volatile int published = 0;
+    
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public SampleRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.timestamps = new long[size];
+        this.values = new long[size];
+        this.mask = size - 1;
+    }
+    
+    /**
+     * 追加一个采样点，仅由写线程调用
+     */
+    public void add(long timestampNanos, long value) {
+        int index = published;
+        timestamps[index & mask] = timestampNanos;
+        values[index & mask] = value;
+        published = index + 1;
+    }
+    
+    /**
+     * 清空缓冲区，仅由写线程调用
+     */
+    public void reset() {
+        published = 0;
+    }
+    
+    /**
+     * 当前可读的采样点数量（不超过容量）
+     */
+    public int size() {
+        return Math.min(published, mask + 1);
+    }
+    
+    /**
+     * 第一个仍保留在缓冲区中的采样点的逻辑下标
+     */
+    private int first() {
+        int count = published;
+        return count > mask + 1 ? count - mask - 1 : 0;
+    }
+    
+    /**
+     * @param i 0 ~ size()-1，0为最早保留的采样点
+     */
+    public long timestampAt(int i) {
+        return timestamps[(first() + i) & mask];
+    }
+    
+    /**
+     * @param i 0 ~ size()-1，0为最早保留的采样点
+     */
+    public long valueAt(int i) {
+        return values[(first() + i) & mask];
+    }
+    
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,209 @@
+package com.swiftest.core.stats;
+
+import com.swiftest.core.models.PacketStats;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 数据报序号/时间戳跟踪器
+ * 服务器在每个数据报头部写入：
+ *   [0, 8)  序号 (uint64, big-endian, 整个会话内单调递增)
+ *   [8, 16) 发送时间戳 (微秒, big-endian, 服务器本地时钟)
+ * 接收端直接从接收缓冲区原地解码，不做任何复制，维护以下计数：
+ * - 丢包：期望收到的包数 (最大序号 - 最小序号 + 1) 减去去重后实际收到的包数
+ * - 乱序：序号小于已收到最大序号且不是重复包
+ * - 重复：序号在最近DUPLICATE_WINDOW个序号内已出现过
+ * - 抖动：RFC 3550 到达间隔抖动，J += (|D| - J) / 16
+ * 计数只覆盖当前测量窗口（一轮的接收时段），由beginWindow()开始，snapshot()读取：
+ * 服务器在客户端停止接收后仍会发送到本轮结束，这段尾包一部分留在Socket缓冲区、其余被内核丢弃，
+ * 下一轮开始时先读到的就是这些旧包。窗口开始后的前carryOverLimit个包内出现的第一个序号跳跃
+ * 视为旧包与新一轮数据的分界，计数从跳跃后的包重新开始；不大于分界的序号不再计入。
+ * 代价是每轮开头最多一段真实丢包不被统计。
+ * 只由接收线程调用，不是线程安全的。
+ */
+public final class SequenceTracker {
+    
+    public static final int HEADER_SIZE = 16;
+    
+    // 重复检测窗口（序号个数），必须是64的整数倍且为2的幂
+    private static final int DUPLICATE_WINDOW = 4096;
+    private static final int WINDOW_MASK = DUPLICATE_WINDOW - 1;
+    
+    private final long[] window = new long[DUPLICATE_WINDOW / 64];
+    
+    private long firstSeq = -1;
+    private long highestSeq = -1;
+    // 不大于该序号的包属于之前的窗口，不计入
+    private long floorSeq = -1;
+    // 窗口开头还需检查旧包分界的包数
+    private int carryOverRemaining = 0;
+    private long uniqueReceived = 0;
+    private long reordered = 0;
+    private long duplicates = 0;
+    private long malformed = 0;
+    
+    // RFC 3550 抖动（微秒）
+    private boolean hasTransit = false;
+    private long lastTransitMicros = 0;
+    private double jitterMicros = 0;
+    
+    /**
+     * 从byte[]接收缓冲区解码（DatagramSocket路径）
+     */
+    public void onPacket(byte[] buffer, int length, long arrivalNanos) {
+        if (length < HEADER_SIZE) {
+            malformed++;
+            return;
+        }
+        onPacket(readLong(buffer, 0), readLong(buffer, 8), arrivalNanos);
+    }
+    
+    /**
+     * 从ByteBuffer接收缓冲区解码（DatagramChannel路径），使用绝对位置读取，不改变position
+     */
+    public void onPacket(ByteBuffer buffer, int length, long arrivalNanos) {
+        if (length < HEADER_SIZE) {
+            malformed++;
+            return;
+        }
+        onPacket(buffer.getLong(0), buffer.getLong(8), arrivalNanos);
+    }
+    
+    private void onPacket(long seq, long sendMicros, long arrivalNanos) {
+        if (seq < 0) {
+            malformed++;
+            return;
+        }
+        if (seq <= floorSeq) {
+            return;
+        }
+        if (carryOverRemaining > 0) {
+            carryOverRemaining--;
+            if (highestSeq >= 0 && seq > highestSeq + 1) {
+                // 旧包之后的第一个跳跃：从这里开始计数
+                floorSeq = seq - 1;
+                carryOverRemaining = 0;
+                resetCounts();
+            }
+        }
+        
+        if (highestSeq < 0) {
+            firstSeq = seq;
+            highestSeq = seq;
+            markSeen(seq);
+        } else if (seq > highestSeq) {
+            advanceWindow(seq);
+            highestSeq = seq;
+            markSeen(seq);
+        } else if (highestSeq - seq < DUPLICATE_WINDOW && isSeen(seq)) {
+            duplicates++;
+            return;
+        } else {
+            reordered++;
+            if (seq < firstSeq) {
+                firstSeq = seq;
+            }
+            if (highestSeq - seq < DUPLICATE_WINDOW) {
+                markSeen(seq);
+            }
+        }
+        uniqueReceived++;
+        
+        updateJitter(arrivalNanos / 1000 - sendMicros);
+    }
+    
+    /**
+     * RFC 3550 6.4.1：D为相邻两包的传输时间差，发送/接收时钟偏差在差分中抵消
+     */
+    private void updateJitter(long transitMicros) {
+        if (hasTransit) {
+            long d = Math.abs(transitMicros - lastTransitMicros);
+            jitterMicros += (d - jitterMicros) / 16.0;
+        }
+        lastTransitMicros = transitMicros;
+        hasTransit = true;
+    }
+    
+    /**
+     * 最大序号前移时清除窗口中滑出的位
+     */
+    private void advanceWindow(long newHighest) {
+        long distance = newHighest - highestSeq;
+        if (distance >= DUPLICATE_WINDOW) {
+            for (int i = 0; i < window.length; i++) {
+                window[i] = 0;
+            }
+            return;
+        }
+        for (long s = highestSeq + 1; s <= newHighest; s++) {
+            int bit = (int) (s & WINDOW_MASK);
+            window[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+    
+    private void markSeen(long seq) {
+        int bit = (int) (seq & WINDOW_MASK);
+        window[bit >>> 6] |= 1L << bit;
+    }
+    
+    private boolean isSeen(long seq) {
+        int bit = (int) (seq & WINDOW_MASK);
+        return (window[bit >>> 6] & (1L << bit)) != 0;
+    }
+    
+    private static long readLong(byte[] b, int offset) {
+        return ((long) (b[offset] & 0xff) << 56)
+                | ((long) (b[offset + 1] & 0xff) << 48)
+                | ((long) (b[offset + 2] & 0xff) << 40)
+                | ((long) (b[offset + 3] & 0xff) << 32)
+                | ((long) (b[offset + 4] & 0xff) << 24)
+                | ((long) (b[offset + 5] & 0xff) << 16)
+                | ((long) (b[offset + 6] & 0xff) << 8)
+                | ((long) (b[offset + 7] & 0xff));
+    }
+    
+    /**
+     * 生成当前窗口计数的快照
+     */
+    public PacketStats snapshot() {
+        long expected = highestSeq < 0 ? 0 : highestSeq - firstSeq + 1;
+        long lost = Math.max(0, expected - uniqueReceived);
+        return new PacketStats(uniqueReceived, lost, reordered, duplicates, malformed,
+                (float) (jitterMicros / 1000.0));
+    }
+    
+    /**
+     * 开始新的测量窗口，清空计数
+     * 之前收到过的序号（上一窗口以及窗口之间读到的包）不再计入
+     * @param carryOverLimit 窗口开头可能是旧包的最大包数，通常为接收缓冲区能容纳的包数
+     */
+    public void beginWindow(int carryOverLimit) {
+        floorSeq = Math.max(floorSeq, highestSeq);
+        carryOverRemaining = floorSeq >= 0 ? carryOverLimit : 0;
+        resetCounts();
+    }
+    
+    /**
+     * 清空全部计数和窗口状态
+     */
+    public void reset() {
+        floorSeq = -1;
+        carryOverRemaining = 0;
+        resetCounts();
+    }
+    
+    private void resetCounts() {
+        for (int i = 0; i < window.length; i++) {
+            window[i] = 0;
+        }
+        firstSeq = -1;
+        highestSeq = -1;
+        uniqueReceived = 0;
+        reordered = 0;
+        duplicates = 0;
+        malformed = 0;
+        hasTransit = false;
+        lastTransitMicros = 0;
+        jitterMicros = 0;
+    }
+}
@@ -0,0 +1,58 @@
+package com.swiftest.core.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按线程分槽、缓存行填充的字节计数器
+ * 每个槽只由一个接收线程写入（lazySet发布，无CAS），采样线程读取所有槽求和。
+ * 相邻槽之间间隔PADDING个long（128字节），避免多个接收线程写同一缓存行产生伪共享。
+ */
+public final class StripedCounter {
+    
+    private static final int PADDING = 16;
+    
+    private final AtomicLongArray cells;
+    private final int slots;
+    
+    public StripedCounter(int slots) {
+        this.slots = slots;
+        // 首尾各留一段填充，避免与相邻对象共享缓存行
+        this.cells = new AtomicLongArray((slots + 1) * PADDING);
+    }
+    
+    /**
+     * 累加指定槽的计数，同一个槽只能由一个线程调用
+     */
+    public void add(int slot, long delta) {
+        int index = (slot + 1) * PADDING;
+        cells.lazySet(index, cells.get(index) + delta);
+    }
+    
+    public long get(int slot) {
+        return cells.get((slot + 1) * PADDING);
+    }
+    
+    /**
+     * 所有槽的合计值
+     */
+    public long sum() {
+        long total = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            total += cells.get((slot + 1) * PADDING);
+        }
+        return total;
+    }
+    
+    /**
+     * 清零所有槽，调用时写线程必须处于空闲状态
+     */
+    public void reset() {
+        for (int slot = 0; slot < slots; slot++) {
+            cells.set((slot + 1) * PADDING, 0);
+        }
+    }
+    
+    public int getSlots() {
+        return slots;
+    }
+}
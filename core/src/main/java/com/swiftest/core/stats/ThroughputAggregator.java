@@ -0,0 +1,186 @@
+package com.swiftest.core.stats;
+
+import java.util.Arrays;
+
+/**
+ * 多数据源吞吐量对齐聚合
+ * 每个数据源（服务器）按轮次提交 (nanoTime, 累计字节数) 采样点，聚合器把所有数据源
+ * 放到同一个时间基准 (epochNanos) 上，按固定时间槽线性插值出每个数据源在槽内收到的字节数，
+ * 再对同一个槽内的字节数求和，得到真实的并发总吞吐量。
+ * 这样不同服务器的轮次不对齐、间隔不一致时，也不会把各自的平均速度简单相加。
+ * 所有方法都需要外部同步（由MultiServerSpeedTest在同一把锁内调用）。
+ */
+public final class ThroughputAggregator {
+    
+    private final long epochNanos;
+    private final long slotNanos;
+    private final int windowSlots;
+    private final Source[] sources;
+    
+    /**
+     * @param sourceCount 数据源数量
+     * @param epochNanos 公共时间基准 (System.nanoTime())
+     * @param slotMs 对齐时间槽长度 (ms)
+     * @param windowSlots 计算速度样本时的滑动窗口槽数
+     */
+    public ThroughputAggregator(int sourceCount, long epochNanos, int slotMs, int windowSlots) {
+        this.epochNanos = epochNanos;
+        this.slotNanos = slotMs * 1_000_000L;
+        this.windowSlots = windowSlots;
+        this.sources = new Source[sourceCount];
+        for (int i = 0; i < sourceCount; i++) {
+            sources[i] = new Source();
+        }
+    }
+    
+    /**
+     * 提交一个数据源的一轮采样
+     * @param source 数据源下标
+     * @param ring 本轮采样点，值为本轮内的累计字节数
+     * @param roundStartNanos 本轮起点，此时累计字节数视为0
+     */
+    public void addRound(int source, SampleRing ring, long roundStartNanos) {
+        sources[source].addRound(ring, roundStartNanos);
+    }
+    
+    /**
+     * 提交过采样的数据源数量，即参与合并的数据源数量
+     */
+    public int getActiveSourceCount() {
+        int active = 0;
+        for (Source source : sources) {
+            if (source.count > 0) active++;
+        }
+        return active;
+    }
+    
+    /**
+     * 按对齐时间槽计算合并速度样本，只统计所有参与合并的数据源都在采样的时间槽
+     * 没有任何采样的数据源（测速失败或未收到数据）不参与合并，不会使其余数据源的结果归零
+     * @param out 合并速度样本 (Mbps) 写入该sketch
+     * @return 参与合并的数据源同时在线的总时长 (ns)，没有数据源提交过采样时为0
+     */
+    public long aggregate(QuantileSketch out) {
+        long firstSlot = Long.MAX_VALUE;
+        long lastSlot = Long.MIN_VALUE;
+        for (Source source : sources) {
+            if (source.count == 0) continue;
+            firstSlot = Math.min(firstSlot, (source.minTime() - epochNanos) / slotNanos);
+            lastSlot = Math.max(lastSlot, (source.maxTime() - epochNanos) / slotNanos + 1);
+        }
+        
+        if (firstSlot == Long.MAX_VALUE) {
+            return 0;
+        }
+        
+        long concurrentNanos = 0;
+        long windowBytes = 0;
+        int windowFilled = 0;
+        long[] slotBytes = new long[windowSlots];
+        
+        for (long slot = firstSlot; slot < lastSlot; slot++) {
+            long from = epochNanos + slot * slotNanos;
+            long to = from + slotNanos;
+            
+            long total = 0;
+            boolean allActive = true;
+            for (Source source : sources) {
+                if (source.count == 0) continue;
+                long bytes = source.bytesBetween(from, to);
+                if (bytes < 0) {
+                    allActive = false;
+                    break;
+                }
+                total += bytes;
+            }
+            
+            if (!allActive) {
+                // 并发区间被打断，重新开始滑动窗口
+                windowBytes = 0;
+                windowFilled = 0;
+                continue;
+            }
+            
+            concurrentNanos += slotNanos;
+            int index = windowFilled % windowSlots;
+            windowBytes += total - (windowFilled >= windowSlots ? slotBytes[index] : 0);
+            slotBytes[index] = total;
+            windowFilled++;
+            
+            if (windowFilled >= windowSlots) {
+                out.add(windowBytes * 8.0f / 1024 / 1024 / (windowSlots * slotNanos / 1e9f));
+            }
+        }
+        return concurrentNanos;
+    }
+    
+    /**
+     * 单个数据源的分段累计字节曲线，每轮一段
+     */
+    private static final class Source {
+        
+        private long[] times = new long[256];
+        private long[] bytes = new long[256];
+        private int[] segmentStarts = new int[16];
+        private int segments = 0;
+        private int count = 0;
+        
+        void addRound(SampleRing ring, long roundStartNanos) {
+            int n = ring.size();
+            if (n == 0) return;
+            
+            if (segments == segmentStarts.length) {
+                segmentStarts = Arrays.copyOf(segmentStarts, segments * 2);
+            }
+            segmentStarts[segments++] = count;
+            
+            append(roundStartNanos, 0);
+            for (int i = 0; i < n; i++) {
+                append(ring.timestampAt(i), ring.valueAt(i));
+            }
+        }
+        
+        private void append(long time, long value) {
+            if (count == times.length) {
+                times = Arrays.copyOf(times, count * 2);
+                bytes = Arrays.copyOf(bytes, count * 2);
+            }
+            times[count] = time;
+            bytes[count] = value;
+            count++;
+        }
+        
+        long minTime() {
+            return times[0];
+        }
+        
+        long maxTime() {
+            return times[count - 1];
+        }
+        
+        /**
+         * [from, to) 内收到的字节数（线性插值），区间不完全落在某一轮内时返回-1
+         */
+        long bytesBetween(long from, long to) {
+            for (int s = 0; s < segments; s++) {
+                int start = segmentStarts[s];
+                int end = s + 1 < segments ? segmentStarts[s + 1] : count;
+                if (times[start] <= from && to <= times[end - 1]) {
+                    return Math.round(interpolate(start, end, to) - interpolate(start, end, from));
+                }
+            }
+            return -1;
+        }
+        
+        private double interpolate(int start, int end, long time) {
+            int i = start;
+            while (i + 1 < end && times[i + 1] < time) {
+                i++;
+            }
+            if (i + 1 >= end) return bytes[end - 1];
+            long span = times[i + 1] - times[i];
+            if (span <= 0) return bytes[i + 1];
+            return bytes[i] + (double) (bytes[i + 1] - bytes[i]) * (time - times[i]) / span;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 # Consumer proguard rules for core module
-# These rules will be applied to projects that consume this library
+# Packaged in META-INF/proguard so R8 applies them to apps that consume the core jar
 
 # Keep all public APIs of the core module
 -keep public class com.swiftest.core.** {
@@ -0,0 +1,112 @@
+package com.swiftest.core.exec;
+
+import com.swiftest.core.models.SpeedTestConfig.ExecutionMode;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashedWheelTimerTest {
+    
+    // 到期任务直接在工作线程上执行
+    private final HashedWheelTimer timer =
+            new HashedWheelTimer(ExecutionMode.PLATFORM, 10, TimeUnit.MILLISECONDS, 8, Runnable::run);
+    
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+    
+    @Test
+    public void wheelSizeAndTickAreNormalized() {
+        HashedWheelTimer small = new HashedWheelTimer(
+                ExecutionMode.PLATFORM, 10, TimeUnit.MICROSECONDS, 3, Runnable::run);
+        
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), small.getTickNanos());
+        small.stop();
+    }
+    
+    @Test
+    public void timeoutFires() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(fired::countDown, 30, TimeUnit.MILLISECONDS);
+        
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(1, timer.getScheduledCount());
+        assertEquals(1, timer.getFiredCount());
+        assertEquals(0, timer.getCancelledCount());
+        assertEquals(0, timer.getPendingCount());
+    }
+    
+    @Test
+    public void timeoutLongerThanOneRevolutionWaitsForItsRound() throws Exception {
+        // 8个槽位 × 10ms，150ms需要绕一圈以上
+        long start = System.nanoTime();
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.newTimeout(fired::countDown, 150, TimeUnit.MILLISECONDS);
+        
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+    
+    @Test
+    public void cancelledTimeoutsDoNotFire() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch last = new CountDownLatch(1);
+        HashedWheelTimer.Timeout[] timeouts = new HashedWheelTimer.Timeout[10];
+        for (int i = 0; i < timeouts.length; i++) {
+            timeouts[i] = timer.newTimeout(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        }
+        // 一半在挂桶前取消，一半在挂桶后取消
+        for (int i = 0; i < 5; i++) {
+            assertTrue(timeouts[i].cancel());
+        }
+        Thread.sleep(20);
+        for (int i = 5; i < 10; i += 2) {
+            assertTrue(timeouts[i].cancel());
+            assertFalse(timeouts[i].cancel());
+        }
+        timer.newTimeout(last::countDown, 100, TimeUnit.MILLISECONDS);
+        
+        assertTrue(last.await(2, TimeUnit.SECONDS));
+        assertEquals(2, runs.get());
+        assertEquals(11, timer.getScheduledCount());
+        assertEquals(3, timer.getFiredCount());
+        assertEquals(8, timer.getCancelledCount());
+        assertEquals(0, timer.getPendingCount());
+        assertTrue(timeouts[0].isCancelled());
+        assertTrue(timeouts[6].isExpired());
+    }
+    
+    @Test
+    public void stopDiscardsPendingTimeouts() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        timer.newTimeout(runs::incrementAndGet, 200, TimeUnit.MILLISECONDS);
+        timer.stop();
+        Thread.sleep(300);
+        
+        assertEquals(0, runs.get());
+        assertEquals(1, timer.getPendingCount());
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void newTimeoutAfterStopFails() {
+        timer.newTimeout(() -> { }, 10, TimeUnit.MILLISECONDS);
+        timer.stop();
+        timer.newTimeout(() -> { }, 10, TimeUnit.MILLISECONDS);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidWheelIsRejected() {
+        new HashedWheelTimer(ExecutionMode.PLATFORM, 0, TimeUnit.MILLISECONDS, 8, Runnable::run);
+    }
+}
@@ -0,0 +1,65 @@
+package com.swiftest.core.models;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class NetworkFingerprintTest {
+    
+    private static final String SERVER = "speed.example.com";
+    
+    @Test
+    public void ipv4UsesSlash24Prefix() throws Exception {
+        NetworkFingerprint fingerprint = NetworkFingerprint.of(SERVER, addr("192.168.1.37"), null);
+        
+        assertEquals("192.168.1.0/24", fingerprint.getLocalPrefix());
+        assertEquals(SERVER + "|192.168.1.0/24|", fingerprint.getKey());
+    }
+    
+    @Test
+    public void ipv6UsesSlash64Prefix() throws Exception {
+        NetworkFingerprint fingerprint = NetworkFingerprint.of(SERVER, addr("2001:db8:0:2a:3:4:5:6"), null);
+        
+        assertEquals("2001:db8:0:2a::/64", fingerprint.getLocalPrefix());
+    }
+    
+    @Test
+    public void unknownLocalAddress() throws Exception {
+        assertEquals("*", NetworkFingerprint.of(SERVER, null, null).getLocalPrefix());
+        assertEquals("*", NetworkFingerprint.of(SERVER, addr("0.0.0.0"), null).getLocalPrefix());
+    }
+    
+    @Test
+    public void networkIdCannotBreakKeyFormat() throws Exception {
+        NetworkFingerprint fingerprint = NetworkFingerprint.of(SERVER, addr("10.0.0.1"), "home|5g");
+        
+        assertEquals("home_5g", fingerprint.getNetworkId());
+        assertEquals(SERVER + "|10.0.0.0/24|home_5g", fingerprint.getKey());
+    }
+    
+    @Test
+    public void sameSubnetIsSameNetwork() throws Exception {
+        NetworkFingerprint a = NetworkFingerprint.of(SERVER, addr("192.168.1.10"), "wifi");
+        NetworkFingerprint b = NetworkFingerprint.of(SERVER, addr("192.168.1.200"), "wifi");
+        
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+    
+    @Test
+    public void serverSubnetOrNetworkIdDistinguish() throws Exception {
+        NetworkFingerprint base = NetworkFingerprint.of(SERVER, addr("192.168.1.10"), "wifi");
+        
+        assertNotEquals(base, NetworkFingerprint.of("other.example.com", addr("192.168.1.10"), "wifi"));
+        assertNotEquals(base, NetworkFingerprint.of(SERVER, addr("192.168.2.10"), "wifi"));
+        // 家庭网络的私有地址段经常重复，由网络标识区分
+        assertNotEquals(base, NetworkFingerprint.of(SERVER, addr("192.168.1.10"), "office"));
+    }
+    
+    private static InetAddress addr(String literal) throws Exception {
+        return InetAddress.getByName(literal);
+    }
+}
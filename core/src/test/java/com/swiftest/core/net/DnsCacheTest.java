@@ -0,0 +1,161 @@
+package com.swiftest.core.net;
+
+import com.swiftest.core.interfaces.HostResolver;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DnsCacheTest {
+    
+    private static final String HOST = "speed.example.com";
+    private static final long TTL = 30_000;
+    private static final long MAX_STALE = 60_000;
+    
+    private final AtomicLong clock = new AtomicLong(1_000);
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private FakeResolver resolver;
+    private DnsCache cache;
+    
+    @Before
+    public void setUp() throws Exception {
+        resolver = new FakeResolver(TTL, addr("192.0.2.1"));
+        // 后台刷新先收集起来，由测试决定何时执行
+        cache = new DnsCache(resolver, refreshes::add, clock::get, MAX_STALE);
+    }
+    
+    @Test
+    public void cachesUntilTtlExpires() throws Exception {
+        assertEquals(addr("192.0.2.1"), cache.resolveFirst(HOST));
+        clock.addAndGet(TTL - 1);
+        assertEquals(addr("192.0.2.1"), cache.resolveFirst(HOST));
+        
+        assertEquals(1, resolver.lookups.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+    
+    @Test
+    public void staleEntryIsServedWhileRefreshing() throws Exception {
+        cache.resolve(HOST);
+        resolver.addresses = Arrays.asList(addr("192.0.2.2"));
+        clock.addAndGet(TTL);
+        
+        // 过期但仍在maxStale内：返回旧结果，刷新交给后台
+        assertEquals(addr("192.0.2.1"), cache.resolveFirst(HOST));
+        assertEquals(1, cache.getStaleHitCount());
+        assertEquals(1, refreshes.size());
+        assertEquals(1, resolver.lookups.get());
+        
+        refreshes.remove(0).run();
+        assertEquals(2, resolver.lookups.get());
+        assertEquals(addr("192.0.2.2"), cache.resolveFirst(HOST));
+        assertEquals(1, cache.getHitCount());
+    }
+    
+    @Test
+    public void expiredBeyondMaxStaleLooksUpSynchronously() throws Exception {
+        cache.resolve(HOST);
+        resolver.addresses = Arrays.asList(addr("192.0.2.2"));
+        clock.addAndGet(TTL + MAX_STALE);
+        
+        assertEquals(addr("192.0.2.2"), cache.resolveFirst(HOST));
+        assertEquals(2, cache.getMissCount());
+        assertTrue(refreshes.isEmpty());
+    }
+    
+    @Test
+    public void expiredEntryIsUsedWhenLookupFails() throws Exception {
+        cache.resolve(HOST);
+        clock.addAndGet(TTL + MAX_STALE);
+        resolver.fail = true;
+        
+        assertEquals(addr("192.0.2.1"), cache.resolveFirst(HOST));
+    }
+    
+    @Test
+    public void lookupFailureWithoutEntryPropagates() {
+        resolver.fail = true;
+        try {
+            cache.resolve(HOST);
+            fail("Expected UnknownHostException");
+        } catch (UnknownHostException expected) {
+            assertEquals(1, cache.getMissCount());
+        }
+    }
+    
+    @Test
+    public void literalsBypassResolver() throws Exception {
+        assertEquals(addr("203.0.113.7"), cache.resolveFirst("203.0.113.7"));
+        assertEquals(addr("2001:db8::7"), cache.resolveFirst("[2001:db8::7]"));
+        assertEquals(0, resolver.lookups.get());
+        assertEquals(0, cache.getMissCount());
+    }
+    
+    @Test
+    public void mixedFamiliesAreInterleavedStartingWithResolverFirst() throws Exception {
+        resolver.addresses = Arrays.asList(
+                addr("2001:db8::1"), addr("2001:db8::2"), addr("192.0.2.1"), addr("192.0.2.2"));
+        
+        assertEquals(Arrays.asList(
+                addr("2001:db8::1"), addr("192.0.2.1"), addr("2001:db8::2"), addr("192.0.2.2")),
+                cache.resolve(HOST));
+    }
+    
+    @Test
+    public void singleFamilyKeepsResolverOrder() throws Exception {
+        resolver.addresses = Arrays.asList(addr("192.0.2.2"), addr("192.0.2.1"));
+        
+        assertEquals(resolver.addresses, cache.resolve(HOST));
+    }
+    
+    @Test
+    public void clearDropsEntries() throws Exception {
+        cache.resolve(HOST);
+        cache.clear();
+        cache.resolve(HOST);
+        
+        assertEquals(2, resolver.lookups.get());
+        assertEquals(0, cache.getHitCount());
+    }
+    
+    private static InetAddress addr(String literal) throws UnknownHostException {
+        return InetAddress.getByName(literal);
+    }
+    
+    /**
+     * 返回固定地址的解析器，记录查询次数
+     */
+    private static final class FakeResolver implements HostResolver {
+        
+        final AtomicInteger lookups = new AtomicInteger();
+        final long ttlMillis;
+        volatile List<InetAddress> addresses;
+        volatile boolean fail;
+        
+        FakeResolver(long ttlMillis, InetAddress... addresses) {
+            this.ttlMillis = ttlMillis;
+            this.addresses = Arrays.asList(addresses);
+        }
+        
+        @Override
+        public Answer lookup(String host) throws UnknownHostException {
+            lookups.incrementAndGet();
+            if (fail) {
+                throw new UnknownHostException(host);
+            }
+            return new Answer(new ArrayList<>(addresses), ttlMillis);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.swiftest.core.net;
+
+import com.swiftest.core.models.NetworkFingerprint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WarmStartCacheTest {
+    
+    private static final long MAX_AGE = 24 * 3600_000L;
+    // 写回直接在调用线程执行
+    private static final Executor DIRECT = Runnable::run;
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    
+    @Test
+    public void suggestsMedianWithHeadroom() throws Exception {
+        WarmStartCache cache = memoryCache(8);
+        NetworkFingerprint home = network("home");
+        
+        cache.record(home, 100);
+        assertEquals(130, cache.suggestStartSpeed(home));
+        
+        // 单次异常结果不影响中位数
+        cache.record(home, 1000);
+        cache.record(home, 100);
+        assertEquals(130, cache.suggestStartSpeed(home));
+        
+        // 偶数个结果取中间两个的均值
+        cache.record(home, 300);
+        assertEquals(260, cache.suggestStartSpeed(home));
+    }
+    
+    @Test
+    public void keepsOnlyRecentResults() throws Exception {
+        WarmStartCache cache = memoryCache(8);
+        NetworkFingerprint home = network("home");
+        for (int i = 0; i < 5; i++) {
+            cache.record(home, 1000);
+        }
+        for (int i = 0; i < 3; i++) {
+            cache.record(home, 100);
+        }
+        
+        // 最近5次为 1000, 1000, 100, 100, 100
+        assertEquals(130, cache.suggestStartSpeed(home));
+    }
+    
+    @Test
+    public void ignoresEmptyResults() throws Exception {
+        WarmStartCache cache = memoryCache(8);
+        cache.record(network("home"), 0);
+        cache.record(network("home"), Float.NaN);
+        cache.record(network("home"), -5);
+        
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.suggestStartSpeed(network("home")));
+    }
+    
+    @Test
+    public void resultsExpireAfterMaxAge() throws Exception {
+        WarmStartCache cache = memoryCache(8);
+        NetworkFingerprint home = network("home");
+        cache.record(home, 100);
+        
+        clock.addAndGet(MAX_AGE);
+        assertEquals(130, cache.suggestStartSpeed(home));
+        
+        clock.incrementAndGet();
+        assertEquals(0, cache.suggestStartSpeed(home));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        
+        // 新的结果重新开始计时
+        cache.record(home, 200);
+        assertEquals(195, cache.suggestStartSpeed(home));
+    }
+    
+    @Test
+    public void evictsLeastRecentlyUsedNetwork() throws Exception {
+        WarmStartCache cache = memoryCache(2);
+        cache.record(network("a"), 100);
+        cache.record(network("b"), 100);
+        // 访问a之后b成为最久未使用
+        cache.suggestStartSpeed(network("a"));
+        cache.record(network("c"), 100);
+        
+        assertEquals(2, cache.size());
+        assertEquals(130, cache.suggestStartSpeed(network("a")));
+        assertEquals(0, cache.suggestStartSpeed(network("b")));
+        assertEquals(130, cache.suggestStartSpeed(network("c")));
+    }
+    
+    @Test
+    public void saveAndLoadRoundTrip() throws Exception {
+        File file = new File(folder.getRoot(), "warm_start.jsonl");
+        WarmStartCache cache = fileCache(file, 8);
+        cache.record(network("home"), 100);
+        cache.record(network("home"), 300);
+        cache.record(network("office"), 500);
+        assertTrue(file.isFile());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        
+        WarmStartCache loaded = fileCache(file, 8);
+        
+        assertEquals(2, loaded.size());
+        assertEquals(260, loaded.suggestStartSpeed(network("home")));
+        assertEquals(650, loaded.suggestStartSpeed(network("office")));
+    }
+    
+    @Test
+    public void loadKeepsTimestampsAndLruOrder() throws Exception {
+        File file = new File(folder.getRoot(), "warm_start.jsonl");
+        WarmStartCache cache = fileCache(file, 8);
+        cache.record(network("old"), 100);
+        clock.addAndGet(MAX_AGE / 2);
+        cache.record(network("new"), 100);
+        
+        // 重新加载后old按原时间戳过期，new仍然有效
+        clock.addAndGet(MAX_AGE / 2 + 1);
+        WarmStartCache loaded = fileCache(file, 8);
+        assertEquals(0, loaded.suggestStartSpeed(network("old")));
+        assertEquals(130, loaded.suggestStartSpeed(network("new")));
+        
+        // 容量变小时按文件中的LRU顺序淘汰最旧的
+        WarmStartCache smaller = fileCache(file, 1);
+        assertEquals(1, smaller.size());
+        assertEquals(130, smaller.suggestStartSpeed(network("new")));
+    }
+    
+    @Test
+    public void malformedLinesAreSkipped() throws Exception {
+        File file = new File(folder.getRoot(), "warm_start.jsonl");
+        String valid = "{\"key\":\"" + network("home").getKey() + "\",\"updated\":" + clock.get() + ",\"speeds\":[100]}";
+        Files.write(file.toPath(), ("not json\n\n{\"key\":\"x\"}\n" + valid + "\n").getBytes(StandardCharsets.UTF_8));
+        
+        WarmStartCache loaded = fileCache(file, 8);
+        
+        assertEquals(1, loaded.size());
+        assertEquals(130, loaded.suggestStartSpeed(network("home")));
+    }
+    
+    @Test
+    public void clearEmptiesFile() throws Exception {
+        File file = new File(folder.getRoot(), "warm_start.jsonl");
+        WarmStartCache cache = fileCache(file, 8);
+        cache.record(network("home"), 100);
+        
+        cache.clear();
+        
+        assertEquals(0, cache.size());
+        assertEquals(0, fileCache(file, 8).size());
+    }
+    
+    @Test
+    public void missingFileStartsEmpty() throws Exception {
+        WarmStartCache cache = fileCache(new File(folder.getRoot(), "absent.jsonl"), 8);
+        
+        assertEquals(0, cache.size());
+    }
+    
+    private WarmStartCache memoryCache(int capacity) {
+        return fileCache(null, capacity);
+    }
+    
+    private WarmStartCache fileCache(File file, int capacity) {
+        return new WarmStartCache(file, DIRECT, capacity, MAX_AGE, clock::get);
+    }
+    
+    private static NetworkFingerprint network(String networkId) throws Exception {
+        return NetworkFingerprint.of("speed.example.com", InetAddress.getByName("192.168.1.10"), networkId);
+    }
+}
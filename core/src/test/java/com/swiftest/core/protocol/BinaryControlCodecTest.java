@@ -0,0 +1,170 @@
+package com.swiftest.core.protocol;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryControlCodecTest {
+    
+    private final BinaryControlCodec codec = new BinaryControlCodec();
+    private final Recorder recorder = new Recorder();
+    
+    @Test
+    public void emptyPayloadFrames() {
+        assertDecodes(codec.helloAck(), "helloAck");
+        assertDecodes(codec.exceed(), "exceed");
+        assertDecodes(codec.uploadReady(), "uploadReady");
+        assertDecodes(codec.startAck(), "startAck");
+        assertDecodes(codec.uploadStop(), "uploadStop");
+    }
+    
+    @Test
+    public void intPayloadFrames() {
+        assertDecodes(codec.start(250), "start 250");
+        assertDecodes(codec.speedControl(false, 0), "continue 0");
+        assertDecodes(codec.speedControl(true, 480), "repeat 480");
+        assertDecodes(codec.upload(60), "upload 60");
+        assertDecodes(codec.tcpRequest(4), "tcpRequest 4");
+    }
+    
+    @Test
+    public void longAndDoublePayloadFrames() {
+        assertDecodes(codec.traffic(1L << 40), "traffic " + (1L << 40));
+        assertDecodes(codec.uploadReport(123_456_789L, 1_000_000L), "uploadReport 123456789 1000000");
+        assertDecodes(codec.finish(941.25), "finish 941.25");
+        assertDecodes(codec.uploadFinish(88.5), "uploadFinish 88.5");
+    }
+    
+    @Test
+    public void udpPortsRoundTrip() {
+        assertDecodes(codec.udpPorts(new int[] {40000, 65535}, BinaryControlCodec.FLAG_UDP_CONTROL),
+                "udpPorts [40000, 65535] 1");
+        assertDecodes(codec.udpPorts(new int[] {1}), "udpPorts [1] 0");
+    }
+    
+    @Test
+    public void udpPortsWithoutFlagsFromOlderServers() {
+        ByteBuffer frame = copy(codec.udpPorts(new int[] {5000}, BinaryControlCodec.FLAG_UDP_CONTROL));
+        frame.limit(frame.limit() - 1);
+        
+        assertDecodes(frame, "udpPorts [5000] 0");
+    }
+    
+    @Test
+    public void tcpPortRoundTrip() {
+        assertDecodes(codec.tcpPort(18081, "c07060f4304684888e739abf"), "tcpPort 18081 c07060f4304684888e739abf");
+        assertDecodes(codec.tcpPort(1, ""), "tcpPort 1 ");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyPortsAreRejected() {
+        codec.udpPorts(new int[256]);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void longTokenIsRejected() {
+        char[] token = new char[256];
+        Arrays.fill(token, 'a');
+        codec.tcpPort(1, new String(token));
+    }
+    
+    @Test
+    public void decodeRespectsBufferPosition() {
+        ByteBuffer encoded = codec.start(42);
+        ByteBuffer framed = ByteBuffer.allocate(encoded.remaining() + 5);
+        framed.position(5);
+        framed.put(encoded);
+        framed.position(5);
+        
+        assertDecodes(framed.asReadOnlyBuffer(), "start 42");
+        assertEquals(5, framed.position());
+    }
+    
+    @Test
+    public void truncatedFramesAreRejected() {
+        List<ByteBuffer> frames = Arrays.asList(
+                copy(codec.start(1)),
+                copy(codec.traffic(1)),
+                copy(codec.uploadReport(1, 1)),
+                copy(codec.finish(1)),
+                copy(codec.tcpRequest(1)),
+                copy(codec.udpPorts(new int[] {1, 2})),
+                copy(codec.tcpPort(1, "token")));
+        for (ByteBuffer frame : frames) {
+            // 帧头之后的负载截断（udpPorts去掉flags之后仍需截断一个端口才不完整）
+            int type = frame.get(2) & 0xFF;
+            int minimum = type == BinaryControlCodec.TYPE_UDP_PORTS ? frame.limit() - 2 : frame.limit();
+            for (int length = 0; length < minimum; length++) {
+                ByteBuffer truncated = frame.duplicate();
+                truncated.limit(length);
+                assertFalse("type " + type + " length " + length,
+                        BinaryControlCodec.decode(truncated, recorder));
+            }
+        }
+        
+        assertTrue(recorder.events.isEmpty());
+    }
+    
+    @Test
+    public void badHeaderIsRejected() {
+        ByteBuffer badMagic = copy(codec.helloAck());
+        badMagic.put(0, (byte) 'X');
+        ByteBuffer badVersion = copy(codec.helloAck());
+        badVersion.put(1, (byte) (BinaryControlCodec.VERSION + 1));
+        ByteBuffer unknownType = copy(codec.helloAck());
+        unknownType.put(2, (byte) 0x7F);
+        ByteBuffer zeroPorts = ByteBuffer.wrap(new byte[] {
+                BinaryControlCodec.MAGIC, BinaryControlCodec.VERSION, BinaryControlCodec.TYPE_UDP_PORTS, 0});
+        
+        assertFalse(BinaryControlCodec.decode(badMagic, recorder));
+        assertFalse(BinaryControlCodec.decode(badVersion, recorder));
+        assertFalse(BinaryControlCodec.decode(unknownType, recorder));
+        assertFalse(BinaryControlCodec.decode(zeroPorts, recorder));
+        assertTrue(recorder.events.isEmpty());
+    }
+    
+    private void assertDecodes(ByteBuffer frame, String expected) {
+        recorder.events.clear();
+        assertTrue(expected, BinaryControlCodec.decode(frame, recorder));
+        assertEquals(Arrays.asList(expected), recorder.events);
+    }
+    
+    private static ByteBuffer copy(ByteBuffer frame) {
+        ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+        copy.put(frame.duplicate());
+        copy.flip();
+        return copy;
+    }
+    
+    /**
+     * 把每个回调记录为一行文本
+     */
+    private static final class Recorder implements BinaryControlCodec.Handler {
+        
+        final List<String> events = new ArrayList<>();
+        
+        @Override public void onHelloAck() { events.add("helloAck"); }
+        @Override public void onUdpPorts(int[] ports, int flags) { events.add("udpPorts " + Arrays.toString(ports) + " " + flags); }
+        @Override public void onTcpPort(int port, String token) { events.add("tcpPort " + port + " " + token); }
+        @Override public void onStart(int speed) { events.add("start " + speed); }
+        @Override public void onExceed() { events.add("exceed"); }
+        @Override public void onTraffic(long bytes) { events.add("traffic " + bytes); }
+        @Override public void onUploadReady() { events.add("uploadReady"); }
+        @Override public void onUploadReport(long bytes, long durationMicros) { events.add("uploadReport " + bytes + " " + durationMicros); }
+        @Override public void onStartAck() { events.add("startAck"); }
+        @Override public void onContinue(int speed) { events.add("continue " + speed); }
+        @Override public void onRepeat(int speed) { events.add("repeat " + speed); }
+        @Override public void onFinish(double download) { events.add("finish " + download); }
+        @Override public void onTcpRequest(int streams) { events.add("tcpRequest " + streams); }
+        @Override public void onUpload(int speed) { events.add("upload " + speed); }
+        @Override public void onUploadStop() { events.add("uploadStop"); }
+        @Override public void onUploadFinish(double upload) { events.add("uploadFinish " + upload); }
+    }
+}
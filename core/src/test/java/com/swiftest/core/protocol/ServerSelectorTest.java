@@ -0,0 +1,225 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.models.ServerScore;
+import com.swiftest.core.models.SpeedTestConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServerSelectorTest {
+    
+    private static final long DEADLINE_MS = 3000;
+    
+    private final List<AutoCloseable> listeners = new ArrayList<>();
+    private SwiftestEngine context;
+    
+    @Before
+    public void setUp() {
+        context = new SwiftestEngine.Builder().build();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        for (AutoCloseable listener : listeners) {
+            listener.close();
+        }
+        context.close();
+    }
+    
+    @Test
+    public void ranksByRttWithUnreachableLast() throws Exception {
+        EchoServer slow = echo(30);
+        EchoServer fast = echo(0);
+        ServerSocket tcpOnly = listen();
+        SpeedTestConfig dead = candidate(closedTcpPort(), 0);
+        List<SpeedTestConfig> candidates = Arrays.asList(
+                dead, candidate(slow), candidate(tcpOnly.getLocalPort(), 0), candidate(fast));
+        
+        List<ServerScore> ranking = new ServerSelector(context).rank(candidates, DEADLINE_MS);
+        
+        assertEquals(4, ranking.size());
+        assertTrue(indexOf(ranking, fast.getPort()) < indexOf(ranking, slow.getPort()));
+        assertTrue(ranking.get(indexOf(ranking, slow.getPort())).getLatency().getMedianMs() >= 25);
+        assertTrue(ranking.get(indexOf(ranking, tcpOnly.getLocalPort())).isReachable());
+        assertEquals(dead.getWebSocketPort(), ranking.get(3).getWebSocketPort());
+        assertFalse(ranking.get(3).isReachable());
+    }
+    
+    @Test
+    public void selectReturnsBestCandidateConfig() throws Exception {
+        EchoServer slow = echo(30);
+        EchoServer fast = echo(0);
+        SpeedTestConfig best = candidate(fast);
+        
+        SpeedTestConfig selected = new ServerSelector(context).select(Arrays.asList(candidate(slow), best), DEADLINE_MS);
+        
+        assertEquals(best.getWebSocketPort(), selected.getWebSocketPort());
+        assertEquals(best.getUdpPort(), selected.getUdpPort());
+    }
+    
+    @Test
+    public void cachedRankingExpires() throws Exception {
+        EchoServer first = echo(0);
+        EchoServer second = echo(30);
+        List<SpeedTestConfig> candidates = Arrays.asList(candidate(first), candidate(second));
+        ServerSelector selector = new ServerSelector(context, 500);
+        
+        assertEquals(first.getPort(), selector.rank(candidates, DEADLINE_MS).get(0).getWebSocketPort());
+        first.delayMillis = 30;
+        second.delayMillis = 0;
+        
+        // 有效期内不再探测
+        long probedAt = System.nanoTime();
+        assertEquals(first.getPort(), selector.rank(candidates, DEADLINE_MS).get(0).getWebSocketPort());
+        
+        Thread.sleep(Math.max(0, 600 - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - probedAt)));
+        assertEquals(second.getPort(), selector.rank(candidates, DEADLINE_MS).get(0).getWebSocketPort());
+    }
+    
+    @Test
+    public void invalidateDropsCachedRanking() throws Exception {
+        EchoServer first = echo(0);
+        EchoServer second = echo(30);
+        List<SpeedTestConfig> candidates = Arrays.asList(candidate(first), candidate(second));
+        ServerSelector selector = new ServerSelector(context);
+        
+        assertEquals(first.getPort(), selector.rank(candidates, DEADLINE_MS).get(0).getWebSocketPort());
+        first.delayMillis = 30;
+        second.delayMillis = 0;
+        selector.invalidate();
+        
+        assertEquals(second.getPort(), selector.rank(candidates, DEADLINE_MS).get(0).getWebSocketPort());
+    }
+    
+    @Test
+    public void unreachableRankingIsNotCached() throws Exception {
+        int port = closedTcpPort();
+        List<SpeedTestConfig> candidates = Arrays.asList(candidate(port, 0));
+        ServerSelector selector = new ServerSelector(context);
+        
+        assertFalse(selector.rank(candidates, DEADLINE_MS).get(0).isReachable());
+        
+        // 同一端口开始监听后重新探测
+        ServerSocket listener = new ServerSocket();
+        listeners.add(listener);
+        listener.setReuseAddress(true);
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        assertTrue(selector.rank(candidates, DEADLINE_MS).get(0).isReachable());
+    }
+    
+    /**
+     * UDP候选的WebSocket端口取回显端口号，用于在排序结果中区分候选
+     */
+    private static SpeedTestConfig candidate(EchoServer echo) {
+        return candidate(echo.getPort(), echo.getPort());
+    }
+    
+    private static SpeedTestConfig candidate(int webSocketPort, int udpPort) {
+        return new SpeedTestConfig.Builder()
+                .serverHost("127.0.0.1")
+                .webSocketPort(webSocketPort)
+                .udpPort(udpPort)
+                .build();
+    }
+    
+    private static int indexOf(List<ServerScore> ranking, int webSocketPort) {
+        for (int i = 0; i < ranking.size(); i++) {
+            if (ranking.get(i).getWebSocketPort() == webSocketPort) {
+                return i;
+            }
+        }
+        throw new AssertionError("No candidate on port " + webSocketPort);
+    }
+    
+    private EchoServer echo(int delayMillis) throws IOException {
+        EchoServer echo = new EchoServer(delayMillis);
+        listeners.add(echo);
+        return echo;
+    }
+    
+    private ServerSocket listen() throws IOException {
+        ServerSocket listener = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+        listeners.add(listener);
+        return listener;
+    }
+    
+    private static int closedTcpPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+    
+    /**
+     * 回环UDP回显，每个数据报延迟delayMillis后原样发回
+     */
+    private static final class EchoServer implements AutoCloseable {
+        
+        private final DatagramChannel channel;
+        private final int port;
+        private final ScheduledExecutorService replies = Executors.newSingleThreadScheduledExecutor();
+        volatile int delayMillis;
+        
+        EchoServer(int delayMillis) throws IOException {
+            this.delayMillis = delayMillis;
+            this.channel = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+            this.port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            Thread thread = new Thread(this::serve, "TestEcho");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        int getPort() {
+            return port;
+        }
+        
+        private void serve() {
+            ByteBuffer buffer = ByteBuffer.allocate(2048);
+            while (channel.isOpen()) {
+                try {
+                    buffer.clear();
+                    SocketAddress source = channel.receive(buffer);
+                    buffer.flip();
+                    ByteBuffer reply = ByteBuffer.allocate(buffer.remaining()).put(buffer);
+                    reply.flip();
+                    replies.schedule(() -> send(reply, source), delayMillis, TimeUnit.MILLISECONDS);
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+        
+        private void send(ByteBuffer reply, SocketAddress target) {
+            try {
+                channel.send(reply, target);
+            } catch (IOException e) {
+                // 测试结束时通道已关闭
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            replies.shutdownNow();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.interfaces.UdpTestCallback;
+import com.swiftest.core.models.ConvergenceState;
+import com.swiftest.core.models.SpeedTestConfig;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TcpTesterTest {
+    
+    private static final String TOKEN = "c07060f4304684888e739abf";
+    // 远高于回环吞吐量，每一轮都判定为饱和
+    private static final int SEND_SPEED = 1_000_000;
+    
+    private StreamServer streams;
+    
+    @Before
+    public void setUp() throws Exception {
+        streams = new StreamServer(TOKEN);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        streams.close();
+    }
+    
+    @Test
+    public void roundsOverTokenedStreamsReportSpeed() throws Exception {
+        SpeedTestConfig config = new SpeedTestConfig.Builder()
+                .serverHost("127.0.0.1")
+                .tcpStreams(2)
+                .maxSaturatedRounds(2)
+                .build();
+        Recorder callback = new Recorder();
+        TcpTester tester = new TcpTester(config, streams.getPort(), TOKEN, callback);
+        callback.tester = tester;
+        
+        tester.start();
+        assertTrue(streams.awaitStreams(2));
+        streams.startSending();
+        tester.startRound(SEND_SPEED);
+        
+        assertTrue(callback.finished.await(10, TimeUnit.SECONDS));
+        assertTrue(tester.awaitTermination(1000));
+        assertTrue(callback.errors.isEmpty());
+        assertEquals(2, callback.saturatedRounds);
+        assertTrue(tester.getDownloadSpeed() > 0);
+        assertTrue(tester.getSpeedSketch().quantile(0.95) > 0);
+        assertEquals("tcp-2", tester.getEngineName());
+    }
+    
+    @Test
+    public void connectFailureIsReported() throws Exception {
+        int port = streams.getPort();
+        streams.close();
+        SpeedTestConfig config = new SpeedTestConfig.Builder()
+                .serverHost("127.0.0.1")
+                .tcpStreams(2)
+                .build();
+        Recorder callback = new Recorder();
+        TcpTester tester = new TcpTester(config, port, TOKEN, callback);
+        
+        tester.start();
+        
+        assertTrue(tester.awaitTermination(5000));
+        assertEquals(1, callback.errors.size());
+        assertFalse(tester.isRunning());
+    }
+    
+    @Test
+    public void inbandControlIsOnlyOfferedForDatagrams() {
+        SpeedTestConfig config = new SpeedTestConfig.Builder().serverHost("127.0.0.1").build();
+        
+        assertFalse(new TcpTester(config, 1, TOKEN, new Recorder()).supportsInbandControl());
+        assertTrue(new UdpTester(config, 1, new Recorder()).supportsInbandControl());
+    }
+    
+    @Test
+    public void blockedUdpSwitchesToTcp() throws Exception {
+        // 只绑定不读取，触发包没有回应，模拟UDP被阻断
+        try (DatagramChannel blackhole = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+             ControlServer control = new ControlServer(
+                     ((InetSocketAddress) blackhole.getLocalAddress()).getPort(), streams)) {
+            SpeedTestConfig config = new SpeedTestConfig.Builder()
+                    .serverHost("127.0.0.1")
+                    .webSocketPort(control.getPort())
+                    .tcpFallback(true)
+                    .tcpStreams(2)
+                    .maxSaturatedRounds(2)
+                    .build();
+            ProtocolRecorder callback = new ProtocolRecorder();
+            SpeedTestProtocol protocol = new SpeedTestProtocol(config, callback);
+            
+            protocol.startSpeedTest();
+            
+            assertTrue(callback.fallback.await(5, TimeUnit.SECONDS));
+            assertTrue(callback.completed.await(10, TimeUnit.SECONDS));
+            assertTrue(callback.failures.isEmpty());
+            assertEquals(2, control.tcpStreamsRequested);
+            assertEquals("tcp-2", protocol.getEngineName());
+            assertEquals(1.0, callback.traffic, 1e-9);
+            protocol.stopSpeedTest();
+        }
+    }
+    
+    private static final class Recorder implements UdpTestCallback {
+        
+        final CountDownLatch finished = new CountDownLatch(1);
+        final List<String> errors = new CopyOnWriteArrayList<>();
+        volatile TcpTester tester;
+        volatile int saturatedRounds;
+        
+        @Override public void onTriggerTimeout() { errors.add("trigger timeout"); }
+        @Override public void onTestStart(int loop, int speed) {}
+        @Override public void onFirstPacketReceived() {}
+        @Override public void onAllTestsComplete(float finalSpeed) { finished.countDown(); }
+        @Override public void onUdpError(String error) { errors.add(error); }
+        @Override public void onNoDataReceived() { errors.add("no data"); }
+        
+        @Override
+        public void onSingleTestComplete(float speed, boolean isSaturated, boolean isTestEnd,
+                                         ConvergenceState convergence) {
+            if (isSaturated) {
+                saturatedRounds++;
+            }
+            if (!isTestEnd) {
+                // 代替服务器立即开始下一轮
+                tester.startRound(SEND_SPEED);
+            }
+        }
+    }
+    
+    private static final class ProtocolRecorder implements SpeedTestProtocol.ProtocolCallback {
+        
+        final CountDownLatch fallback = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final List<String> failures = new CopyOnWriteArrayList<>();
+        volatile double traffic;
+        
+        @Override public void onTestStarted() {}
+        @Override public void onProgressUpdate(int progress, float currentSpeed) {}
+        @Override public void onNetworkIssue(int issueType) {}
+        @Override public void onTcpFallback() { fallback.countDown(); }
+        @Override public void onTestFailed(String error) { failures.add(error); }
+        
+        @Override
+        public void onTestCompleted(float downloadSpeed, double traffic) {
+            this.traffic = traffic;
+            completed.countDown();
+        }
+    }
+    
+    /**
+     * TCP后备的数据端口：每条连接先读取token行，startSending()之后不限速发送直到连接关闭
+     */
+    private static final class StreamServer implements AutoCloseable {
+        
+        private final String token;
+        private final ServerSocket listener;
+        private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final Semaphore tokens = new Semaphore(0);
+        
+        StreamServer(String token) throws IOException {
+            this.token = token;
+            this.listener = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::acceptLoop, "TestStreamAccept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+        
+        int getPort() {
+            return listener.getLocalPort();
+        }
+        
+        boolean awaitStreams(int count) throws InterruptedException {
+            return tokens.tryAcquire(count, 5, TimeUnit.SECONDS);
+        }
+        
+        void startSending() {
+            sending.countDown();
+        }
+        
+        private void acceptLoop() {
+            while (!listener.isClosed()) {
+                try {
+                    Socket socket = listener.accept();
+                    accepted.add(socket);
+                    Thread stream = new Thread(() -> serve(socket), "TestStream");
+                    stream.setDaemon(true);
+                    stream.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+        
+        private void serve(Socket socket) {
+            try {
+                InputStream in = socket.getInputStream();
+                if (!token.equals(readLine(in))) {
+                    socket.close();
+                    return;
+                }
+                tokens.release();
+                sending.await();
+                OutputStream out = socket.getOutputStream();
+                byte[] chunk = new byte[64 * 1024];
+                while (true) {
+                    out.write(chunk);
+                }
+            } catch (IOException | InterruptedException e) {
+                // 客户端关闭连接
+            }
+        }
+        
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    throw new EOFException();
+                }
+                line.write(b);
+            }
+            return line.toString("UTF-8");
+        }
+        
+        @Override
+        public void close() throws IOException {
+            listener.close();
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+    
+    /**
+     * 最小的WebSocket控制服务器：分配一个不会回应的UDP端口，收到tcp请求后分配StreamServer，
+     * 每次continue/repeat立即开始下一轮，finish回复traffic
+     */
+    private static final class ControlServer implements AutoCloseable {
+        
+        private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+        
+        private final int udpPort;
+        private final StreamServer streams;
+        private final ServerSocket listener;
+        private volatile Socket connection;
+        volatile int tcpStreamsRequested;
+        
+        ControlServer(int udpPort, StreamServer streams) throws IOException {
+            this.udpPort = udpPort;
+            this.streams = streams;
+            this.listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            Thread thread = new Thread(this::serve, "TestControlServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        int getPort() {
+            return listener.getLocalPort();
+        }
+        
+        private void serve() {
+            try (Socket socket = listener.accept()) {
+                connection = socket;
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                handshake(in, out);
+                
+                String text;
+                boolean hello = true;
+                while ((text = readTextFrame(in)) != null) {
+                    JSONObject message = new JSONObject(text);
+                    String msg = message.optString("msg");
+                    if (hello) {
+                        hello = false;
+                        writeTextFrame(out, new JSONObject().put("udp_port", udpPort));
+                    } else if ("tcp".equals(msg)) {
+                        tcpStreamsRequested = message.getInt("streams");
+                        writeTextFrame(out, new JSONObject().put("tcp_port", streams.getPort()).put("token", TOKEN));
+                        if (!streams.awaitStreams(tcpStreamsRequested)) {
+                            return;
+                        }
+                        streams.startSending();
+                        writeTextFrame(out, new JSONObject().put("msg", "start").put("speed", SEND_SPEED));
+                    } else if ("continue".equals(msg) || "repeat".equals(msg)) {
+                        writeTextFrame(out, new JSONObject().put("msg", "start").put("speed", SEND_SPEED));
+                    } else if ("finish".equals(msg)) {
+                        writeTextFrame(out, new JSONObject().put("traffic", 1024 * 1024));
+                    }
+                }
+            } catch (Exception e) {
+                // 客户端关闭连接或测试结束
+            }
+        }
+        
+        private static void handshake(InputStream in, OutputStream out) throws Exception {
+            String key = null;
+            String line;
+            while (!(line = readHeaderLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                    key = line.substring(colon + 1).trim();
+                }
+            }
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+            String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + Base64.getEncoder().encodeToString(digest) + "\r\n\r\n";
+            out.write(response.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+        
+        private static String readHeaderLine(InputStream in) throws IOException {
+            String line = StreamServer.readLine(in);
+            return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        }
+        
+        /**
+         * 读取客户端的一个文本帧，客户端帧总是带掩码；收到关闭帧或连接关闭时返回null
+         */
+        private static String readTextFrame(InputStream in) throws IOException {
+            while (true) {
+                int b0 = in.read();
+                int b1 = in.read();
+                if (b0 < 0 || b1 < 0) {
+                    return null;
+                }
+                long length = b1 & 0x7F;
+                if (length == 126) {
+                    length = (readByte(in) << 8) | readByte(in);
+                } else if (length == 127) {
+                    length = 0;
+                    for (int i = 0; i < 8; i++) {
+                        length = (length << 8) | readByte(in);
+                    }
+                }
+                byte[] mask = new byte[4];
+                if ((b1 & 0x80) != 0) {
+                    for (int i = 0; i < 4; i++) {
+                        mask[i] = (byte) readByte(in);
+                    }
+                }
+                byte[] payload = new byte[(int) length];
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] = (byte) (readByte(in) ^ mask[i & 3]);
+                }
+                int opcode = b0 & 0x0F;
+                if (opcode == 0x8) {
+                    return null;
+                }
+                if (opcode == 0x1) {
+                    return new String(payload, StandardCharsets.UTF_8);
+                }
+            }
+        }
+        
+        private static int readByte(InputStream in) throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            return b;
+        }
+        
+        private static void writeTextFrame(OutputStream out, JSONObject message) throws IOException {
+            byte[] payload = message.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(0x81);
+            out.write(payload.length);
+            out.write(payload);
+            out.flush();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            listener.close();
+            Socket socket = connection;
+            if (socket != null) {
+                socket.close();
+            }
+        }
+    }
+}
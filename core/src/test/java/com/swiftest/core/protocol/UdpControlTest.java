@@ -0,0 +1,68 @@
+package com.swiftest.core.protocol;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class UdpControlTest {
+    
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+    
+    @Test
+    public void nextRoundTrip() {
+        UdpControl.writeNext(buffer, 3, false, 120);
+        
+        assertEquals(UdpControl.SIZE, buffer.remaining());
+        assertEquals(UdpControl.TYPE_CONTINUE, UdpControl.typeOf(buffer, buffer.remaining()));
+        assertEquals(3, UdpControl.roundOf(buffer));
+        assertEquals(120, UdpControl.speedOf(buffer));
+        
+        UdpControl.writeNext(buffer, 4, true, 0);
+        assertEquals(UdpControl.TYPE_REPEAT, UdpControl.typeOf(buffer, buffer.remaining()));
+        assertEquals(4, UdpControl.roundOf(buffer));
+        assertEquals(0, UdpControl.speedOf(buffer));
+    }
+    
+    @Test
+    public void startRoundTrip() {
+        UdpControl.writeStart(buffer, 7, 960);
+        
+        assertEquals(UdpControl.TYPE_START, UdpControl.typeOf(buffer, buffer.remaining()));
+        assertEquals(7, UdpControl.roundOf(buffer));
+        assertEquals(960, UdpControl.speedOf(buffer));
+        assertEquals(0, buffer.position());
+    }
+    
+    @Test
+    public void dataAndProbeDatagramsAreNotControl() {
+        UdpControl.writeStart(buffer, 1, 10);
+        
+        // 长度不符：数据包（1024字节）和时延探测包（32字节）
+        assertEquals(-1, UdpControl.typeOf(buffer, 1024));
+        assertEquals(-1, UdpControl.typeOf(buffer, 32));
+        assertEquals(-1, UdpControl.typeOf(buffer, UdpControl.SIZE - 1));
+    }
+    
+    @Test
+    public void badMagicOrTypeIsNotControl() {
+        UdpControl.writeStart(buffer, 1, 10);
+        buffer.putInt(0, 0);
+        assertEquals(-1, UdpControl.typeOf(buffer, UdpControl.SIZE));
+        
+        UdpControl.writeStart(buffer, 1, 10);
+        buffer.put(4, (byte) 0);
+        assertEquals(-1, UdpControl.typeOf(buffer, UdpControl.SIZE));
+        buffer.put(4, (byte) (UdpControl.TYPE_START + 1));
+        assertEquals(-1, UdpControl.typeOf(buffer, UdpControl.SIZE));
+    }
+    
+    @Test
+    public void sequencedPayloadIsNotMistakenForControl() {
+        // 序号头部（序号 + 时间戳）即使恰好是13字节也不会带魔数
+        buffer.clear();
+        buffer.putLong(0, 42).putLong(8, 123_456);
+        assertEquals(-1, UdpControl.typeOf(buffer, UdpControl.SIZE));
+    }
+}
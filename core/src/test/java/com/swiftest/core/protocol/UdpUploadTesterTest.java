@@ -0,0 +1,124 @@
+package com.swiftest.core.protocol;
+
+import com.swiftest.core.interfaces.UploadTestCallback;
+import com.swiftest.core.models.ConvergenceState;
+import com.swiftest.core.models.SpeedTestConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UdpUploadTesterTest {
+    
+    private DatagramChannel sink;
+    private SpeedTestConfig config;
+    private final Recorder callback = new Recorder();
+    
+    @Before
+    public void setUp() throws Exception {
+        // 只作为发送目标，不读取
+        sink = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        config = new SpeedTestConfig.Builder()
+                .serverHost("127.0.0.1")
+                .receiveTimeout(5)
+                .build();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        sink.close();
+    }
+    
+    @Test
+    public void stopWhileSendingEndsWithoutCallbacks() throws Exception {
+        UdpUploadTester tester = new UdpUploadTester(config, port(), callback);
+        tester.start();
+        tester.startRound(10);
+        assertTrue(callback.started.await(2, TimeUnit.SECONDS));
+        
+        tester.stopTest();
+        
+        // 停止不能被发送结束后的状态转换覆盖，否则线程要等满5秒的上报超时
+        assertTrue(tester.awaitTermination(1000));
+        assertEquals(0, callback.roundsSent);
+        assertTrue(callback.errors.isEmpty());
+    }
+    
+    @Test
+    public void stopWhileWaitingForReportEndsWithoutCallbacks() throws Exception {
+        UdpUploadTester tester = new UdpUploadTester(config, port(), callback);
+        tester.start();
+        tester.startRound(10);
+        assertTrue(callback.sent.await(3, TimeUnit.SECONDS));
+        
+        tester.stopTest();
+        
+        assertTrue(tester.awaitTermination(1000));
+        assertTrue(callback.errors.isEmpty());
+    }
+    
+    @Test
+    public void lateReportAfterStopIsIgnored() throws Exception {
+        UdpUploadTester tester = new UdpUploadTester(config, port(), callback);
+        tester.start();
+        tester.startRound(10);
+        assertTrue(callback.sent.await(3, TimeUnit.SECONDS));
+        
+        tester.stopTest();
+        tester.onServerReport(1_000_000, 1_000_000);
+        
+        assertTrue(tester.awaitTermination(1000));
+        assertEquals(0, callback.completed);
+        assertTrue(callback.errors.isEmpty());
+    }
+    
+    private int port() throws Exception {
+        return ((InetSocketAddress) sink.getLocalAddress()).getPort();
+    }
+    
+    private static final class Recorder implements UploadTestCallback {
+        
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch sent = new CountDownLatch(1);
+        final List<String> errors = new CopyOnWriteArrayList<>();
+        volatile int roundsSent;
+        volatile int completed;
+        
+        @Override
+        public void onTestStart(int loop, int speed) {
+            started.countDown();
+        }
+        
+        @Override
+        public void onRoundSent(int loop, long sentBytes, long durationNanos) {
+            roundsSent++;
+            sent.countDown();
+        }
+        
+        @Override
+        public void onSingleTestComplete(float speed, boolean isSaturated, boolean isTestEnd,
+                                         ConvergenceState convergence) {
+            completed++;
+        }
+        
+        @Override
+        public void onUploadError(String error) {
+            errors.add(error);
+        }
+        
+        @Override
+        public void onUploadUnsupported() {
+            errors.add("unsupported");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.swiftest.core.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConvergenceEstimatorTest {
+    
+    @Test
+    public void fewerThanTwoSamplesNeverConverge() {
+        ConvergenceEstimator estimator = new ConvergenceEstimator();
+        assertEquals(Float.POSITIVE_INFINITY, estimator.getHalfWidth(), 0f);
+        
+        estimator.add(100f);
+        assertEquals(100f, estimator.getMean(), 0f);
+        assertEquals(0f, estimator.getStandardDeviation(), 0f);
+        assertEquals(Float.POSITIVE_INFINITY, estimator.getHalfWidth(), 0f);
+        assertFalse(estimator.isConverged(1f, 1));
+    }
+    
+    @Test
+    public void meanAndStandardDeviation() {
+        ConvergenceEstimator estimator = new ConvergenceEstimator();
+        for (float v : new float[] {2f, 4f, 4f, 4f, 5f, 5f, 7f, 9f}) {
+            estimator.add(v);
+        }
+        
+        assertEquals(8, estimator.getCount());
+        assertEquals(5f, estimator.getMean(), 1e-6f);
+        assertEquals((float) Math.sqrt(32.0 / 7), estimator.getStandardDeviation(), 1e-5f);
+    }
+    
+    @Test
+    public void halfWidthUsesStudentT() {
+        ConvergenceEstimator estimator = new ConvergenceEstimator();
+        estimator.add(98f);
+        estimator.add(102f);
+        
+        // df = 1：t = 12.706，s = sqrt(8)，n = 2
+        float expected = (float) (12.706 * Math.sqrt(8) / Math.sqrt(2));
+        assertEquals(expected, estimator.getHalfWidth(), 1e-3f);
+    }
+    
+    @Test
+    public void largeSamplesUseNormalApproximation() {
+        ConvergenceEstimator estimator = new ConvergenceEstimator();
+        for (int i = 0; i < 20; i++) {
+            estimator.add(i % 2 == 0 ? 99f : 101f);
+        }
+        
+        float expected = (float) (1.960 * estimator.getStandardDeviation() / Math.sqrt(20));
+        assertEquals(expected, estimator.getHalfWidth(), 1e-4f);
+    }
+    
+    @Test
+    public void convergesWhenHalfWidthWithinTolerance() {
+        ConvergenceEstimator estimator = new ConvergenceEstimator();
+        estimator.add(100f);
+        estimator.add(101f);
+        // 半宽约6.35，超过5%容差
+        assertFalse(estimator.isConverged(0.05f, 2));
+        
+        estimator.add(100.5f);
+        // df = 2：t = 4.303，s = 0.5，半宽约1.24
+        assertTrue(estimator.isConverged(0.05f, 2));
+        assertFalse(estimator.isConverged(0.05f, 4));
+    }
+    
+    @Test
+    public void nonPositiveMeanNeverConverges() {
+        ConvergenceEstimator estimator = new ConvergenceEstimator();
+        estimator.add(0f);
+        estimator.add(0f);
+        estimator.add(0f);
+        
+        assertFalse(estimator.isConverged(0.05f, 2));
+    }
+    
+    @Test
+    public void resetStartsOver() {
+        ConvergenceEstimator estimator = new ConvergenceEstimator();
+        estimator.add(10f);
+        estimator.add(20f);
+        estimator.reset();
+        
+        assertEquals(0, estimator.getCount());
+        assertEquals(0f, estimator.getMean(), 0f);
+        estimator.add(50f);
+        assertEquals(50f, estimator.getMean(), 0f);
+    }
+}
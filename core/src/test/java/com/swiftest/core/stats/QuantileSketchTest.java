@@ -0,0 +1,137 @@
+package com.swiftest.core.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class QuantileSketchTest {
+    
+    // 桶边界相差1%，几何中点的相对误差约0.5%
+    private static final double RELATIVE_ERROR = 0.006;
+    
+    @Test
+    public void emptySketchReturnsZero() {
+        QuantileSketch sketch = new QuantileSketch();
+        
+        assertEquals(0, sketch.getCount());
+        assertEquals(0f, sketch.quantile(0.5), 0f);
+        assertEquals(0f, sketch.getMin(), 0f);
+        assertEquals(0f, sketch.getMax(), 0f);
+        assertEquals(0f, sketch.getMean(), 0f);
+        assertEquals(0f, sketch.getStandardDeviation(), 0f);
+    }
+    
+    @Test
+    public void quantilesMatchSortedRanksWithinBinError() {
+        Random random = new Random(42);
+        float[] values = new float[10_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            // 对数均匀分布在1 ~ 1000 Mbps之间
+            values[i] = (float) Math.exp(random.nextDouble() * Math.log(1000));
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        
+        for (double q : new double[] {0.0, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99}) {
+            float exact = values[(int) (q * values.length)];
+            assertEquals("q=" + q, exact, sketch.quantile(q), exact * RELATIVE_ERROR);
+        }
+    }
+    
+    @Test
+    public void batchQuantilesMatchSingleQueries() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(0f);
+        for (int i = 1; i <= 500; i++) {
+            sketch.add(i * 0.7f);
+        }
+        
+        double[] qs = {0.0, 0.05, 0.5, 0.9, 1.0};
+        float[] out = new float[qs.length];
+        sketch.quantiles(qs, out);
+        for (int k = 0; k < qs.length; k++) {
+            assertEquals("q=" + qs[k], sketch.quantile(qs[k]), out[k], 0f);
+        }
+    }
+    
+    @Test
+    public void exactMomentsAreIndependentOfBins() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (float v : new float[] {2f, 4f, 4f, 4f, 5f, 5f, 7f, 9f}) {
+            sketch.add(v);
+        }
+        
+        assertEquals(8, sketch.getCount());
+        assertEquals(2f, sketch.getMin(), 0f);
+        assertEquals(9f, sketch.getMax(), 0f);
+        assertEquals(5f, sketch.getMean(), 1e-6f);
+        // 样本标准差（n-1）：sqrt(32 / 7)
+        assertEquals((float) Math.sqrt(32.0 / 7), sketch.getStandardDeviation(), 1e-5f);
+    }
+    
+    @Test
+    public void quantilesAreClampedToObservedRange() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(100f);
+        
+        assertEquals(100f, sketch.quantile(0.0), 0f);
+        assertEquals(100f, sketch.quantile(0.5), 0f);
+        assertEquals(100f, sketch.quantile(1.0), 0f);
+    }
+    
+    @Test
+    public void nonPositiveAndNanSamples() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(Float.NaN);
+        sketch.add(0f);
+        sketch.add(0f);
+        sketch.add(50f);
+        
+        assertEquals(3, sketch.getCount());
+        assertEquals(0f, sketch.quantile(0.5), 0f);
+        assertEquals(50f, sketch.quantile(0.9), 50f * RELATIVE_ERROR);
+    }
+    
+    @Test
+    public void mergeEqualsAddingAllSamples() {
+        Random random = new Random(7);
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        QuantileSketch all = new QuantileSketch();
+        for (int i = 0; i < 2_000; i++) {
+            float v = 10f + random.nextFloat() * 90f;
+            (i % 3 == 0 ? left : right).add(v);
+            all.add(v);
+        }
+        
+        left.merge(right);
+        
+        assertEquals(all.getCount(), left.getCount());
+        assertEquals(all.getMin(), left.getMin(), 0f);
+        assertEquals(all.getMax(), left.getMax(), 0f);
+        assertEquals(all.getMean(), left.getMean(), 1e-3f);
+        assertEquals(all.getStandardDeviation(), left.getStandardDeviation(), 1e-3f);
+        for (double q : new double[] {0.1, 0.5, 0.9}) {
+            assertEquals("q=" + q, all.quantile(q), left.quantile(q), 0f);
+        }
+    }
+    
+    @Test
+    public void mergeEmptyAndReset() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(10f);
+        sketch.merge(new QuantileSketch());
+        assertEquals(1, sketch.getCount());
+        assertEquals(10f, sketch.getMin(), 0f);
+        
+        sketch.reset();
+        assertEquals(0, sketch.getCount());
+        sketch.add(20f);
+        assertEquals(20f, sketch.getMin(), 0f);
+        assertEquals(20f, sketch.quantile(0.5), 0f);
+    }
+}
@@ -0,0 +1,189 @@
+package com.swiftest.core.stats;
+
+import com.swiftest.core.models.PacketStats;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class SequenceTrackerTest {
+    
+    private static final long MICROS = 1_000L;
+    
+    private final SequenceTracker tracker = new SequenceTracker();
+    private final ByteBuffer datagram = ByteBuffer.allocate(1024);
+    
+    @Test
+    public void inOrderPacketsHaveNoLoss() {
+        for (long seq = 0; seq < 100; seq++) {
+            receive(seq, seq * 100, seq * 100 + 500);
+        }
+        
+        PacketStats stats = tracker.snapshot();
+        assertEquals(100, stats.getPacketsReceived());
+        assertEquals(0, stats.getPacketsLost());
+        assertEquals(0, stats.getPacketsReordered());
+        assertEquals(0, stats.getPacketsDuplicated());
+        assertEquals(0f, stats.getJitterMs(), 0f);
+    }
+    
+    @Test
+    public void gapsCountAsLoss() {
+        for (long seq = 0; seq < 100; seq++) {
+            if (seq % 10 != 3) {
+                receive(seq, 0, 0);
+            }
+        }
+        
+        PacketStats stats = tracker.snapshot();
+        assertEquals(90, stats.getPacketsReceived());
+        assertEquals(10, stats.getPacketsLost());
+        assertEquals(0.1f, stats.getLossRate(), 1e-6f);
+    }
+    
+    @Test
+    public void lateArrivalIsReorderNotLoss() {
+        receive(0, 0, 0);
+        receive(2, 0, 0);
+        receive(3, 0, 0);
+        receive(1, 0, 0);
+        
+        PacketStats stats = tracker.snapshot();
+        assertEquals(4, stats.getPacketsReceived());
+        assertEquals(0, stats.getPacketsLost());
+        assertEquals(1, stats.getPacketsReordered());
+    }
+    
+    @Test
+    public void duplicatesAreNotCountedTwice() {
+        receive(0, 0, 0);
+        receive(1, 0, 0);
+        receive(1, 0, 0);
+        receive(0, 0, 0);
+        
+        PacketStats stats = tracker.snapshot();
+        assertEquals(2, stats.getPacketsReceived());
+        assertEquals(2, stats.getPacketsDuplicated());
+        assertEquals(0, stats.getPacketsReordered());
+    }
+    
+    @Test
+    public void shortOrNegativeHeadersAreMalformed() {
+        tracker.onPacket(new byte[SequenceTracker.HEADER_SIZE - 1], SequenceTracker.HEADER_SIZE - 1, 0);
+        receive(-1, 0, 0);
+        
+        PacketStats stats = tracker.snapshot();
+        assertEquals(0, stats.getPacketsReceived());
+        assertEquals(2, stats.getPacketsMalformed());
+    }
+    
+    @Test
+    public void byteArrayAndBufferDecodeTheSame() {
+        byte[] raw = new byte[64];
+        ByteBuffer.wrap(raw).putLong(0, 5).putLong(8, 0);
+        tracker.onPacket(raw, raw.length, 0);
+        receive(6, 0, 0);
+        
+        assertEquals(2, tracker.snapshot().getPacketsReceived());
+        assertEquals(0, tracker.snapshot().getPacketsLost());
+    }
+    
+    @Test
+    public void jitterFollowsRfc3550() {
+        // 传输时间交替为 0 和 1000µs，每包 |D| = 1000µs，J += (1000 - J) / 16
+        double expected = 0;
+        for (long seq = 0; seq < 50; seq++) {
+            long transit = seq % 2 == 0 ? 0 : 1000;
+            receive(seq, seq * 1000, seq * 1000 + transit);
+            if (seq > 0) {
+                expected += (1000 - expected) / 16.0;
+            }
+        }
+        
+        assertEquals((float) (expected / 1000.0), tracker.snapshot().getJitterMs(), 1e-4f);
+    }
+    
+    @Test
+    public void beginWindowExcludesEarlierSequences() {
+        for (long seq = 0; seq < 50; seq++) {
+            receive(seq, 0, 0);
+        }
+        tracker.beginWindow(0);
+        // 上一窗口的重复包与窗口之间读到的包都不再计入
+        receive(49, 0, 0);
+        for (long seq = 50; seq < 80; seq++) {
+            receive(seq, 0, 0);
+        }
+        
+        PacketStats stats = tracker.snapshot();
+        assertEquals(30, stats.getPacketsReceived());
+        assertEquals(0, stats.getPacketsLost());
+        assertEquals(0, stats.getPacketsDuplicated());
+    }
+    
+    @Test
+    public void carryOverTailIsSkippedAtFirstGap() {
+        for (long seq = 0; seq < 100; seq++) {
+            receive(seq, 0, 0);
+        }
+        tracker.beginWindow(20);
+        // 上一轮留在接收缓冲区的尾包，其余尾包被内核丢弃，本轮从200开始
+        for (long seq = 100; seq < 110; seq++) {
+            receive(seq, 0, 0);
+        }
+        for (long seq = 200; seq < 300; seq++) {
+            receive(seq, 0, 0);
+        }
+        
+        PacketStats stats = tracker.snapshot();
+        assertEquals(100, stats.getPacketsReceived());
+        assertEquals(0, stats.getPacketsLost());
+    }
+    
+    @Test
+    public void gapAfterCarryOverLimitCountsAsLoss() {
+        for (long seq = 0; seq < 100; seq++) {
+            receive(seq, 0, 0);
+        }
+        tracker.beginWindow(5);
+        for (long seq = 100; seq < 110; seq++) {
+            receive(seq, 0, 0);
+        }
+        receive(120, 0, 0);
+        
+        PacketStats stats = tracker.snapshot();
+        assertEquals(11, stats.getPacketsReceived());
+        assertEquals(10, stats.getPacketsLost());
+    }
+    
+    @Test
+    public void firstWindowHasNoCarryOver() {
+        tracker.beginWindow(20);
+        receive(10, 0, 0);
+        receive(12, 0, 0);
+        
+        PacketStats stats = tracker.snapshot();
+        assertEquals(2, stats.getPacketsReceived());
+        assertEquals(1, stats.getPacketsLost());
+    }
+    
+    @Test
+    public void resetClearsWindowFloor() {
+        for (long seq = 0; seq < 10; seq++) {
+            receive(seq, 0, 0);
+        }
+        tracker.beginWindow(0);
+        tracker.reset();
+        receive(0, 0, 0);
+        
+        assertEquals(1, tracker.snapshot().getPacketsReceived());
+    }
+    
+    private void receive(long seq, long sendMicros, long arrivalMicros) {
+        datagram.clear();
+        datagram.putLong(0, seq).putLong(8, sendMicros);
+        tracker.onPacket(datagram, datagram.capacity(), arrivalMicros * MICROS);
+    }
+}
@@ -0,0 +1,77 @@
+package com.swiftest.core.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThroughputAggregatorTest {
+    
+    private static final long EPOCH = 1_000_000_000L;
+    private static final long MS = 1_000_000L;
+    // 每10ms收到 131072 字节，即 100 Mbps（1 Mbps = 1024 × 1024 bit/s）
+    private static final long BYTES_PER_SLOT = 131_072;
+    
+    @Test
+    public void concurrentSourcesAreSummed() {
+        ThroughputAggregator aggregator = new ThroughputAggregator(2, EPOCH, 10, 5);
+        aggregator.addRound(0, steadyRound(0, 1000), EPOCH);
+        aggregator.addRound(1, steadyRound(0, 1000), EPOCH);
+        
+        QuantileSketch sketch = new QuantileSketch();
+        long concurrentNanos = aggregator.aggregate(sketch);
+        
+        assertEquals(2, aggregator.getActiveSourceCount());
+        assertEquals(1000 * MS, concurrentNanos);
+        assertEquals(200f, sketch.quantile(0.5), 200f * 0.01f);
+    }
+    
+    @Test
+    public void onlyOverlappingSlotsCount() {
+        ThroughputAggregator aggregator = new ThroughputAggregator(2, EPOCH, 10, 5);
+        aggregator.addRound(0, steadyRound(0, 1000), EPOCH);
+        aggregator.addRound(1, steadyRound(500, 1000), EPOCH + 500 * MS);
+        
+        QuantileSketch sketch = new QuantileSketch();
+        
+        assertEquals(500 * MS, aggregator.aggregate(sketch));
+        assertEquals(200f, sketch.quantile(0.5), 200f * 0.01f);
+    }
+    
+    @Test
+    public void sourceWithoutSamplesDoesNotZeroTheResult() {
+        ThroughputAggregator aggregator = new ThroughputAggregator(3, EPOCH, 10, 5);
+        aggregator.addRound(0, steadyRound(0, 1000), EPOCH);
+        aggregator.addRound(2, steadyRound(0, 1000), EPOCH);
+        // 服务器1失败，没有提交任何一轮
+        aggregator.addRound(1, new SampleRing(4), EPOCH);
+        
+        QuantileSketch sketch = new QuantileSketch();
+        
+        assertEquals(2, aggregator.getActiveSourceCount());
+        assertEquals(1000 * MS, aggregator.aggregate(sketch));
+        assertEquals(200f, sketch.quantile(0.5), 200f * 0.01f);
+    }
+    
+    @Test
+    public void noSamplesAtAll() {
+        ThroughputAggregator aggregator = new ThroughputAggregator(2, EPOCH, 10, 5);
+        QuantileSketch sketch = new QuantileSketch();
+        
+        assertEquals(0, aggregator.getActiveSourceCount());
+        assertEquals(0, aggregator.aggregate(sketch));
+        assertEquals(0, sketch.getCount());
+    }
+    
+    /**
+     * [startMs, endMs) 内每10ms一个采样点，累计字节数匀速增长
+     */
+    private static SampleRing steadyRound(int startMs, int endMs) {
+        SampleRing ring = new SampleRing(256);
+        long bytes = 0;
+        for (int t = startMs + 10; t <= endMs; t += 10) {
+            bytes += BYTES_PER_SLOT;
+            ring.add(EPOCH + t * MS, bytes);
+        }
+        return ring;
+    }
+}
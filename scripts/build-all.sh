@@ -38,8 +38,8 @@ if [ ! -f "settings.gradle" ]; then
     exit 1
 fi
 
-# Build Android modules (Core, App, SDK)
-print_status "Building Android modules..."
+# Build JVM and Android modules (Core, CLI, App, SDK)
+print_status "Building Gradle modules..."
 
 print_status "Building Core module..."
 ./gradlew :core:clean :core:build
@@ -50,6 +50,24 @@ else
     exit 1
 fi
 
+print_status "Building CLI probe runner..."
+./gradlew :cli:clean :cli:installDist
+if [ $? -eq 0 ]; then
+    print_success "CLI built successfully"
+else
+    print_error "Failed to build CLI"
+    exit 1
+fi
+
+print_status "Building reference server..."
+./gradlew :server:clean :server:installDist
+if [ $? -eq 0 ]; then
+    print_success "Server built successfully"
+else
+    print_error "Failed to build server"
+    exit 1
+fi
+
 print_status "Building Android App..."
 ./gradlew :android-app:clean :android-app:build
 if [ $? -eq 0 ]; then
@@ -106,7 +124,9 @@ echo ""
 print_status "Build artifacts:"
 echo "  📱 Android App APK: android-app/app/build/outputs/apk/"
 echo "  📚 Android SDK AAR: android-sdk/sdk/build/outputs/aar/"
-echo "  🏗️  Core Library AAR: core/build/outputs/aar/"
+echo "  🏗️  Core Library JAR: core/build/libs/"
+echo "  🖥️  CLI: cli/build/install/swiftest/bin/swiftest"
+echo "  🛰️  Server: server/build/install/swiftest-server/bin/swiftest-server"
 echo "  🌐 Web Frontend: web-frontend/dist/"
 echo "  📱 SDK Sample APK: android-sdk/sample/build/outputs/apk/"
 echo ""
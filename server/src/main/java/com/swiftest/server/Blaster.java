@@ -0,0 +1,123 @@
+package com.swiftest.server;
+
+import com.swiftest.core.log.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 发送线程：以固定节拍为分配给它的所有流补发欠下的数据
+ * 服务器启动固定数量的Blaster，新流按轮转分配，几百个并发会话共用这几个线程，
+ * 不为每个会话创建发送线程。每个节拍对每个流：
+ * - 虚拟发送时刻落后于当前时刻时连续发送，每发送n字节虚拟时刻后移 n × nanosPerByte
+ * - 落后超过MAX_BURST_NANOS时只补回该时长的额度（令牌桶封顶），调度停顿后不会瞬间突发
+ * - 发送缓冲区已满（send返回0）时停止本流，剩余额度留到下一个节拍
+ * 没有正在发送的流时park，直到Flow.startRound()唤醒。
+ */
+final class Blaster implements Runnable {
+    
+    private static final String TAG = "Blaster";
+    
+    // 节拍间隔：1Gbps的流每个节拍约30个数据报
+    private static final long TICK_NANOS = 250_000L;
+    // 与core的Pacer相同的令牌桶时间下限
+    private static final long MAX_BURST_NANOS = 5_000_000L;
+    
+    private final String name;
+    private final ConcurrentLinkedQueue<Flow> added = new ConcurrentLinkedQueue<>();
+    // 只由发送线程访问
+    private final ArrayList<Flow> flows = new ArrayList<>();
+    private final ByteBuffer payload = ByteBuffer.allocateDirect(Math.max(UdpFlow.PACKET_SIZE, TcpFlow.CHUNK_SIZE));
+    
+    private volatile boolean running = true;
+    private volatile Thread thread;
+    
+    Blaster(String name) {
+        this.name = name;
+    }
+    
+    void start() {
+        Thread t = new Thread(this, name);
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+    
+    /**
+     * 分配一个流，由事件循环线程调用
+     */
+    void add(Flow flow) {
+        flow.blaster = this;
+        added.add(flow);
+        wakeup();
+    }
+    
+    void wakeup() {
+        LockSupport.unpark(thread);
+    }
+    
+    void shutdown() {
+        running = false;
+        wakeup();
+    }
+    
+    @Override
+    public void run() {
+        while (running) {
+            Flow flow;
+            while ((flow = added.poll()) != null) {
+                flows.add(flow);
+            }
+            
+            long now = System.nanoTime();
+            boolean sending = false;
+            for (Iterator<Flow> it = flows.iterator(); it.hasNext(); ) {
+                Flow f = it.next();
+                if (f.isClosed()) {
+                    it.remove();
+                } else if (f.isReady() && f.isSending(now)) {
+                    sending = true;
+                    pump(f, now);
+                }
+            }
+            
+            if (sending) {
+                LockSupport.parkNanos(this, TICK_NANOS);
+            } else if (added.isEmpty()) {
+                LockSupport.park(this);
+            }
+        }
+        Log.d(TAG, name + " stopped");
+    }
+    
+    /**
+     * 发送本流到当前时刻为止欠下的数据
+     */
+    private void pump(Flow flow, long now) {
+        if (flow.seenRound != flow.getRound()) {
+            flow.seenRound = flow.getRound();
+            flow.nextSendNanos = now;
+        }
+        if (flow.nextSendNanos < now - MAX_BURST_NANOS) {
+            flow.nextSendNanos = now - MAX_BURST_NANOS;
+        }
+        
+        double nanosPerByte = flow.getNanosPerByte();
+        try {
+            while (flow.nextSendNanos <= now) {
+                int sent = flow.send(payload);
+                if (sent <= 0) {
+                    return;
+                }
+                flow.addSentBytes(sent);
+                flow.nextSendNanos += sent * nanosPerByte;
+            }
+        } catch (IOException e) {
+            flow.onSendError(e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.swiftest.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 一条下行数据流（一个UDP端口或一条TCP后备连接）
+ * 轮次参数由事件循环线程通过startRound()/stop()发布，发送由所属Blaster线程完成：
+ * - round最后写入，Blaster看到新的round时从当前时刻重新开始计时，不继承上一轮的欠额
+ * - 发送状态（虚拟发送时刻、序号、已发送字节）只由Blaster线程写入，sentBytes用volatile发布给事件循环
+ */
+abstract class Flow {
+    
+    final Session session;
+    // 所属发送线程，由事件循环在注册时设置
+    Blaster blaster;
+    
+    // 事件循环 -> Blaster
+    private volatile double nanosPerByte;
+    private volatile long roundEndNanos;
+    private volatile int round;
+    private volatile boolean closed;
+    
+    // Blaster线程私有
+    int seenRound;
+    double nextSendNanos;
+    long sequence;
+    
+    // Blaster -> 事件循环
+    private volatile long sentBytes;
+    
+    Flow(Session session) {
+        this.session = session;
+    }
+    
+    /**
+     * 开始新的一轮发送，由事件循环线程调用
+     * @param bytesPerSecond 本流的目标速率
+     * @param endNanos 本轮最晚发送到该时刻
+     */
+    void startRound(int round, double bytesPerSecond, long endNanos) {
+        this.nanosPerByte = 1e9 / bytesPerSecond;
+        this.roundEndNanos = endNanos;
+        this.round = round;
+        blaster.wakeup();
+    }
+    
+    /**
+     * 停止当前轮次的发送
+     */
+    void stop() {
+        this.roundEndNanos = 0;
+    }
+    
+    /**
+     * 关闭后Blaster在下一个节拍把该流移出发送列表
+     */
+    void close() {
+        closed = true;
+        roundEndNanos = 0;
+    }
+    
+    boolean isClosed() {
+        return closed;
+    }
+    
+    boolean isSending(long nowNanos) {
+        return !closed && nowNanos < roundEndNanos;
+    }
+    
+    int getRound() {
+        return round;
+    }
+    
+    double getNanosPerByte() {
+        return nanosPerByte;
+    }
+    
+    long getSentBytes() {
+        return sentBytes;
+    }
+    
+    void addSentBytes(int bytes) {
+        // 只有所属Blaster线程写入
+        sentBytes += bytes;
+    }
+    
+    /**
+     * 本轮的目的地是否已经确定（UDP流需要收到触发包）
+     */
+    abstract boolean isReady();
+    
+    /**
+     * 发送一个数据单元，由Blaster线程调用
+     * @param payload Blaster的发送缓冲区，实现可以改写其内容
+     * @return 写出的字节数，发送缓冲区已满时返回0
+     */
+    abstract int send(ByteBuffer payload) throws IOException;
+    
+    /**
+     * 发送失败（对端关闭或网络不可达），由Blaster线程调用，停止本流
+     */
+    void onSendError(IOException e) {
+        stop();
+        session.onFlowError(this, e);
+    }
+}
@@ -0,0 +1,157 @@
+package com.swiftest.server;
+
+/**
+ * 服务端配置参数
+ */
+public class ServerConfig {
+    
+    private final String bindHost;
+    private final int webSocketPort;
+    private final int tcpPort;
+    private final int echoPort;
+    private final int blasterThreads;
+    private final int initialSpeed;
+    private final int maxSpeed;
+    private final int maxFlows;
+    private final int maxSessions;
+    private final int sessionTimeoutSeconds;
+    
+    private ServerConfig(Builder builder) {
+        this.bindHost = builder.bindHost;
+        this.webSocketPort = builder.webSocketPort;
+        this.tcpPort = builder.tcpPort;
+        this.echoPort = builder.echoPort;
+        this.blasterThreads = builder.blasterThreads;
+        this.initialSpeed = builder.initialSpeed;
+        this.maxSpeed = builder.maxSpeed;
+        this.maxFlows = builder.maxFlows;
+        this.maxSessions = builder.maxSessions;
+        this.sessionTimeoutSeconds = builder.sessionTimeoutSeconds;
+    }
+    
+    // Getters
+    public String getBindHost() { return bindHost; }
+    public int getWebSocketPort() { return webSocketPort; }
+    public int getTcpPort() { return tcpPort; }
+    public int getEchoPort() { return echoPort; }
+    public int getBlasterThreads() { return blasterThreads; }
+    public int getInitialSpeed() { return initialSpeed; }
+    public int getMaxSpeed() { return maxSpeed; }
+    public int getMaxFlows() { return maxFlows; }
+    public int getMaxSessions() { return maxSessions; }
+    public int getSessionTimeoutSeconds() { return sessionTimeoutSeconds; }
+    
+    /**
+     * 构建器模式用于创建配置对象
+     */
+    public static class Builder {
+        private String bindHost = "0.0.0.0";
+        private int webSocketPort = 8080;
+        private int tcpPort = 8081;
+        private int echoPort = 8082;
+        private int blasterThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int initialSpeed = 20;
+        private int maxSpeed = 10000;
+        private int maxFlows = 8;
+        private int maxSessions = 1024;
+        private int sessionTimeoutSeconds = 120;
+        
+        /**
+         * 监听地址，WebSocket、TCP后备和会话UDP端口都绑定在该地址上
+         */
+        public Builder bindHost(String bindHost) {
+            this.bindHost = bindHost;
+            return this;
+        }
+        
+        /**
+         * WebSocket端口，0表示由系统分配（见SwiftestServer.getWebSocketPort()）
+         */
+        public Builder webSocketPort(int port) {
+            this.webSocketPort = port;
+            return this;
+        }
+        
+        /**
+         * TCP后备的数据端口，所有会话共用，连接按token关联会话；0表示由系统分配
+         */
+        public Builder tcpPort(int port) {
+            this.tcpPort = port;
+            return this;
+        }
+        
+        /**
+         * 固定的UDP回显端口，不需要WebSocket会话，供客户端测速前选择服务器（ServerSelector）探测时延；
+         * 0表示由系统分配，负数表示不开启
+         */
+        public Builder echoPort(int port) {
+            this.echoPort = port;
+            return this;
+        }
+        
+        /**
+         * 发送线程数，每个线程以固定节拍为分配给它的所有流发送数据
+         */
+        public Builder blasterThreads(int threads) {
+            this.blasterThreads = threads;
+            return this;
+        }
+        
+        /**
+         * 第一轮速率 (Mbps)，客户端在握手中建议了起始速率时使用客户端的值
+         */
+        public Builder initialSpeed(int speed) {
+            this.initialSpeed = speed;
+            return this;
+        }
+        
+        /**
+         * 单个会话的速率上限 (Mbps)，已达上限仍收到continue时回复exceed
+         */
+        public Builder maxSpeed(int speed) {
+            this.maxSpeed = speed;
+            return this;
+        }
+        
+        /**
+         * 单个会话最多分配的UDP端口数，同时也是TCP后备的连接数上限
+         */
+        public Builder maxFlows(int flows) {
+            this.maxFlows = flows;
+            return this;
+        }
+        
+        /**
+         * 同时进行的会话上限，超出时拒绝WebSocket升级
+         */
+        public Builder maxSessions(int sessions) {
+            this.maxSessions = sessions;
+            return this;
+        }
+        
+        /**
+         * 单个会话的最长时间，超时后强制关闭，防止客户端异常时持续发送
+         */
+        public Builder sessionTimeout(int seconds) {
+            this.sessionTimeoutSeconds = seconds;
+            return this;
+        }
+        
+        public ServerConfig build() {
+            if (bindHost == null || bindHost.trim().isEmpty()) {
+                throw new IllegalArgumentException("Bind host cannot be null or empty");
+            }
+            if (blasterThreads < 1 || maxFlows < 1 || maxFlows > 255 || maxSessions < 1) {
+                throw new IllegalArgumentException("Invalid limits: blasterThreads=" + blasterThreads
+                        + ", maxFlows=" + maxFlows + ", maxSessions=" + maxSessions);
+            }
+            if (initialSpeed < 1 || maxSpeed < initialSpeed) {
+                throw new IllegalArgumentException("Invalid speeds: initialSpeed=" + initialSpeed + ", maxSpeed=" + maxSpeed);
+            }
+            if (sessionTimeoutSeconds < 1) {
+                throw new IllegalArgumentException("Session timeout must be positive");
+            }
+            return new ServerConfig(this);
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package com.swiftest.server;
+
+import com.swiftest.core.log.Log;
+import com.swiftest.core.protocol.BinaryControlCodec;
+import com.swiftest.core.protocol.LatencyProber;
+import com.swiftest.core.protocol.UdpControl;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个客户端的测速会话（协议状态机）
+ * 所有方法都在事件循环线程上调用，数据发送交给Blaster：
+ * 1. 握手：App模式的 {"GUID","testID"} 或SDK模式的 {"msg":"hello"}，可选seq/echo/flows/udp_control/speed/binary，
+ *    回复（SDK模式先回复hello there）udp_port或udp_ports，接受udp_control时同一消息带 "udp_control": true
+ * 2. 触发：每个端口都收到客户端的触发包后开始第一轮，发送start
+ * 3. 轮次：continue（SDK模式为increase）加倍或采用客户端建议的速率，repeat保持速率，
+ *    已达到速率上限仍要求加速时回复exceed；开启udp_control后第二轮起在UDP上收发NEXT/START，按轮次号去重
+ * 4. 结束：finish后停止发送，回复traffic（所有轮次实际发出的字节数）
+ * 5. 可选：tcp后备（token关联的N条TCP连接）、上传测速（upload/upload_stop/upload_finish）
+ * 客户端在hello中提议binary时，服务器回复的所有控制消息改用BinaryControlCodec帧。
+ */
+final class Session implements WebSocketConnection.Listener, BinaryControlCodec.Handler {
+    
+    private static final String TAG = "Session";
+    
+    // 每轮的最长发送时间：客户端从第一个数据包起测量1秒，留出RTT和调度的余量，下一轮开始时提前结束
+    static final long ROUND_NANOS = 1_200_000_000L;
+    
+    private static final byte[] TRIGGER = "trigger".getBytes(StandardCharsets.US_ASCII);
+    private static final int SOCKET_SEND_BUFFER = 4 * 1024 * 1024;
+    private static final int SOCKET_RECEIVE_BUFFER = 1024 * 1024;
+    private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+    
+    private static final int STATE_HANDSHAKE = 0;   // 等待hello
+    private static final int STATE_TRIGGER = 1;     // 已分配端口，等待触发包或TCP连接
+    private static final int STATE_RUNNING = 2;     // 轮次进行中
+    private static final int STATE_FINISHED = 3;    // 下载已结束，可能继续上传测速
+    
+    private final SwiftestServer server;
+    private final ServerConfig config;
+    private final int id;
+    private final long createdNanos = System.nanoTime();
+    private final ByteBuffer controlBuffer = ByteBuffer.allocate(UdpControl.SIZE);
+    
+    private WebSocketConnection connection;
+    private BinaryControlCodec encoder;
+    private boolean sdkMode;
+    private boolean sequenced;
+    private boolean echo;
+    private boolean udpControl;
+    
+    private int state = STATE_HANDSHAKE;
+    private int round = 0;
+    private int speed;
+    private boolean exceeded = false;
+    private UdpFlow[] udpFlows = new UdpFlow[0];
+    private final List<TcpFlow> tcpFlows = new ArrayList<>();
+    private Flow[] dataFlows = new Flow[0];
+    private String tcpToken;
+    private int tcpStreams;
+    
+    private boolean uploading = false;
+    private long uploadBytes;
+    private long uploadFirstNanos;
+    private long uploadLastNanos;
+    private boolean closed = false;
+    
+    Session(SwiftestServer server, int id) {
+        this.server = server;
+        this.config = server.getConfig();
+        this.id = id;
+    }
+    
+    int getId() {
+        return id;
+    }
+    
+    long getCreatedNanos() {
+        return createdNanos;
+    }
+    
+    /**
+     * 服务器接受连接后立即设置，早于握手完成
+     */
+    void setConnection(WebSocketConnection connection) {
+        this.connection = connection;
+    }
+    
+    @Override
+    public void onOpen(WebSocketConnection connection) {
+        Log.d(TAG, "Session #" + id + " opened from " + connection.getRemoteAddress());
+    }
+    
+    @Override
+    public void onText(String text) {
+        JSONObject message;
+        try {
+            message = new JSONObject(text);
+        } catch (JSONException e) {
+            Log.w(TAG, "Session #" + id + ": malformed message " + text);
+            return;
+        }
+        if (state == STATE_HANDSHAKE) {
+            onHello(message);
+            return;
+        }
+        
+        String type = message.optString("msg", "");
+        switch (type) {
+            case "start":
+                onStartAck();
+                break;
+            case "continue":
+            case "increase":
+                onContinue(message.optInt("speed", 0));
+                break;
+            case "repeat":
+                onRepeat(message.optInt("speed", 0));
+                break;
+            case "finish":
+                onFinish(message.optDouble("download", 0));
+                break;
+            case "tcp":
+                onTcpRequest(message.optInt("streams", 1));
+                break;
+            case "upload":
+                onUpload(message.optInt("speed", 0));
+                break;
+            case "upload_stop":
+                onUploadStop();
+                break;
+            case "upload_finish":
+                onUploadFinish(message.optDouble("upload", 0));
+                break;
+            default:
+                Log.d(TAG, "Session #" + id + ": ignoring message " + text);
+        }
+    }
+    
+    @Override
+    public void onBinary(ByteBuffer frame) {
+        if (state == STATE_HANDSHAKE || !BinaryControlCodec.decode(frame, this)) {
+            Log.w(TAG, "Session #" + id + ": unexpected binary frame of " + frame.remaining() + " bytes");
+        }
+    }
+    
+    @Override
+    public void onClose() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (UdpFlow flow : udpFlows) {
+            // 打开端口失败时数组可能没有填满
+            if (flow != null) {
+                flow.close();
+                closeQuietly(flow.channel);
+            }
+        }
+        for (TcpFlow flow : tcpFlows) {
+            flow.close();
+            closeQuietly(flow.channel);
+        }
+        if (tcpToken != null) {
+            server.unregisterTcpToken(tcpToken);
+        }
+        Log.d(TAG, "Session #" + id + " closed after " + round + " rounds, " + getTrafficBytes() + " bytes sent");
+        server.onSessionClosed(this);
+    }
+    
+    /**
+     * 会话超时或服务器关闭
+     */
+    void close(int code) {
+        connection.sendClose(code);
+        connection.close();
+    }
+    
+    private void onHello(JSONObject hello) {
+        sdkMode = "hello".equals(hello.optString("msg", null));
+        if (!sdkMode && !hello.has("GUID")) {
+            Log.w(TAG, "Session #" + id + ": expected hello, got " + hello);
+            close(1008);
+            return;
+        }
+        sequenced = hello.optBoolean("seq", false);
+        echo = hello.optBoolean("echo", false);
+        udpControl = hello.optInt("udp_control", 0) == 1;
+        int flows = Math.max(1, Math.min(hello.optInt("flows", 1), config.getMaxFlows()));
+        int hint = hello.optInt("speed", 0);
+        speed = hint > 0 ? Math.min(hint, config.getMaxSpeed()) : config.getInitialSpeed();
+        if (hello.optInt("binary", 0) == BinaryControlCodec.VERSION) {
+            encoder = new BinaryControlCodec();
+        }
+        
+        int[] ports = new int[flows];
+        udpFlows = new UdpFlow[flows];
+        try {
+            for (int i = 0; i < flows; i++) {
+                DatagramChannel channel = DatagramChannel.open();
+                udpFlows[i] = new UdpFlow(this, channel, i, sequenced);
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, SOCKET_SEND_BUFFER);
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_RECEIVE_BUFFER);
+                channel.bind(new InetSocketAddress(config.getBindHost(), 0));
+                ports[i] = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+                server.registerFlow(udpFlows[i]);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Session #" + id + ": cannot open UDP ports", e);
+            close(1011);
+            return;
+        }
+        dataFlows = udpFlows;
+        state = STATE_TRIGGER;
+        Log.d(TAG, "Session #" + id + ": " + (sdkMode ? "sdk" : "app") + " hello, " + flows + " flow(s), start "
+                + speed + "Mbps" + (encoder != null ? ", binary" : "") + (udpControl ? ", udp_control" : ""));
+        
+        if (encoder != null) {
+            if (sdkMode) {
+                connection.sendBinary(encoder.helloAck());
+            }
+            connection.sendBinary(encoder.udpPorts(ports, udpControl ? BinaryControlCodec.FLAG_UDP_CONTROL : 0));
+            return;
+        }
+        if (sdkMode) {
+            sendJson("msg", "hello there");
+        }
+        try {
+            JSONObject reply = new JSONObject();
+            if (flows > 1) {
+                JSONArray array = new JSONArray();
+                for (int port : ports) {
+                    array.put(port);
+                }
+                reply.put("udp_ports", array);
+            } else {
+                reply.put("udp_port", ports[0]);
+            }
+            if (udpControl) {
+                reply.put("udp_control", true);
+            }
+            connection.sendText(reply.toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to encode port allocation", e);
+        }
+    }
+    
+    /**
+     * 会话的UDP端口收到一个数据报，datagram从0开始，length为长度
+     */
+    void onDatagram(UdpFlow flow, ByteBuffer datagram, int length, InetSocketAddress source) {
+        if (length == TRIGGER.length && isTrigger(datagram)) {
+            if (flow.setClient(source)) {
+                Log.d(TAG, "Session #" + id + ": flow " + flow.index + " triggered from " + source);
+            }
+            if (state == STATE_TRIGGER && tcpToken == null && allTriggered()) {
+                state = STATE_RUNNING;
+                startRound(speed);
+                sendStart();
+            }
+            return;
+        }
+        
+        if (length >= LatencyProber.PROBE_HEADER_SIZE && datagram.getInt(0) == LatencyProber.PROBE_MAGIC) {
+            if (echo) {
+                echo(flow, datagram, length, source);
+            }
+            return;
+        }
+        
+        int control = UdpControl.typeOf(datagram, length);
+        if (control == UdpControl.TYPE_CONTINUE || control == UdpControl.TYPE_REPEAT) {
+            if (udpControl) {
+                onInbandNext(flow, control == UdpControl.TYPE_REPEAT,
+                        UdpControl.roundOf(datagram), UdpControl.speedOf(datagram), source);
+            }
+            return;
+        }
+        
+        if (uploading) {
+            long now = System.nanoTime();
+            if (uploadBytes == 0) {
+                uploadFirstNanos = now;
+            }
+            uploadLastNanos = now;
+            uploadBytes += length;
+        }
+    }
+    
+    private static boolean isTrigger(ByteBuffer datagram) {
+        for (int i = 0; i < TRIGGER.length; i++) {
+            if (datagram.get(i) != TRIGGER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean allTriggered() {
+        for (UdpFlow flow : udpFlows) {
+            if (!flow.isReady()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 探测包原样回显给来源地址（可能是客户端单独的负载时延Socket）
+     */
+    private void echo(UdpFlow flow, ByteBuffer datagram, int length, InetSocketAddress source) {
+        ByteBuffer reply = datagram.duplicate();
+        reply.position(0).limit(length);
+        try {
+            flow.channel.send(reply, source);
+        } catch (IOException e) {
+            Log.d(TAG, "Session #" + id + ": echo to " + source + " failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 轮次内联控制：round为客户端请求开始的轮次
+     * 下一轮才开始发送；当前轮说明START丢失，只重发START；更早的轮次是重传的旧报文，忽略
+     */
+    private void onInbandNext(UdpFlow flow, boolean repeat, int requestedRound, int proposedSpeed,
+                              InetSocketAddress source) {
+        if (state != STATE_RUNNING || exceeded || requestedRound < round) {
+            return;
+        }
+        if (requestedRound == round + 1) {
+            int next = nextSpeed(repeat, proposedSpeed);
+            if (next < 0) {
+                onSpeedExceeded();
+                return;
+            }
+            startRound(next);
+        } else if (requestedRound != round) {
+            Log.d(TAG, "Session #" + id + ": ignoring in-band request for round " + requestedRound + " at round " + round);
+            return;
+        }
+        UdpControl.writeStart(controlBuffer, round, speed);
+        try {
+            flow.channel.send(controlBuffer, source);
+        } catch (IOException e) {
+            Log.d(TAG, "Session #" + id + ": in-band start to " + source + " failed: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public void onStartAck() {
+        Log.d(TAG, "Session #" + id + ": round " + round + " acknowledged");
+    }
+    
+    @Override
+    public void onContinue(int proposedSpeed) {
+        onNextRound(false, proposedSpeed);
+    }
+    
+    @Override
+    public void onRepeat(int proposedSpeed) {
+        onNextRound(true, proposedSpeed);
+    }
+    
+    private void onNextRound(boolean repeat, int proposedSpeed) {
+        if (state != STATE_RUNNING || exceeded) {
+            return;
+        }
+        int next = nextSpeed(repeat, proposedSpeed);
+        if (next < 0) {
+            onSpeedExceeded();
+            return;
+        }
+        startRound(next);
+        sendStart();
+    }
+    
+    /**
+     * 下一轮的速率
+     * @return 已达到速率上限仍要求加速时返回-1
+     */
+    private int nextSpeed(boolean repeat, int proposedSpeed) {
+        int max = config.getMaxSpeed();
+        if (repeat) {
+            return proposedSpeed > 0 ? Math.min(proposedSpeed, max) : speed;
+        }
+        if (speed >= max) {
+            return -1;
+        }
+        return proposedSpeed > 0 ? Math.min(proposedSpeed, max) : (int) Math.min(speed * 2L, max);
+    }
+    
+    private void onSpeedExceeded() {
+        exceeded = true;
+        stopFlows();
+        Log.d(TAG, "Session #" + id + ": speed limit " + config.getMaxSpeed() + "Mbps reached");
+        if (encoder != null) {
+            connection.sendBinary(encoder.exceed());
+        } else {
+            sendJson("msg", "exceed");
+        }
+    }
+    
+    /**
+     * 开始新的一轮，每个流分得速率的1/N，上一轮未结束的发送由新的轮次接替
+     * 与客户端一致，1Mbps按1024*1024 bit/s计算
+     */
+    private void startRound(int newSpeed) {
+        round++;
+        speed = newSpeed;
+        double bytesPerSecond = newSpeed * 1024.0 * 1024.0 / 8 / dataFlows.length;
+        long end = System.nanoTime() + ROUND_NANOS;
+        for (Flow flow : dataFlows) {
+            flow.startRound(round, bytesPerSecond, end);
+        }
+        Log.d(TAG, "Session #" + id + ": round " + round + " at " + newSpeed + "Mbps");
+    }
+    
+    private void sendStart() {
+        if (encoder != null) {
+            connection.sendBinary(encoder.start(speed));
+        } else {
+            sendJson("msg", "start", "speed", speed);
+        }
+    }
+    
+    @Override
+    public void onFinish(double download) {
+        if (state == STATE_FINISHED) {
+            return;
+        }
+        state = STATE_FINISHED;
+        stopFlows();
+        long traffic = getTrafficBytes();
+        Log.i(TAG, String.format("Session #%d finished: download=%.2fMbps, rounds=%d, traffic=%d bytes",
+                id, download, round, traffic));
+        if (encoder != null) {
+            connection.sendBinary(encoder.traffic(traffic));
+        } else {
+            sendJson("traffic", traffic);
+        }
+    }
+    
+    private void stopFlows() {
+        for (Flow flow : dataFlows) {
+            flow.stop();
+        }
+    }
+    
+    private long getTrafficBytes() {
+        long total = 0;
+        for (Flow flow : udpFlows) {
+            if (flow != null) {
+                total += flow.getSentBytes();
+            }
+        }
+        for (Flow flow : tcpFlows) {
+            total += flow.getSentBytes();
+        }
+        return total;
+    }
+    
+    @Override
+    public void onTcpRequest(int streams) {
+        if (tcpToken != null || state == STATE_FINISHED) {
+            return;
+        }
+        stopFlows();
+        tcpStreams = Math.max(1, Math.min(streams, config.getMaxFlows()));
+        byte[] random = new byte[12];
+        TOKEN_RANDOM.nextBytes(random);
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b & 0xFF));
+        }
+        tcpToken = token.toString();
+        server.registerTcpToken(tcpToken, this);
+        state = STATE_TRIGGER;
+        Log.d(TAG, "Session #" + id + ": TCP fallback with " + tcpStreams + " stream(s)");
+        
+        if (encoder != null) {
+            connection.sendBinary(encoder.tcpPort(server.getTcpPort(), tcpToken));
+        } else {
+            sendJson("tcp_port", server.getTcpPort(), "token", tcpToken);
+        }
+    }
+    
+    /**
+     * 带本会话token的TCP连接已建立
+     * @return 关联到该连接的流，连接数已满时返回null
+     */
+    TcpFlow onTcpStream(SocketChannel channel) {
+        if (closed || tcpFlows.size() >= tcpStreams) {
+            return null;
+        }
+        try {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, SOCKET_SEND_BUFFER);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            Log.d(TAG, "Session #" + id + ": cannot tune TCP stream: " + e.getMessage());
+        }
+        TcpFlow flow = new TcpFlow(this, channel);
+        tcpFlows.add(flow);
+        server.assignBlaster(flow);
+        if (tcpFlows.size() == tcpStreams) {
+            server.unregisterTcpToken(tcpToken);
+            dataFlows = tcpFlows.toArray(new Flow[0]);
+            state = STATE_RUNNING;
+            startRound(speed);
+            sendStart();
+        }
+        return flow;
+    }
+    
+    void onTcpStreamClosed(TcpFlow flow) {
+        flow.close();
+        closeQuietly(flow.channel);
+    }
+    
+    /**
+     * 发送失败，在Blaster线程上调用，流已停止
+     */
+    void onFlowError(Flow flow, IOException e) {
+        if (!closed) {
+            Log.d(TAG, "Session #" + id + ": send failed: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public void onUpload(int uploadSpeed) {
+        if (udpFlows.length == 0) {
+            return;
+        }
+        uploading = true;
+        uploadBytes = 0;
+        uploadFirstNanos = 0;
+        uploadLastNanos = 0;
+        Log.d(TAG, "Session #" + id + ": upload round at " + uploadSpeed + "Mbps");
+        if (encoder != null) {
+            connection.sendBinary(encoder.uploadReady());
+        } else {
+            sendJson("msg", "upload_ready");
+        }
+    }
+    
+    @Override
+    public void onUploadStop() {
+        uploading = false;
+        long durationMicros = (uploadLastNanos - uploadFirstNanos) / 1000L;
+        if (encoder != null) {
+            connection.sendBinary(encoder.uploadReport(uploadBytes, durationMicros));
+        } else {
+            sendJson("msg", "upload_report", "bytes", uploadBytes, "duration", durationMicros);
+        }
+    }
+    
+    @Override
+    public void onUploadFinish(double upload) {
+        uploading = false;
+        Log.i(TAG, String.format("Session #%d upload finished: %.2fMbps", id, upload));
+    }
+    
+    /**
+     * 发送由键值对组成的JSON消息
+     */
+    private void sendJson(Object... keyValues) {
+        try {
+            JSONObject message = new JSONObject();
+            for (int i = 0; i + 1 < keyValues.length; i += 2) {
+                message.put((String) keyValues[i], keyValues[i + 1]);
+            }
+            connection.sendText(message.toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to encode message", e);
+        }
+    }
+    
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
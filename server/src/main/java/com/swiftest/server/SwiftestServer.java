@@ -0,0 +1,529 @@
+package com.swiftest.server;
+
+import com.swiftest.core.log.ConsoleLogger;
+import com.swiftest.core.log.Log;
+import com.swiftest.core.protocol.LatencyProber;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Swiftest参考服务端
+ * 实现客户端使用的全部协议（握手、端口分配、触发、轮次控制、traffic、TCP后备、上传、回显和轮次内联控制），
+ * 用于本地联调、端到端吞吐基准和自建测速节点。线程模型：
+ * - 一个事件循环线程（Selector）处理WebSocket的握手和帧、所有会话UDP端口的读取、TCP后备的连接、
+ *   服务器选择用的固定回显端口，以及每个会话的协议状态机（Session），状态机因此不需要加锁
+ * - 固定数量的Blaster线程按节拍为所有流发送数据，新流轮转分配
+ * 单个进程可以同时服务几百个会话，占用的线程数与会话数无关。
+ */
+public final class SwiftestServer implements Closeable {
+    
+    private static final String TAG = "SwiftestServer";
+    
+    static final String USAGE = String.join("\n",
+            "Usage: swiftest-server [options]",
+            "  --bind <host>            listen address (default 0.0.0.0)",
+            "  --port <port>            WebSocket port (default 8080)",
+            "  --tcp-port <port>        TCP fallback port (default 8081)",
+            "  --echo-port <port>       UDP latency echo port for server selection (default 8082, -1 disables)",
+            "  --threads <n>            sender threads (default: half the CPUs)",
+            "  --initial-speed <mbps>   first round rate without a client hint (default 20)",
+            "  --max-speed <mbps>       per-session rate limit (default 10000)",
+            "  --max-flows <n>          UDP ports / TCP streams per session (default 8)",
+            "  --max-sessions <n>       concurrent sessions (default 1024)",
+            "  --session-timeout <sec>  maximum session lifetime (default 120)",
+            "  --verbose                write debug logs to stderr",
+            "  --help                   show this help");
+    
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = 1000;
+    // TCP后备连接建立后发送token的期限
+    private static final long TOKEN_TIMEOUT_NANOS = 5_000_000_000L;
+    private static final int MAX_TOKEN_LINE = 256;
+    // 每次可读事件最多读取的数据报数，避免上传流量大的会话占满事件循环
+    private static final int DATAGRAM_BATCH = 64;
+    
+    private final ServerConfig config;
+    private final Blaster[] blasters;
+    private final Set<Session> sessions = new HashSet<>();
+    private final Map<String, Session> tcpTokens = new HashMap<>();
+    private final ByteBuffer datagramBuffer = ByteBuffer.allocateDirect(2048);
+    private final ByteBuffer discardBuffer = ByteBuffer.allocateDirect(4096);
+    
+    private Selector selector;
+    private ServerSocketChannel webSocketListener;
+    private ServerSocketChannel tcpListener;
+    private DatagramChannel echoChannel;
+    private Thread loopThread;
+    private int nextBlaster = 0;
+    private int nextSessionId = 0;
+    
+    private volatile boolean running = false;
+    private volatile int webSocketPort;
+    private volatile int tcpPort;
+    private volatile int echoPort = -1;
+    private volatile int sessionCount;
+    
+    public SwiftestServer(ServerConfig config) {
+        this.config = config;
+        this.blasters = new Blaster[config.getBlasterThreads()];
+        for (int i = 0; i < blasters.length; i++) {
+            blasters[i] = new Blaster("SwiftestBlaster-" + i);
+        }
+    }
+    
+    public static void main(String[] args) {
+        ServerConfig config;
+        boolean verbose = false;
+        try {
+            ServerConfig.Builder builder = new ServerConfig.Builder();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--bind": builder.bindHost(value(args, ++i, arg)); break;
+                    case "--port": builder.webSocketPort(intValue(args, ++i, arg)); break;
+                    case "--tcp-port": builder.tcpPort(intValue(args, ++i, arg)); break;
+                    case "--echo-port": builder.echoPort(intValue(args, ++i, arg)); break;
+                    case "--threads": builder.blasterThreads(intValue(args, ++i, arg)); break;
+                    case "--initial-speed": builder.initialSpeed(intValue(args, ++i, arg)); break;
+                    case "--max-speed": builder.maxSpeed(intValue(args, ++i, arg)); break;
+                    case "--max-flows": builder.maxFlows(intValue(args, ++i, arg)); break;
+                    case "--max-sessions": builder.maxSessions(intValue(args, ++i, arg)); break;
+                    case "--session-timeout": builder.sessionTimeout(intValue(args, ++i, arg)); break;
+                    case "--verbose": verbose = true; break;
+                    case "--help":
+                    case "-h":
+                        System.out.println(USAGE);
+                        return;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            config = builder.build();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        
+        Log.setLogger(new ConsoleLogger(verbose ? Log.DEBUG : Log.INFO));
+        SwiftestServer server = new SwiftestServer(config);
+        try {
+            server.start();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start server", e);
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "SwiftestServerShutdown"));
+        try {
+            server.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+    
+    private static int intValue(String[] args, int index, String option) {
+        String value = value(args, index, option);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + option + ": " + value);
+        }
+    }
+    
+    /**
+     * 绑定端口并启动事件循环和发送线程
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        webSocketListener = listen(config.getWebSocketPort());
+        tcpListener = listen(config.getTcpPort());
+        webSocketPort = webSocketListener.socket().getLocalPort();
+        tcpPort = tcpListener.socket().getLocalPort();
+        if (config.getEchoPort() >= 0) {
+            echoChannel = DatagramChannel.open();
+            echoChannel.bind(new InetSocketAddress(config.getBindHost(), config.getEchoPort()));
+            echoChannel.configureBlocking(false);
+            echoChannel.register(selector, SelectionKey.OP_READ);
+            echoPort = echoChannel.socket().getLocalPort();
+        }
+        
+        running = true;
+        for (Blaster blaster : blasters) {
+            blaster.start();
+        }
+        loopThread = new Thread(this::loop, "SwiftestServerLoop");
+        loopThread.start();
+        Log.i(TAG, "Listening on " + config.getBindHost() + ": WebSocket " + webSocketPort
+                + ", TCP fallback " + tcpPort + (echoPort >= 0 ? ", UDP echo " + echoPort : "")
+                + ", " + blasters.length + " sender thread(s)");
+    }
+    
+    private ServerSocketChannel listen(int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(new InetSocketAddress(config.getBindHost(), port), 1024);
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_ACCEPT);
+        return channel;
+    }
+    
+    /**
+     * 等待事件循环结束（close()之后）
+     */
+    public void awaitTermination() throws InterruptedException {
+        Thread thread = loopThread;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+    
+    /**
+     * 关闭所有会话和监听端口
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            thread = loopThread;
+        }
+        selector.wakeup();
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Blaster blaster : blasters) {
+            blaster.shutdown();
+        }
+        Log.i(TAG, "Server stopped");
+    }
+    
+    // Getters
+    public ServerConfig getConfig() { return config; }
+    public int getWebSocketPort() { return webSocketPort; }
+    public int getTcpPort() { return tcpPort; }
+    public int getEchoPort() { return echoPort; }
+    public int getSessionCount() { return sessionCount; }
+    
+    private void loop() {
+        long nextHousekeeping = System.nanoTime();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                if (now >= nextHousekeeping) {
+                    housekeeping(now);
+                    nextHousekeeping = now + TimeUnit.MILLISECONDS.toNanos(HOUSEKEEPING_INTERVAL_MILLIS);
+                }
+                selector.select(Math.max(1, (nextHousekeeping - now) / 1_000_000L));
+                
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    dispatch(key);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            Log.e(TAG, "Event loop failed", e);
+        } finally {
+            for (Session session : new ArrayList<>(sessions)) {
+                session.close(1001);
+            }
+            closeQuietly(webSocketListener);
+            closeQuietly(tcpListener);
+            closeQuietly(echoChannel);
+            closeQuietly(selector);
+            running = false;
+        }
+    }
+    
+    private void dispatch(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        Object attachment = key.attachment();
+        try {
+            if (key.isAcceptable()) {
+                if (key.channel() == webSocketListener) {
+                    acceptWebSocket();
+                } else {
+                    acceptTcpStream();
+                }
+            } else if (key.channel() == echoChannel) {
+                echoProbes();
+            } else if (attachment instanceof WebSocketConnection) {
+                WebSocketConnection connection = (WebSocketConnection) attachment;
+                if (key.isReadable()) {
+                    connection.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.onWritable();
+                }
+            } else if (attachment instanceof UdpFlow) {
+                readDatagrams((UdpFlow) attachment);
+            } else if (attachment instanceof PendingStream) {
+                readToken(key, (PendingStream) attachment);
+            } else if (attachment instanceof TcpFlow) {
+                drainTcpStream(key, (TcpFlow) attachment);
+            }
+        } catch (RuntimeException e) {
+            // 单个会话的异常不影响事件循环
+            Log.e(TAG, "Error handling " + attachment, e);
+        }
+    }
+    
+    private void acceptWebSocket() {
+        SocketChannel channel;
+        try {
+            channel = webSocketListener.accept();
+            if (channel == null) {
+                return;
+            }
+            if (sessions.size() >= config.getMaxSessions()) {
+                Log.w(TAG, "Session limit " + config.getMaxSessions() + " reached, rejecting " + channel.getRemoteAddress());
+                channel.write(ByteBuffer.wrap("HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\n\r\n"
+                        .getBytes(StandardCharsets.ISO_8859_1)));
+                channel.close();
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Session session = new Session(this, ++nextSessionId);
+            WebSocketConnection connection = new WebSocketConnection(channel, key, session);
+            session.setConnection(connection);
+            key.attach(connection);
+            sessions.add(session);
+            sessionCount = sessions.size();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to accept WebSocket connection", e);
+        }
+    }
+    
+    private void acceptTcpStream() {
+        try {
+            SocketChannel channel = tcpListener.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new PendingStream());
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to accept TCP stream", e);
+        }
+    }
+    
+    /**
+     * 读取会话UDP端口上到达的数据报，交给会话处理
+     */
+    private void readDatagrams(UdpFlow flow) {
+        for (int i = 0; i < DATAGRAM_BATCH && !flow.isClosed(); i++) {
+            datagramBuffer.clear();
+            SocketAddress source;
+            try {
+                source = flow.channel.receive(datagramBuffer);
+            } catch (IOException e) {
+                Log.d(TAG, "Receive on flow " + flow.index + " failed: " + e.getMessage());
+                return;
+            }
+            if (source == null) {
+                return;
+            }
+            flow.session.onDatagram(flow, datagramBuffer, datagramBuffer.position(), (InetSocketAddress) source);
+        }
+    }
+    
+    /**
+     * 固定回显端口只原样回复时延探测包（魔数、长度与LatencyProber一致），其他数据报丢弃，
+     * 回复不大于请求，不能被用来放大流量
+     */
+    private void echoProbes() {
+        for (int i = 0; i < DATAGRAM_BATCH; i++) {
+            datagramBuffer.clear();
+            SocketAddress source;
+            try {
+                source = echoChannel.receive(datagramBuffer);
+                if (source == null) {
+                    return;
+                }
+                if (datagramBuffer.position() != LatencyProber.PROBE_SIZE
+                        || datagramBuffer.getInt(0) != LatencyProber.PROBE_MAGIC) {
+                    continue;
+                }
+                datagramBuffer.flip();
+                echoChannel.send(datagramBuffer, source);
+            } catch (IOException e) {
+                Log.d(TAG, "Echo failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+    
+    /**
+     * TCP后备连接的第一行是WebSocket会话分配的token
+     */
+    private void readToken(SelectionKey key, PendingStream pending) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            if (channel.read(pending.line) < 0) {
+                closeKey(key);
+                return;
+            }
+        } catch (IOException e) {
+            closeKey(key);
+            return;
+        }
+        
+        ByteBuffer line = pending.line;
+        int end = -1;
+        for (int i = 0; i < line.position(); i++) {
+            if (line.get(i) == '\n') {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            if (!line.hasRemaining()) {
+                Log.w(TAG, "TCP stream sent no token line, closing");
+                closeKey(key);
+            }
+            return;
+        }
+        
+        String token = new String(line.array(), 0, end, StandardCharsets.UTF_8).trim();
+        Session session = tcpTokens.get(token);
+        TcpFlow flow = session != null ? session.onTcpStream(channel) : null;
+        if (flow == null) {
+            Log.w(TAG, "Unknown TCP fallback token, closing stream");
+            closeKey(key);
+            return;
+        }
+        key.attach(flow);
+    }
+    
+    /**
+     * 客户端不会在数据连接上发送数据，读取只用于发现连接关闭
+     */
+    private void drainTcpStream(SelectionKey key, TcpFlow flow) {
+        int read;
+        try {
+            do {
+                discardBuffer.clear();
+                read = flow.channel.read(discardBuffer);
+            } while (read > 0);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            key.cancel();
+            flow.session.onTcpStreamClosed(flow);
+        }
+    }
+    
+    /**
+     * 关闭超时的会话和迟迟不发送token的TCP连接
+     */
+    private void housekeeping(long now) {
+        long timeout = TimeUnit.SECONDS.toNanos(config.getSessionTimeoutSeconds());
+        for (Session session : new ArrayList<>(sessions)) {
+            if (now - session.getCreatedNanos() > timeout) {
+                Log.w(TAG, "Session #" + session.getId() + " timed out after " + config.getSessionTimeoutSeconds() + "s");
+                session.close(1008);
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof PendingStream && now - ((PendingStream) attachment).acceptedNanos > TOKEN_TIMEOUT_NANOS) {
+                closeKey(key);
+            }
+        }
+    }
+    
+    /**
+     * 注册会话的UDP端口并分配发送线程，由Session在事件循环线程上调用
+     */
+    void registerFlow(UdpFlow flow) throws IOException {
+        DatagramChannel channel = flow.channel;
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, flow);
+        assignBlaster(flow);
+    }
+    
+    void assignBlaster(Flow flow) {
+        blasters[nextBlaster].add(flow);
+        nextBlaster = (nextBlaster + 1) % blasters.length;
+    }
+    
+    void registerTcpToken(String token, Session session) {
+        tcpTokens.put(token, session);
+    }
+    
+    void unregisterTcpToken(String token) {
+        tcpTokens.remove(token);
+    }
+    
+    void onSessionClosed(Session session) {
+        sessions.remove(session);
+        sessionCount = sessions.size();
+    }
+    
+    private static void closeKey(SelectionKey key) {
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+    
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+    
+    /**
+     * 尚未发送token的TCP后备连接
+     */
+    private static final class PendingStream {
+        
+        final ByteBuffer line = ByteBuffer.allocate(MAX_TOKEN_LINE);
+        final long acceptedNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,33 @@
+package com.swiftest.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * TCP后备下行流：客户端用token关联到会话的一条连接
+ * 按轮次速率写入无格式的数据，写不进内核缓冲区时返回0，由Blaster在下一个节拍重试。
+ * 连接的读取（检测对端关闭）由事件循环完成，写入由Blaster完成。
+ */
+final class TcpFlow extends Flow {
+    
+    static final int CHUNK_SIZE = 16 * 1024;
+    
+    final SocketChannel channel;
+    
+    TcpFlow(Session session, SocketChannel channel) {
+        super(session);
+        this.channel = channel;
+    }
+    
+    @Override
+    boolean isReady() {
+        return true;
+    }
+    
+    @Override
+    int send(ByteBuffer payload) throws IOException {
+        payload.clear().limit(CHUNK_SIZE);
+        return channel.write(payload);
+    }
+}
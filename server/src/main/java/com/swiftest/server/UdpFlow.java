@@ -0,0 +1,59 @@
+package com.swiftest.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * UDP下行流：会话为每个流分配一个DatagramChannel（即一个udp_port）
+ * 客户端的触发包确定目的地址，之后Blaster按轮次速率发送PACKET_SIZE字节的数据报；
+ * 开启seq时每个数据报头部写入8字节序号 + 8字节发送时间(µs)，与客户端SequenceTracker的格式一致。
+ * 通道的读取（触发、探测、控制和上传数据）由事件循环完成，发送由Blaster完成，
+ * DatagramChannel的读写可以在不同线程上同时进行。
+ */
+final class UdpFlow extends Flow {
+    
+    static final int PACKET_SIZE = 1024;
+    
+    final DatagramChannel channel;
+    final int index;
+    private final boolean sequenced;
+    private volatile InetSocketAddress client;
+    
+    UdpFlow(Session session, DatagramChannel channel, int index, boolean sequenced) {
+        super(session);
+        this.channel = channel;
+        this.index = index;
+        this.sequenced = sequenced;
+    }
+    
+    /**
+     * 记录触发包的来源地址，由事件循环线程调用
+     * @return 第一次确定地址时返回true
+     */
+    boolean setClient(InetSocketAddress address) {
+        boolean first = client == null;
+        client = address;
+        return first;
+    }
+    
+    @Override
+    boolean isReady() {
+        return client != null;
+    }
+    
+    @Override
+    int send(ByteBuffer payload) throws IOException {
+        payload.clear().limit(PACKET_SIZE);
+        if (sequenced) {
+            payload.putLong(0, sequence);
+            payload.putLong(8, System.nanoTime() / 1000L);
+        }
+        int sent = channel.send(payload, client);
+        if (sent > 0) {
+            sequence++;
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,419 @@
+package com.swiftest.server;
+
+import com.swiftest.core.log.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * 非阻塞WebSocket服务端连接（RFC 6455的最小实现）
+ * 只由事件循环线程访问：
+ * - 握手：读取HTTP升级请求，校验Upgrade和Sec-WebSocket-Key后回复101，不支持扩展和子协议
+ * - 接收：解析客户端帧（必须带掩码），拼接分片消息，自动回复ping和close
+ * - 发送：服务端帧不加掩码，写不完的部分排队并注册OP_WRITE，由事件循环继续写出
+ * 控制消息都很小，单条消息超过MAX_MESSAGE_SIZE时以1009关闭连接。
+ */
+final class WebSocketConnection {
+    
+    private static final String TAG = "WebSocketConnection";
+    
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_REQUEST_SIZE = 8 * 1024;
+    private static final int MAX_MESSAGE_SIZE = 64 * 1024;
+    
+    private static final int OPCODE_CONTINUATION = 0x0;
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_BINARY = 0x2;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+    
+    private static final int CLOSE_PROTOCOL_ERROR = 1002;
+    private static final int CLOSE_TOO_BIG = 1009;
+    
+    /**
+     * 连接事件回调，在事件循环线程上调用
+     */
+    interface Listener {
+        
+        /**
+         * 升级完成
+         */
+        void onOpen(WebSocketConnection connection);
+        
+        void onText(String message);
+        
+        /**
+         * @param frame 完整的二进制消息，只在回调期间有效
+         */
+        void onBinary(ByteBuffer frame);
+        
+        /**
+         * 连接关闭（对端关闭、握手失败、协议错误或IO错误），只调用一次
+         */
+        void onClose();
+    }
+    
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final Listener listener;
+    private final ByteBuffer inbound = ByteBuffer.allocate(MAX_MESSAGE_SIZE + 14);
+    private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+    
+    private ByteBuffer message;
+    private int messageOpcode = -1;
+    private boolean upgraded = false;
+    private boolean closing = false;
+    private boolean closed = false;
+    
+    /**
+     * @param key 通道在事件循环Selector上的注册，attachment由调用方设置
+     */
+    WebSocketConnection(SocketChannel channel, SelectionKey key, Listener listener) {
+        this.channel = channel;
+        this.key = key;
+        this.listener = listener;
+    }
+    
+    boolean isOpen() {
+        return upgraded && !closing && !closed;
+    }
+    
+    String getRemoteAddress() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+    
+    /**
+     * 通道可读时由事件循环调用
+     */
+    void onReadable() {
+        try {
+            int read = channel.read(inbound);
+            if (read < 0) {
+                close();
+                return;
+            }
+            inbound.flip();
+            if (!upgraded) {
+                readHandshake();
+            }
+            if (upgraded) {
+                readFrames();
+            }
+            inbound.compact();
+        } catch (IOException e) {
+            Log.d(TAG, "Read from " + getRemoteAddress() + " failed: " + e.getMessage());
+            close();
+        }
+    }
+    
+    /**
+     * 通道可写时由事件循环调用，继续写出排队的数据
+     */
+    void onWritable() {
+        try {
+            flush();
+        } catch (IOException e) {
+            Log.d(TAG, "Write to " + getRemoteAddress() + " failed: " + e.getMessage());
+            close();
+        }
+    }
+    
+    void sendText(String text) {
+        sendFrame(OPCODE_TEXT, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    /**
+     * @param payload position到limit之间的内容，调用返回后即可复用
+     */
+    void sendBinary(ByteBuffer payload) {
+        sendFrame(OPCODE_BINARY, payload);
+    }
+    
+    /**
+     * 发送close帧，对端回复close或断开后关闭通道；握手完成前不发送
+     */
+    void sendClose(int code) {
+        if (!upgraded || closing || closed) {
+            return;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(2);
+        payload.putShort((short) code).flip();
+        sendFrame(OPCODE_CLOSE, payload);
+        closing = true;
+    }
+    
+    /**
+     * 立即关闭通道
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        listener.onClose();
+    }
+    
+    private void readHandshake() throws IOException {
+        int end = indexOfHeaderEnd(inbound);
+        if (end < 0) {
+            if (inbound.remaining() >= MAX_REQUEST_SIZE) {
+                rejectHandshake("431 Request Header Fields Too Large");
+            }
+            return;
+        }
+        
+        byte[] bytes = new byte[end];
+        inbound.get(bytes);
+        String[] lines = new String(bytes, StandardCharsets.ISO_8859_1).split("\r\n");
+        String webSocketKey = null;
+        boolean upgrade = false;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = lines[i].substring(colon + 1).trim();
+            if (name.equals("upgrade")) {
+                upgrade = value.equalsIgnoreCase("websocket");
+            } else if (name.equals("sec-websocket-key")) {
+                webSocketKey = value;
+            }
+        }
+        if (!lines[0].startsWith("GET ") || !upgrade || webSocketKey == null) {
+            rejectHandshake("426 Upgrade Required");
+            return;
+        }
+        
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey(webSocketKey) + "\r\n\r\n";
+        enqueue(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        upgraded = true;
+        listener.onOpen(this);
+    }
+    
+    private void rejectHandshake(String status) throws IOException {
+        Log.d(TAG, "Rejecting handshake from " + getRemoteAddress() + ": " + status);
+        String response = "HTTP/1.1 " + status + "\r\nConnection: close\r\nContent-Length: 0\r\n\r\n";
+        channel.write(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        close();
+    }
+    
+    /**
+     * 解析inbound中所有完整的帧，不完整的帧留到下次读取
+     */
+    private void readFrames() {
+        while (!closed && inbound.remaining() >= 2) {
+            int start = inbound.position();
+            int b0 = inbound.get(start) & 0xFF;
+            int b1 = inbound.get(start + 1) & 0xFF;
+            boolean fin = (b0 & 0x80) != 0;
+            int opcode = b0 & 0x0F;
+            boolean masked = (b1 & 0x80) != 0;
+            long length = b1 & 0x7F;
+            int headerSize = 2;
+            if (length == 126) {
+                if (inbound.remaining() < 4) {
+                    return;
+                }
+                length = inbound.getShort(start + 2) & 0xFFFF;
+                headerSize = 4;
+            } else if (length == 127) {
+                if (inbound.remaining() < 10) {
+                    return;
+                }
+                length = inbound.getLong(start + 2);
+                headerSize = 10;
+            }
+            if (!masked) {
+                failConnection(CLOSE_PROTOCOL_ERROR, "unmasked client frame");
+                return;
+            }
+            if (length < 0 || length > MAX_MESSAGE_SIZE) {
+                failConnection(CLOSE_TOO_BIG, "frame of " + length + " bytes");
+                return;
+            }
+            int frameSize = headerSize + 4 + (int) length;
+            if (inbound.remaining() < frameSize) {
+                return;
+            }
+            
+            // 原地去掩码
+            int maskOffset = start + headerSize;
+            int payloadOffset = maskOffset + 4;
+            for (int i = 0; i < length; i++) {
+                byte mask = inbound.get(maskOffset + (i & 3));
+                inbound.put(payloadOffset + i, (byte) (inbound.get(payloadOffset + i) ^ mask));
+            }
+            ByteBuffer payload = inbound.duplicate();
+            payload.position(payloadOffset).limit(payloadOffset + (int) length);
+            inbound.position(start + frameSize);
+            
+            onFrame(fin, opcode, payload);
+        }
+    }
+    
+    private void onFrame(boolean fin, int opcode, ByteBuffer payload) {
+        switch (opcode) {
+            case OPCODE_PING:
+                sendFrame(OPCODE_PONG, payload);
+                return;
+            case OPCODE_PONG:
+                return;
+            case OPCODE_CLOSE:
+                // 回显对端的关闭码后关闭
+                if (!closing) {
+                    sendFrame(OPCODE_CLOSE, payload.remaining() >= 2 ? payload : ByteBuffer.allocate(0));
+                    closing = true;
+                }
+                close();
+                return;
+            case OPCODE_TEXT:
+            case OPCODE_BINARY:
+                if (messageOpcode >= 0) {
+                    failConnection(CLOSE_PROTOCOL_ERROR, "new message inside fragmented message");
+                    return;
+                }
+                if (fin) {
+                    deliver(opcode, payload);
+                    return;
+                }
+                messageOpcode = opcode;
+                message = ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+                message.put(payload);
+                return;
+            case OPCODE_CONTINUATION:
+                if (messageOpcode < 0) {
+                    failConnection(CLOSE_PROTOCOL_ERROR, "unexpected continuation frame");
+                    return;
+                }
+                if (payload.remaining() > message.remaining()) {
+                    failConnection(CLOSE_TOO_BIG, "fragmented message too large");
+                    return;
+                }
+                message.put(payload);
+                if (fin) {
+                    int type = messageOpcode;
+                    ByteBuffer complete = message.flip();
+                    messageOpcode = -1;
+                    message = null;
+                    deliver(type, complete);
+                }
+                return;
+            default:
+                failConnection(CLOSE_PROTOCOL_ERROR, "unknown opcode " + opcode);
+        }
+    }
+    
+    private void deliver(int opcode, ByteBuffer payload) {
+        if (closing) {
+            return;
+        }
+        if (opcode == OPCODE_TEXT) {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            listener.onText(new String(bytes, StandardCharsets.UTF_8));
+        } else {
+            listener.onBinary(payload);
+        }
+    }
+    
+    private void failConnection(int code, String reason) {
+        Log.w(TAG, "Closing " + getRemoteAddress() + ": " + reason);
+        sendClose(code);
+        close();
+    }
+    
+    private void sendFrame(int opcode, ByteBuffer payload) {
+        if (closing || closed) {
+            return;
+        }
+        int length = payload.remaining();
+        int headerSize = length < 126 ? 2 : length <= 0xFFFF ? 4 : 10;
+        ByteBuffer frame = ByteBuffer.allocate(headerSize + length);
+        frame.put((byte) (0x80 | opcode));
+        if (length < 126) {
+            frame.put((byte) length);
+        } else if (length <= 0xFFFF) {
+            frame.put((byte) 126).putShort((short) length);
+        } else {
+            frame.put((byte) 127).putLong(length);
+        }
+        frame.put(payload.duplicate());
+        frame.flip();
+        enqueue(frame);
+    }
+    
+    private void enqueue(ByteBuffer data) {
+        outbound.addLast(data);
+        try {
+            flush();
+        } catch (IOException e) {
+            Log.d(TAG, "Write to " + getRemoteAddress() + " failed: " + e.getMessage());
+            close();
+        }
+    }
+    
+    /**
+     * 尽量写出排队的数据，写不完时等待OP_WRITE；close帧写出后关闭通道
+     */
+    private void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+        while (!outbound.isEmpty()) {
+            ByteBuffer head = outbound.peekFirst();
+            channel.write(head);
+            if (head.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            outbound.removeFirst();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (closing) {
+            close();
+        }
+    }
+    
+    private static int indexOfHeaderEnd(ByteBuffer buffer) {
+        for (int i = buffer.position(); i + 3 < buffer.limit(); i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n'
+                    && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n') {
+                return i + 4 - buffer.position();
+            }
+        }
+        return -1;
+    }
+    
+    private static String acceptKey(String webSocketKey) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((webSocketKey + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // 每个JVM都必须提供SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+}
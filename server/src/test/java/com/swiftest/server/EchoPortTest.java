@@ -0,0 +1,119 @@
+package com.swiftest.server;
+
+import com.swiftest.core.exec.SwiftestEngine;
+import com.swiftest.core.models.ServerScore;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.protocol.LatencyProber;
+import com.swiftest.core.protocol.ServerSelector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EchoPortTest {
+    
+    private SwiftestServer server;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new SwiftestServer(new ServerConfig.Builder()
+                .bindHost("127.0.0.1")
+                .webSocketPort(0)
+                .tcpPort(0)
+                .echoPort(0)
+                .blasterThreads(1)
+                .build());
+        server.start();
+    }
+    
+    @After
+    public void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    public void probesAreEchoedWithoutSession() throws Exception {
+        try (DatagramChannel client = DatagramChannel.open()) {
+            client.connect(new InetSocketAddress("127.0.0.1", server.getEchoPort()));
+            
+            ByteBuffer probe = ByteBuffer.allocate(LatencyProber.PROBE_SIZE);
+            probe.putInt(0, LatencyProber.PROBE_MAGIC).putLong(4, 7).putLong(12, 123_456_789L);
+            client.write(probe);
+            
+            ByteBuffer reply = ByteBuffer.allocate(2048);
+            int length = receive(client, reply);
+            assertEquals(LatencyProber.PROBE_SIZE, length);
+            assertEquals(LatencyProber.PROBE_MAGIC, reply.getInt(0));
+            assertEquals(7, reply.getLong(4));
+            assertEquals(0, server.getSessionCount());
+        }
+    }
+    
+    @Test
+    public void otherDatagramsAreDropped() throws Exception {
+        try (DatagramChannel client = DatagramChannel.open()) {
+            client.connect(new InetSocketAddress("127.0.0.1", server.getEchoPort()));
+            
+            // 魔数正确但长度不符（例如测速数据报）以及普通触发包都不回复
+            ByteBuffer oversized = ByteBuffer.allocate(1024);
+            oversized.putInt(0, LatencyProber.PROBE_MAGIC);
+            client.write(oversized);
+            client.write(ByteBuffer.wrap("trigger".getBytes()));
+            
+            try {
+                receive(client, ByteBuffer.allocate(2048));
+                fail("Unexpected reply on echo port");
+            } catch (SocketTimeoutException expected) {
+                // 没有回复
+            }
+        }
+    }
+    
+    @Test
+    public void serverSelectorProbesEchoPort() {
+        SwiftestEngine context = new SwiftestEngine.Builder().build();
+        try {
+            SpeedTestConfig candidate = new SpeedTestConfig.Builder()
+                    .serverHost("127.0.0.1")
+                    .webSocketPort(server.getWebSocketPort())
+                    .udpPort(server.getEchoPort())
+                    .build();
+            
+            List<ServerScore> ranking = new ServerSelector(context, 0)
+                    .rank(Collections.singletonList(candidate), 2000);
+            
+            assertTrue(ranking.get(0).isReachable());
+            // 经UDP回显探测（TCP连接探测只有4次），没有回退到对WebSocket端口的连接
+            assertTrue(ranking.get(0).getLatency().getProbesReceived() > 4);
+            assertEquals(0, server.getSessionCount());
+        } finally {
+            context.close();
+        }
+    }
+    
+    /**
+     * 等待一个数据报，500ms内没有收到时抛出SocketTimeoutException
+     */
+    private static int receive(DatagramChannel channel, ByteBuffer dst) throws Exception {
+        channel.configureBlocking(false);
+        long deadline = System.nanoTime() + 500_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (channel.receive(dst) != null) {
+                return dst.position();
+            }
+            Thread.sleep(5);
+        }
+        throw new SocketTimeoutException();
+    }
+}
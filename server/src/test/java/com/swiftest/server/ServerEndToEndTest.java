@@ -0,0 +1,163 @@
+package com.swiftest.server;
+
+import com.swiftest.core.log.Log;
+import com.swiftest.core.log.Logger;
+import com.swiftest.core.models.SpeedTestConfig;
+import com.swiftest.core.protocol.SpeedTestProtocol;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 客户端SpeedTestProtocol对回环上的SwiftestServer完成整个下载测试
+ */
+public class ServerEndToEndTest {
+    
+    private SwiftestServer server;
+    private final LogCapture log = new LogCapture();
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new SwiftestServer(new ServerConfig.Builder()
+                .bindHost("127.0.0.1")
+                .webSocketPort(0)
+                .tcpPort(0)
+                .echoPort(0)
+                .initialSpeed(10)
+                .maxSpeed(100)
+                .blasterThreads(1)
+                .build());
+        server.start();
+        Log.setLogger(log);
+    }
+    
+    @After
+    public void tearDown() {
+        Log.setLogger(null);
+        server.close();
+    }
+    
+    @Test
+    public void appModeJsonControl() throws Exception {
+        run(config().appMode(true).guid("e2e-guid").testId("e2e-test"));
+        
+        assertTrue(log.contains("Session", "app hello"));
+    }
+    
+    @Test
+    public void sdkModeJsonControl() throws Exception {
+        run(config());
+        
+        assertTrue(log.contains("Session", "sdk hello"));
+        assertTrue(log.contains("Session", "round 2 at"));
+    }
+    
+    @Test
+    public void binaryControl() throws Exception {
+        run(config().binaryControl(true));
+        
+        assertTrue(log.contains("Session", ", binary"));
+        assertTrue(log.contains("WebSocketClient", "accepted binary control"));
+    }
+    
+    @Test
+    public void udpControl() throws Exception {
+        run(config().udpEngine(SpeedTestConfig.UdpEngine.NIO).udpControl(true));
+        
+        assertTrue(log.contains("Session", ", udp_control"));
+        assertTrue(log.contains("SpeedTestProtocol", "accepted in-band round control"));
+        // 第二轮起由测量Socket上的控制报文开始
+        assertTrue(log.contains("Session", "round 2 at"));
+    }
+    
+    @Test
+    public void binaryAndUdpControl() throws Exception {
+        run(config().udpEngine(SpeedTestConfig.UdpEngine.NIO).binaryControl(true).udpControl(true));
+        
+        assertTrue(log.contains("Session", ", binary, udp_control"));
+        assertTrue(log.contains("SpeedTestProtocol", "accepted in-band round control"));
+    }
+    
+    private SpeedTestConfig.Builder config() {
+        return new SpeedTestConfig.Builder()
+                .serverHost("127.0.0.1")
+                .webSocketPort(server.getWebSocketPort())
+                .appMode(false)
+                // 回环上服务器按速率发送，接收不会饱和，第2轮后以maxRounds结束并发送finish
+                .maxSaturatedRounds(2)
+                .maxRounds(2);
+    }
+    
+    /**
+     * 运行一次测试，断言下载完成、收到traffic且会话随后被清理
+     */
+    private void run(SpeedTestConfig.Builder builder) throws Exception {
+        ProtocolRecorder callback = new ProtocolRecorder();
+        SpeedTestProtocol protocol = new SpeedTestProtocol(builder.build(), callback);
+        try {
+            protocol.startSpeedTest();
+            
+            assertTrue("download did not complete", callback.completed.await(20, TimeUnit.SECONDS));
+            assertTrue(callback.failures.toString(), callback.failures.isEmpty());
+            assertTrue(callback.traffic > 0);
+            assertTrue(log.contains("Session", "finished: download="));
+        } finally {
+            protocol.stopSpeedTest();
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getSessionCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, server.getSessionCount());
+    }
+    
+    private static final class ProtocolRecorder implements SpeedTestProtocol.ProtocolCallback {
+        
+        final CountDownLatch completed = new CountDownLatch(1);
+        final List<String> failures = new CopyOnWriteArrayList<>();
+        volatile double traffic;
+        
+        @Override public void onTestStarted() {}
+        @Override public void onProgressUpdate(int progress, float currentSpeed) {}
+        @Override public void onNetworkIssue(int issueType) {}
+        @Override public void onTestFailed(String error) { failures.add(error); }
+        
+        @Override
+        public void onTestCompleted(float downloadSpeed, double traffic) {
+            this.traffic = traffic;
+            completed.countDown();
+        }
+    }
+    
+    /**
+     * 记录所有日志，用于确认两端协商的控制方式
+     */
+    private static final class LogCapture implements Logger {
+        
+        private final List<String> lines = new CopyOnWriteArrayList<>();
+        
+        @Override
+        public void log(int level, String tag, String message, Throwable error) {
+            lines.add(tag + ": " + message);
+        }
+        
+        boolean contains(String tag, String text) {
+            for (String line : lines) {
+                if (line.startsWith(tag + ": ") && line.contains(text)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
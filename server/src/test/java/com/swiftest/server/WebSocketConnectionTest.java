@@ -0,0 +1,418 @@
+package com.swiftest.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在回环连接上驱动WebSocketConnection：测试线程充当事件循环，客户端一侧手工构造帧
+ */
+public class WebSocketConnectionTest {
+    
+    private static final int OPCODE_CONTINUATION = 0x0;
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_BINARY = 0x2;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+    
+    private static final byte[] MASK = {0x37, (byte) 0xfa, 0x21, 0x3d};
+    
+    private ServerSocketChannel listener;
+    private Selector selector;
+    private Socket client;
+    private DataInputStream in;
+    private OutputStream out;
+    private WebSocketConnection connection;
+    private final Recorder recorder = new Recorder();
+    
+    @Before
+    public void setUp() throws Exception {
+        listener = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = new Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) listener.getLocalAddress()).getPort());
+        client.setSoTimeout(2000);
+        in = new DataInputStream(client.getInputStream());
+        out = client.getOutputStream();
+        
+        SocketChannel channel = listener.accept();
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        connection = new WebSocketConnection(channel, key, recorder);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+        client.close();
+        selector.close();
+        listener.close();
+    }
+    
+    @Test
+    public void handshakeAcceptsUpgrade() throws Exception {
+        // RFC 6455 第1.3节的示例key
+        out.write(upgradeRequest("dGhlIHNhbXBsZSBub25jZQ==").getBytes(StandardCharsets.ISO_8859_1));
+        
+        assertTrue(pumpUntil(() -> recorder.opened));
+        String response = readResponse();
+        assertTrue(response, response.startsWith("HTTP/1.1 101 "));
+        assertTrue(response, response.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo=\r\n"));
+        assertTrue(connection.isOpen());
+    }
+    
+    @Test
+    public void rejectsPlainHttpRequest() throws Exception {
+        out.write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        
+        assertTrue(pumpUntil(() -> recorder.closeCount > 0));
+        assertTrue(readResponse().startsWith("HTTP/1.1 426 "));
+        assertFalse(recorder.opened);
+    }
+    
+    @Test
+    public void maskedTextFrame() throws Exception {
+        open();
+        out.write(frame(true, OPCODE_TEXT, utf8("{\"msg\":\"hello\"}"), 0));
+        
+        assertTrue(pumpUntil(() -> recorder.texts.size() == 1));
+        assertEquals("{\"msg\":\"hello\"}", recorder.texts.get(0));
+    }
+    
+    @Test
+    public void unmaskedFrameIsProtocolError() throws Exception {
+        open();
+        byte[] payload = utf8("hi");
+        ByteArrayOutputStream unmasked = new ByteArrayOutputStream();
+        unmasked.write(0x80 | OPCODE_TEXT);
+        unmasked.write(payload.length);
+        unmasked.write(payload);
+        out.write(unmasked.toByteArray());
+        
+        assertTrue(pumpUntil(() -> recorder.closeCount > 0));
+        assertCloseFrame(1002);
+        assertTrue(recorder.texts.isEmpty());
+    }
+    
+    @Test
+    public void fragmentedMessageWithInterleavedPing() throws Exception {
+        open();
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        frames.write(frame(false, OPCODE_TEXT, utf8("Hel"), 0));
+        // 控制帧可以插在分片之间
+        frames.write(frame(true, OPCODE_PING, utf8("p"), 0));
+        frames.write(frame(false, OPCODE_CONTINUATION, utf8("lo "), 0));
+        frames.write(frame(true, OPCODE_CONTINUATION, utf8("world"), 0));
+        out.write(frames.toByteArray());
+        
+        assertTrue(pumpUntil(() -> recorder.texts.size() == 1));
+        assertEquals("Hello world", recorder.texts.get(0));
+        Frame pong = readFrame();
+        assertEquals(OPCODE_PONG, pong.opcode);
+        assertArrayEquals(utf8("p"), pong.payload);
+    }
+    
+    @Test
+    public void fragmentedBinaryMessage() throws Exception {
+        open();
+        byte[] payload = bytes(400);
+        out.write(frame(false, OPCODE_BINARY, Arrays.copyOfRange(payload, 0, 150), 0));
+        out.write(frame(true, OPCODE_CONTINUATION, Arrays.copyOfRange(payload, 150, 400), 0));
+        
+        assertTrue(pumpUntil(() -> recorder.binaries.size() == 1));
+        assertArrayEquals(payload, recorder.binaries.get(0));
+    }
+    
+    @Test
+    public void continuationWithoutStartIsProtocolError() throws Exception {
+        open();
+        out.write(frame(true, OPCODE_CONTINUATION, utf8("orphan"), 0));
+        
+        assertTrue(pumpUntil(() -> recorder.closeCount > 0));
+        assertCloseFrame(1002);
+    }
+    
+    @Test
+    public void sixteenBitExtendedLength() throws Exception {
+        open();
+        byte[] payload = bytes(300);
+        out.write(frame(true, OPCODE_BINARY, payload, 126));
+        
+        assertTrue(pumpUntil(() -> recorder.binaries.size() == 1));
+        assertArrayEquals(payload, recorder.binaries.get(0));
+    }
+    
+    @Test
+    public void sixtyFourBitExtendedLength() throws Exception {
+        open();
+        // 127形式的长度对任意大小都合法，包括不需要扩展长度的小帧
+        byte[] small = bytes(100);
+        byte[] large = bytes(40_000);
+        out.write(frame(true, OPCODE_BINARY, small, 127));
+        out.write(frame(true, OPCODE_BINARY, large, 127));
+        
+        assertTrue(pumpUntil(() -> recorder.binaries.size() == 2));
+        assertArrayEquals(small, recorder.binaries.get(0));
+        assertArrayEquals(large, recorder.binaries.get(1));
+    }
+    
+    @Test
+    public void oversizedFrameIsRejected() throws Exception {
+        open();
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(0x80 | OPCODE_BINARY);
+        header.write(0x80 | 127);
+        header.write(ByteBuffer.allocate(8).putLong(1L << 20).array());
+        header.write(MASK);
+        out.write(header.toByteArray());
+        
+        assertTrue(pumpUntil(() -> recorder.closeCount > 0));
+        assertCloseFrame(1009);
+    }
+    
+    @Test
+    public void frameSplitAcrossReads() throws Exception {
+        open();
+        byte[] frame = frame(true, OPCODE_TEXT, utf8("split across reads"), 0);
+        // 先只发送头部的第1个字节，再发送到载荷中间
+        out.write(frame, 0, 1);
+        out.flush();
+        pumpUntil(() -> false, 100);
+        out.write(frame, 1, 8);
+        out.flush();
+        pumpUntil(() -> false, 100);
+        assertTrue(recorder.texts.isEmpty());
+        
+        out.write(frame, 9, frame.length - 9);
+        assertTrue(pumpUntil(() -> recorder.texts.size() == 1));
+        assertEquals("split across reads", recorder.texts.get(0));
+    }
+    
+    @Test
+    public void closeFrameIsEchoed() throws Exception {
+        open();
+        out.write(frame(true, OPCODE_CLOSE, ByteBuffer.allocate(2).putShort((short) 1000).array(), 0));
+        
+        assertTrue(pumpUntil(() -> recorder.closeCount > 0));
+        assertCloseFrame(1000);
+        assertEquals(-1, in.read());
+        assertEquals(1, recorder.closeCount);
+    }
+    
+    @Test
+    public void serverFramesUseExtendedLengths() throws Exception {
+        open();
+        connection.sendText("short");
+        connection.sendBinary(ByteBuffer.wrap(bytes(300)));
+        connection.sendBinary(ByteBuffer.wrap(bytes(70_000)));
+        
+        Frame text = readFrame();
+        assertEquals(OPCODE_TEXT, text.opcode);
+        assertEquals(2, text.headerSize);
+        Frame medium = readFrame();
+        assertEquals(4, medium.headerSize);
+        assertArrayEquals(bytes(300), medium.payload);
+        // 写不完的部分等待OP_WRITE，由事件循环继续写出
+        Frame large = readFrameWhilePumping();
+        assertEquals(10, large.headerSize);
+        assertArrayEquals(bytes(70_000), large.payload);
+    }
+    
+    /**
+     * 完成握手并读掉101响应
+     */
+    private void open() throws Exception {
+        out.write(upgradeRequest("x3JJHMbDL1EzLkh9GBhXDw==").getBytes(StandardCharsets.ISO_8859_1));
+        assertTrue(pumpUntil(() -> recorder.opened));
+        assertTrue(readResponse().startsWith("HTTP/1.1 101 "));
+    }
+    
+    private boolean pumpUntil(BooleanSupplier condition) throws IOException {
+        return pumpUntil(condition, 2000);
+    }
+    
+    /**
+     * 代替SwiftestServer的事件循环分发可读和可写事件，直到条件成立或超时
+     */
+    private boolean pumpUntil(BooleanSupplier condition, long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            selector.select(10);
+            for (SelectionKey key : selector.selectedKeys()) {
+                if (key.isValid() && key.isWritable()) {
+                    connection.onWritable();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    connection.onReadable();
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        return true;
+    }
+    
+    private void assertCloseFrame(int code) throws IOException {
+        Frame close = readFrame();
+        assertEquals(OPCODE_CLOSE, close.opcode);
+        assertEquals(code, ByteBuffer.wrap(close.payload).getShort() & 0xFFFF);
+    }
+    
+    private String readResponse() throws IOException {
+        StringBuilder response = new StringBuilder();
+        while (!response.toString().endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            response.append((char) b);
+        }
+        return response.toString();
+    }
+    
+    private Frame readFrame() throws IOException {
+        Frame frame = new Frame();
+        int b0 = in.readUnsignedByte();
+        int b1 = in.readUnsignedByte();
+        assertTrue("server frames must be final", (b0 & 0x80) != 0);
+        assertEquals("server frames must not be masked", 0, b1 & 0x80);
+        frame.opcode = b0 & 0x0F;
+        long length = b1 & 0x7F;
+        frame.headerSize = 2;
+        if (length == 126) {
+            length = in.readUnsignedShort();
+            frame.headerSize = 4;
+        } else if (length == 127) {
+            length = in.readLong();
+            frame.headerSize = 10;
+        }
+        frame.payload = new byte[(int) length];
+        in.readFully(frame.payload);
+        return frame;
+    }
+    
+    /**
+     * 在另一个线程读取，测试线程继续分发OP_WRITE
+     */
+    private Frame readFrameWhilePumping() throws Exception {
+        Frame[] result = new Frame[1];
+        Thread reader = new Thread(() -> {
+            try {
+                result[0] = readFrame();
+            } catch (IOException e) {
+                // 下面的断言会失败
+            }
+        });
+        reader.start();
+        pumpUntil(() -> !reader.isAlive());
+        reader.join(2000);
+        assertTrue("no frame received", result[0] != null);
+        return result[0];
+    }
+    
+    private static String upgradeRequest(String key) {
+        return "GET / HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+    }
+    
+    /**
+     * 构造带掩码的客户端帧
+     * @param lengthForm 0按载荷长度选择最短的编码，126或127强制使用对应的扩展长度
+     */
+    private static byte[] frame(boolean fin, int opcode, byte[] payload, int lengthForm) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write((fin ? 0x80 : 0) | opcode);
+        int form = lengthForm != 0 ? lengthForm : payload.length < 126 ? 0 : payload.length <= 0xFFFF ? 126 : 127;
+        if (form == 126) {
+            frame.write(0x80 | 126);
+            frame.write(ByteBuffer.allocate(2).putShort((short) payload.length).array());
+        } else if (form == 127) {
+            frame.write(0x80 | 127);
+            frame.write(ByteBuffer.allocate(8).putLong(payload.length).array());
+        } else {
+            frame.write(0x80 | payload.length);
+        }
+        frame.write(MASK);
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ MASK[i & 3]);
+        }
+        return frame.toByteArray();
+    }
+    
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+        return bytes;
+    }
+    
+    private static final class Frame {
+        int opcode;
+        int headerSize;
+        byte[] payload;
+    }
+    
+    private static final class Recorder implements WebSocketConnection.Listener {
+        
+        final List<String> texts = new ArrayList<>();
+        final List<byte[]> binaries = new ArrayList<>();
+        boolean opened;
+        int closeCount;
+        
+        @Override
+        public void onOpen(WebSocketConnection connection) {
+            opened = true;
+        }
+        
+        @Override
+        public void onText(String message) {
+            texts.add(message);
+        }
+        
+        @Override
+        public void onBinary(ByteBuffer frame) {
+            byte[] bytes = new byte[frame.remaining()];
+            frame.get(bytes);
+            binaries.add(bytes);
+        }
+        
+        @Override
+        public void onClose() {
+            closeCount++;
+        }
+    }
+}